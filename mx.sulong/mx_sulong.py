@@ -98,6 +98,12 @@ def _sulong_gate_runner(args, tasks):
         if t: mx_testsuites.runSuite('type')
     with Task('TestPipe', tasks, tags=['pipe', 'sulongMisc']) as t:
         if t: mx_testsuites.runSuite('pipe')
+    with Task('TestRuntime', tasks, tags=['runtime', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('runtime')
+    with Task('TestDerefHandles', tasks, tags=['derefhandles', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('derefhandles')
+    with Task('TestBitStream', tasks, tags=['bitstream', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('bitstream')
     with Task('TestLLVM', tasks, tags=['llvm']) as t:
         if t: mx_testsuites.runSuite('llvm')
     with Task('TestNWCC', tasks, tags=['nwcc']) as t:
@@ -124,6 +130,22 @@ def _sulong_gate_runner(args, tasks):
         if t: mx_testsuites.runSuite('callback')
     with Task('TestVarargs', tasks, tags=['vaargs', 'sulongMisc']) as t:
         if t: mx_testsuites.runSuite('vaargs')
+    with Task('TestStack', tasks, tags=['stack', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('stack')
+    with Task('TestComputedGoto', tasks, tags=['computedgoto', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('computedgoto')
+    with Task('TestParallelParsing', tasks, tags=['parallelparsing', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('parallelparsing')
+    with Task('TestParseCache', tasks, tags=['parsecache', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('parsecache')
+    with Task('TestSharedEngine', tasks, tags=['sharedengine', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('sharedengine')
+    with Task('TestBufferedStdio', tasks, tags=['stdio', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('stdio')
+    with Task('TestNativeCallStatistics', tasks, tags=['nativecallstats', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('nativecallstats')
+    with Task('TestSamplingProfiler', tasks, tags=['profiler', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('profiler')
 
 add_gate_runner(_suite, _sulong_gate_runner)
 
@@ -403,6 +425,13 @@ def runLLVM(args=None, out=None):
     vmArgs, sulongArgs = truffle_extract_VM_args(args)
     return mx.run_java(getCommonOptions(False) + vmArgs + getClasspathOptions() + ["com.oracle.truffle.llvm.launcher.LLVMLauncher"] + sulongArgs, out=out)
 
+def runOtherBenchmarks(args=None):
+    """measures the programs in tests/other that the unit tests only check for correctness"""
+    vmArgs, benchmarks = truffle_extract_VM_args(args)
+    mx_testsuites.compileOtherTests()
+    classpath = mx.get_runtime_jvm_args(['SULONG_TEST', 'mx:JUNIT'])
+    return mx.run_java(getCommonOptions(False) + vmArgs + classpath + ["com.oracle.truffle.llvm.test.OtherProgramsBenchmark"] + benchmarks)
+
 def getCommonOptions(withAssertion, lib_args=None):
     options = ['-Dgraal.TruffleCompilationExceptionsArePrinted=true',
         '-Dgraal.ExitVMOnException=true']
@@ -663,6 +692,7 @@ def create_asm_parser(args=None, out=None):
 
 mx.update_commands(_suite, {
     'lli' : [runLLVM, ''],
+    'other-benchmarks' : [runOtherBenchmarks, '[benchmark...]'],
     'test-llvm-image' : [_test_llvm_image, 'test a pre-built LLVM image'],
     'create-asm-parser' : [create_asm_parser, 'create the inline assembly parser using antlr'],
 })
@@ -112,6 +112,58 @@ def runPipeTests(vmArgs):
     """runs the Pipe test suite"""
     return run(vmArgs, "com.oracle.truffle.llvm.test.CaptureOutputTest")
 
+def runRuntimeTests(vmArgs):
+    """runs the unit tests of the runtime classes"""
+    return run(vmArgs, "com.oracle.truffle.llvm.test.SizeClassHeapAllocatorTest")
+
+def runStackTests(vmArgs):
+    """runs the tests of the stack memory implementations"""
+    compileSuite(['stack'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.StackMemoryTest")
+
+def runComputedGotoTests(vmArgs):
+    """runs the tests of indirect branches"""
+    compileSuite(['computedgoto'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.ComputedGotoTest")
+
+def runParallelParsingTests(vmArgs):
+    """runs the tests of parsing functions ahead of their first call"""
+    compileSuite(['parallelparsing'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.ParallelParsingTest")
+
+def runParseCacheTests(vmArgs):
+    """runs the tests of the on-disk parse cache"""
+    compileSuite(['parsecache'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.ParseCacheTest")
+
+def runSharedEngineTests(vmArgs):
+    """runs the tests of contexts that share an engine"""
+    compileSuite(['sharedengine'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.SharedEngineTest")
+
+def runBufferedStdioTests(vmArgs):
+    """runs the tests of buffered stdout and stderr"""
+    compileSuite(['stdio'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.BufferedStdioTest")
+
+def runNativeCallStatisticsTests(vmArgs):
+    """runs the tests of the native call statistics"""
+    compileSuite(['nativecallstats'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.NativeCallStatisticsTest")
+
+def runSamplingProfilerTests(vmArgs):
+    """runs the tests of the sampling profiler"""
+    compileSuite(['profiler'])
+    return run(vmArgs, "com.oracle.truffle.llvm.test.SamplingProfilerTest")
+
+def runDerefHandleTests(vmArgs):
+    """runs the tests of the deref handle space"""
+    return run(vmArgs, "com.oracle.truffle.llvm.test.DerefHandleContentionTest")
+
+def runBitStreamTests(vmArgs):
+    """runs the tests of the bitcode stream reader"""
+    return run(vmArgs, "com.oracle.truffle.llvm.test.BitStreamTest")
+
 def compileLLVMSuite():
     deleteCachedTests('llvm')
     ensureLLVMSuiteExists()
@@ -181,6 +233,14 @@ testSuites = {
     'args' : (compileOtherTests, runArgsTests),
     'callback' : (compileOtherTests, runCallbackTests),
     'vaargs' : (compileOtherTests, runVAargsTests),
+    'stack' : (compileOtherTests, runStackTests),
+    'computedgoto' : (compileOtherTests, runComputedGotoTests),
+    'parallelparsing' : (compileOtherTests, runParallelParsingTests),
+    'parsecache' : (compileOtherTests, runParseCacheTests),
+    'sharedengine' : (compileOtherTests, runSharedEngineTests),
+    'stdio' : (compileOtherTests, runBufferedStdioTests),
+    'nativecallstats' : (compileOtherTests, runNativeCallStatisticsTests),
+    'profiler' : (compileOtherTests, runSamplingProfilerTests),
     'nwcc' : (compileNWCCSuite, runNWCCSuite),
     'assembly' : (compileInlineAssemblySuite, runInlineAssemblySuite),
     'gcc_c' : (compileGCCSuite_C_files, runGCCSuite_c),
@@ -191,6 +251,9 @@ testSuites = {
     'parserTorture' : (compileParserTurtureSuite, runParserTortureSuite),
     'type' : (None, runTypeTests),
     'pipe' : (None, runPipeTests),
+    'runtime' : (None, runRuntimeTests),
+    'derefhandles' : (None, runDerefHandleTests),
+    'bitstream' : (None, runBitStreamTests),
 }
 
 
@@ -338,7 +338,7 @@ suite = {
       "class" : "SulongTestSuite",
       "variants" : ["O0", "O0_MISC_OPTS", "O1", "O2", "O3", "gcc_O0"],
       "buildEnv" : {
-        "LDFLAGS" : "-lm",
+        "LDFLAGS" : "-lm -lpthread",
         "OS" : "<os>",
       },
       "testProject" : True,
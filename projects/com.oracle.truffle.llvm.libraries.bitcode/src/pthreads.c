@@ -29,237 +29,247 @@
  */
 #include <sys/types.h>
 #include <unistd.h>
+#include <errno.h>
+#include <limits.h>
 #include <pthread.h>
 
 #include "unsupported.h"
 
-int pthread_attr_destroy(pthread_attr_t *attr) {
-  ERR_UNSUPPORTED(pthread_attr_destroy);
-}
-int pthread_attr_getdetachstate(const pthread_attr_t *attr, int *detachstate) {
-  ERR_UNSUPPORTED(pthread_attr_getdetachstate);
-}
-int pthread_attr_getguardsize(const pthread_attr_t *attr, size_t *guardsize) {
-  ERR_UNSUPPORTED(pthread_attr_getguardsize);
-}
-int pthread_attr_getinheritsched(const pthread_attr_t *restrict attr, int *restrict inheritsched) {
-  ERR_UNSUPPORTED(pthread_attr_getinheritsched);
-}
-int pthread_attr_getschedparam(const pthread_attr_t *restrict attr, struct sched_param *restrict param) {
-  ERR_UNSUPPORTED(pthread_attr_getschedparam);
-}
-int pthread_attr_getschedpolicy(const pthread_attr_t *restrict attr, int *restrict policy) {
-  ERR_UNSUPPORTED(pthread_attr_getschedpolicy);
-}
-int pthread_attr_getscope(const pthread_attr_t *restrict attr, int *restrict contentionscope) {
-  ERR_UNSUPPORTED(pthread_attr_getscope);
-}
-int pthread_attr_getstackaddr(const pthread_attr_t *attr, void **stackaddr) {
-  ERR_UNSUPPORTED(pthread_attr_getstackaddr);
-}
-int pthread_attr_getstacksize(const pthread_attr_t *restrict attr, size_t *restrict stacksize) {
-  ERR_UNSUPPORTED(pthread_attr_getstacksize);
-}
+/*
+ * Thread creation, mutexes, condition variables, rwlocks, thread-specific data and pthread_once
+ * are implemented as intrinsics (see LLVMPThreadIntrinsics). This file only implements the
+ * attribute objects, whose layout is shared with the intrinsics:
+ *
+ * - pthread_attr_t: struct sulong_pthread_attr, the detach state is the first int.
+ * - pthread_mutexattr_t: the type is stored in the lowest byte.
+ */
+
+struct sulong_pthread_attr {
+  int detachstate;
+  int inheritsched;
+  int schedpolicy;
+  int scope;
+  size_t stacksize;
+  size_t guardsize;
+  void *stackaddr;
+  struct sched_param param;
+};
+
+_Static_assert(sizeof(struct sulong_pthread_attr) <= sizeof(pthread_attr_t), "pthread_attr_t too small");
+
+#define ATTR(attr) ((struct sulong_pthread_attr *)(attr))
+
+#define DEFAULT_STACK_SIZE (8 * 1024 * 1024)
+#define DEFAULT_GUARD_SIZE 4096
+
+#define MUTEXATTR_TYPE_MASK 0xff
+#define MUTEXATTR_PSHARED_SHIFT 8
+#define MUTEXATTR_PROTOCOL_SHIFT 9
+
+static int *mutexattr(pthread_mutexattr_t *attr) { return (int *)attr; }
+static const int *const_mutexattr(const pthread_mutexattr_t *attr) { return (const int *)attr; }
+
 int pthread_attr_init(pthread_attr_t *attr) {
-  ERR_UNSUPPORTED(pthread_attr_init);
+  struct sulong_pthread_attr *a = ATTR(attr);
+  a->detachstate = PTHREAD_CREATE_JOINABLE;
+  a->inheritsched = PTHREAD_INHERIT_SCHED;
+  a->schedpolicy = SCHED_OTHER;
+  a->scope = PTHREAD_SCOPE_SYSTEM;
+  a->stacksize = DEFAULT_STACK_SIZE;
+  a->guardsize = DEFAULT_GUARD_SIZE;
+  a->stackaddr = NULL;
+  a->param.sched_priority = 0;
+  return 0;
+}
+int pthread_attr_destroy(pthread_attr_t *attr) { return 0; }
+int pthread_attr_getdetachstate(const pthread_attr_t *attr, int *detachstate) {
+  *detachstate = ATTR(attr)->detachstate;
+  return 0;
 }
 int pthread_attr_setdetachstate(pthread_attr_t *attr, int detachstate) {
-  ERR_UNSUPPORTED(pthread_attr_setdetachstate);
+  if (detachstate != PTHREAD_CREATE_JOINABLE && detachstate != PTHREAD_CREATE_DETACHED) {
+    return EINVAL;
+  }
+  ATTR(attr)->detachstate = detachstate;
+  return 0;
+}
+int pthread_attr_getguardsize(const pthread_attr_t *attr, size_t *guardsize) {
+  *guardsize = ATTR(attr)->guardsize;
+  return 0;
 }
 int pthread_attr_setguardsize(pthread_attr_t *attr, size_t guardsize) {
-  ERR_UNSUPPORTED(pthread_attr_setguardsize);
+  ATTR(attr)->guardsize = guardsize;
+  return 0;
+}
+int pthread_attr_getinheritsched(const pthread_attr_t *restrict attr, int *restrict inheritsched) {
+  *inheritsched = ATTR(attr)->inheritsched;
+  return 0;
 }
 int pthread_attr_setinheritsched(pthread_attr_t *attr, int inheritsched) {
-  ERR_UNSUPPORTED(pthread_attr_setinheritsched);
+  if (inheritsched != PTHREAD_INHERIT_SCHED && inheritsched != PTHREAD_EXPLICIT_SCHED) {
+    return EINVAL;
+  }
+  ATTR(attr)->inheritsched = inheritsched;
+  return 0;
+}
+int pthread_attr_getschedparam(const pthread_attr_t *restrict attr, struct sched_param *restrict param) {
+  *param = ATTR(attr)->param;
+  return 0;
 }
 int pthread_attr_setschedparam(pthread_attr_t *restrict attr, const struct sched_param *restrict param) {
-  ERR_UNSUPPORTED(pthread_attr_setschedparam);
+  ATTR(attr)->param = *param;
+  return 0;
+}
+int pthread_attr_getschedpolicy(const pthread_attr_t *restrict attr, int *restrict policy) {
+  *policy = ATTR(attr)->schedpolicy;
+  return 0;
 }
 int pthread_attr_setschedpolicy(pthread_attr_t *attr, int policy) {
-  ERR_UNSUPPORTED(pthread_attr_setschedpolicy);
+  ATTR(attr)->schedpolicy = policy;
+  return 0;
+}
+int pthread_attr_getscope(const pthread_attr_t *restrict attr, int *restrict contentionscope) {
+  *contentionscope = ATTR(attr)->scope;
+  return 0;
 }
 int pthread_attr_setscope(pthread_attr_t *attr, int contentionscope) {
-  ERR_UNSUPPORTED(pthread_attr_setscope);
+  if (contentionscope != PTHREAD_SCOPE_SYSTEM) {
+    return ENOTSUP;
+  }
+  ATTR(attr)->scope = contentionscope;
+  return 0;
+}
+int pthread_attr_getstackaddr(const pthread_attr_t *attr, void **stackaddr) {
+  *stackaddr = ATTR(attr)->stackaddr;
+  return 0;
 }
 int pthread_attr_setstackaddr(pthread_attr_t *attr, void *stackaddr) {
+  // the stack of a thread is always allocated by Sulong
   ERR_UNSUPPORTED(pthread_attr_setstackaddr);
 }
+int pthread_attr_getstacksize(const pthread_attr_t *restrict attr, size_t *restrict stacksize) {
+  *stacksize = ATTR(attr)->stacksize;
+  return 0;
+}
 int pthread_attr_setstacksize(pthread_attr_t *attr, size_t stacksize) {
-  ERR_UNSUPPORTED(pthread_attr_setstacksize);
+  if (stacksize < PTHREAD_STACK_MIN) {
+    return EINVAL;
+  }
+  // the size is recorded, but every thread gets a stack of the size set by llvm.stackSize
+  ATTR(attr)->stacksize = stacksize;
+  return 0;
 }
 int pthread_cancel(pthread_t thread) {
   ERR_UNSUPPORTED(pthread_cancel);
 }
 // void  pthread_cleanup_push(void*, void *);
 // void  pthread_cleanup_pop(int);
-int pthread_cond_broadcast(pthread_cond_t *cond) {
-  ERR_UNSUPPORTED(pthread_cond_broadcast);
-}
-int pthread_cond_destroy(pthread_cond_t *cond) {
-  ERR_UNSUPPORTED(pthread_cond_destroy);
-}
-int pthread_cond_init(pthread_cond_t *restrict cond, const pthread_condattr_t *restrict attr) {
-  ERR_UNSUPPORTED(pthread_cond_init);
-}
-int pthread_cond_signal(pthread_cond_t *cond) {
-  ERR_UNSUPPORTED(pthread_cond_signal);
-}
-int pthread_cond_timedwait(pthread_cond_t *restrict cond, pthread_mutex_t *restrict mutex, const struct timespec *restrict abstime) {
-  ERR_UNSUPPORTED(pthread_cond_timedwait);
-}
-int pthread_cond_wait(pthread_cond_t *restrict cond, pthread_mutex_t *restrict mutex) {
-  ERR_UNSUPPORTED(pthread_cond_wait);
-}
-int pthread_condattr_destroy(pthread_condattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_condattr_destroy);
+int pthread_condattr_init(pthread_condattr_t *attr) {
+  *(int *)attr = PTHREAD_PROCESS_PRIVATE;
+  return 0;
 }
+int pthread_condattr_destroy(pthread_condattr_t *attr) { return 0; }
 int pthread_condattr_getpshared(const pthread_condattr_t *restrict attr, int *restrict pshared) {
-  ERR_UNSUPPORTED(pthread_condattr_getpshared);
-}
-int pthread_condattr_init(pthread_condattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_condattr_init);
+  *pshared = *(const int *)attr;
+  return 0;
 }
 int pthread_condattr_setpshared(pthread_condattr_t *attr, int pshared) {
-  ERR_UNSUPPORTED(pthread_condattr_setpshared);
-}
-int pthread_create(pthread_t *restrict thread, const pthread_attr_t *restrict attr, void *(*start_routine)(void *), void *restrict arg) {
-  ERR_UNSUPPORTED(pthread_create);
-}
-int pthread_detach(pthread_t thread) {
-  ERR_UNSUPPORTED(pthread_detach);
-}
-// this function might be defined as a macro
-#ifndef pthread_equal
-int pthread_equal(pthread_t t1, pthread_t t2) {
-  ERR_UNSUPPORTED(pthread_equal);
+  if (pshared != PTHREAD_PROCESS_PRIVATE) {
+    return ENOTSUP;
+  }
+  *(int *)attr = pshared;
+  return 0;
 }
-#endif
-void pthread_exit(void *value_ptr) {
-  ERR_UNSUPPORTED(pthread_exit);
-}
-int pthread_getconcurrency(void) {
-  ERR_UNSUPPORTED(pthread_getconcurrency);
+int pthread_getconcurrency(void) { return 0; }
+int pthread_setconcurrency(int new_level) {
+  if (new_level < 0) {
+    return EINVAL;
+  }
+  return 0;
 }
 int pthread_getschedparam(pthread_t thread, int *restrict policy, struct sched_param *restrict param) {
   ERR_UNSUPPORTED(pthread_getschedparam);
 }
-void *pthread_getspecific(pthread_key_t key) {
-  ERR_UNSUPPORTED(pthread_getspecific);
-}
-int pthread_join(pthread_t thread, void **value_ptr) {
-  ERR_UNSUPPORTED(pthread_join);
-}
-int pthread_key_create(pthread_key_t *key, void (*destructor)(void *)) {
-  ERR_UNSUPPORTED(pthread_key_create);
-}
-int pthread_key_delete(pthread_key_t key) {
-  ERR_UNSUPPORTED(pthread_key_delete);
-}
-int pthread_mutex_destroy(pthread_mutex_t *mutex) {
-  ERR_UNSUPPORTED(pthread_mutex_destroy);
+int pthread_setschedparam(pthread_t thread, int policy, const struct sched_param *param) {
+  ERR_UNSUPPORTED(pthread_setschedparam);
 }
 int pthread_mutex_getprioceiling(const pthread_mutex_t *restrict mutex, int *restrict prioceiling) {
   ERR_UNSUPPORTED(pthread_mutex_getprioceiling);
 }
-int pthread_mutex_init(pthread_mutex_t *restrict mutex, const pthread_mutexattr_t *restrict attr) {
-  ERR_UNSUPPORTED(pthread_mutex_init);
-}
-int pthread_mutex_lock(pthread_mutex_t *mutex) {
-  ERR_UNSUPPORTED(pthread_mutex_lock);
-}
 int pthread_mutex_setprioceiling(pthread_mutex_t *restrict mutex, int prioceiling, int *restrict old_ceiling) {
   ERR_UNSUPPORTED(pthread_mutex_setprioceiling);
 }
-int pthread_mutex_trylock(pthread_mutex_t *mutex) {
-  ERR_UNSUPPORTED(pthread_mutex_trylock);
-}
-int pthread_mutex_unlock(pthread_mutex_t *mutex) {
-  ERR_UNSUPPORTED(pthread_mutex_unlock);
-}
-int pthread_mutexattr_destroy(pthread_mutexattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_mutexattr_destroy);
+int pthread_mutexattr_init(pthread_mutexattr_t *attr) {
+  *mutexattr(attr) = PTHREAD_MUTEX_DEFAULT;
+  return 0;
 }
+int pthread_mutexattr_destroy(pthread_mutexattr_t *attr) { return 0; }
 int pthread_mutexattr_getprioceiling(const pthread_mutexattr_t *restrict attr, int *restrict prioceiling) {
   ERR_UNSUPPORTED(pthread_mutexattr_getprioceiling);
 }
-int pthread_mutexattr_getprotocol(const pthread_mutexattr_t *restrict attr, int *restrict protocol) {
-  ERR_UNSUPPORTED(pthread_mutexattr_getprotocol);
-}
-int pthread_mutexattr_getpshared(const pthread_mutexattr_t *restrict attr, int *restrict pshared) {
-  ERR_UNSUPPORTED(pthread_mutexattr_getpshared);
-}
-int pthread_mutexattr_gettype(const pthread_mutexattr_t *restrict attr, int *restrict type) {
-  ERR_UNSUPPORTED(pthread_mutexattr_gettype);
-}
-int pthread_mutexattr_init(pthread_mutexattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_mutexattr_init);
-}
 int pthread_mutexattr_setprioceiling(pthread_mutexattr_t *attr, int protocol) {
   ERR_UNSUPPORTED(pthread_mutexattr_setprioceiling);
 }
-int pthread_mutexattr_setprotocol(pthread_mutexattr_t *attr, int protocol) {
-  ERR_UNSUPPORTED(pthread_mutexattr_setprotocol);
-}
-int pthread_mutexattr_setpshared(pthread_mutexattr_t *attr, int pshared) {
-  ERR_UNSUPPORTED(pthread_mutexattr_setpshared);
-}
-int pthread_mutexattr_settype(pthread_mutexattr_t *attr, int type) {
-  ERR_UNSUPPORTED(pthread_mutexattr_settype);
-}
-int pthread_once(pthread_once_t *once_control, void (*init_routine)(void)) {
-  ERR_UNSUPPORTED(pthread_once);
-}
-int pthread_rwlock_destroy(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_destroy);
-}
-int pthread_rwlock_init(pthread_rwlock_t *restrict rwlock, const pthread_rwlockattr_t *restrict attr) {
-  ERR_UNSUPPORTED(pthread_rwlock_init);
+int pthread_mutexattr_getprotocol(const pthread_mutexattr_t *restrict attr, int *restrict protocol) {
+  *protocol = (*const_mutexattr(attr) >> MUTEXATTR_PROTOCOL_SHIFT) & 0x3;
+  return 0;
 }
-int pthread_rwlock_rdlock(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_rdlock);
+int pthread_mutexattr_setprotocol(pthread_mutexattr_t *attr, int protocol) {
+  if (protocol != PTHREAD_PRIO_NONE) {
+    return ENOTSUP;
+  }
+  *mutexattr(attr) = (*mutexattr(attr) & ~(0x3 << MUTEXATTR_PROTOCOL_SHIFT)) | (protocol << MUTEXATTR_PROTOCOL_SHIFT);
+  return 0;
 }
-int pthread_rwlock_tryrdlock(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_tryrdlock);
+int pthread_mutexattr_getpshared(const pthread_mutexattr_t *restrict attr, int *restrict pshared) {
+  *pshared = (*const_mutexattr(attr) >> MUTEXATTR_PSHARED_SHIFT) & 0x1;
+  return 0;
 }
-int pthread_rwlock_trywrlock(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_trywrlock);
+int pthread_mutexattr_setpshared(pthread_mutexattr_t *attr, int pshared) {
+  if (pshared != PTHREAD_PROCESS_PRIVATE) {
+    return ENOTSUP;
+  }
+  *mutexattr(attr) = (*mutexattr(attr) & ~(0x1 << MUTEXATTR_PSHARED_SHIFT)) | (pshared << MUTEXATTR_PSHARED_SHIFT);
+  return 0;
 }
-int pthread_rwlock_unlock(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_unlock);
+int pthread_mutexattr_gettype(const pthread_mutexattr_t *restrict attr, int *restrict type) {
+  *type = *const_mutexattr(attr) & MUTEXATTR_TYPE_MASK;
+  return 0;
 }
-int pthread_rwlock_wrlock(pthread_rwlock_t *rwlock) {
-  ERR_UNSUPPORTED(pthread_rwlock_wrlockk);
+int pthread_mutexattr_settype(pthread_mutexattr_t *attr, int type) {
+  if (type != PTHREAD_MUTEX_NORMAL && type != PTHREAD_MUTEX_RECURSIVE && type != PTHREAD_MUTEX_ERRORCHECK) {
+    return EINVAL;
+  }
+  *mutexattr(attr) = (*mutexattr(attr) & ~MUTEXATTR_TYPE_MASK) | type;
+  return 0;
 }
-int pthread_rwlockattr_destroy(pthread_rwlockattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_rwlockattr_destroy);
+int pthread_rwlockattr_init(pthread_rwlockattr_t *attr) {
+  *(int *)attr = PTHREAD_PROCESS_PRIVATE;
+  return 0;
 }
+int pthread_rwlockattr_destroy(pthread_rwlockattr_t *attr) { return 0; }
 int pthread_rwlockattr_getpshared(const pthread_rwlockattr_t *restrict attr, int *restrict pshared) {
-  ERR_UNSUPPORTED(pthread_rwlockattr_getpshared);
-}
-int pthread_rwlockattr_init(pthread_rwlockattr_t *attr) {
-  ERR_UNSUPPORTED(pthread_rwlockattr_init);
+  *pshared = *(const int *)attr;
+  return 0;
 }
 int pthread_rwlockattr_setpshared(pthread_rwlockattr_t *attr, int pshared) {
-  ERR_UNSUPPORTED(pthread_rwlockattr_setpshared);
-}
-pthread_t pthread_self(void) {
-  ERR_UNSUPPORTED(pthread_self);
+  if (pshared != PTHREAD_PROCESS_PRIVATE) {
+    return ENOTSUP;
+  }
+  *(int *)attr = pshared;
+  return 0;
 }
+// cancellation is not supported, threads always behave as if it was disabled
 int pthread_setcancelstate(int state, int *oldstate) {
-  ERR_UNSUPPORTED(pthread_setcancelstate);
+  if (oldstate != NULL) {
+    *oldstate = PTHREAD_CANCEL_ENABLE;
+  }
+  return 0;
 }
 int pthread_setcanceltype(int type, int *oldtype) {
-  ERR_UNSUPPORTED(pthread_setcanceltype);
-}
-int pthread_setconcurrency(int new_level) {
-  ERR_UNSUPPORTED(pthread_setconcurrency);
-}
-int pthread_setschedparam(pthread_t thread, int policy, const struct sched_param *param) {
-  ERR_UNSUPPORTED(pthread_setschedparam);
-}
-int pthread_setspecific(pthread_key_t key, const void *value) {
-  ERR_UNSUPPORTED(pthread_setspecific);
-}
-void pthread_testcancel(void) {
-  ERR_UNSUPPORTED(pthread_testcancel);
+  if (oldtype != NULL) {
+    *oldtype = PTHREAD_CANCEL_DEFERRED;
+  }
+  return 0;
 }
+void pthread_testcancel(void) {}
@@ -31,32 +31,164 @@
 #include <stdlib.h>
 #include <string.h>
 
-static void sulong_swap(void *vp1, void *vp2, const size_t size) {
-  char *buffer = (char *)malloc(size);
-  memcpy(buffer, vp1, size);
-  memcpy(vp1, vp2, size);
-  memcpy(vp2, buffer, size);
-  free(buffer);
-}
+/*
+ * Introsort: quicksort with a median-of-three pivot that falls back to heapsort when the
+ * partitioning degenerates, and that sorts small ranges with insertion sort. Elements are swapped
+ * in place. The implementation is inlined into qsort for 4- and 8-byte elements, so that the
+ * swaps become single loads and stores for these sizes.
+ */
+
+#define SULONG_INSERTION_SORT_THRESHOLD 16
+#define SULONG_QSORT_STACK_SIZE 64
 
-static void sulong_qsort(char *v, long left, long right, int (*comp)(const void *, const void *), size_t size) {
-  int i, last;
-  if (left >= right) {
+typedef int (*sulong_comparator)(const void *, const void *);
+
+static inline __attribute__((always_inline)) void sulong_swap(char *a, char *b, size_t size) {
+  if (size == sizeof(int)) {
+    int tmp;
+    memcpy(&tmp, a, sizeof(int));
+    memcpy(a, b, sizeof(int));
+    memcpy(b, &tmp, sizeof(int));
     return;
   }
-  sulong_swap(&v[left * size], &v[((left + right) / 2) * size], size);
-  last = left;
-  for (i = left + 1; i <= right; i++) {
-    if (comp(&(v[i * size]), &(v[left * size])) < 0) {
-      last++;
-      sulong_swap(&(v[last * size]), &(v[i * size]), size);
+  size_t i = 0;
+  for (; i + sizeof(long) <= size; i += sizeof(long)) {
+    long tmp;
+    memcpy(&tmp, a + i, sizeof(long));
+    memcpy(a + i, b + i, sizeof(long));
+    memcpy(b + i, &tmp, sizeof(long));
+  }
+  for (; i < size; i++) {
+    char tmp = a[i];
+    a[i] = b[i];
+    b[i] = tmp;
+  }
+}
+
+static inline __attribute__((always_inline)) void sulong_insertion_sort(char *base, size_t n, sulong_comparator comp, size_t size) {
+  for (size_t i = 1; i < n; i++) {
+    for (char *p = base + i * size; p > base && comp(p - size, p) > 0; p -= size) {
+      sulong_swap(p - size, p, size);
+    }
+  }
+}
+
+static inline __attribute__((always_inline)) void sulong_sift_down(char *base, size_t root, size_t n, sulong_comparator comp, size_t size) {
+  for (;;) {
+    size_t child = 2 * root + 1;
+    if (child >= n) {
+      return;
+    }
+    if (child + 1 < n && comp(base + child * size, base + (child + 1) * size) < 0) {
+      child++;
+    }
+    if (comp(base + root * size, base + child * size) >= 0) {
+      return;
+    }
+    sulong_swap(base + root * size, base + child * size, size);
+    root = child;
+  }
+}
+
+static inline __attribute__((always_inline)) void sulong_heap_sort(char *base, size_t n, sulong_comparator comp, size_t size) {
+  for (size_t i = n / 2; i > 0; i--) {
+    sulong_sift_down(base, i - 1, n, comp, size);
+  }
+  for (size_t end = n - 1; end > 0; end--) {
+    sulong_swap(base, base + end * size, size);
+    sulong_sift_down(base, 0, end, comp, size);
+  }
+}
+
+static inline __attribute__((always_inline)) void sulong_introsort(char *base, size_t n, sulong_comparator comp, size_t size, int depth) {
+  /* the smaller partition is sorted first, so the stack never holds more than log2(n) ranges */
+  char *stackBase[SULONG_QSORT_STACK_SIZE];
+  size_t stackN[SULONG_QSORT_STACK_SIZE];
+  int stackDepth[SULONG_QSORT_STACK_SIZE];
+  int top = 0;
+
+  for (;;) {
+    while (n > SULONG_INSERTION_SORT_THRESHOLD) {
+      if (depth == 0) {
+        sulong_heap_sort(base, n, comp, size);
+        n = 0;
+        break;
+      }
+      depth--;
+
+      /* order the first, middle, and last element; the median becomes the pivot */
+      char *lo = base;
+      char *mid = base + (n / 2) * size;
+      char *hi = base + (n - 1) * size;
+      if (comp(mid, lo) < 0) {
+        sulong_swap(mid, lo, size);
+      }
+      if (comp(hi, mid) < 0) {
+        sulong_swap(hi, mid, size);
+        if (comp(mid, lo) < 0) {
+          sulong_swap(mid, lo, size);
+        }
+      }
+
+      /* the first and last element act as sentinels for the scans */
+      char *pivot = base + size;
+      sulong_swap(mid, pivot, size);
+      char *i = pivot;
+      char *j = hi;
+      for (;;) {
+        do {
+          i += size;
+        } while (comp(i, pivot) < 0);
+        do {
+          j -= size;
+        } while (comp(pivot, j) < 0);
+        if (i >= j) {
+          break;
+        }
+        sulong_swap(i, j, size);
+      }
+      sulong_swap(pivot, j, size);
+
+      size_t left = (size_t) (j - base) / size;
+      size_t right = n - left - 1;
+      if (left < right) {
+        stackBase[top] = j + size;
+        stackN[top] = right;
+        stackDepth[top] = depth;
+        n = left;
+      } else {
+        stackBase[top] = base;
+        stackN[top] = left;
+        stackDepth[top] = depth;
+        base = j + size;
+        n = right;
+      }
+      top++;
+    }
+    sulong_insertion_sort(base, n, comp, size);
+    if (top == 0) {
+      return;
     }
+    top--;
+    base = stackBase[top];
+    n = stackN[top];
+    depth = stackDepth[top];
   }
-  sulong_swap(&(v[left * size]), &(v[last * size]), size);
-  sulong_qsort(v, left, last - 1, comp, size);
-  sulong_qsort(v, last + 1, right, comp, size);
 }
 
 void qsort(void *v, size_t number, size_t size, int (*comp)(const void *, const void *)) {
-  sulong_qsort(v, 0, number - 1, comp, size);
+  if (number < 2 || size == 0) {
+    return;
+  }
+  int depth = 0;
+  for (size_t i = number; i > 1; i >>= 1) {
+    depth += 2;
+  }
+  if (size == 4) {
+    sulong_introsort(v, number, comp, 4, depth);
+  } else if (size == 8) {
+    sulong_introsort(v, number, comp, 8, depth);
+  } else {
+    sulong_introsort(v, number, comp, size, depth);
+  }
 }
@@ -150,6 +150,11 @@ int __sulong_posix_munmap(void* addr, size_t length)
 	CALL(int, munmap, addr, length);
 }
 
+int __sulong_posix_mprotect(void* addr, size_t length, int prot)
+{
+	CALL(int, mprotect, addr, length, prot);
+}
+
 int __sulong_posix_unlink(const char *path)
 {
 	CALL(int, unlink, path);
@@ -250,6 +255,11 @@ int __sulong_posix_getgid(void)
 	CALL(int, getgid);
 }
 
+int __sulong_posix_fsync(int fd)
+{
+	CALL(int, fsync, fd);
+}
+
 int __sulong_posix_ftruncate(int fildes, off_t length)
 {
 	CALL(int, ftruncate, fildes, length);
@@ -334,3 +344,33 @@ pid_t __sulong_posix_getpgid(pid_t pid)
 {
 	CALL(pid_t, getpgid, pid);
 }
+
+/*
+ * Batched submission: the caller fills an array of entries in native memory and submits them
+ * with a single call. Syscall numbers are the ones of the guest (Linux/AMD64), so they are only
+ * passed through on a Linux/AMD64 host.
+ */
+struct __sulong_posix_sqe {
+	long nr;
+	long args[6];
+	long result;
+};
+
+long __sulong_posix_syscall(long nr, long a1, long a2, long a3, long a4, long a5, long a6)
+{
+#if defined(__linux__) && defined(__x86_64__)
+	CALL(long, syscall, nr, a1, a2, a3, a4, a5, a6)
+#else
+	return -ENOSYS;
+#endif
+}
+
+int __sulong_posix_submit(struct __sulong_posix_sqe* sqes, int count)
+{
+	int i;
+	for (i = 0; i < count; i++) {
+		struct __sulong_posix_sqe* sqe = &sqes[i];
+		sqe->result = __sulong_posix_syscall(sqe->nr, sqe->args[0], sqe->args[1], sqe->args[2], sqe->args[3], sqe->args[4], sqe->args[5]);
+	}
+	return count;
+}
@@ -52,11 +52,8 @@ public abstract class LLVMAMD64PopNode extends LLVMExpressionNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            short value = memory.getI16(sp);
-            sp += LLVMExpressionNode.I16_SIZE_IN_BYTES;
-            basePointer.set(sp);
-            return value;
+            long sp = LLVMStack.pop(memory, basePointer, LLVMExpressionNode.I16_SIZE_IN_BYTES);
+            return memory.getI16(sp);
         }
     }
 
@@ -66,11 +63,8 @@ public abstract class LLVMAMD64PopNode extends LLVMExpressionNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            int value = memory.getI32(sp);
-            sp += LLVMExpressionNode.I32_SIZE_IN_BYTES;
-            basePointer.set(sp);
-            return value;
+            long sp = LLVMStack.pop(memory, basePointer, LLVMExpressionNode.I32_SIZE_IN_BYTES);
+            return memory.getI32(sp);
         }
     }
 
@@ -80,11 +74,8 @@ public abstract class LLVMAMD64PopNode extends LLVMExpressionNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            long value = memory.getI64(sp);
-            sp += LLVMExpressionNode.I64_SIZE_IN_BYTES;
-            basePointer.set(sp);
-            return value;
+            long sp = LLVMStack.pop(memory, basePointer, LLVMExpressionNode.I64_SIZE_IN_BYTES);
+            return memory.getI64(sp);
         }
     }
 }
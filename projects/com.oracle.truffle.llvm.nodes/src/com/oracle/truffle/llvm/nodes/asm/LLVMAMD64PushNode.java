@@ -55,9 +55,7 @@ public abstract class LLVMAMD64PushNode extends LLVMStatementNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I16_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.push(memory, basePointer, LLVMExpressionNode.I16_SIZE_IN_BYTES);
             memory.putI16(sp, value);
         }
     }
@@ -68,9 +66,7 @@ public abstract class LLVMAMD64PushNode extends LLVMStatementNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I32_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.push(memory, basePointer, LLVMExpressionNode.I32_SIZE_IN_BYTES);
             memory.putI32(sp, value);
         }
     }
@@ -81,9 +77,7 @@ public abstract class LLVMAMD64PushNode extends LLVMStatementNode {
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
             StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I64_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.push(memory, basePointer, LLVMExpressionNode.I64_SIZE_IN_BYTES);
             memory.putI64(sp, value);
         }
     }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+
+/**
+ * Wait queues for the futex syscall. Waiters are kept in a fixed number of buckets that are
+ * selected by the hash of the futex address. The value of the futex word is checked while the
+ * bucket is locked, so a wakeup cannot get lost between the check and the enqueue.
+ */
+public final class LLVMAMD64Futex {
+    // @formatter:off
+    public static final int FUTEX_WAIT            = 0;
+    public static final int FUTEX_WAKE            = 1;
+    public static final int FUTEX_WAIT_BITSET     = 9;
+    public static final int FUTEX_WAKE_BITSET     = 10;
+
+    public static final int FUTEX_PRIVATE_FLAG    = 128;
+    public static final int FUTEX_CLOCK_REALTIME  = 256;
+    public static final int FUTEX_CMD_MASK        = ~(FUTEX_PRIVATE_FLAG | FUTEX_CLOCK_REALTIME);
+
+    public static final int FUTEX_BITSET_MATCH_ANY = 0xffffffff;
+    // @formatter:on
+
+    /** Deadline that never expires. */
+    public static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    private static final int BUCKET_COUNT = 256;
+
+    private static final Bucket[] BUCKETS = new Bucket[BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            BUCKETS[i] = new Bucket();
+        }
+    }
+
+    private static final class Bucket {
+        private final List<Waiter> waiters = new ArrayList<>();
+    }
+
+    private static final class Waiter {
+        private final long address;
+        private final int bitset;
+        private final Thread thread;
+        private volatile boolean woken;
+
+        Waiter(long address, int bitset, Thread thread) {
+            this.address = address;
+            this.bitset = bitset;
+            this.thread = thread;
+        }
+    }
+
+    private LLVMAMD64Futex() {
+    }
+
+    private static Bucket getBucket(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return BUCKETS[(int) (h >>> 56) & (BUCKET_COUNT - 1)];
+    }
+
+    /**
+     * Blocks the current thread as long as the futex word at {@code address} contains
+     * {@code expected}.
+     *
+     * @param deadline absolute deadline in terms of {@link System#nanoTime()}, or
+     *            {@link #NO_TIMEOUT}
+     * @return 0 if the thread was woken, or a negative error code
+     */
+    @TruffleBoundary
+    public static long await(LLVMMemory memory, long address, int expected, int bitset, long deadline) {
+        Bucket bucket = getBucket(address);
+        Waiter waiter = new Waiter(address, bitset, Thread.currentThread());
+        synchronized (bucket) {
+            if (memory.getI32(address) != expected) {
+                return -LLVMAMD64Error.EAGAIN;
+            }
+            bucket.waiters.add(waiter);
+        }
+
+        boolean timedOut = false;
+        while (!waiter.woken) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (deadline == NO_TIMEOUT) {
+                LockSupport.park(bucket);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timedOut = true;
+                    break;
+                }
+                LockSupport.parkNanos(bucket, remaining);
+            }
+        }
+
+        if (!waiter.woken) {
+            synchronized (bucket) {
+                // re-check under the lock, a wakeup could have raced with the timeout
+                if (!waiter.woken) {
+                    bucket.waiters.remove(waiter);
+                    if (timedOut) {
+                        return -LLVMAMD64Error.ETIMEDOUT;
+                    }
+                    // the interrupt is delivered as EINTR, so the next wait must block again
+                    Thread.interrupted();
+                    return -LLVMAMD64Error.EINTR;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Wakes up to {@code count} threads that wait on {@code address} with a bitset that intersects
+     * {@code bitset}.
+     *
+     * @return the number of woken threads
+     */
+    @TruffleBoundary
+    public static long wake(long address, int count, int bitset) {
+        Bucket bucket = getBucket(address);
+        int woken = 0;
+        synchronized (bucket) {
+            Iterator<Waiter> it = bucket.waiters.iterator();
+            while (woken < count && it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter.address == address && (waiter.bitset & bitset) != 0) {
+                    it.remove();
+                    waiter.woken = true;
+                    LockSupport.unpark(waiter.thread);
+                    woken++;
+                }
+            }
+        }
+        return woken;
+    }
+}
@@ -74,6 +74,7 @@ public class LLVMAMD64Syscall {
     public static final int SYS_exit = 60;
     public static final int SYS_uname = 63;
     public static final int SYS_fcntl = 72;
+    public static final int SYS_fsync = 74;
     public static final int SYS_ftruncate = 77;
     public static final int SYS_getcwd = 79;
     public static final int SYS_rename = 82;
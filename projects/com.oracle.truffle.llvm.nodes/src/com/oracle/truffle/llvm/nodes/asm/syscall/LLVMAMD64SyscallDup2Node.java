@@ -31,6 +31,7 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 
 public class LLVMAMD64SyscallDup2Node extends LLVMSyscallOperationNode {
@@ -49,6 +50,9 @@ public class LLVMAMD64SyscallDup2Node extends LLVMSyscallOperationNode {
     public long execute(Object rdi, Object rsi, Object rdx, Object r10, Object r8, Object r9) {
         int fd = (int) ((long) rdi);
         int fd2 = (int) ((long) rsi);
+        if (LLVMAMD64StdioBuffer.isBuffered(fd2)) {
+            LLVMAMD64StdioBuffer.flush(getContextReference().get());
+        }
         return (int) dup2.execute(fd, fd2);
     }
 }
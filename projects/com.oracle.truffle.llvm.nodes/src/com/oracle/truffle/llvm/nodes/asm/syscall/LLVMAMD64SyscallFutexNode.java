@@ -29,25 +29,120 @@
  */
 package com.oracle.truffle.llvm.nodes.asm.syscall;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_BITSET_MATCH_ANY;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_CLOCK_REALTIME;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_CMD_MASK;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_WAIT;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_WAIT_BITSET;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_WAKE;
+import static com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Futex.FUTEX_WAKE_BITSET;
+
 public abstract class LLVMAMD64SyscallFutexNode extends LLVMSyscallOperationNode {
 
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long INVALID_TIMEOUT = Long.MIN_VALUE;
+
     @Override
     public final String getName() {
         return "futex";
     }
 
-    @SuppressWarnings("unused")
     @Specialization
-    protected long doI64(LLVMNativePointer uaddr, long futexOp, long val, LLVMNativePointer timeout, LLVMNativePointer uaddr2, long val3) {
-        return -LLVMAMD64Error.ENOSYS;
+    protected long doI64(LLVMNativePointer uaddr, long futexOp, long val, LLVMNativePointer timeout, @SuppressWarnings("unused") LLVMNativePointer uaddr2, long val3,
+                    @Cached("getLLVMMemory()") LLVMMemory memory) {
+        int op = (int) futexOp;
+        switch (op & FUTEX_CMD_MASK) {
+            case FUTEX_WAIT:
+                return doWait(memory, uaddr, (int) val, FUTEX_BITSET_MATCH_ANY, relativeDeadline(memory, timeout));
+            case FUTEX_WAIT_BITSET:
+                if ((int) val3 == 0) {
+                    return -LLVMAMD64Error.EINVAL;
+                }
+                return doWait(memory, uaddr, (int) val, (int) val3, absoluteDeadline(memory, timeout, (op & FUTEX_CLOCK_REALTIME) != 0));
+            case FUTEX_WAKE:
+                return LLVMAMD64Futex.wake(uaddr.asNative(), (int) val, FUTEX_BITSET_MATCH_ANY);
+            case FUTEX_WAKE_BITSET:
+                if ((int) val3 == 0) {
+                    return -LLVMAMD64Error.EINVAL;
+                }
+                return LLVMAMD64Futex.wake(uaddr.asNative(), (int) val, (int) val3);
+            default:
+                return -LLVMAMD64Error.ENOSYS;
+        }
     }
 
     @Specialization
-    protected long doI64(long uaddr, long futexOp, long val, long timeout, long uaddr2, long val3) {
-        return doI64(LLVMNativePointer.create(uaddr), futexOp, val, LLVMNativePointer.create(timeout), LLVMNativePointer.create(uaddr2), val3);
+    protected long doI64(long uaddr, long futexOp, long val, long timeout, long uaddr2, long val3,
+                    @Cached("getLLVMMemory()") LLVMMemory memory) {
+        return doI64(LLVMNativePointer.create(uaddr), futexOp, val, LLVMNativePointer.create(timeout), LLVMNativePointer.create(uaddr2), val3, memory);
+    }
+
+    private static long doWait(LLVMMemory memory, LLVMNativePointer uaddr, int val, int bitset, long deadline) {
+        if (deadline == INVALID_TIMEOUT) {
+            return -LLVMAMD64Error.EINVAL;
+        }
+        return LLVMAMD64Futex.await(memory, uaddr.asNative(), val, bitset, deadline);
+    }
+
+    private static long readTimespec(LLVMMemory memory, LLVMNativePointer timespec) {
+        long seconds = memory.getI64(timespec);
+        long nanoseconds = memory.getI64(timespec.increment(8));
+        if (seconds < 0 || nanoseconds < 0 || nanoseconds >= NANOS_PER_SECOND) {
+            return -1;
+        }
+        if (seconds >= LLVMAMD64Futex.NO_TIMEOUT / NANOS_PER_SECOND) {
+            return LLVMAMD64Futex.NO_TIMEOUT;
+        }
+        return seconds * NANOS_PER_SECOND + nanoseconds;
+    }
+
+    /**
+     * FUTEX_WAIT takes a timeout relative to the current time.
+     */
+    @TruffleBoundary
+    private static long relativeDeadline(LLVMMemory memory, LLVMNativePointer timeout) {
+        if (timeout.isNull()) {
+            return LLVMAMD64Futex.NO_TIMEOUT;
+        }
+        long nanos = readTimespec(memory, timeout);
+        if (nanos < 0) {
+            return INVALID_TIMEOUT;
+        }
+        return deadlineAfter(System.nanoTime(), nanos);
+    }
+
+    /**
+     * FUTEX_WAIT_BITSET takes an absolute timeout, measured against CLOCK_MONOTONIC unless
+     * FUTEX_CLOCK_REALTIME is set. The deadline is converted to {@link System#nanoTime()}, which is
+     * also what clock_gettime returns for CLOCK_MONOTONIC.
+     */
+    @TruffleBoundary
+    private static long absoluteDeadline(LLVMMemory memory, LLVMNativePointer timeout, boolean realtime) {
+        if (timeout.isNull()) {
+            return LLVMAMD64Futex.NO_TIMEOUT;
+        }
+        long nanos = readTimespec(memory, timeout);
+        if (nanos < 0) {
+            return INVALID_TIMEOUT;
+        }
+        if (realtime && nanos != LLVMAMD64Futex.NO_TIMEOUT) {
+            return deadlineAfter(System.nanoTime(), nanos - System.currentTimeMillis() * 1000000);
+        }
+        return nanos;
+    }
+
+    /**
+     * Adds a (possibly negative) duration to {@link System#nanoTime()}, saturating at
+     * {@link LLVMAMD64Futex#NO_TIMEOUT} instead of overflowing.
+     */
+    private static long deadlineAfter(long now, long nanos) {
+        return now > 0 && nanos >= LLVMAMD64Futex.NO_TIMEOUT - now ? LLVMAMD64Futex.NO_TIMEOUT : now + nanos;
     }
 }
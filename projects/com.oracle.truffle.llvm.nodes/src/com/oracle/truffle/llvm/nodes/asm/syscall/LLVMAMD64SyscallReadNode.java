@@ -32,14 +32,18 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallReadNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode read;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
 
     public LLVMAMD64SyscallReadNode() {
         read = LLVMAMD64PosixCallNodeGen.create("read", "(SINT32,POINTER,UINT64):SINT64", 3);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_read);
     }
 
     @Override
@@ -49,6 +53,12 @@ public abstract class LLVMAMD64SyscallReadNode extends LLVMSyscallOperationNode
 
     @Specialization
     protected long doOp(long fd, LLVMNativePointer ptr, long size) {
+        if (fd == 0) {
+            LLVMAMD64StdioBuffer.flush(getContextReference().get());
+        }
+        if (syscall.isSupported()) {
+            return syscall.execute(fd, ptr.asNative(), size);
+        }
         return (long) read.execute((int) fd, ptr.asNative(), size);
     }
 
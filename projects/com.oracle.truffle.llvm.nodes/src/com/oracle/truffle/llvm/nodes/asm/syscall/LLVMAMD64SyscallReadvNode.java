@@ -32,14 +32,18 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallReadvNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode readv;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
 
     public LLVMAMD64SyscallReadvNode() {
         readv = LLVMAMD64PosixCallNodeGen.create("readv", "(SINT32,POINTER,SINT32):SINT64", 3);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_readv);
     }
 
     @Override
@@ -49,6 +53,12 @@ public abstract class LLVMAMD64SyscallReadvNode extends LLVMSyscallOperationNode
 
     @Specialization
     protected long doOp(long fd, LLVMNativePointer ptr, long size) {
+        if (fd == 0) {
+            LLVMAMD64StdioBuffer.flush(getContextReference().get());
+        }
+        if (syscall.isSupported()) {
+            return syscall.execute(fd, ptr.asNative(), size);
+        }
         return (long) readv.execute((int) fd, ptr.asNative(), size);
     }
 
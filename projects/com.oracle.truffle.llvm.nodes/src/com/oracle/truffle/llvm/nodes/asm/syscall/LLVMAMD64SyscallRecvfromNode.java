@@ -32,14 +32,17 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallRecvfromNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode recvfrom;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
 
     public LLVMAMD64SyscallRecvfromNode() {
         recvfrom = LLVMAMD64PosixCallNodeGen.create("recvfrom", "(SINT32,UINT64,UINT64,SINT32,UINT64,UINT64):SINT64", 6);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_recvfrom);
     }
 
     @Override
@@ -49,6 +52,9 @@ public abstract class LLVMAMD64SyscallRecvfromNode extends LLVMSyscallOperationN
 
     @Specialization
     protected long doOp(long socket, LLVMNativePointer buffer, long length, long flags, LLVMNativePointer address, LLVMNativePointer addressLen) {
+        if (syscall.isSupported()) {
+            return syscall.execute(socket, buffer.asNative(), length, flags, address.asNative(), addressLen.asNative());
+        }
         return (long) recvfrom.execute((int) socket, buffer.asNative(), length, (int) flags, address.asNative(), addressLen.asNative());
     }
 
@@ -32,14 +32,17 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallSendtoNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode sendto;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
 
     public LLVMAMD64SyscallSendtoNode() {
         sendto = LLVMAMD64PosixCallNodeGen.create("sendto", "(SINT32,UINT64,UINT64,SINT32,UINT64,SINT32):SINT64", 6);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_sendto);
     }
 
     @Override
@@ -49,6 +52,9 @@ public abstract class LLVMAMD64SyscallSendtoNode extends LLVMSyscallOperationNod
 
     @Specialization
     protected long doOp(long socket, LLVMNativePointer message, long length, long flags, LLVMNativePointer destAddr, long destLen) {
+        if (syscall.isSupported()) {
+            return syscall.execute(socket, message.asNative(), length, flags, destAddr.asNative(), destLen);
+        }
         return (long) sendto.execute((int) socket, message.asNative(), length, (int) flags, destAddr.asNative(), (int) destLen);
     }
 
@@ -29,17 +29,26 @@
  */
 package com.oracle.truffle.llvm.nodes.asm.syscall;
 
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallWriteNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode write;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
+
+    @CompilationFinal private boolean stdioChecked;
+    @CompilationFinal private LLVMAMD64StdioBuffer stdio;
 
     public LLVMAMD64SyscallWriteNode() {
         write = LLVMAMD64PosixCallNodeGen.create("write", "(SINT32,POINTER,UINT64):SINT64", 3);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_write);
     }
 
     @Override
@@ -49,6 +58,12 @@ public abstract class LLVMAMD64SyscallWriteNode extends LLVMSyscallOperationNode
 
     @Specialization
     protected long doOp(long fd, LLVMNativePointer ptr, long size) {
+        if (LLVMAMD64StdioBuffer.isBuffered(fd) && getStdioBuffer() != null && stdio.write(getContextReference().get(), (int) fd, ptr.asNative(), size)) {
+            return size;
+        }
+        if (syscall.isSupported()) {
+            return syscall.execute(fd, ptr.asNative(), size);
+        }
         return (long) write.execute((int) fd, ptr.asNative(), size);
     }
 
@@ -56,4 +71,13 @@ public abstract class LLVMAMD64SyscallWriteNode extends LLVMSyscallOperationNode
     protected long doOp(long fd, long ptr, long size) {
         return doOp(fd, LLVMNativePointer.create(ptr), size);
     }
+
+    private LLVMAMD64StdioBuffer getStdioBuffer() {
+        if (!stdioChecked) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            stdio = getContextReference().get().getContextExtensionOrNull(LLVMAMD64StdioBuffer.class);
+            stdioChecked = true;
+        }
+        return stdio;
+    }
 }
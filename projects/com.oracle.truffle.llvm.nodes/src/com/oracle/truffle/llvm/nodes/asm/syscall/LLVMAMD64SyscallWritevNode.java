@@ -32,14 +32,18 @@ package com.oracle.truffle.llvm.nodes.asm.syscall;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallWritevNode extends LLVMSyscallOperationNode {
     @Child private LLVMAMD64PosixCallNode writev;
+    @Child private LLVMAMD64PosixSyscallNode syscall;
 
     public LLVMAMD64SyscallWritevNode() {
         writev = LLVMAMD64PosixCallNodeGen.create("writev", "(SINT32,POINTER,SINT32):SINT64", 3);
+        syscall = new LLVMAMD64PosixSyscallNode(LLVMAMD64Syscall.SYS_writev);
     }
 
     @Override
@@ -49,6 +53,12 @@ public abstract class LLVMAMD64SyscallWritevNode extends LLVMSyscallOperationNod
 
     @Specialization
     protected long doOp(long fd, LLVMNativePointer ptr, long size) {
+        if (LLVMAMD64StdioBuffer.isBuffered(fd)) {
+            LLVMAMD64StdioBuffer.flush(getContextReference().get());
+        }
+        if (syscall.isSupported()) {
+            return syscall.execute(fd, ptr.asNative(), size);
+        }
         return (long) writev.execute((int) fd, ptr.asNative(), size);
     }
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall.posix;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.Message;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.NFIContextExtension;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * Queue of independent syscalls that are executed by a single native call. Entries are written
+ * into a ring in native memory (see {@code struct __sulong_posix_sqe} in {@code posix.c}), so
+ * submitting a batch costs one interop transition instead of one per syscall. The arguments of
+ * that transition are reused, so a submission does not box anything.
+ *
+ * The results of a batch are available via {@link #getResult} until the next entry is enqueued.
+ * Syscall numbers are the ones of the guest, see {@link com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Syscall}.
+ * A queue is not thread safe; {@link LLVMAMD64PosixSyscallBridge} keeps one per thread.
+ */
+public final class LLVMAMD64PosixSubmissionQueue {
+    private static final int ARG_COUNT = 6;
+    private static final int ENTRY_SIZE = (ARG_COUNT + 2) * Long.BYTES;
+    private static final int RESULT_OFFSET = (ARG_COUNT + 1) * Long.BYTES;
+
+    private final LLVMContext context;
+    private final LLVMMemory memory;
+    private final int capacity;
+    private final Node submitExecute = Message.createExecute(2).createNode();
+    private final Object[] submitArgs = new Object[2];
+
+    private LLVMNativePointer ring;
+    private TruffleObject submitFunction;
+    private int pending;
+    private int completed;
+
+    public LLVMAMD64PosixSubmissionQueue(LLVMContext context, LLVMMemory memory, int capacity) {
+        assert capacity > 0;
+        this.context = context;
+        this.memory = memory;
+        this.capacity = capacity;
+    }
+
+    public boolean isFull() {
+        return pending == capacity;
+    }
+
+    public boolean isEmpty() {
+        return pending == 0;
+    }
+
+    /**
+     * Adds a syscall to the queue and returns its slot, which identifies the result after
+     * {@link #submit}. The queue must not be full.
+     */
+    public int enqueue(long nr, long a1, long a2, long a3, long a4, long a5, long a6) {
+        assert !isFull();
+        if (ring == null) {
+            ring = memory.allocateMemory((long) capacity * ENTRY_SIZE);
+            submitArgs[0] = ring.asNative();
+        }
+        completed = 0;
+        int slot = pending++;
+        long entry = ring.asNative() + (long) slot * ENTRY_SIZE;
+        memory.putI64(entry, nr);
+        memory.putI64(entry + 1 * Long.BYTES, a1);
+        memory.putI64(entry + 2 * Long.BYTES, a2);
+        memory.putI64(entry + 3 * Long.BYTES, a3);
+        memory.putI64(entry + 4 * Long.BYTES, a4);
+        memory.putI64(entry + 5 * Long.BYTES, a5);
+        memory.putI64(entry + 6 * Long.BYTES, a6);
+        return slot;
+    }
+
+    /**
+     * Executes all pending syscalls in order with a single native call.
+     */
+    @TruffleBoundary
+    public void submit() {
+        if (pending == 0) {
+            return;
+        }
+        if (submitFunction == null) {
+            NFIContextExtension nfiContextExtension = context.getContextExtension(NFIContextExtension.class);
+            submitFunction = nfiContextExtension.getNativeFunction(context, "@__sulong_posix_submit", "(POINTER,SINT32):SINT32");
+        }
+        try {
+            submitArgs[1] = pending;
+            ForeignAccess.sendExecute(submitExecute, submitFunction, submitArgs);
+        } catch (InteropException e) {
+            throw new AssertionError(e);
+        }
+        completed = pending;
+        pending = 0;
+    }
+
+    /**
+     * Returns the result of the syscall in {@code slot} of the last submitted batch. Like a raw
+     * syscall, errors are reported as negative errno values.
+     */
+    public long getResult(int slot) {
+        assert slot < completed : "syscall was not submitted";
+        return memory.getI64(ring.asNative() + (long) slot * ENTRY_SIZE + RESULT_OFFSET);
+    }
+
+    public void dispose() {
+        if (ring != null) {
+            memory.free(ring);
+            ring = null;
+        }
+        pending = 0;
+        completed = 0;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall.posix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.ContextExtension;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+
+/**
+ * Executes guest syscalls directly as raw host syscalls, through a {@link LLVMAMD64PosixSubmissionQueue}
+ * per thread. The arguments are written into native memory as primitive longs, so a syscall costs a
+ * single native call without boxing its arguments, and independent syscalls can be submitted as one
+ * batch.
+ *
+ * Only available if the host is Linux/AMD64, where guest and host syscall numbers and structure
+ * layouts agree.
+ */
+public final class LLVMAMD64PosixSyscallBridge implements ContextExtension {
+    public static final int QUEUE_CAPACITY = 16;
+
+    private final LLVMMemory memory;
+    private final ThreadLocal<LLVMAMD64PosixSubmissionQueue> queues = new ThreadLocal<>();
+    private final List<LLVMAMD64PosixSubmissionQueue> allQueues = new ArrayList<>();
+
+    public LLVMAMD64PosixSyscallBridge(LLVMMemory memory) {
+        this.memory = memory;
+    }
+
+    public static boolean isSupported() {
+        String os = System.getProperty("os.name");
+        String arch = System.getProperty("os.arch");
+        return "Linux".equals(os) && ("amd64".equals(arch) || "x86_64".equals(arch));
+    }
+
+    /**
+     * Returns the submission queue of the current thread. Entries must be submitted before the
+     * thread executes another syscall through this bridge.
+     */
+    @TruffleBoundary
+    public LLVMAMD64PosixSubmissionQueue getQueue(LLVMContext context) {
+        LLVMAMD64PosixSubmissionQueue queue = queues.get();
+        if (queue == null) {
+            queue = new LLVMAMD64PosixSubmissionQueue(context, memory, QUEUE_CAPACITY);
+            queues.set(queue);
+            synchronized (allQueues) {
+                allQueues.add(queue);
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Executes a single syscall. Like a raw syscall, errors are reported as negative errno values.
+     */
+    @TruffleBoundary
+    public long syscall(LLVMContext context, long nr, long a1, long a2, long a3, long a4, long a5, long a6) {
+        LLVMAMD64PosixSubmissionQueue queue = getQueue(context);
+        assert queue.isEmpty();
+        int slot = queue.enqueue(nr, a1, a2, a3, a4, a5, a6);
+        queue.submit();
+        return queue.getResult(slot);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (allQueues) {
+            for (LLVMAMD64PosixSubmissionQueue queue : allQueues) {
+                queue.dispose();
+            }
+            allQueues.clear();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall.posix;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
+
+/**
+ * Executes a syscall through the {@link LLVMAMD64PosixSyscallBridge} of the context. Callers have
+ * to check {@link #isSupported} and use a {@link LLVMAMD64PosixCallNode} otherwise.
+ */
+public final class LLVMAMD64PosixSyscallNode extends LLVMNode {
+    private final int nr;
+
+    @CompilationFinal private boolean bridgeChecked;
+    @CompilationFinal private LLVMAMD64PosixSyscallBridge bridge;
+
+    public LLVMAMD64PosixSyscallNode(int nr) {
+        this.nr = nr;
+    }
+
+    public boolean isSupported() {
+        if (!bridgeChecked) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            bridge = getContextReference().get().getContextExtensionOrNull(LLVMAMD64PosixSyscallBridge.class);
+            bridgeChecked = true;
+        }
+        return bridge != null;
+    }
+
+    public long execute(long a1, long a2, long a3) {
+        return execute(a1, a2, a3, 0, 0, 0);
+    }
+
+    public long execute(long a1, long a2, long a3, long a4, long a5, long a6) {
+        assert isSupported();
+        return bridge.syscall(getContextReference().get(), nr, a1, a2, a3, a4, a5, a6);
+    }
+
+    @Override
+    public String toString() {
+        return "syscall " + nr;
+    }
+}
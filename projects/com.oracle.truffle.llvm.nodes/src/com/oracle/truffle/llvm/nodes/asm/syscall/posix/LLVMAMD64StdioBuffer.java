@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall.posix;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Error;
+import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64Syscall;
+import com.oracle.truffle.llvm.runtime.ContextExtension;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * Coalesces the writes of the program to stdout and stderr in an off-heap buffer (see
+ * {@link SulongEngineOption#BUFFERED_STDIO}). The buffer remembers runs of consecutive writes to
+ * the same descriptor; a flush submits one write per run as a single batch of the
+ * {@link LLVMAMD64PosixSyscallBridge}, so the order of the output across both descriptors is
+ * preserved.
+ *
+ * Calls into native code flush the buffer first (see {@link LLVMAMD64StdioFlushNode}), so output
+ * of native code does not overtake buffered output. Output that the program writes in a callback
+ * from native code stays in the buffer when the callback returns, and writes to other descriptors
+ * that refer to the same file, e.g. created with dup, bypass the buffer; both can be reordered.
+ */
+public final class LLVMAMD64StdioBuffer implements ContextExtension {
+    public static final int BUFFER_SIZE = 8192;
+    private static final int MAX_RUNS = LLVMAMD64PosixSyscallBridge.QUEUE_CAPACITY;
+
+    private static final String LINE = "line";
+    private static final String FULL = "full";
+
+    private final boolean lineBuffered;
+    private final String printStats;
+    private final LLVMMemory memory;
+    private final LLVMAMD64PosixSyscallBridge bridge;
+
+    private final int[] runFd = new int[MAX_RUNS];
+    private final int[] runStart = new int[MAX_RUNS];
+    private final int[] runLength = new int[MAX_RUNS];
+    private int runs;
+    private int used;
+
+    private long guestWrites;
+    private long nativeWrites;
+
+    private LLVMContext context;
+    private LLVMNativePointer buffer;
+
+    public LLVMAMD64StdioBuffer(String mode, String printStats, LLVMMemory memory, LLVMAMD64PosixSyscallBridge bridge) {
+        switch (mode) {
+            case LINE:
+                this.lineBuffered = true;
+                break;
+            case FULL:
+                this.lineBuffered = false;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown stdio buffering mode: " + mode);
+        }
+        this.printStats = printStats;
+        this.memory = memory;
+        this.bridge = bridge;
+    }
+
+    public static boolean isBuffered(long fd) {
+        return fd == 1 || fd == 2;
+    }
+
+    /**
+     * Appends {@code size} bytes at {@code address} to the buffer of {@code fd}. Returns
+     * {@code false} if the data is larger than the buffer; the pending output is then flushed and
+     * the caller has to write the data itself.
+     */
+    @TruffleBoundary
+    public synchronized boolean write(LLVMContext ctx, int fd, long address, long size) {
+        assert isBuffered(fd);
+        context = ctx;
+        guestWrites++;
+        if (size > BUFFER_SIZE) {
+            flush();
+            nativeWrites++;
+            return false;
+        }
+        boolean extendsRun = runs > 0 && runFd[runs - 1] == fd;
+        if (used + size > BUFFER_SIZE || (runs == MAX_RUNS && !extendsRun)) {
+            flush();
+            extendsRun = false;
+        }
+        if (buffer == null) {
+            buffer = memory.allocateMemory(BUFFER_SIZE);
+        }
+        copy(address, buffer.asNative() + used, size);
+        if (extendsRun) {
+            runLength[runs - 1] += (int) size;
+        } else {
+            runFd[runs] = fd;
+            runStart[runs] = used;
+            runLength[runs] = (int) size;
+            runs++;
+        }
+        used += (int) size;
+        if (used == BUFFER_SIZE || (lineBuffered && containsNewline(address, size))) {
+            flush();
+        }
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void copy(long source, long target, long size) {
+        memory.copyMemory(source, target, size);
+    }
+
+    private boolean containsNewline(long address, long size) {
+        for (long i = 0; i < size; i++) {
+            if (memory.getI8(address + i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the state without synchronization, so pending output of other threads may be missed;
+     * that output is not ordered with the native calls of this thread anyway.
+     */
+    public boolean hasPendingOutput() {
+        return used > 0;
+    }
+
+    /**
+     * Writes all pending output. Partial writes are continued; output that fails to be written is
+     * dropped.
+     */
+    @TruffleBoundary
+    public synchronized void flush() {
+        while (runs > 0) {
+            LLVMAMD64PosixSubmissionQueue queue = bridge.getQueue(context);
+            for (int i = 0; i < runs; i++) {
+                queue.enqueue(LLVMAMD64Syscall.SYS_write, runFd[i], buffer.asNative() + runStart[i], runLength[i], 0, 0, 0);
+            }
+            queue.submit();
+            nativeWrites += runs;
+            int remaining = 0;
+            for (int i = 0; i < runs; i++) {
+                long written = queue.getResult(i);
+                if (written == -LLVMAMD64Error.EINTR) {
+                    written = 0;
+                } else if (written < 0) {
+                    continue;
+                }
+                if (written < runLength[i]) {
+                    runFd[remaining] = runFd[i];
+                    runStart[remaining] = runStart[i] + (int) written;
+                    runLength[remaining] = runLength[i] - (int) written;
+                    remaining++;
+                }
+            }
+            runs = remaining;
+        }
+        used = 0;
+    }
+
+    /**
+     * Flushes the pending output of the context, if stdio buffering is enabled.
+     */
+    @TruffleBoundary
+    public static void flush(LLVMContext context) {
+        LLVMAMD64StdioBuffer stdio = context.getContextExtensionOrNull(LLVMAMD64StdioBuffer.class);
+        if (stdio != null) {
+            stdio.flush();
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        flush();
+        if (buffer != null) {
+            memory.free(buffer);
+            buffer = null;
+        }
+        if (SulongEngineOption.isTrue(printStats)) {
+            SulongEngineOption.getStream(printStats).println("buffered stdio: " + guestWrites + " writes, " + nativeWrites + " native writes");
+        }
+    }
+}
@@ -29,9 +29,11 @@
  */
 package com.oracle.truffle.llvm.nodes.base;
 
+import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.nodes.ControlFlowException;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
@@ -39,6 +41,7 @@ import com.oracle.truffle.api.nodes.NodeUtil;
 import com.oracle.truffle.api.profiles.BranchProfile;
 import com.oracle.truffle.llvm.nodes.func.LLVMFunctionStartNode;
 import com.oracle.truffle.llvm.runtime.GuestLanguageRuntimeException;
+import com.oracle.truffle.llvm.runtime.LLVMSamplingProfiler;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
 
@@ -64,6 +67,11 @@ public class LLVMBasicBlockNode extends LLVMStatementNode {
 
     @CompilationFinal(dimensions = 1) private final long[] successorExecutionCount;
 
+    @CompilationFinal private boolean samplingProfilerInitialized;
+    @CompilationFinal private LLVMSamplingProfiler samplingProfiler;
+
+    @CompilationFinal private Assumption noPendingExit;
+
     public LLVMBasicBlockNode(LLVMStatementNode[] statements, LLVMControlFlowNode termInstruction, int blockId, String blockName) {
         this.statements = statements;
         this.termInstruction = termInstruction;
@@ -76,6 +84,8 @@ public class LLVMBasicBlockNode extends LLVMStatementNode {
     @ExplodeLoop
     public void execute(VirtualFrame frame) {
         blockEntered.enter();
+        pollPendingExit();
+        pollSamplingProfiler();
         for (int i = 0; i < statements.length; i++) {
             LLVMStatementNode statement = statements[i];
             try {
@@ -90,6 +100,38 @@ public class LLVMBasicBlockNode extends LLVMStatementNode {
         }
     }
 
+    /**
+     * Stops this thread if another thread called {@code exit}.
+     */
+    private void pollPendingExit() {
+        if (noPendingExit == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            noPendingExit = getContextReference().get().getPThreadContext().getNoPendingExitAssumption();
+        }
+        if (!noPendingExit.isValid()) {
+            CompilerDirectives.transferToInterpreter();
+            getContextReference().get().getPThreadContext().checkPendingExit();
+        }
+    }
+
+    private void pollSamplingProfiler() {
+        if (!samplingProfilerInitialized) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            samplingProfiler = getContextReference().get().getSamplingProfiler();
+            samplingProfilerInitialized = true;
+        }
+        if (samplingProfiler != null && samplingProfiler.isSampleRequested()) {
+            takeSample();
+        }
+    }
+
+    @TruffleBoundary
+    private void takeSample() {
+        if (samplingProfiler.acquireSample()) {
+            samplingProfiler.addSample(LLVMStackTraceUtil.getStackTrace(this, "sample", false));
+        }
+    }
+
     public int getBlockId() {
         return blockId;
     }
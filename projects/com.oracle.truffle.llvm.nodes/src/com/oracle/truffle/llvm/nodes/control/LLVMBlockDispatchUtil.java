@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.control;
+
+import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.llvm.nodes.base.LLVMBasicBlockNode;
+import com.oracle.truffle.llvm.nodes.base.LLVMFrameNullerUtil;
+import com.oracle.truffle.llvm.nodes.func.LLVMInvokeNode;
+import com.oracle.truffle.llvm.runtime.except.LLVMUserException;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
+
+/**
+ * Terminator handling shared by {@link LLVMDispatchBasicBlockNode} and {@link LLVMLoopDispatchNode}.
+ * Compiled code needs a constant block index on every path, so the dispatchers still branch to the
+ * successor blocks themselves. These helpers evaluate the terminators, profile them, and follow
+ * the chosen edge.
+ */
+final class LLVMBlockDispatchUtil {
+
+    private LLVMBlockDispatchUtil() {
+    }
+
+    /**
+     * Executes a terminator that continues in this function and returns the index of the chosen
+     * successor. If an invoke unwinds, the exception is stored in {@code exceptionValueSlot}.
+     */
+    static int executeTerminator(VirtualFrame frame, LLVMControlFlowNode terminator, FrameSlot exceptionValueSlot) {
+        if (terminator instanceof LLVMConditionalBranchNode) {
+            boolean condition = ((LLVMConditionalBranchNode) terminator).executeCondition(frame);
+            return condition ? LLVMConditionalBranchNode.TRUE_SUCCESSOR : LLVMConditionalBranchNode.FALSE_SUCCESSOR;
+        } else if (terminator instanceof LLVMSwitchNode) {
+            return ((LLVMSwitchNode) terminator).executeCaseIndex(frame);
+        } else if (terminator instanceof LLVMIndirectBranchNode) {
+            return ((LLVMIndirectBranchNode) terminator).executeSuccessorIndex(frame);
+        } else if (terminator instanceof LLVMBrUnconditionalNode) {
+            ((LLVMBrUnconditionalNode) terminator).execute(frame); // required for instrumentation
+            return 0;
+        } else if (terminator instanceof LLVMInvokeNode) {
+            try {
+                ((LLVMInvokeNode) terminator).execute(frame);
+                return LLVMInvokeNode.NORMAL_SUCCESSOR;
+            } catch (LLVMUserException e) {
+                frame.setObject(exceptionValueSlot, e);
+                return LLVMInvokeNode.UNWIND_SUCCESSOR;
+            }
+        } else {
+            CompilerAsserts.neverPartOfCompilation();
+            throw new UnsupportedOperationException("unexpected controlFlowNode type: " + terminator);
+        }
+    }
+
+    /**
+     * Returns the block index of a successor of a terminator that was accepted by
+     * {@link #executeTerminator}.
+     */
+    static int getSuccessor(LLVMControlFlowNode terminator, int successorIndex) {
+        if (terminator instanceof LLVMConditionalBranchNode) {
+            LLVMConditionalBranchNode conditionalBranchNode = (LLVMConditionalBranchNode) terminator;
+            return successorIndex == LLVMConditionalBranchNode.TRUE_SUCCESSOR ? conditionalBranchNode.getTrueSuccessor() : conditionalBranchNode.getFalseSuccessor();
+        } else if (terminator instanceof LLVMSwitchNode) {
+            return ((LLVMSwitchNode) terminator).getSuccessors()[successorIndex];
+        } else if (terminator instanceof LLVMIndirectBranchNode) {
+            return ((LLVMIndirectBranchNode) terminator).getSuccessors()[successorIndex];
+        } else if (terminator instanceof LLVMBrUnconditionalNode) {
+            return ((LLVMBrUnconditionalNode) terminator).getSuccessor();
+        } else {
+            LLVMInvokeNode invokeNode = (LLVMInvokeNode) terminator;
+            return successorIndex == LLVMInvokeNode.NORMAL_SUCCESSOR ? invokeNode.getNormalSuccessor() : invokeNode.getUnwindSuccessor();
+        }
+    }
+
+    /**
+     * Decides in compiled code whether the successor with index {@code i} is the one that was
+     * chosen. The dispatchers test the successors in order, so the last one is taken without a
+     * test. Indirect branches only have paths for the successors that were taken in the
+     * interpreter, so for them no successor is taken unconditionally and the dispatchers
+     * deoptimize if none matched.
+     */
+    static boolean takesSuccessor(LLVMBasicBlockNode bb, int i, int successorIndex) {
+        LLVMControlFlowNode terminator = bb.termInstruction;
+        if (terminator instanceof LLVMIndirectBranchNode) {
+            return isHotSuccessor((LLVMIndirectBranchNode) terminator, i) && CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), successorIndex == i);
+        } else if (i == terminator.getSuccessorCount() - 1) {
+            return true;
+        } else if (terminator.needsBranchProfiling()) {
+            return CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), successorIndex == i);
+        } else {
+            return successorIndex == i;
+        }
+    }
+
+    @ExplodeLoop
+    private static boolean isHotSuccessor(LLVMIndirectBranchNode indirectBranchNode, int i) {
+        int[] hotSuccessorIndices = indirectBranchNode.getHotSuccessorIndices();
+        for (int j = 0; j < hotSuccessorIndices.length; j++) {
+            if (hotSuccessorIndices[j] == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the chosen successor in the profiles of the block. Must only be called in the
+     * interpreter.
+     */
+    static void profileSuccessor(LLVMBasicBlockNode bb, int successorIndex) {
+        CompilerAsserts.neverPartOfCompilation();
+        bb.increaseBranchProbability(successorIndex);
+        if (bb.termInstruction instanceof LLVMIndirectBranchNode) {
+            ((LLVMIndirectBranchNode) bb.termInstruction).profileSuccessorIndex(successorIndex);
+        }
+    }
+
+    /**
+     * Follows the edge from block {@code from} to block {@code to}: writes the phis of the edge
+     * and nulls the frame slots that are dead after {@code from} and before {@code to}. Returns
+     * {@code to}.
+     */
+    static int followEdge(VirtualFrame frame, LLVMControlFlowNode terminator, int successorIndex, int from, int to, FrameSlot[][] afterBlockNuller, FrameSlot[][] beforeBlockNuller) {
+        executePhis(frame, terminator, successorIndex);
+        nullDeadSlots(frame, from, afterBlockNuller);
+        nullDeadSlots(frame, to, beforeBlockNuller);
+        return to;
+    }
+
+    private static void executePhis(VirtualFrame frame, LLVMControlFlowNode controlFlowNode, int successorIndex) {
+        LLVMStatementNode phi = controlFlowNode.getPhiNode(successorIndex);
+        if (phi != null) {
+            phi.execute(frame);
+        }
+    }
+
+    @ExplodeLoop
+    static void nullDeadSlots(VirtualFrame frame, int bci, FrameSlot[][] blockNullers) {
+        FrameSlot[] frameSlotsToNull = blockNullers[bci];
+        if (frameSlotsToNull != null) {
+            assert frameSlotsToNull.length > 0;
+            for (int i = 0; i < frameSlotsToNull.length; i++) {
+                LLVMFrameNullerUtil.nullFrameSlot(frame, frameSlotsToNull[i], false);
+            }
+        }
+    }
+}
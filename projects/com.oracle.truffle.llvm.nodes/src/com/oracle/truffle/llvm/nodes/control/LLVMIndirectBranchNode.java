@@ -29,6 +29,9 @@
  */
 package com.oracle.truffle.llvm.nodes.control;
 
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.frame.VirtualFrame;
@@ -67,22 +70,66 @@ public abstract class LLVMIndirectBranchNode extends LLVMControlFlowNode impleme
         return getSourceLocation() != null;
     }
 
-    public abstract int executeCondition(VirtualFrame frame);
+    /**
+     * Evaluates the branch address and returns the index of the successor it refers to.
+     */
+    public abstract int executeSuccessorIndex(VirtualFrame frame);
 
     public abstract int[] getSuccessors();
 
+    /**
+     * Returns the indices of the successors that were taken so far, in the order in which they were
+     * first taken. Compiled code only contains paths for these successors.
+     */
+    public abstract int[] getHotSuccessorIndices();
+
+    /**
+     * Records that the successor with the given index was taken. Must only be called in the
+     * interpreter.
+     */
+    public abstract void profileSuccessorIndex(int successorIndex);
+
     private static final class LLVMIndirectBranchNodeImpl extends LLVMIndirectBranchNode {
 
+        private static final int[] NO_SUCCESSORS = {};
+
         @Child private LLVMBranchAddressNode branchAddress;
         @Children private final LLVMStatementNode[] phiWriteNodes;
         @CompilationFinal(dimensions = 1) private final int[] successors;
 
+        /**
+         * Maps a block index to the index of the first successor that refers to this block, or -1.
+         * Block indices are dense, so this is a small table.
+         */
+        @CompilationFinal(dimensions = 1) private final int[] successorIndices;
+
+        @CompilationFinal(dimensions = 1) private int[] hotSuccessorIndices;
+        private final boolean[] isHot;
+
         private LLVMIndirectBranchNodeImpl(LLVMBranchAddressNode branchAddress, int[] indices, LLVMStatementNode[] phiWriteNodes, LLVMSourceLocation sourceSection) {
             super(sourceSection);
             assert indices.length > 1;
             this.successors = indices;
             this.branchAddress = branchAddress;
             this.phiWriteNodes = phiWriteNodes;
+            this.successorIndices = createSuccessorIndices(indices);
+            this.hotSuccessorIndices = NO_SUCCESSORS;
+            this.isHot = new boolean[indices.length];
+        }
+
+        private static int[] createSuccessorIndices(int[] successors) {
+            int maxBlockIndex = 0;
+            for (int successor : successors) {
+                maxBlockIndex = Math.max(maxBlockIndex, successor);
+            }
+            int[] result = new int[maxBlockIndex + 1];
+            Arrays.fill(result, -1);
+            for (int i = 0; i < successors.length; i++) {
+                if (result[successors[i]] < 0) {
+                    result[successors[i]] = i;
+                }
+            }
+            return result;
         }
 
         @Override
@@ -96,14 +143,38 @@ public abstract class LLVMIndirectBranchNode extends LLVMControlFlowNode impleme
         }
 
         @Override
-        public int executeCondition(VirtualFrame frame) {
-            return branchAddress.branchAddress(frame);
+        public int executeSuccessorIndex(VirtualFrame frame) {
+            int blockIndex = branchAddress.branchAddress(frame);
+            if (blockIndex >= 0 && blockIndex < successorIndices.length) {
+                int successorIndex = successorIndices[blockIndex];
+                if (successorIndex >= 0) {
+                    return successorIndex;
+                }
+            }
+            CompilerDirectives.transferToInterpreter();
+            throw new IllegalStateException("indirect branch to a block that is not a successor: " + blockIndex);
         }
 
         @Override
         public int[] getSuccessors() {
             return successors;
         }
+
+        @Override
+        public int[] getHotSuccessorIndices() {
+            return hotSuccessorIndices;
+        }
+
+        @Override
+        public void profileSuccessorIndex(int successorIndex) {
+            CompilerAsserts.neverPartOfCompilation();
+            if (!isHot[successorIndex]) {
+                isHot[successorIndex] = true;
+                int[] newHotSuccessorIndices = Arrays.copyOf(hotSuccessorIndices, hotSuccessorIndices.length + 1);
+                newHotSuccessorIndices[hotSuccessorIndices.length] = successorIndex;
+                hotSuccessorIndices = newHotSuccessorIndices;
+            }
+        }
     }
 
     public abstract static class LLVMBranchAddressNode extends LLVMNode {
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.control;
+
+import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.nodes.ExplodeLoop.LoopExplosionKind;
+import com.oracle.truffle.api.nodes.RepeatingNode;
+import com.oracle.truffle.llvm.nodes.base.LLVMBasicBlockNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
+
+/**
+ * Executes one iteration of a natural loop, i.e., dispatches between the blocks of the loop
+ * starting at the header block until control either returns to the header or leaves the loop. Both
+ * arrays are indexed by block index: {@code bodyNodes} contains the blocks that belong to this loop
+ * but not to a nested loop, {@code nestedLoops} contains the nested loops at the index of their
+ * header block.
+ */
+public final class LLVMLoopDispatchNode extends LLVMNode implements RepeatingNode {
+
+    private final FrameSlot exceptionValueSlot;
+    private final FrameSlot successorSlot;
+    private final int headerId;
+    @Children private final LLVMBasicBlockNode[] bodyNodes;
+    @Children private final LLVMLoopNode[] nestedLoops;
+    @CompilationFinal(dimensions = 2) private final FrameSlot[][] beforeBlockNuller;
+    @CompilationFinal(dimensions = 2) private final FrameSlot[][] afterBlockNuller;
+
+    public LLVMLoopDispatchNode(FrameSlot exceptionValueSlot, FrameSlot successorSlot, int headerId, LLVMBasicBlockNode[] bodyNodes, LLVMLoopNode[] nestedLoops,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller) {
+        assert bodyNodes.length == nestedLoops.length && bodyNodes[headerId] != null;
+        this.exceptionValueSlot = exceptionValueSlot;
+        this.successorSlot = successorSlot;
+        this.headerId = headerId;
+        this.bodyNodes = bodyNodes;
+        this.nestedLoops = nestedLoops;
+        this.beforeBlockNuller = beforeBlockNuller;
+        this.afterBlockNuller = afterBlockNuller;
+    }
+
+    @Override
+    @ExplodeLoop(kind = LoopExplosionKind.MERGE_EXPLODE)
+    public boolean executeRepeating(VirtualFrame frame) {
+        CompilerAsserts.compilationConstant(bodyNodes.length);
+        int basicBlockIndex = headerId;
+        outer: do {
+            CompilerAsserts.partialEvaluationConstant(basicBlockIndex);
+            if (bodyNodes[basicBlockIndex] == null && nestedLoops[basicBlockIndex] == null) {
+                // the phis and the nulling for this edge were already executed
+                frame.setInt(successorSlot, basicBlockIndex);
+                return false;
+            }
+
+            LLVMLoopNode nestedLoop = nestedLoops[basicBlockIndex];
+            if (nestedLoop != null) {
+                nestedLoop.execute(frame);
+                int[] successors = nestedLoop.getSuccessors();
+                int successor = nestedLoop.readSuccessor(frame);
+                for (int i = 0; i < successors.length - 1; i++) {
+                    if (successor == successors[i]) {
+                        basicBlockIndex = successors[i];
+                        continue outer;
+                    }
+                }
+                if (successors.length == 0) {
+                    CompilerDirectives.transferToInterpreter();
+                    throw new IllegalStateException("a loop without exits must not terminate");
+                }
+                basicBlockIndex = successors[successors.length - 1];
+                continue outer;
+            }
+
+            LLVMBasicBlockNode bb = bodyNodes[basicBlockIndex];
+            bb.execute(frame);
+
+            // blocks that return or throw cannot reach the back edge and are never part of a loop
+            LLVMControlFlowNode controlFlowNode = bb.termInstruction;
+            int successorIndex = LLVMBlockDispatchUtil.executeTerminator(frame, controlFlowNode, exceptionValueSlot);
+            if (CompilerDirectives.inCompiledCode()) {
+                for (int i = 0; i < controlFlowNode.getSuccessorCount(); i++) {
+                    if (LLVMBlockDispatchUtil.takesSuccessor(bb, i, successorIndex)) {
+                        int successor = LLVMBlockDispatchUtil.getSuccessor(controlFlowNode, i);
+                        basicBlockIndex = LLVMBlockDispatchUtil.followEdge(frame, controlFlowNode, i, basicBlockIndex, successor, afterBlockNuller, beforeBlockNuller);
+                        continue outer;
+                    }
+                }
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+            }
+
+            LLVMBlockDispatchUtil.profileSuccessor(bb, successorIndex);
+            int successor = LLVMBlockDispatchUtil.getSuccessor(controlFlowNode, successorIndex);
+            basicBlockIndex = LLVMBlockDispatchUtil.followEdge(frame, controlFlowNode, successorIndex, basicBlockIndex, successor, afterBlockNuller, beforeBlockNuller);
+        } while (basicBlockIndex != headerId);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        CompilerAsserts.neverPartOfCompilation();
+        return String.format("loop dispatch (header: %d)", headerId);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.control;
+
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.FrameUtil;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.LoopNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
+
+/**
+ * A natural loop of a function. The loop is entered through its header block and executed by a
+ * Truffle {@link LoopNode}, so that long running loops can be compiled with on-stack replacement.
+ * When the loop is left, the index of the block outside of the loop that control continues with is
+ * stored in a frame slot and has to be one of the {@link #getSuccessors() successors}.
+ */
+public final class LLVMLoopNode extends LLVMStatementNode {
+
+    @Child private LoopNode loop;
+    @CompilationFinal(dimensions = 1) private final int[] successors;
+    private final FrameSlot successorSlot;
+
+    public LLVMLoopNode(LLVMLoopDispatchNode body, int[] successors, FrameSlot successorSlot) {
+        this.loop = Truffle.getRuntime().createLoopNode(body);
+        this.successors = successors;
+        this.successorSlot = successorSlot;
+    }
+
+    @Override
+    public void execute(VirtualFrame frame) {
+        loop.executeLoop(frame);
+    }
+
+    public int[] getSuccessors() {
+        return successors;
+    }
+
+    public int getSuccessorCount() {
+        return successors.length;
+    }
+
+    /**
+     * Returns the index of the block that control continues with after the loop was executed.
+     */
+    public int readSuccessor(VirtualFrame frame) {
+        return FrameUtil.getIntSafe(frame, successorSlot);
+    }
+}
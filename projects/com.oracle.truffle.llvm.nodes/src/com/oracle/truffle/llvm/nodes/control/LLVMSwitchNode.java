@@ -29,16 +29,21 @@
  */
 package com.oracle.truffle.llvm.nodes.control;
 
+import java.util.Arrays;
+
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.instrumentation.GenerateWrapper;
 import com.oracle.truffle.api.instrumentation.InstrumentableNode;
 import com.oracle.truffle.api.instrumentation.ProbeNode;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
 import com.oracle.truffle.api.profiles.ValueProfile;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 @GenerateWrapper
 public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements InstrumentableNode {
@@ -56,22 +61,22 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
         return new LLVMSwitchNodeWrapper(this, this, probe);
     }
 
-    @GenerateWrapper.OutgoingConverter
-    Object convertOutgoing(@SuppressWarnings("unused") Object object) {
-        return null;
-    }
-
     @Override
     public boolean isInstrumentable() {
         return getSourceLocation() != null;
     }
 
-    public abstract Object executeCondition(VirtualFrame frame);
+    /**
+     * Evaluates the condition and returns the index of the matching case. The index of the default
+     * case is {@code getSuccessors().length - 1}.
+     */
+    public abstract int executeCaseIndex(VirtualFrame frame);
 
     public abstract int[] getSuccessors();
 
-    public abstract LLVMExpressionNode getCase(int i);
-
+    /**
+     * Compares the condition with every case. Used if the cases are not all integer constants.
+     */
     public static class LLVMSwitchNodeImpl extends LLVMSwitchNode {
         @Children private final LLVMStatementNode[] phiNodes;
         @Child protected LLVMExpressionNode cond;
@@ -90,8 +95,17 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
         }
 
         @Override
-        public Object executeCondition(VirtualFrame frame) {
-            return conditionValueClass.profile(cond.executeGeneric(frame));
+        @ExplodeLoop
+        public int executeCaseIndex(VirtualFrame frame) {
+            Object condition = conditionValueClass.profile(cond.executeGeneric(frame));
+            for (int i = 0; i < cases.length; i++) {
+                Object caseValue = cases[i].executeGeneric(frame);
+                assert caseValue.getClass() == condition.getClass() : "must be the same type - otherwise equals might wrongly return false";
+                if (condition.equals(caseValue)) {
+                    return i;
+                }
+            }
+            return cases.length;
         }
 
         @Override
@@ -108,10 +122,192 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
         public LLVMStatementNode getPhiNode(int successorIndex) {
             return phiNodes[successorIndex];
         }
+    }
+
+    /**
+     * Switch over an integer condition with constant cases. The case values are known at parse
+     * time, so the case index is found with a table lookup if the values are dense, and with a
+     * binary search over the sorted values otherwise.
+     */
+    public abstract static class LLVMPrimitiveSwitchNode extends LLVMSwitchNode {
+        private static final int MIN_TABLE_SIZE = 16;
+        private static final int MAX_TABLE_SIZE = 1 << 16;
+        private static final int TABLE_DENSITY = 4;
+
+        @Children private final LLVMStatementNode[] phiNodes;
+        @Child protected LLVMExpressionNode cond;
+        @CompilationFinal(dimensions = 1) private final int[] successors;
+
+        private final int defaultIndex;
+        private final long min;
+        private final long max;
+        @CompilationFinal(dimensions = 1) private final int[] table;
+        @CompilationFinal(dimensions = 1) private final long[] keys;
+        @CompilationFinal(dimensions = 1) private final int[] keyCases;
+
+        protected LLVMPrimitiveSwitchNode(int[] successors, LLVMStatementNode[] phiNodes, LLVMExpressionNode cond, long[] caseValues, LLVMSourceLocation sourceSection) {
+            super(sourceSection);
+            assert successors.length == caseValues.length + 1 : "the last entry of the successors array must be the default case";
+            this.successors = successors;
+            this.phiNodes = phiNodes;
+            this.cond = cond;
+            this.defaultIndex = caseValues.length;
+
+            long lo = Long.MAX_VALUE;
+            long hi = Long.MIN_VALUE;
+            for (long value : caseValues) {
+                lo = Math.min(lo, value);
+                hi = Math.max(hi, value);
+            }
+            this.min = lo;
+            this.max = hi;
+
+            long range = hi - lo;
+            if (caseValues.length > 0 && range >= 0 && range < Math.min(MAX_TABLE_SIZE, Math.max(MIN_TABLE_SIZE, TABLE_DENSITY * (long) caseValues.length))) {
+                this.table = new int[(int) range + 1];
+                Arrays.fill(table, defaultIndex);
+                // iterate backwards so that the first of several equal cases wins
+                for (int i = caseValues.length - 1; i >= 0; i--) {
+                    table[(int) (caseValues[i] - lo)] = i;
+                }
+                this.keys = null;
+                this.keyCases = null;
+            } else {
+                Integer[] order = new Integer[caseValues.length];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                // stable, so that the first of several equal cases comes first
+                Arrays.sort(order, (a, b) -> Long.compare(caseValues[a], caseValues[b]));
+                long[] sortedKeys = new long[order.length];
+                int[] sortedCases = new int[order.length];
+                int count = 0;
+                for (Integer i : order) {
+                    if (count == 0 || sortedKeys[count - 1] != caseValues[i]) {
+                        sortedKeys[count] = caseValues[i];
+                        sortedCases[count] = i;
+                        count++;
+                    }
+                }
+                this.table = null;
+                this.keys = Arrays.copyOf(sortedKeys, count);
+                this.keyCases = Arrays.copyOf(sortedCases, count);
+            }
+        }
+
+        protected final int lookup(long value) {
+            if (table != null) {
+                if (value >= min && value <= max) {
+                    return table[(int) (value - min)];
+                }
+                return defaultIndex;
+            }
+            int lo = 0;
+            int hi = keys.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long key = keys[mid];
+                if (key < value) {
+                    lo = mid + 1;
+                } else if (key > value) {
+                    hi = mid - 1;
+                } else {
+                    return keyCases[mid];
+                }
+            }
+            return defaultIndex;
+        }
+
+        /**
+         * Handles conditions that were not produced as a primitive value, e.g., native pointers
+         * that were converted to integers.
+         */
+        protected final int lookupObject(Object value) {
+            if (LLVMNativePointer.isInstance(value)) {
+                return lookup(LLVMNativePointer.cast(value).asNative());
+            } else if (value instanceof Number) {
+                return lookup(((Number) value).longValue());
+            }
+            return defaultIndex;
+        }
+
+        @Override
+        public int[] getSuccessors() {
+            return successors;
+        }
+
+        @Override
+        public int getSuccessorCount() {
+            return successors.length;
+        }
+
+        @Override
+        public LLVMStatementNode getPhiNode(int successorIndex) {
+            return phiNodes[successorIndex];
+        }
+    }
+
+    public static final class LLVMI8SwitchNode extends LLVMPrimitiveSwitchNode {
+
+        public LLVMI8SwitchNode(int[] successors, LLVMStatementNode[] phiNodes, LLVMExpressionNode cond, long[] caseValues, LLVMSourceLocation sourceSection) {
+            super(successors, phiNodes, cond, caseValues, sourceSection);
+        }
+
+        @Override
+        public int executeCaseIndex(VirtualFrame frame) {
+            try {
+                return lookup(cond.executeI8(frame));
+            } catch (UnexpectedResultException e) {
+                return lookupObject(e.getResult());
+            }
+        }
+    }
+
+    public static final class LLVMI16SwitchNode extends LLVMPrimitiveSwitchNode {
+
+        public LLVMI16SwitchNode(int[] successors, LLVMStatementNode[] phiNodes, LLVMExpressionNode cond, long[] caseValues, LLVMSourceLocation sourceSection) {
+            super(successors, phiNodes, cond, caseValues, sourceSection);
+        }
+
+        @Override
+        public int executeCaseIndex(VirtualFrame frame) {
+            try {
+                return lookup(cond.executeI16(frame));
+            } catch (UnexpectedResultException e) {
+                return lookupObject(e.getResult());
+            }
+        }
+    }
+
+    public static final class LLVMI32SwitchNode extends LLVMPrimitiveSwitchNode {
+
+        public LLVMI32SwitchNode(int[] successors, LLVMStatementNode[] phiNodes, LLVMExpressionNode cond, long[] caseValues, LLVMSourceLocation sourceSection) {
+            super(successors, phiNodes, cond, caseValues, sourceSection);
+        }
+
+        @Override
+        public int executeCaseIndex(VirtualFrame frame) {
+            try {
+                return lookup(cond.executeI32(frame));
+            } catch (UnexpectedResultException e) {
+                return lookupObject(e.getResult());
+            }
+        }
+    }
+
+    public static final class LLVMI64SwitchNode extends LLVMPrimitiveSwitchNode {
+
+        public LLVMI64SwitchNode(int[] successors, LLVMStatementNode[] phiNodes, LLVMExpressionNode cond, long[] caseValues, LLVMSourceLocation sourceSection) {
+            super(successors, phiNodes, cond, caseValues, sourceSection);
+        }
 
         @Override
-        public LLVMExpressionNode getCase(int i) {
-            return cases[i];
+        public int executeCaseIndex(VirtualFrame frame) {
+            try {
+                return lookup(cond.executeI64(frame));
+            } catch (UnexpectedResultException e) {
+                return lookupObject(e.getResult());
+            }
         }
     }
 }
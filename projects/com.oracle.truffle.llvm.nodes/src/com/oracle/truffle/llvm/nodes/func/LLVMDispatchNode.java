@@ -42,9 +42,12 @@ import com.oracle.truffle.api.nodes.DirectCallNode;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
 import com.oracle.truffle.api.nodes.IndirectCallNode;
 import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioFlushNode;
+import com.oracle.truffle.llvm.nodes.func.LLVMDispatchNodeGen.LLVMGenericNativeCallCounterNodeGen;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor.Intrinsic;
+import com.oracle.truffle.llvm.runtime.LLVMNativeCallStatistics;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension.UnsupportedNativeTypeException;
 import com.oracle.truffle.llvm.runtime.interop.nfi.LLVMNativeConvertNode;
@@ -58,6 +61,7 @@ public abstract class LLVMDispatchNode extends LLVMNode {
 
     private final FunctionType type;
     @CompilationFinal private String signature;
+    @Child private LLVMAMD64StdioFlushNode flushStdio = LLVMAMD64StdioFlushNode.create();
 
     protected LLVMDispatchNode(FunctionType type) {
         this.type = type;
@@ -69,7 +73,8 @@ public abstract class LLVMDispatchNode extends LLVMNode {
             try {
                 LLVMContext context = getContextReference().get();
                 NFIContextExtension nfiContextExtension = context.getContextExtension(NFIContextExtension.class);
-                this.signature = nfiContextExtension.getNativeSignature(type, LLVMCallNode.USER_ARGUMENT_OFFSET);
+                // interned, so that function descriptors can compare their bound signatures by identity
+                this.signature = nfiContextExtension.getNativeSignature(type, LLVMCallNode.USER_ARGUMENT_OFFSET).intern();
             } catch (UnsupportedNativeTypeException ex) {
                 throw new AssertionError(ex);
             }
@@ -145,20 +150,32 @@ public abstract class LLVMDispatchNode extends LLVMNode {
                     @Cached("createNativeCallNode()") Node nativeCall,
                     @Cached("bindSymbol(cachedDescriptor)") TruffleObject cachedBoundFunction,
                     @Cached("getContextReference()") ContextReference<LLVMContext> context,
-                    @Cached("nativeCallStatisticsEnabled(context)") boolean statistics) {
+                    @Cached("createNativeCallCounter(context, cachedDescriptor)") LLVMNativeCallStatistics.Counter counter) {
 
         Object[] nativeArgs = prepareNativeArguments(arguments, toNative);
         Object returnValue;
         try (StackPointer save = ((StackPointer) arguments[0]).newFrame()) {
-            returnValue = LLVMNativeCallUtils.callNativeFunction(statistics, context, nativeCall, cachedBoundFunction, nativeArgs, cachedDescriptor);
+            flushStdio.execute();
+            returnValue = LLVMNativeCallUtils.callNativeFunction(counter, nativeCall, cachedBoundFunction, nativeArgs);
         }
         return fromNative.executeConvert(returnValue);
     }
 
+    protected LLVMNativeCallStatistics.Counter createNativeCallCounter(ContextReference<LLVMContext> context, LLVMFunctionDescriptor descriptor) {
+        LLVMNativeCallStatistics statistics = nativeCallStatistics(context);
+        return statistics == null ? null : statistics.createCounter(descriptor);
+    }
+
     protected TruffleObject bindSymbol(LLVMFunctionDescriptor descriptor) {
         CompilerAsserts.neverPartOfCompilation();
         assert descriptor.getNativeFunction() != null : descriptor.getName();
-        return LLVMNativeCallUtils.bindNativeSymbol(LLVMNativeCallUtils.getBindNode(), descriptor.getNativeFunction(), getSignature());
+        String nativeSignature = getSignature();
+        TruffleObject boundSymbol = descriptor.getBoundNativeFunction(nativeSignature);
+        if (boundSymbol == null) {
+            boundSymbol = LLVMNativeCallUtils.bindNativeSymbol(LLVMNativeCallUtils.getBindNode(), descriptor.getNativeFunction(), nativeSignature);
+            descriptor.setBoundNativeFunction(nativeSignature, boundSymbol);
+        }
+        return boundSymbol;
     }
 
     @Specialization(replaces = "doCachedNative", guards = "descriptor.isNativeFunction()")
@@ -168,17 +185,50 @@ public abstract class LLVMDispatchNode extends LLVMNode {
                     @Cached("createNativeCallNode()") Node nativeCall,
                     @Cached("getBindNode()") Node bindNode,
                     @Cached("getContextReference()") ContextReference<LLVMContext> context,
-                    @Cached("nativeCallStatisticsEnabled(context)") boolean statistics) {
+                    @Cached("nativeCallStatistics(context)") LLVMNativeCallStatistics statistics,
+                    @Cached("create()") LLVMGenericNativeCallCounterNode genericCounter) {
 
         Object[] nativeArgs = prepareNativeArguments(arguments, toNative);
-        TruffleObject boundSymbol = LLVMNativeCallUtils.bindNativeSymbol(bindNode, descriptor.getNativeFunction(), getSignature());
+        String nativeSignature = getSignature();
+        TruffleObject boundSymbol = descriptor.getBoundNativeFunction(nativeSignature);
+        if (boundSymbol == null) {
+            boundSymbol = LLVMNativeCallUtils.bindNativeSymbol(bindNode, descriptor.getNativeFunction(), nativeSignature);
+            descriptor.setBoundNativeFunction(nativeSignature, boundSymbol);
+        }
         Object returnValue;
         try (StackPointer save = ((StackPointer) arguments[0]).newFrame()) {
-            returnValue = LLVMNativeCallUtils.callNativeFunction(statistics, context, nativeCall, boundSymbol, nativeArgs, descriptor);
+            LLVMNativeCallStatistics.Counter counter = statistics == null ? null : genericCounter.execute(statistics, descriptor);
+            flushStdio.execute();
+            returnValue = LLVMNativeCallUtils.callNativeFunction(counter, nativeCall, boundSymbol, nativeArgs);
         }
         return fromNative.executeConvert(returnValue);
     }
 
+    /**
+     * Caches the generic counters of the functions that a megamorphic native call site calls, so
+     * that most calls do not have to look them up in the statistics.
+     */
+    abstract static class LLVMGenericNativeCallCounterNode extends LLVMNode {
+
+        abstract LLVMNativeCallStatistics.Counter execute(LLVMNativeCallStatistics statistics, LLVMFunctionDescriptor descriptor);
+
+        @Specialization(limit = "INLINE_CACHE_SIZE", guards = "descriptor == cachedDescriptor")
+        protected LLVMNativeCallStatistics.Counter doCached(@SuppressWarnings("unused") LLVMNativeCallStatistics statistics, @SuppressWarnings("unused") LLVMFunctionDescriptor descriptor,
+                        @Cached("descriptor") @SuppressWarnings("unused") LLVMFunctionDescriptor cachedDescriptor,
+                        @Cached("statistics.getGenericCounter(cachedDescriptor)") LLVMNativeCallStatistics.Counter counter) {
+            return counter;
+        }
+
+        @Specialization(replaces = "doCached")
+        protected LLVMNativeCallStatistics.Counter doLookup(LLVMNativeCallStatistics statistics, LLVMFunctionDescriptor descriptor) {
+            return statistics.getGenericCounter(descriptor);
+        }
+
+        public static LLVMGenericNativeCallCounterNode create() {
+            return LLVMGenericNativeCallCounterNodeGen.create();
+        }
+    }
+
     @ExplodeLoop
     private static Object[] prepareNativeArguments(Object[] arguments, LLVMNativeConvertNode[] toNative) {
         Object[] nativeArgs = new Object[arguments.length - LLVMCallNode.USER_ARGUMENT_OFFSET];
@@ -76,10 +76,13 @@ public class LLVMGlobalRootNode extends RootNode {
     public Object execute(VirtualFrame frame) {
         try (StackPointer basePointer = getContext().getThreadingStack().getStack().newFrame()) {
             try {
+                getContext().getPThreadContext().enterMainThread(Thread.currentThread());
                 TruffleObject appPath = (TruffleObject) ctxRef.get().getEnv().asGuestValue(applicationPath.getBytes());
                 LLVMManagedPointer applicationPathObj = LLVMManagedPointer.create(LLVMTypedForeignObject.createUnknown(appPath));
                 Object[] realArgs = new Object[]{basePointer, mainFunctionType, applicationPathObj};
                 Object result = startFunction.call(realArgs);
+                // another thread may have called exit while main was returning
+                getContext().getPThreadContext().checkPendingExit();
                 getContext().awaitThreadTermination();
                 return (int) result;
             } catch (LLVMExitException e) {
@@ -95,6 +98,7 @@ public class LLVMGlobalRootNode extends RootNode {
             } finally {
                 // if not done already, we want at least call a shutdown command
                 getContext().shutdownThreads();
+                getContext().getPThreadContext().leaveMainThread();
             }
         }
     }
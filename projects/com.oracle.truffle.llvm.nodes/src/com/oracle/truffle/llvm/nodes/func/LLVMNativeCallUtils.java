@@ -34,14 +34,12 @@ import java.util.StringJoiner;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
-import com.oracle.truffle.api.TruffleLanguage.ContextReference;
 import com.oracle.truffle.api.interop.ForeignAccess;
 import com.oracle.truffle.api.interop.InteropException;
 import com.oracle.truffle.api.interop.Message;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.nodes.Node;
-import com.oracle.truffle.llvm.runtime.LLVMContext;
-import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
+import com.oracle.truffle.llvm.runtime.LLVMNativeCallStatistics;
 
 public final class LLVMNativeCallUtils {
 
@@ -59,13 +57,19 @@ public final class LLVMNativeCallUtils {
         }
     }
 
-    static Object callNativeFunction(boolean enabled, ContextReference<LLVMContext> context, Node nativeCall, TruffleObject function, Object[] nativeArgs, LLVMFunctionDescriptor descriptor) {
-        CompilerAsserts.partialEvaluationConstant(enabled);
-        if (enabled) {
-            if (descriptor != null) {
-                traceNativeCall(context.get(), descriptor);
-            }
+    static Object callNativeFunction(LLVMNativeCallStatistics.Counter counter, Node nativeCall, TruffleObject function, Object[] nativeArgs) {
+        if (counter == null) {
+            return callNativeFunction(nativeCall, function, nativeArgs);
         }
+        long start = counter.enter();
+        Object result = callNativeFunction(nativeCall, function, nativeArgs);
+        if (start != 0) {
+            counter.exit(start);
+        }
+        return result;
+    }
+
+    private static Object callNativeFunction(Node nativeCall, TruffleObject function, Object[] nativeArgs) {
         try {
             return ForeignAccess.sendExecute(nativeCall, function, nativeArgs);
         } catch (InteropException e) {
@@ -83,11 +87,6 @@ public final class LLVMNativeCallUtils {
         return joiner.toString();
     }
 
-    @TruffleBoundary
-    private static void traceNativeCall(LLVMContext context, LLVMFunctionDescriptor descriptor) {
-        context.registerNativeCall(descriptor);
-    }
-
     public static TruffleObject bindNativeSymbol(TruffleObject symbol, String signature) {
         CompilerAsserts.neverPartOfCompilation();
         return bindNativeSymbol(getBindNode(), symbol, signature);
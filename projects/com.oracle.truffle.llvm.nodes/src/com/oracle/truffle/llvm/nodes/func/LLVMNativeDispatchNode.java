@@ -32,7 +32,6 @@ package com.oracle.truffle.llvm.nodes.func;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
-import com.oracle.truffle.api.TruffleLanguage.ContextReference;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.interop.ArityException;
@@ -43,6 +42,7 @@ import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.interop.UnsupportedTypeException;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
 import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioFlushNode;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension.UnsupportedNativeTypeException;
@@ -57,6 +57,7 @@ public abstract class LLVMNativeDispatchNode extends LLVMNode {
     private final FunctionType type;
     @Child private Node identityExecuteNode = Message.createExecute(1).createNode();
     @Child private Node nativeCallNode;
+    @Child private LLVMAMD64StdioFlushNode flushStdio = LLVMAMD64StdioFlushNode.create();
 
     protected LLVMNativeDispatchNode(FunctionType type) {
         this.type = type;
@@ -114,32 +115,30 @@ public abstract class LLVMNativeDispatchNode extends LLVMNode {
     @Specialization(guards = "function.asNative() == cachedFunction.asNative()")
     @SuppressWarnings("unused")
     protected Object doCached(LLVMNativePointer function, Object[] arguments,
-                    @Cached("getContextReference()") ContextReference<LLVMContext> context,
                     @Cached("function") LLVMNativePointer cachedFunction,
                     @Cached("identityFunction()") TruffleObject identity,
                     @Cached("dispatchIdentity(identity, cachedFunction.asNative())") TruffleObject nativeFunctionHandle,
                     @Cached("createToNativeNodes()") LLVMNativeConvertNode[] toNative,
-                    @Cached("createFromNativeNode()") LLVMNativeConvertNode fromNative,
-                    @Cached("nativeCallStatisticsEnabled(context)") boolean statistics) {
+                    @Cached("createFromNativeNode()") LLVMNativeConvertNode fromNative) {
         Object[] nativeArgs = prepareNativeArguments(arguments, toNative);
         Object returnValue;
         try (StackPointer save = ((StackPointer) arguments[0]).newFrame()) {
-            returnValue = LLVMNativeCallUtils.callNativeFunction(statistics, context, nativeCallNode, nativeFunctionHandle, nativeArgs, null);
+            flushStdio.execute();
+            returnValue = LLVMNativeCallUtils.callNativeFunction(null, nativeCallNode, nativeFunctionHandle, nativeArgs);
         }
         return fromNative.executeConvert(returnValue);
     }
 
     @Specialization
     protected Object doGeneric(LLVMNativePointer function, Object[] arguments,
-                    @Cached("getContextReference()") ContextReference<LLVMContext> context,
                     @Cached("identityFunction()") TruffleObject identity,
                     @Cached("createToNativeNodes()") LLVMNativeConvertNode[] toNative,
-                    @Cached("createFromNativeNode()") LLVMNativeConvertNode fromNative,
-                    @Cached("nativeCallStatisticsEnabled(context)") boolean statistics) {
+                    @Cached("createFromNativeNode()") LLVMNativeConvertNode fromNative) {
         Object[] nativeArgs = prepareNativeArguments(arguments, toNative);
         Object returnValue;
         try (StackPointer save = ((StackPointer) arguments[0]).newFrame()) {
-            returnValue = LLVMNativeCallUtils.callNativeFunction(statistics, context, nativeCallNode, dispatchIdentity(identity, function.asNative()), nativeArgs, null);
+            flushStdio.execute();
+            returnValue = LLVMNativeCallUtils.callNativeFunction(null, nativeCallNode, dispatchIdentity(identity, function.asNative()), nativeArgs);
         }
         return fromNative.executeConvert(returnValue);
     }
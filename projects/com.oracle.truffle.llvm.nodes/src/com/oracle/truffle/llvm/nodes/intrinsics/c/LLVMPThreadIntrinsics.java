@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.intrinsics.c;
+
+import com.oracle.truffle.api.TruffleLanguage.ContextReference;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.NodeChild;
+import com.oracle.truffle.api.dsl.NodeChildren;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.llvm.nodes.intrinsics.llvm.LLVMIntrinsic;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMToNativeNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+import com.oracle.truffle.llvm.runtime.pthread.LLVMPThreadContext;
+import com.oracle.truffle.llvm.runtime.pthread.LLVMPThreadContext.LLVMPThread;
+
+/**
+ * Implements the thread and synchronization functions from pthread.h. The attribute objects are
+ * handled in C (pthreads.c), the rest is delegated to {@link LLVMPThreadContext}.
+ */
+public abstract class LLVMPThreadIntrinsics {
+
+    /**
+     * Layout of {@code pthread_attr_t} as written by pthreads.c: the detach state is stored in
+     * the first int.
+     */
+    private static final long ATTR_DETACHSTATE_OFFSET = 0;
+
+    /**
+     * Layout of {@code pthread_mutexattr_t} as written by pthreads.c: the mutex type is stored in
+     * the lowest byte.
+     */
+    private static final int MUTEXATTR_TYPE_MASK = 0xff;
+
+    private static final long TIMESPEC_NSEC_OFFSET = 8;
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class),
+                    @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadCreate extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doCreate(Object thread, Object attr, Object startRoutine, Object arg,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode threadToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode attrToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode startRoutineToNative) {
+            LLVMNativePointer attrPtr = attrToNative.executeWithTarget(attr);
+            boolean detached = !attrPtr.isNull() && memory.getI32(attrPtr.asNative() + ATTR_DETACHSTATE_OFFSET) == LLVMPThreadContext.PTHREAD_CREATE_DETACHED;
+            long id = context.get().getPThreadContext().create(startRoutineToNative.executeWithTarget(startRoutine), arg, detached);
+            if (id < 0) {
+                return (int) -id;
+            }
+            memory.putI64(threadToNative.executeWithTarget(thread).asNative(), id);
+            return 0;
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadJoin extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doJoin(long thread, Object valuePtr,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode valuePtrToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode resultToNative) {
+            LLVMPThreadContext pthreads = context.get().getPThreadContext();
+            LLVMPThread pthread = pthreads.getThread(thread);
+            if (pthread == null) {
+                return LLVMPThreadContext.ESRCH;
+            }
+            int result = pthreads.join(pthread);
+            if (result == 0) {
+                LLVMNativePointer ptr = valuePtrToNative.executeWithTarget(valuePtr);
+                if (!ptr.isNull()) {
+                    memory.putPointer(ptr.asNative(), resultToNative.executeWithTarget(pthread.getResult()));
+                }
+            }
+            return result;
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadDetach extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doDetach(long thread,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            return context.get().getPThreadContext().detach(thread);
+        }
+    }
+
+    public abstract static class LLVMPThreadSelf extends LLVMIntrinsic {
+
+        @Specialization
+        protected long doSelf(@Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            return context.get().getPThreadContext().self();
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadEqual extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doEqual(long thread1, long thread2) {
+            return thread1 == thread2 ? 1 : 0;
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadExit extends LLVMIntrinsic {
+
+        @Specialization
+        protected Object doExit(Object value,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            throw context.get().getPThreadContext().exit(value);
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadMutexInit extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doInit(Object mutex, Object attr,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode mutexToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode attrToNative) {
+            LLVMNativePointer attrPtr = attrToNative.executeWithTarget(attr);
+            int kind = attrPtr.isNull() ? LLVMPThreadContext.PTHREAD_MUTEX_NORMAL : memory.getI32(attrPtr.asNative()) & MUTEXATTR_TYPE_MASK;
+            return context.get().getPThreadContext().mutexInit(mutexToNative.executeWithTarget(mutex).asNative(), kind);
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadMutexDestroy extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doDestroy(Object mutex,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().mutexDestroy(toNative.executeWithTarget(mutex).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadMutexLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doLock(Object mutex,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().mutexLock(toNative.executeWithTarget(mutex).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadMutexTryLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doTryLock(Object mutex,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().mutexTryLock(toNative.executeWithTarget(mutex).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadMutexUnlock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doUnlock(Object mutex,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().mutexUnlock(toNative.executeWithTarget(mutex).asNative());
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadCondInit extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doInit(Object cond, @SuppressWarnings("unused") Object attr,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().condInit(toNative.executeWithTarget(cond).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadCondDestroy extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doDestroy(Object cond,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().condDestroy(toNative.executeWithTarget(cond).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadCondSignal extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doSignal(Object cond,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().condSignal(toNative.executeWithTarget(cond).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadCondBroadcast extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doBroadcast(Object cond,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().condBroadcast(toNative.executeWithTarget(cond).asNative());
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadCondWait extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doWait(Object cond, Object mutex,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode condToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode mutexToNative) {
+            return context.get().getPThreadContext().condWait(condToNative.executeWithTarget(cond).asNative(), mutexToNative.executeWithTarget(mutex).asNative(), -1);
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadCondTimedWait extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doWait(Object cond, Object mutex, Object abstime,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode condToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode mutexToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode abstimeToNative) {
+            long timespec = abstimeToNative.executeWithTarget(abstime).asNative();
+            long seconds = memory.getI64(timespec);
+            long nanoseconds = memory.getI64(timespec + TIMESPEC_NSEC_OFFSET);
+            if (seconds < 0 || nanoseconds < 0 || nanoseconds >= 1000000000L) {
+                return LLVMPThreadContext.EINVAL;
+            }
+            long deadline = seconds * 1000 + nanoseconds / 1000000;
+            return context.get().getPThreadContext().condWait(condToNative.executeWithTarget(cond).asNative(), mutexToNative.executeWithTarget(mutex).asNative(), deadline);
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadRWLockInit extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doInit(Object rwlock, @SuppressWarnings("unused") Object attr,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockInit(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockDestroy extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doDestroy(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockDestroy(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockReadLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doLock(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockReadLock(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockTryReadLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doTryLock(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockTryReadLock(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockWriteLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doLock(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockWriteLock(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockTryWriteLock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doTryLock(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockTryWriteLock(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadRWLockUnlock extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doUnlock(Object rwlock,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+            return context.get().getPThreadContext().rwlockUnlock(toNative.executeWithTarget(rwlock).asNative());
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadKeyCreate extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doCreate(Object key, Object destructor,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode keyToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode destructorToNative) {
+            int result = context.get().getPThreadContext().keyCreate(destructorToNative.executeWithTarget(destructor));
+            if (result < 0) {
+                return -result;
+            }
+            memory.putI32(keyToNative.executeWithTarget(key).asNative(), result);
+            return 0;
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadKeyDelete extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doDelete(int key,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            return context.get().getPThreadContext().keyDelete(key);
+        }
+    }
+
+    @NodeChild(type = LLVMExpressionNode.class)
+    public abstract static class LLVMPThreadGetSpecific extends LLVMIntrinsic {
+
+        @Specialization
+        protected Object doGet(int key,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            return context.get().getPThreadContext().getSpecific(key);
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadSetSpecific extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doSet(int key, Object value,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            return context.get().getPThreadContext().setSpecific(key, value);
+        }
+    }
+
+    @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
+    public abstract static class LLVMPThreadOnce extends LLVMIntrinsic {
+
+        @Specialization
+        protected int doOnce(Object control, Object initRoutine,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode controlToNative,
+                        @Cached("createToNativeWithTarget()") LLVMToNativeNode initRoutineToNative) {
+            LLVMNativePointer controlPtr = controlToNative.executeWithTarget(control);
+            // fast path: the init routine has already completed
+            if (memory.getI32(controlPtr.asNative()) != LLVMPThreadContext.ONCE_DONE) {
+                context.get().getPThreadContext().once(controlPtr, initRoutineToNative.executeWithTarget(initRoutine));
+            }
+            return 0;
+        }
+    }
+}
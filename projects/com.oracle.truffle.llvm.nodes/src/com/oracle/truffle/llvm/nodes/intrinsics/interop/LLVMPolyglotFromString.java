@@ -47,9 +47,11 @@ import com.oracle.truffle.llvm.nodes.memory.load.LLVMI16LoadNodeGen;
 import com.oracle.truffle.llvm.nodes.memory.load.LLVMI32LoadNodeGen;
 import com.oracle.truffle.llvm.nodes.memory.load.LLVMI64LoadNodeGen;
 import com.oracle.truffle.llvm.nodes.memory.load.LLVMI8LoadNodeGen;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMLoadNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -87,6 +89,14 @@ public abstract class LLVMPolyglotFromString extends LLVMIntrinsic {
         @Child private LLVMLoadNode load = LLVMI8LoadNodeGen.create(null);
         @Child private LLVMIncrementPointerNode inc = LLVMIncrementPointerNodeGen.create();
 
+        @Specialization(guards = "!memory.isDerefMemory(string)")
+        ByteBuffer doNative(@SuppressWarnings("unused") LLVMCharset charset, LLVMNativePointer string, long len,
+                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+            byte[] bytes = new byte[(int) len];
+            memory.copyToArray(string.asNative(), bytes, 0, bytes.length);
+            return ByteBuffer.wrap(bytes);
+        }
+
         @Specialization
         ByteBuffer doRead(@SuppressWarnings("unused") LLVMCharset charset, Object string, long len) {
             ByteBuffer buffer = ByteBuffer.allocate((int) len);
@@ -111,6 +121,15 @@ public abstract class LLVMPolyglotFromString extends LLVMIntrinsic {
 
         @Child private LLVMIncrementPointerNode inc = LLVMIncrementPointerNodeGen.create();
 
+        @Specialization(guards = "!memory.isDerefMemory(string)")
+        ByteBuffer doNative(LLVMCharset charset, LLVMNativePointer string,
+                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+            int length = (int) memory.getZeroTerminatedLength(string.asNative(), charset.zeroTerminatorLen);
+            byte[] bytes = new byte[length];
+            memory.copyToArray(string.asNative(), bytes, 0, length);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+        }
+
         @Specialization(limit = "4", guards = "charset.zeroTerminatorLen == increment")
         ByteBuffer doRead(@SuppressWarnings("unused") LLVMCharset charset, Object string,
                         @Cached("charset.zeroTerminatorLen") int increment,
@@ -29,6 +29,8 @@
  */
 package com.oracle.truffle.llvm.nodes.intrinsics.interop;
 
+import java.nio.charset.StandardCharsets;
+
 import com.oracle.truffle.llvm.runtime.interop.LLVMAsForeignNode;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.dsl.Cached;
@@ -40,13 +42,16 @@ import com.oracle.truffle.api.interop.Message;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.interop.UnsupportedMessageException;
 import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.llvm.nodes.intrinsics.interop.LLVMReadStringNodeGen.ForeignReadStringNodeGen;
 import com.oracle.truffle.llvm.nodes.memory.LLVMGetElementPtrNode.LLVMIncrementPointerNode;
 import com.oracle.truffle.llvm.nodes.memory.LLVMGetElementPtrNodeGen.LLVMIncrementPointerNodeGen;
 import com.oracle.truffle.llvm.nodes.memory.load.LLVMI8LoadNodeGen;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMLoadNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMReadStringNode extends LLVMNode {
 
@@ -121,7 +126,20 @@ public abstract class LLVMReadStringNode extends LLVMNode {
         @Child private LLVMIncrementPointerNode inc = LLVMIncrementPointerNodeGen.create();
         @Child private LLVMLoadNode read = LLVMI8LoadNodeGen.create(null);
 
+        private final ConditionProfile nativeProfile = ConditionProfile.createBinaryProfile();
+
         public String readPointer(Object address) {
+            if (nativeProfile.profile(LLVMNativePointer.isInstance(address))) {
+                LLVMMemory memory = getLLVMMemory();
+                long nativeAddress = LLVMNativePointer.cast(address).asNative();
+                if (!memory.isDerefMemory(nativeAddress)) {
+                    int length = (int) memory.getZeroTerminatedLength(nativeAddress, Byte.BYTES);
+                    byte[] bytes = new byte[length];
+                    memory.copyToArray(nativeAddress, bytes, 0, length);
+                    return toString(bytes);
+                }
+            }
+
             Object ptr = address;
             int length = 0;
             while ((byte) read.executeWithTarget(ptr) != 0) {
@@ -145,6 +163,11 @@ public abstract class LLVMReadStringNode extends LLVMNode {
             return new String(string);
         }
 
+        @TruffleBoundary
+        private static String toString(byte[] string) {
+            return new String(string, StandardCharsets.ISO_8859_1);
+        }
+
         public static PointerReadStringNode create() {
             return new PointerReadStringNode();
         }
@@ -126,7 +126,7 @@ public abstract class LLVMTypeIDNode extends LLVMExpressionNode {
         }
 
         protected Assumption getSingleContextAssumption() {
-            return LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION;
+            return LLVMLanguage.getLanguage().getSingleContextAssumption();
         }
 
         private LLVMContext getContext() {
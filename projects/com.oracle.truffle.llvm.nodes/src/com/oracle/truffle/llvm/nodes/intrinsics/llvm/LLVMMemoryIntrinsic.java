@@ -34,21 +34,25 @@ import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.llvm.runtime.memory.LLVMHeapAllocator;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemSetNode;
-import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
+    protected LLVMHeapAllocator getHeapAllocator() {
+        return getContextReference().get().getHeapAllocator();
+    }
+
     @NodeChildren({@NodeChild(type = LLVMExpressionNode.class)})
     public abstract static class LLVMMalloc extends LLVMMemoryIntrinsic {
 
         @Specialization
         protected LLVMNativePointer doVoid(int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
-                return memory.allocateMemory(size);
+                return LLVMNativePointer.create(allocator.allocate(size));
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -57,9 +61,9 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected LLVMNativePointer doVoid(long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
-                return memory.allocateMemory(size);
+                return LLVMNativePointer.create(allocator.allocate(size));
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -77,10 +81,10 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected LLVMNativePointer doVoid(int n, int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
                 long length = Math.multiplyExact(n, size);
-                LLVMNativePointer address = memory.allocateMemory(length);
+                LLVMNativePointer address = LLVMNativePointer.create(allocator.allocate(length));
                 memSet.executeWithTarget(address, (byte) 0, length);
                 return address;
             } catch (OutOfMemoryError | ArithmeticException e) {
@@ -91,10 +95,10 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected LLVMNativePointer doVoid(long n, long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
                 long length = Math.multiplyExact(n, size);
-                LLVMNativePointer address = memory.allocateMemory(length);
+                LLVMNativePointer address = LLVMNativePointer.create(allocator.allocate(length));
                 memSet.executeWithTarget(address, (byte) 0, length);
                 return address;
             } catch (OutOfMemoryError | ArithmeticException e) {
@@ -111,9 +115,9 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected LLVMNativePointer doVoid(LLVMNativePointer addr, int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
-                return memory.reallocateMemory(addr, size);
+                return LLVMNativePointer.create(allocator.reallocate(addr.asNative(), size));
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -122,9 +126,9 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected LLVMNativePointer doVoid(LLVMNativePointer addr, long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
             try {
-                return memory.reallocateMemory(addr, size);
+                return LLVMNativePointer.create(allocator.reallocate(addr.asNative(), size));
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -137,8 +141,8 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected Object doVoid(LLVMNativePointer address,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
-            memory.free(address);
+                        @Cached("getHeapAllocator()") LLVMHeapAllocator allocator) {
+            allocator.free(address.asNative());
             return null;
         }
     }
@@ -33,20 +33,11 @@ import java.util.List;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.CompilerAsserts;
-import com.oracle.truffle.api.TruffleException;
-import com.oracle.truffle.api.TruffleStackTraceElement;
 import com.oracle.truffle.api.dsl.Specialization;
-import com.oracle.truffle.api.nodes.Node;
-import com.oracle.truffle.api.nodes.NodeUtil;
-import com.oracle.truffle.api.source.SourceSection;
-import com.oracle.truffle.llvm.nodes.base.LLVMBasicBlockNode;
-import com.oracle.truffle.llvm.nodes.func.LLVMFunctionStartNode;
+import com.oracle.truffle.llvm.nodes.base.LLVMStackTraceUtil;
 import com.oracle.truffle.llvm.nodes.intrinsics.llvm.LLVMIntrinsic;
-import com.oracle.truffle.llvm.nodes.intrinsics.llvm.LLVMIntrinsicRootNode.LLVMIntrinsicExpressionNode;
 import com.oracle.truffle.llvm.runtime.SulongStackTrace;
 import com.oracle.truffle.llvm.runtime.SulongStackTrace.Element;
-import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
-import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
 
 public abstract class LLVMPrintStackTrace extends LLVMIntrinsic {
     @TruffleBoundary
@@ -67,79 +58,6 @@ public abstract class LLVMPrintStackTrace extends LLVMIntrinsic {
     }
 
     private SulongStackTrace getStackTrace(String message) {
-        Throwable t = new CThrowable(this, message);
-        TruffleStackTraceElement.fillIn(t);
-        List<TruffleStackTraceElement> ctrace = TruffleStackTraceElement.getStackTrace(t);
-
-        SulongStackTrace trace = new SulongStackTrace(message);
-        for (int i = 0; i < ctrace.size(); i++) {
-            TruffleStackTraceElement element = ctrace.get(i);
-            // ignore this call
-            if (element.getLocation() == this) {
-                assert i == 0;
-                continue;
-            }
-            fillStackTrace(trace, element.getLocation());
-        }
-        return trace;
-    }
-
-    private static void fillStackTrace(SulongStackTrace stackTrace, Node node) {
-        LLVMBasicBlockNode block = NodeUtil.findParent(node, LLVMBasicBlockNode.class);
-        LLVMFunctionStartNode f = NodeUtil.findParent(node, LLVMFunctionStartNode.class);
-
-        if (block == null || f == null) {
-            LLVMIntrinsicExpressionNode intrinsic = NodeUtil.findParent(node, LLVMIntrinsicExpressionNode.class);
-            if (intrinsic != null) {
-                stackTrace.addStackTraceElement(intrinsic.toString(), null, null);
-            }
-            return;
-        }
-
-        LLVMSourceLocation location = null;
-        if (node instanceof LLVMNode && ((LLVMNode) node).getSourceLocation() != null) {
-            location = ((LLVMNode) node).getSourceLocation();
-        }
-        if (location == null) {
-            location = block.getSourceLocation();
-        }
-        if (location != null) {
-            stackTrace.addStackTraceElement(f.getOriginalName(), location, f.getBcName(), f.getBcSource().getName(), blockName(block));
-            return;
-        }
-
-        SourceSection s = node.getSourceSection();
-        if (s == null) {
-            s = f.getSourceSection();
-        }
-
-        if (s == null) {
-            stackTrace.addStackTraceElement(f.getBcName(), f.getBcSource().getName(), blockName(block));
-        } else {
-            location = LLVMSourceLocation.createUnknown(s);
-            stackTrace.addStackTraceElement(f.getOriginalName(), location, f.getBcName(), f.getBcSource().getName(), blockName(block));
-        }
-    }
-
-    private static String blockName(LLVMBasicBlockNode block) {
-        CompilerAsserts.neverPartOfCompilation();
-        int blockId = block.getBlockId();
-        String blockName = block.getBlockName();
-        return String.format("id: %d name: %s", blockId, blockName == null ? "N/A" : blockName);
-    }
-
-    @SuppressWarnings("serial")
-    private static class CThrowable extends Throwable implements TruffleException {
-        private Node node;
-
-        CThrowable(Node node, String message) {
-            super(message);
-            this.node = node;
-        }
-
-        @Override
-        public Node getLocation() {
-            return node;
-        }
+        return LLVMStackTraceUtil.getStackTrace(this, message, true);
     }
 }
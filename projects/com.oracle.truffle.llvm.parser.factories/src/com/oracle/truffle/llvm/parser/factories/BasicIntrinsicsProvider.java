@@ -79,6 +79,35 @@ import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMCTypeIntrinsicsFactory.LLV
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMExitNodeGen;
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMMemIntrinsicFactory.LLVMLibcMemcpyNodeGen;
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMMemIntrinsicFactory.LLVMLibcMemsetNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondBroadcastNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondDestroyNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondInitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondSignalNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondTimedWaitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCondWaitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadCreateNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadDetachNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadEqualNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadExitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadGetSpecificNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadJoinNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadKeyCreateNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadKeyDeleteNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadMutexDestroyNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadMutexInitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadMutexLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadMutexTryLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadMutexUnlockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadOnceNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockDestroyNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockInitNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockReadLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockTryReadLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockTryWriteLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockUnlockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadRWLockWriteLockNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadSelfNodeGen;
+import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMPThreadIntrinsicsFactory.LLVMPThreadSetSpecificNodeGen;
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMSignalNodeGen;
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMSyscall;
 import com.oracle.truffle.llvm.nodes.intrinsics.c.LLVMTruffleReadBytesNodeGen;
@@ -332,6 +361,7 @@ public class BasicIntrinsicsProvider implements LLVMIntrinsicProvider, ContextEx
         registerComplexNumberIntrinsics();
         registerCTypeIntrinsics();
         registerManagedAllocationIntrinsics();
+        registerPThreadIntrinsics();
         return this;
     }
 
@@ -1271,6 +1301,212 @@ public class BasicIntrinsicsProvider implements LLVMIntrinsicProvider, ContextEx
         });
     }
 
+    protected void registerPThreadIntrinsics() {
+        factories.put("@pthread_create", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCreateNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2), LLVMArgNodeGen.create(3), LLVMArgNodeGen.create(4));
+            }
+        });
+        factories.put("@pthread_join", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadJoinNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_detach", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadDetachNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_self", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadSelfNodeGen.create();
+            }
+        });
+        factories.put("@pthread_equal", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadEqualNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_exit", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadExitNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_mutex_init", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadMutexInitNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_mutex_destroy", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadMutexDestroyNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_mutex_lock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadMutexLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_mutex_trylock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadMutexTryLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_mutex_unlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadMutexUnlockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_cond_init", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondInitNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_cond_destroy", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondDestroyNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_cond_signal", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondSignalNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_cond_broadcast", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondBroadcastNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_cond_wait", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondWaitNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_cond_timedwait", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadCondTimedWaitNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2), LLVMArgNodeGen.create(3));
+            }
+        });
+        factories.put("@pthread_rwlock_init", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockInitNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_rwlock_destroy", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockDestroyNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_rwlock_rdlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockReadLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_rwlock_tryrdlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockTryReadLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_rwlock_wrlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockWriteLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_rwlock_trywrlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockTryWriteLockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_rwlock_unlock", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadRWLockUnlockNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_key_create", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadKeyCreateNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_key_delete", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadKeyDeleteNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_getspecific", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadGetSpecificNodeGen.create(LLVMArgNodeGen.create(1));
+            }
+        });
+        factories.put("@pthread_setspecific", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadSetSpecificNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+        factories.put("@pthread_once", new LLVMNativeIntrinsicFactory(true, false) {
+
+            @Override
+            protected LLVMExpressionNode generate(FunctionType type) {
+                return LLVMPThreadOnceNodeGen.create(LLVMArgNodeGen.create(1), LLVMArgNodeGen.create(2));
+            }
+        });
+    }
+
     protected void registerRustIntrinsics() {
         factories.put("@std::rt::lang_start", new LLVMNativeIntrinsicFactory(true, false) {
 
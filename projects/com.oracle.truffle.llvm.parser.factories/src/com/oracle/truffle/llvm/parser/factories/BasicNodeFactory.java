@@ -47,6 +47,8 @@ import com.oracle.truffle.llvm.nodes.control.LLVMBrUnconditionalNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMConditionalBranchNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMDispatchBasicBlockNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMIndirectBranchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMLoopDispatchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMLoopNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVM80BitFloatRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMAddressRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMDoubleRetNodeGen;
@@ -61,6 +63,10 @@ import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMIVarBitRetNo
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMStructRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMVectorRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMVoidReturnNodeGen;
+import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMI16SwitchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMI32SwitchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMI64SwitchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMI8SwitchNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMSwitchNodeImpl;
 import com.oracle.truffle.llvm.nodes.control.LLVMWritePhisNode;
 import com.oracle.truffle.llvm.nodes.func.LLVMArgNodeGen;
@@ -1253,10 +1259,49 @@ public class BasicNodeFactory implements NodeFactory {
 
     @Override
     public LLVMControlFlowNode createSwitch(LLVMExpressionNode cond, int[] successors, LLVMExpressionNode[] cases, Type llvmType, LLVMStatementNode[] phiWriteNodes, LLVMSourceLocation source) {
+        if (llvmType instanceof PrimitiveType) {
+            long[] caseValues = getConstantCaseValues(cases);
+            if (caseValues != null) {
+                switch (((PrimitiveType) llvmType).getPrimitiveKind()) {
+                    case I8:
+                        return new LLVMI8SwitchNode(successors, phiWriteNodes, cond, caseValues, source);
+                    case I16:
+                        return new LLVMI16SwitchNode(successors, phiWriteNodes, cond, caseValues, source);
+                    case I32:
+                        return new LLVMI32SwitchNode(successors, phiWriteNodes, cond, caseValues, source);
+                    case I64:
+                        return new LLVMI64SwitchNode(successors, phiWriteNodes, cond, caseValues, source);
+                    default:
+                        break;
+                }
+            }
+        }
         LLVMExpressionNode[] caseNodes = Arrays.copyOf(cases, cases.length, LLVMExpressionNode[].class);
         return new LLVMSwitchNodeImpl(successors, phiWriteNodes, cond, caseNodes, source);
     }
 
+    /**
+     * Returns the values of the cases if they are all integer literals, otherwise {@code null}.
+     */
+    private static long[] getConstantCaseValues(LLVMExpressionNode[] cases) {
+        long[] values = new long[cases.length];
+        for (int i = 0; i < cases.length; i++) {
+            // literals do not access the frame
+            if (cases[i] instanceof LLVMI8LiteralNode) {
+                values[i] = ((LLVMI8LiteralNode) cases[i]).executeI8(null);
+            } else if (cases[i] instanceof LLVMI16LiteralNode) {
+                values[i] = ((LLVMI16LiteralNode) cases[i]).executeI16(null);
+            } else if (cases[i] instanceof LLVMI32LiteralNode) {
+                values[i] = ((LLVMI32LiteralNode) cases[i]).executeI32(null);
+            } else if (cases[i] instanceof LLVMI64LiteralNode) {
+                values[i] = ((LLVMI64LiteralNode) cases[i]).executeI64(null);
+            } else {
+                return null;
+            }
+        }
+        return values;
+    }
+
     @Override
     public LLVMControlFlowNode createConditionalBranch(int trueIndex, int falseIndex, LLVMExpressionNode conditionNode, LLVMStatementNode truePhiWriteNodes,
                     LLVMStatementNode falsePhiWriteNodes, LLVMSourceLocation sourceSection) {
@@ -1464,11 +1509,19 @@ public class BasicNodeFactory implements NodeFactory {
     }
 
     @Override
-    public LLVMExpressionNode createFunctionBlockNode(FrameSlot exceptionValueSlot, List<? extends LLVMStatementNode> allFunctionNodes, UniquesRegion uniquesRegion, FrameSlot[][] beforeBlockNuller,
-                    FrameSlot[][] afterBlockNuller, LLVMSourceLocation location, LLVMStatementNode[] copyArgumentsToFrame) {
+    public LLVMStatementNode createLoop(FrameSlot exceptionValueSlot, FrameSlot successorSlot, int headerId, LLVMStatementNode[] bodyNodes, LLVMStatementNode[] nestedLoops, int[] successors,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller) {
+        LLVMLoopDispatchNode dispatchNode = new LLVMLoopDispatchNode(exceptionValueSlot, successorSlot, headerId, Arrays.copyOf(bodyNodes, bodyNodes.length, LLVMBasicBlockNode[].class),
+                        Arrays.copyOf(nestedLoops, nestedLoops.length, LLVMLoopNode[].class), beforeBlockNuller, afterBlockNuller);
+        return new LLVMLoopNode(dispatchNode, successors, successorSlot);
+    }
+
+    @Override
+    public LLVMExpressionNode createFunctionBlockNode(FrameSlot exceptionValueSlot, List<? extends LLVMStatementNode> allFunctionNodes, LLVMStatementNode[] loops, UniquesRegion uniquesRegion,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller, LLVMSourceLocation location, LLVMStatementNode[] copyArgumentsToFrame) {
         LLVMUniquesRegionAllocNode uniquesRegionAllocNode = LLVMUniquesRegionAllocNodeGen.create(uniquesRegion);
-        return new LLVMDispatchBasicBlockNode(exceptionValueSlot, allFunctionNodes.toArray(new LLVMBasicBlockNode[allFunctionNodes.size()]), uniquesRegionAllocNode, beforeBlockNuller,
-                        afterBlockNuller, location,
+        return new LLVMDispatchBasicBlockNode(exceptionValueSlot, allFunctionNodes.toArray(new LLVMBasicBlockNode[allFunctionNodes.size()]),
+                        Arrays.copyOf(loops, loops.length, LLVMLoopNode[].class), uniquesRegionAllocNode, beforeBlockNuller, afterBlockNuller, location,
                         copyArgumentsToFrame);
     }
 
@@ -47,6 +47,7 @@ import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFaccessatNodeGe
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFcntlNodeGen;
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFstatNodeGen;
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFstatfsNodeGen;
+import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFsyncNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFtruncateNode;
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallFutexNodeGen;
 import com.oracle.truffle.llvm.nodes.asm.syscall.LLVMAMD64SyscallGetPpidNode;
@@ -186,6 +187,8 @@ public class BasicSystemContextExtension extends SystemContextExtension {
                 return LLVMAMD64SyscallUnameNodeGen.create();
             case LLVMAMD64Syscall.SYS_fcntl:
                 return LLVMAMD64SyscallFcntlNodeGen.create();
+            case LLVMAMD64Syscall.SYS_fsync:
+                return new LLVMAMD64SyscallFsyncNode();
             case LLVMAMD64Syscall.SYS_ftruncate:
                 return new LLVMAMD64SyscallFtruncateNode();
             case LLVMAMD64Syscall.SYS_getcwd:
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.llvm.parser.LLVMLivenessAnalysis.LLVMLocalReadVisitor;
+import com.oracle.truffle.llvm.parser.model.SymbolImpl;
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.enums.AtomicOrdering;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.NullConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.integer.IntegerConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.AllocateInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.DbgDeclareInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.DbgValueInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.GetElementPointerInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.Instruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.LoadInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.PhiInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.StoreInstruction;
+import com.oracle.truffle.llvm.parser.nodes.LLVMSymbolReadResolver;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
+import com.oracle.truffle.llvm.runtime.types.AggregateType;
+import com.oracle.truffle.llvm.runtime.types.PointerType;
+import com.oracle.truffle.llvm.runtime.types.PrimitiveType;
+import com.oracle.truffle.llvm.runtime.types.Type;
+
+/**
+ * Finds stack allocations whose address never escapes the function and maps them to frame slots.
+ * An {@code alloca} is promoted if its pointer, and the pointers derived from it by
+ * {@code getelementptr} instructions with constant indices, are only used as the address of
+ * non-volatile, non-atomic loads and stores of primitive or pointer values. Every distinct offset
+ * that is accessed gets its own frame slot. Accesses at the same offset must have the same type and
+ * the accessed ranges must not overlap, so that no access can observe the memory representation of
+ * another one.
+ *
+ * The frame slots of promoted allocations are created after the liveness analysis, so they are
+ * never nulled. Like the memory of an {@code alloca}, they keep their value for the whole function
+ * invocation. They are zeroed on function entry, see {@link #addSlotInitializers}.
+ */
+public final class LLVMAllocaPromotion {
+
+    private static final LLVMAllocaPromotion NONE = new LLVMAllocaPromotion(new HashMap<>(), new HashMap<>());
+
+    private final Map<AllocateInstruction, Candidate> promoted;
+    private final Map<SymbolImpl, Pointer> pointers;
+
+    private LLVMAllocaPromotion(Map<AllocateInstruction, Candidate> promoted, Map<SymbolImpl, Pointer> pointers) {
+        this.promoted = promoted;
+        this.pointers = pointers;
+    }
+
+    public static LLVMAllocaPromotion none() {
+        return NONE;
+    }
+
+    /**
+     * @param keepDebugDeclarations if true, an allocation that is described by a debug intrinsic
+     *            stays in memory so that the debugger can inspect it
+     */
+    public static LLVMAllocaPromotion compute(FrameDescriptor frame, LLVMContext context, FunctionDefinition function, boolean keepDebugDeclarations) {
+        Map<SymbolImpl, Pointer> pointers = new HashMap<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (InstructionBlock block : function.getBlocks()) {
+            for (int i = 0; i < block.getInstructionCount(); i++) {
+                Instruction instruction = block.getInstruction(i);
+                if (instruction instanceof AllocateInstruction) {
+                    AllocateInstruction allocate = (AllocateInstruction) instruction;
+                    long count = getConstantCount(allocate);
+                    if (count > 0) {
+                        Candidate candidate = new Candidate(allocate, count * context.getByteSize(allocate.getPointeeType()));
+                        candidates.add(candidate);
+                        pointers.put(allocate, new Pointer(candidate, 0));
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return NONE;
+        }
+
+        // derived pointers can be defined in blocks that come after their uses in the block list
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (InstructionBlock block : function.getBlocks()) {
+                for (int i = 0; i < block.getInstructionCount(); i++) {
+                    Instruction instruction = block.getInstruction(i);
+                    if (instruction instanceof GetElementPointerInstruction && !pointers.containsKey(instruction)) {
+                        GetElementPointerInstruction gep = (GetElementPointerInstruction) instruction;
+                        Pointer base = pointers.get(gep.getBasePointer());
+                        if (base != null) {
+                            Long offset = getConstantOffset(context, gep);
+                            if (offset != null) {
+                                pointers.put(gep, new Pointer(base.candidate, base.offset + offset));
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        UseVisitor visitor = new UseVisitor(pointers, keepDebugDeclarations);
+        for (InstructionBlock block : function.getBlocks()) {
+            for (int i = 0; i < block.getInstructionCount(); i++) {
+                block.getInstruction(i).accept(visitor);
+            }
+        }
+
+        Map<AllocateInstruction, Candidate> promoted = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            if (!candidate.escapes && candidate.hasValidAccesses(context)) {
+                candidate.createFrameSlots(frame);
+                promoted.put(candidate.allocate, candidate);
+            }
+        }
+        if (promoted.isEmpty()) {
+            return NONE;
+        }
+
+        Map<SymbolImpl, Pointer> promotedPointers = new HashMap<>();
+        for (Map.Entry<SymbolImpl, Pointer> entry : pointers.entrySet()) {
+            if (promoted.containsKey(entry.getValue().candidate.allocate)) {
+                promotedPointers.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new LLVMAllocaPromotion(promoted, promotedPointers);
+    }
+
+    /**
+     * Returns true if the given {@code alloca} or {@code getelementptr} instruction computes the
+     * address of a promoted allocation and therefore does not need to be executed.
+     */
+    public boolean isPromotedPointer(SymbolImpl symbol) {
+        return pointers.containsKey(symbol);
+    }
+
+    /**
+     * Returns the frame slot that a load from or a store to the given address accesses, or
+     * {@code null} if the address does not point into a promoted allocation.
+     */
+    public FrameSlot getFrameSlot(SymbolImpl address) {
+        Pointer pointer = pointers.get(address);
+        if (pointer == null) {
+            return null;
+        }
+        FrameSlot slot = pointer.candidate.slots.get(pointer.offset);
+        assert slot != null : "every accessed offset has a frame slot";
+        return slot;
+    }
+
+    /**
+     * Adds writes that zero the frame slots of the promoted allocations to the function prologue.
+     * The memory of an {@code alloca} is undefined until the first store, but a frame slot that was
+     * never written cannot be read with the accessor of its kind, so a load before any store would
+     * fail.
+     */
+    public void addSlotInitializers(NodeFactory nodeFactory, LLVMSymbolReadResolver symbols, List<LLVMStatementNode> prologue) {
+        for (Candidate candidate : promoted.values()) {
+            for (Map.Entry<Long, Type> access : candidate.accesses.entrySet()) {
+                Type type = access.getValue();
+                LLVMExpressionNode zero = symbols.resolve(new NullConstant(type));
+                prologue.add(nodeFactory.createFrameWrite(type, zero, candidate.slots.get(access.getKey()), null));
+            }
+        }
+    }
+
+    public int getPromotedCount() {
+        return promoted.size();
+    }
+
+    private static long getConstantCount(AllocateInstruction allocate) {
+        SymbolImpl count = allocate.getCount();
+        if (count instanceof NullConstant) {
+            return 1;
+        } else if (count instanceof IntegerConstant) {
+            return ((IntegerConstant) count).getValue();
+        }
+        return -1;
+    }
+
+    private static Long getConstantOffset(LLVMContext context, GetElementPointerInstruction gep) {
+        long offset = 0;
+        Type currentType = gep.getBasePointer().getType();
+        for (SymbolImpl index : gep.getIndices()) {
+            Long indexValue = LLVMSymbolReadResolver.evaluateLongIntegerConstant(index);
+            if (indexValue == null || !(currentType instanceof AggregateType)) {
+                return null;
+            }
+            AggregateType aggregate = (AggregateType) currentType;
+            offset += context.getIndexOffset(indexValue, aggregate);
+            currentType = aggregate.getElementType(indexValue);
+        }
+        return offset;
+    }
+
+    private static boolean isPromotableType(Type type) {
+        return type instanceof PrimitiveType || type instanceof PointerType;
+    }
+
+    private static boolean isSameRepresentation(Type a, Type b) {
+        if (a instanceof PointerType && b instanceof PointerType) {
+            // function pointers are read and written with different nodes
+            return Type.isFunctionOrFunctionPointer(a) == Type.isFunctionOrFunctionPointer(b);
+        }
+        return a.equals(b);
+    }
+
+    private static final class Candidate {
+
+        private final AllocateInstruction allocate;
+        private final long size;
+        private final TreeMap<Long, Type> accesses;
+        private final Map<Long, FrameSlot> slots;
+        private boolean escapes;
+
+        Candidate(AllocateInstruction allocate, long size) {
+            this.allocate = allocate;
+            this.size = size;
+            this.accesses = new TreeMap<>();
+            this.slots = new HashMap<>();
+        }
+
+        void addAccess(long offset, Type type) {
+            if (!isPromotableType(type)) {
+                escapes = true;
+                return;
+            }
+            Type previous = accesses.get(offset);
+            if (previous == null) {
+                accesses.put(offset, type);
+            } else if (!isSameRepresentation(previous, type)) {
+                escapes = true;
+            }
+        }
+
+        boolean hasValidAccesses(LLVMContext context) {
+            long end = 0;
+            for (Map.Entry<Long, Type> access : accesses.entrySet()) {
+                long offset = access.getKey();
+                if (offset < end) {
+                    return false;
+                }
+                end = offset + context.getByteSize(access.getValue());
+            }
+            return accesses.isEmpty() || accesses.firstKey() >= 0 && end <= size;
+        }
+
+        void createFrameSlots(FrameDescriptor frame) {
+            for (Map.Entry<Long, Type> access : accesses.entrySet()) {
+                Type type = access.getValue();
+                String identifier = "<" + allocate.getName() + "+" + access.getKey() + ">";
+                slots.put(access.getKey(), frame.addFrameSlot(identifier, type, Type.getFrameSlotKind(type)));
+            }
+        }
+    }
+
+    private static final class Pointer {
+
+        private final Candidate candidate;
+        private final long offset;
+
+        Pointer(Candidate candidate, long offset) {
+            this.candidate = candidate;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Records the accesses of every candidate and marks the candidates whose address is used in any
+     * other way as escaping.
+     */
+    private static final class UseVisitor extends LLVMLocalReadVisitor {
+
+        private final Map<SymbolImpl, Pointer> pointers;
+        private final boolean keepDebugDeclarations;
+
+        UseVisitor(Map<SymbolImpl, Pointer> pointers, boolean keepDebugDeclarations) {
+            this.pointers = pointers;
+            this.keepDebugDeclarations = keepDebugDeclarations;
+        }
+
+        @Override
+        protected void visitLocalRead(SymbolImpl symbol) {
+            Pointer pointer = pointers.get(symbol);
+            if (pointer != null) {
+                pointer.candidate.escapes = true;
+            }
+        }
+
+        private void visitAccess(SymbolImpl address, Type type, boolean isVolatile, AtomicOrdering ordering) {
+            Pointer pointer = pointers.get(address);
+            if (pointer != null) {
+                if (isVolatile || ordering != AtomicOrdering.NOT_ATOMIC) {
+                    pointer.candidate.escapes = true;
+                } else {
+                    pointer.candidate.addAccess(pointer.offset, type);
+                }
+            }
+        }
+
+        @Override
+        public void visit(LoadInstruction load) {
+            visitAccess(load.getSource(), load.getType(), load.isVolatile(), load.getAtomicOrdering());
+        }
+
+        @Override
+        public void visit(StoreInstruction store) {
+            visitAccess(store.getDestination(), store.getSource().getType(), store.isVolatile(), store.getAtomicOrdering());
+            visitLocalRead(store.getSource());
+        }
+
+        @Override
+        public void visit(GetElementPointerInstruction gep) {
+            if (!pointers.containsKey(gep)) {
+                visitLocalRead(gep.getBasePointer());
+            }
+            for (SymbolImpl index : gep.getIndices()) {
+                visitLocalRead(index);
+            }
+        }
+
+        @Override
+        public void visit(PhiInstruction phi) {
+            for (int i = 0; i < phi.getSize(); i++) {
+                visitLocalRead(phi.getValue(i));
+            }
+        }
+
+        @Override
+        public void visit(DbgDeclareInstruction inst) {
+            if (keepDebugDeclarations) {
+                visitLocalRead(inst.getValue());
+            }
+        }
+
+        @Override
+        public void visit(DbgValueInstruction inst) {
+            if (keepDebugDeclarations) {
+                visitLocalRead(inst.getValue());
+            }
+        }
+    }
+}
@@ -64,12 +64,14 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
     private final LLVMLivenessAnalysisResult liveness;
     private final List<FrameSlot> notNullable;
     private final LLVMRuntimeDebugInformation dbgInfoHandler;
+    private final LLVMAllocaPromotion allocaPromotion;
     private boolean initDebugValues;
 
     LLVMBitcodeFunctionVisitor(LLVMContext context, ExternalLibrary library, FrameDescriptor frame, UniquesRegion uniquesRegion, Map<InstructionBlock, List<Phi>> phis, NodeFactory nodeFactory,
                     int argCount,
                     LLVMSymbolReadResolver symbols,
-                    FunctionDefinition functionDefinition, LLVMLivenessAnalysisResult liveness, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler) {
+                    FunctionDefinition functionDefinition, LLVMLivenessAnalysisResult liveness, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler,
+                    LLVMAllocaPromotion allocaPromotion) {
         this.context = context;
         this.library = library;
         this.frame = frame;
@@ -82,6 +84,7 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
         this.liveness = liveness;
         this.notNullable = notNullable;
         this.dbgInfoHandler = dbgInfoHandler;
+        this.allocaPromotion = allocaPromotion;
         this.blocks = new ArrayList<>();
         this.initDebugValues = dbgInfoHandler.isEnabled();
     }
@@ -99,7 +102,7 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
         List<Phi> blockPhis = phis.get(block);
         ArrayList<LLVMLivenessAnalysis.NullerInformation> blockNullerInfos = liveness.getNullableWithinBlock()[block.getBlockIndex()];
         LLVMBitcodeInstructionVisitor visitor = new LLVMBitcodeInstructionVisitor(frame, uniquesRegion, blockPhis, nodeFactory, argCount, symbols, context, library, blockNullerInfos,
-                        notNullable, dbgInfoHandler);
+                        notNullable, dbgInfoHandler, allocaPromotion);
 
         if (initDebugValues) {
             for (SourceVariable variable : function.getSourceFunction().getVariables()) {
@@ -119,6 +119,7 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
     private final List<FrameSlot> notNullable;
     private final LLVMRuntimeDebugInformation dbgInfoHandler;
     private final UniquesRegion uniquesRegion;
+    private final LLVMAllocaPromotion allocaPromotion;
 
     private final List<LLVMStatementNode> blockInstructions;
     private int instructionIndex;
@@ -127,7 +128,8 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
     private LLVMSourceLocation lastLocation;
 
     LLVMBitcodeInstructionVisitor(FrameDescriptor frame, UniquesRegion uniquesRegion, List<Phi> blockPhis, NodeFactory nodeFactory, int argCount, LLVMSymbolReadResolver symbols, LLVMContext context,
-                    ExternalLibrary library, ArrayList<LLVMLivenessAnalysis.NullerInformation> nullerInfos, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler) {
+                    ExternalLibrary library, ArrayList<LLVMLivenessAnalysis.NullerInformation> nullerInfos, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler,
+                    LLVMAllocaPromotion allocaPromotion) {
         this.frame = frame;
         this.blockPhis = blockPhis;
         this.nodeFactory = nodeFactory;
@@ -141,6 +143,7 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
         this.dbgInfoHandler = dbgInfoHandler;
         this.lastLocation = null;
         this.uniquesRegion = uniquesRegion;
+        this.allocaPromotion = allocaPromotion;
 
         this.blockInstructions = new ArrayList<>();
     }
@@ -164,6 +167,12 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(AllocateInstruction allocate) {
+        if (allocaPromotion.isPromotedPointer(allocate)) {
+            // the allocation lives in frame slots, its address is never needed
+            handleNullerInfo();
+            return;
+        }
+
         final Type type = allocate.getPointeeType();
         int alignment;
         if (allocate.getAlign() == 0) {
@@ -311,7 +320,7 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
             valueSlot = frame.findFrameSlot(((FunctionParameter) value).getName());
         }
 
-        if (valueSlot != null) {
+        if (valueSlot != null && !allocaPromotion.isPromotedPointer(value)) {
             final LLVMStatementNode typeNode = nodeFactory.registerSourceType(valueSlot, variable.getSourceType());
             if (typeNode != null) {
                 addInstructionUnchecked(typeNode);
@@ -590,6 +599,10 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(GetElementPointerInstruction gep) {
+        if (allocaPromotion.isPromotedPointer(gep)) {
+            handleNullerInfo();
+            return;
+        }
         final LLVMExpressionNode targetAddress = symbols.resolveElementPointer(gep.getBasePointer(), gep.getIndices());
         createFrameWrite(targetAddress, gep);
     }
@@ -645,6 +658,12 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(LoadInstruction load) {
+        FrameSlot promotedSlot = allocaPromotion.getFrameSlot(load.getSource());
+        if (promotedSlot != null) {
+            createFrameWrite(nodeFactory.createFrameRead(load.getType(), promotedSlot), load);
+            return;
+        }
+
         LLVMExpressionNode source = symbols.resolve(load.getSource());
         LLVMExpressionNode result = nodeFactory.createLoad(load.getType(), source);
         createFrameWrite(result, load);
@@ -698,7 +717,6 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(StoreInstruction store) {
-        final LLVMExpressionNode pointerNode = symbols.resolve(store.getDestination());
         final LLVMExpressionNode valueNode = symbols.resolve(store.getSource());
 
         Type type = store.getSource().getType();
@@ -709,6 +727,13 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
             source = getSourceLocation(store);
         }
 
+        FrameSlot promotedSlot = allocaPromotion.getFrameSlot(store.getDestination());
+        if (promotedSlot != null) {
+            addInstruction(nodeFactory.createFrameWrite(type, valueNode, promotedSlot, source));
+            return;
+        }
+
+        final LLVMExpressionNode pointerNode = symbols.resolve(store.getDestination());
         final LLVMStatementNode node = nodeFactory.createStore(context, pointerNode, valueNode, type, source);
         addInstruction(node);
     }
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.TerminatingInstruction;
+
+/**
+ * Finds the natural loops of a function. A natural loop is identified by a back edge, i.e., an edge
+ * whose target (the loop header) dominates its source. The loop body consists of the header and all
+ * blocks that can reach the source of a back edge without passing through the header. Loops that
+ * share a header are merged. Cycles that are not entered through a single dominating header
+ * (irreducible control flow) are not reported and remain in the enclosing dispatch loop.
+ */
+public final class LLVMLoopAnalysis {
+
+    public static final String LOOP_SUCCESSOR_FRAME_ID = "<loop successor>";
+
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private int[] orderIndex;
+
+    private LLVMLoopAnalysis(List<InstructionBlock> blocks) {
+        int blockCount = blocks.size();
+        this.successors = new int[blockCount][];
+        int[] predecessorCount = new int[blockCount];
+        for (InstructionBlock block : blocks) {
+            TerminatingInstruction terminatingInstruction = block.getTerminatingInstruction();
+            int[] blockSuccessors = new int[terminatingInstruction.getSuccessorCount()];
+            for (int i = 0; i < blockSuccessors.length; i++) {
+                blockSuccessors[i] = terminatingInstruction.getSuccessor(i).getBlockIndex();
+                predecessorCount[blockSuccessors[i]]++;
+            }
+            successors[block.getBlockIndex()] = blockSuccessors;
+        }
+        this.predecessors = new int[blockCount][];
+        for (int i = 0; i < blockCount; i++) {
+            predecessors[i] = new int[predecessorCount[i]];
+        }
+        Arrays.fill(predecessorCount, 0);
+        for (int block = 0; block < blockCount; block++) {
+            for (int successor : successors[block]) {
+                predecessors[successor][predecessorCount[successor]++] = block;
+            }
+        }
+    }
+
+    /**
+     * Computes the outermost loops of the given function. Inner loops are available through
+     * {@link Loop#getNestedLoops()}.
+     */
+    public static List<Loop> findLoops(FunctionDefinition function) {
+        List<InstructionBlock> blocks = function.getBlocks();
+        if (blocks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new LLVMLoopAnalysis(blocks).findLoops();
+    }
+
+    private List<Loop> findLoops() {
+        int[] order = reversePostOrder();
+        orderIndex = new int[successors.length];
+        Arrays.fill(orderIndex, -1);
+        for (int i = 0; i < order.length; i++) {
+            orderIndex[order[i]] = i;
+        }
+        int[] dominators = computeDominators(order);
+
+        Loop[] loopsByHeader = new Loop[successors.length];
+        List<Loop> loops = new ArrayList<>();
+        for (int source : order) {
+            for (int header : successors[source]) {
+                if (dominates(dominators, header, source)) {
+                    Loop loop = loopsByHeader[header];
+                    if (loop == null) {
+                        loop = new Loop(header);
+                        loopsByHeader[header] = loop;
+                        loops.add(loop);
+                    }
+                    addBackEdge(loop, source);
+                }
+            }
+        }
+        if (loops.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // natural loops with different headers are either disjoint or nested, so the parent of a
+        // loop is the smallest other loop that contains its header
+        Collections.sort(loops, (a, b) -> Integer.compare(a.body.cardinality(), b.body.cardinality()));
+        List<Loop> outermost = new ArrayList<>();
+        for (int i = 0; i < loops.size(); i++) {
+            Loop loop = loops.get(i);
+            loop.exits = computeExits(loop);
+            Loop parent = null;
+            for (int j = i + 1; j < loops.size() && parent == null; j++) {
+                if (loops.get(j).body.get(loop.header)) {
+                    parent = loops.get(j);
+                }
+            }
+            if (parent == null) {
+                outermost.add(loop);
+            } else {
+                assert isSubset(loop.body, parent.body);
+                parent.nestedLoops.add(loop);
+            }
+        }
+        return outermost;
+    }
+
+    private int[] reversePostOrder() {
+        int[] postOrder = new int[successors.length];
+        int count = 0;
+        BitSet visited = new BitSet(successors.length);
+        ArrayDeque<int[]> stack = new ArrayDeque<>();
+        visited.set(0);
+        stack.push(new int[]{0, 0});
+        while (!stack.isEmpty()) {
+            int[] entry = stack.peek();
+            int[] blockSuccessors = successors[entry[0]];
+            if (entry[1] < blockSuccessors.length) {
+                int successor = blockSuccessors[entry[1]++];
+                if (!visited.get(successor)) {
+                    visited.set(successor);
+                    stack.push(new int[]{successor, 0});
+                }
+            } else {
+                stack.pop();
+                postOrder[count++] = entry[0];
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = postOrder[count - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * Computes the immediate dominator of every reachable block (indexed by position in reverse
+     * post order) using the iterative algorithm by Cooper, Harvey and Kennedy.
+     */
+    private int[] computeDominators(int[] order) {
+        int[] dominators = new int[order.length];
+        Arrays.fill(dominators, -1);
+        dominators[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.length; i++) {
+                int newDominator = -1;
+                for (int predecessor : predecessors[order[i]]) {
+                    int p = orderIndex[predecessor];
+                    if (p < 0 || dominators[p] < 0) {
+                        continue;
+                    }
+                    newDominator = newDominator < 0 ? p : intersect(dominators, p, newDominator);
+                }
+                if (dominators[i] != newDominator) {
+                    dominators[i] = newDominator;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    private static int intersect(int[] dominators, int a, int b) {
+        int finger1 = a;
+        int finger2 = b;
+        while (finger1 != finger2) {
+            while (finger1 > finger2) {
+                finger1 = dominators[finger1];
+            }
+            while (finger2 > finger1) {
+                finger2 = dominators[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    private boolean dominates(int[] dominators, int dominator, int block) {
+        int d = orderIndex[dominator];
+        int b = orderIndex[block];
+        if (d < 0 || b < 0 || d > b) {
+            return false;
+        }
+        while (b > d) {
+            b = dominators[b];
+        }
+        return b == d;
+    }
+
+    private void addBackEdge(Loop loop, int source) {
+        ArrayDeque<Integer> workList = new ArrayDeque<>();
+        if (!loop.body.get(source)) {
+            loop.body.set(source);
+            workList.add(source);
+        }
+        while (!workList.isEmpty()) {
+            int block = workList.remove();
+            for (int predecessor : predecessors[block]) {
+                // unreachable predecessors are never executed and not part of the loop
+                if (orderIndex[predecessor] >= 0 && !loop.body.get(predecessor)) {
+                    loop.body.set(predecessor);
+                    workList.add(predecessor);
+                }
+            }
+        }
+    }
+
+    private int[] computeExits(Loop loop) {
+        BitSet exits = new BitSet(successors.length);
+        for (int block = loop.body.nextSetBit(0); block >= 0; block = loop.body.nextSetBit(block + 1)) {
+            for (int successor : successors[block]) {
+                if (!loop.body.get(successor)) {
+                    exits.set(successor);
+                }
+            }
+        }
+        return exits.stream().toArray();
+    }
+
+    private static boolean isSubset(BitSet subset, BitSet set) {
+        BitSet copy = (BitSet) subset.clone();
+        copy.andNot(set);
+        return copy.isEmpty();
+    }
+
+    public static final class Loop {
+
+        private final int header;
+        private final BitSet body;
+        private final List<Loop> nestedLoops;
+        private int[] exits;
+
+        private Loop(int header) {
+            this.header = header;
+            this.body = new BitSet();
+            this.body.set(header);
+            this.nestedLoops = new ArrayList<>();
+        }
+
+        public int getHeader() {
+            return header;
+        }
+
+        /**
+         * Returns the indices of all blocks in this loop, including the blocks of nested loops.
+         */
+        public BitSet getBody() {
+            return body;
+        }
+
+        /**
+         * Returns the indices of the blocks outside of this loop that are targets of edges leaving
+         * the loop, in ascending order.
+         */
+        public int[] getExits() {
+            return exits;
+        }
+
+        public List<Loop> getNestedLoops() {
+            return nestedLoops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("loop (header: %d, body: %s, exits: %s)", header, body, Arrays.toString(exits));
+        }
+    }
+}
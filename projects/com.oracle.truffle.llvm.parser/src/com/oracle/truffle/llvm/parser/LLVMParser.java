@@ -153,7 +153,7 @@ public final class LLVMParser {
         LLVMFunctionDescriptor descriptor = context.createFunctionDescriptor(functionSymbol.getName(), functionSymbol.getType());
         FunctionDefinition functionDefinition = (FunctionDefinition) functionSymbol;
         LazyToTruffleConverterImpl lazyConverter = new LazyToTruffleConverterImpl(runtime, functionDefinition, source, model.getFunctionParser(functionDefinition),
-                        model.getFunctionProcessor());
+                        model.getFunctionProcessor(), model.isShared());
         Function function = new LazyLLVMIRFunction(lazyConverter);
         descriptor.define(library, function);
         runtime.getFileScope().register(descriptor);
@@ -31,6 +31,7 @@ package com.oracle.truffle.llvm.parser;
 
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -39,27 +40,36 @@ import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.FrameDescriptor;
 import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.FrameSlotKind;
 import com.oracle.truffle.api.nodes.RootNode;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.llvm.parser.LLVMLivenessAnalysis.LLVMLivenessAnalysisResult;
+import com.oracle.truffle.llvm.parser.LLVMLoopAnalysis.Loop;
 import com.oracle.truffle.llvm.parser.LLVMPhiManager.Phi;
 import com.oracle.truffle.llvm.parser.metadata.debuginfo.DebugInfoFunctionProcessor;
+import com.oracle.truffle.llvm.parser.model.SymbolImpl;
 import com.oracle.truffle.llvm.parser.model.attributes.Attribute;
 import com.oracle.truffle.llvm.parser.model.attributes.Attribute.Kind;
 import com.oracle.truffle.llvm.parser.model.attributes.Attribute.KnownAttribute;
 import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
 import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
 import com.oracle.truffle.llvm.parser.model.functions.FunctionParameter;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionSymbol;
 import com.oracle.truffle.llvm.parser.model.functions.LazyFunctionParser;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.FunctionStart;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.Instruction;
 import com.oracle.truffle.llvm.parser.nodes.LLVMSymbolReadResolver;
-import com.oracle.truffle.llvm.runtime.except.LLVMUserException;
+import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor.LazyToTruffleConverter;
-import com.oracle.truffle.llvm.runtime.debug.type.LLVMSourceFunctionType;
+import com.oracle.truffle.llvm.runtime.LLVMSymbol;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
+import com.oracle.truffle.llvm.runtime.debug.type.LLVMSourceFunctionType;
+import com.oracle.truffle.llvm.runtime.except.LLVMUserException;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack.UniquesRegion;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMStatementNode;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
 import com.oracle.truffle.llvm.runtime.types.PointerType;
 import com.oracle.truffle.llvm.runtime.types.PrimitiveType;
 import com.oracle.truffle.llvm.runtime.types.StructureType;
@@ -71,14 +81,20 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
     private final Source source;
     private final LazyFunctionParser parser;
     private final DebugInfoFunctionProcessor diProcessor;
+    // the function definition belongs to a module that other contexts convert as well
+    private final boolean sharedModule;
+
+    private List<LLVMFunctionDescriptor> directCallees;
 
     LazyToTruffleConverterImpl(LLVMParserRuntime runtime, FunctionDefinition method, Source source, LazyFunctionParser parser,
-                    DebugInfoFunctionProcessor diProcessor) {
+                    DebugInfoFunctionProcessor diProcessor, boolean sharedModule) {
         this.runtime = runtime;
         this.method = method;
         this.source = source;
         this.parser = parser;
         this.diProcessor = diProcessor;
+        this.sharedModule = sharedModule;
+        this.directCallees = Collections.emptyList();
     }
 
     @Override
@@ -88,6 +104,18 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
         // parse the function block
         parser.parse(diProcessor, source);
 
+        if (sharedModule) {
+            // contexts convert the parsed function one after another
+            synchronized (method) {
+                return convertParsedFunction();
+            }
+        }
+        RootCallTarget callTarget = convertParsedFunction();
+        method.onAfterParse();
+        return callTarget;
+    }
+
+    private RootCallTarget convertParsedFunction() {
         // prepare the phis
         final Map<InstructionBlock, List<Phi>> phis = LLVMPhiManager.getPhis(method);
 
@@ -99,6 +127,12 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
         GetStackSpaceFactory getStackSpaceFactory = GetStackSpaceFactory.createGetStackSpaceFactory(uniquesRegion);
 
         LLVMLivenessAnalysisResult liveness = LLVMLivenessAnalysis.computeLiveness(frame, runtime.getContext(), phis, method);
+        LLVMAllocaPromotion allocaPromotion = LLVMAllocaPromotion.none();
+        if (runtime.getContext().getEnv().getOptions().get(SulongEngineOption.PROMOTE_ALLOCAS)) {
+            // the frame slots must be created after the liveness analysis so that they are never nulled
+            boolean keepDebugDeclarations = runtime.getContext().getEnv().getOptions().get(SulongEngineOption.ENABLE_LVI);
+            allocaPromotion = LLVMAllocaPromotion.compute(frame, runtime.getContext(), method, keepDebugDeclarations);
+        }
         LLVMSymbolReadResolver symbols = new LLVMSymbolReadResolver(runtime, frame, getStackSpaceFactory);
         List<FrameSlot> notNullable = new ArrayList<>();
 
@@ -107,23 +141,80 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
 
         LLVMBitcodeFunctionVisitor visitor = new LLVMBitcodeFunctionVisitor(runtime.getContext(), runtime.getLibrary(), frame, uniquesRegion, phis, runtime.getNodeFactory(),
                         method.getParameters().size(), symbols,
-                        method, liveness, notNullable, dbgInfoHandler);
+                        method, liveness, notNullable, dbgInfoHandler, allocaPromotion);
         method.accept(visitor);
         FrameSlot[][] nullableBeforeBlock = getNullableFrameSlots(frame, liveness.getNullableBeforeBlock(), notNullable);
         FrameSlot[][] nullableAfterBlock = getNullableFrameSlots(frame, liveness.getNullableAfterBlock(), notNullable);
         LLVMSourceLocation location = method.getLexicalScope();
 
         List<LLVMStatementNode> copyArgumentsToFrame = copyArgumentsToFrame(frame);
+        allocaPromotion.addSlotInitializers(runtime.getNodeFactory(), symbols, copyArgumentsToFrame);
         LLVMStatementNode[] copyArgumentsToFrameArray = copyArgumentsToFrame.toArray(new LLVMStatementNode[copyArgumentsToFrame.size()]);
-        LLVMExpressionNode body = runtime.getNodeFactory().createFunctionBlockNode(frame.findFrameSlot(LLVMUserException.FRAME_SLOT_ID), visitor.getBlocks(), uniquesRegion, nullableBeforeBlock,
-                        nullableAfterBlock, location, copyArgumentsToFrameArray);
+        FrameSlot exceptionValueSlot = frame.findFrameSlot(LLVMUserException.FRAME_SLOT_ID);
+        List<LLVMStatementNode> blocks = new ArrayList<>(visitor.getBlocks());
+        LLVMStatementNode[] loops = new LLVMStatementNode[blocks.size()];
+        if (runtime.getContext().getEnv().getOptions().get(SulongEngineOption.LOOP_NODES)) {
+            List<Loop> outermostLoops = LLVMLoopAnalysis.findLoops(method);
+            if (!outermostLoops.isEmpty()) {
+                FrameSlot successorSlot = frame.addFrameSlot(LLVMLoopAnalysis.LOOP_SUCCESSOR_FRAME_ID, FrameSlotKind.Int);
+                for (Loop loop : outermostLoops) {
+                    loops[loop.getHeader()] = createLoop(loop, blocks, exceptionValueSlot, successorSlot, nullableBeforeBlock, nullableAfterBlock);
+                }
+            }
+        }
+        LLVMExpressionNode body = runtime.getNodeFactory().createFunctionBlockNode(exceptionValueSlot, blocks, loops, uniquesRegion, nullableBeforeBlock, nullableAfterBlock, location,
+                        copyArgumentsToFrameArray);
 
         RootNode rootNode = runtime.getNodeFactory().createFunctionStartNode(runtime.getContext(), body, method.getSourceSection(), frame, method, source, location);
-        method.onAfterParse();
+        directCallees = findDirectCallees();
 
         return Truffle.getRuntime().createCallTarget(rootNode);
     }
 
+    /**
+     * Creates the node for the given loop and removes the blocks that belong to it from
+     * {@code blocks}, so that every block is owned by the innermost loop that contains it.
+     */
+    private LLVMStatementNode createLoop(Loop loop, List<LLVMStatementNode> blocks, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot[][] nullableBeforeBlock,
+                    FrameSlot[][] nullableAfterBlock) {
+        LLVMStatementNode[] nestedLoops = new LLVMStatementNode[blocks.size()];
+        for (Loop nestedLoop : loop.getNestedLoops()) {
+            nestedLoops[nestedLoop.getHeader()] = createLoop(nestedLoop, blocks, exceptionValueSlot, successorSlot, nullableBeforeBlock, nullableAfterBlock);
+        }
+
+        LLVMStatementNode[] bodyNodes = new LLVMStatementNode[blocks.size()];
+        BitSet body = loop.getBody();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            bodyNodes[i] = blocks.get(i);
+            blocks.set(i, null);
+        }
+        return runtime.getNodeFactory().createLoop(exceptionValueSlot, successorSlot, loop.getHeader(), bodyNodes, nestedLoops, loop.getExits(), nullableBeforeBlock, nullableAfterBlock);
+    }
+
+    private List<LLVMFunctionDescriptor> findDirectCallees() {
+        List<LLVMFunctionDescriptor> callees = new ArrayList<>();
+        for (InstructionBlock block : method.getBlocks()) {
+            for (int i = 0; i < block.getInstructionCount(); i++) {
+                Instruction instruction = block.getInstruction(i);
+                if (instruction instanceof FunctionStart) {
+                    SymbolImpl target = ((FunctionStart) instruction).getCallTarget();
+                    if (target instanceof FunctionSymbol) {
+                        LLVMSymbol symbol = runtime.getFileScope().get(((FunctionSymbol) target).getName());
+                        if (symbol != null && symbol.isFunction() && !callees.contains(symbol.asFunction())) {
+                            callees.add(symbol.asFunction());
+                        }
+                    }
+                }
+            }
+        }
+        return callees;
+    }
+
+    @Override
+    public List<LLVMFunctionDescriptor> getDirectCallees() {
+        return directCallees;
+    }
+
     @Override
     public LLVMSourceFunctionType getSourceType() {
         return method.getSourceFunction().getSourceType();
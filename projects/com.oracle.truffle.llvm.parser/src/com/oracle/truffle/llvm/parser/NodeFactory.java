@@ -168,8 +168,11 @@ public interface NodeFactory extends InteropNodeFactory {
 
     LLVMStatementNode createBasicBlockNode(LLVMStatementNode[] statementNodes, LLVMControlFlowNode terminatorNode, int blockId, String blockName);
 
-    LLVMExpressionNode createFunctionBlockNode(FrameSlot exceptionValueSlot, List<? extends LLVMStatementNode> basicBlockNodes, UniquesRegion uniquesRegion, FrameSlot[][] beforeBlockNuller,
-                    FrameSlot[][] afterBlockNuller, LLVMSourceLocation sourceSection, LLVMStatementNode[] copyArgumentsToFrame);
+    LLVMStatementNode createLoop(FrameSlot exceptionValueSlot, FrameSlot successorSlot, int headerId, LLVMStatementNode[] bodyNodes, LLVMStatementNode[] nestedLoops, int[] successors,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller);
+
+    LLVMExpressionNode createFunctionBlockNode(FrameSlot exceptionValueSlot, List<? extends LLVMStatementNode> basicBlockNodes, LLVMStatementNode[] loops, UniquesRegion uniquesRegion,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller, LLVMSourceLocation sourceSection, LLVMStatementNode[] copyArgumentsToFrame);
 
     RootNode createFunctionStartNode(LLVMContext context, LLVMExpressionNode functionBodyNode, SourceSection sourceSection, FrameDescriptor frameDescriptor, FunctionDefinition functionHeader,
                     Source bcSource, LLVMSourceLocation location);
@@ -68,10 +68,23 @@ public final class ModelModule {
     private final Map<FunctionDefinition, LazyFunctionParser> lazyFunctionParsers = new HashMap<>();
     private TargetDataLayout targetDataLayout = defaultLayout;
     private DebugInfoFunctionProcessor functionProcessor = null;
+    private boolean shared = false;
 
     public ModelModule() {
     }
 
+    /**
+     * Marks this module as used by several contexts, which then must not drop the parsed function
+     * bodies after their conversion.
+     */
+    public void setShared() {
+        shared = true;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
     public void setTargetDataLayout(TargetDataLayout layout) {
         targetDataLayout = layout;
     }
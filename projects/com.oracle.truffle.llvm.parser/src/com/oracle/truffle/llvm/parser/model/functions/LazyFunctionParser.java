@@ -48,11 +48,14 @@ public final class LazyFunctionParser {
     }
 
     public void parse(DebugInfoFunctionProcessor diProcessor, Source bitcodeSource) {
-        if (!isParsed) {
-            parser.setupScope();
-            scanner.scanBlock(parser);
-            diProcessor.process(parser.getFunction(), parser.getScope(), bitcodeSource);
-            isParsed = true;
+        // all functions of a module share its symbol tables, so they are parsed one after another
+        synchronized (parser.getScope()) {
+            if (!isParsed) {
+                parser.setupScope();
+                scanner.scanBlock(parser);
+                diProcessor.process(parser.getFunction(), parser.getScope(), bitcodeSource);
+                isParsed = true;
+            }
         }
     }
 }
@@ -30,14 +30,32 @@
 package com.oracle.truffle.llvm.parser.scanner;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
 
+/**
+ * Random access to the bits of a bitcode file. Reads are served from a little-endian
+ * {@link LongBuffer} view of the data, so that every read needs at most two word loads. Only reads
+ * that touch the last, incomplete word fall back to reading single bytes.
+ */
 public final class BitStream {
 
     private static final long BYTE_MASK = 0xffL;
+    private static final long WORD_MASK = Long.SIZE - 1L;
+    private static final int WORD_SHIFT = 6;
+    private static final int CHAR6_BITS = 6;
+    private static final char[] CHAR6 = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789._".toCharArray();
+
     private final ByteBuffer bitstream;
+    private final LongBuffer words;
+    private final long wordCount;
 
     private BitStream(ByteBuffer bitstream) {
         this.bitstream = bitstream;
+        final ByteBuffer view = bitstream.duplicate();
+        view.clear();
+        this.words = view.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        this.wordCount = words.limit();
     }
 
     public static BitStream create(ByteBuffer bytes) {
@@ -77,14 +95,27 @@ public final class BitStream {
         }
     }
 
+    /**
+     * Decodes a variable bit rate value. All chunks that fit into the 64 bits at {@code offset} are
+     * decoded without reading from the buffer again.
+     */
     public long readVBR(long offset, long width) {
+        final long chunkMask = (1L << width) - 1L;
+        final long dmask = 1L << (width - 1);
+        long window = read(offset);
+        long available = Long.SIZE;
+        long o = offset;
         long value = 0;
         long shift = 0;
         long datum;
-        long o = offset;
-        long dmask = 1 << (width - 1);
         do {
-            datum = read(o, width);
+            if (available < width) {
+                window = read(o);
+                available = Long.SIZE;
+            }
+            datum = window & chunkMask;
+            window >>>= width;
+            available -= width;
             o += width;
             value += (datum & (dmask - 1)) << shift;
             shift += width - 1;
@@ -92,11 +123,28 @@ public final class BitStream {
         return value;
     }
 
+    public char readChar6(long offset) {
+        return CHAR6[(int) read(offset, CHAR6_BITS)];
+    }
+
     public long size() {
         return bitstream.limit() * Byte.SIZE;
     }
 
     private long read(long offset) {
+        final long index = offset >>> WORD_SHIFT;
+        final long mod = offset & WORD_MASK;
+        if (index + 1 < wordCount) {
+            final long value = words.get((int) index) >>> mod;
+            if (mod == 0) {
+                return value;
+            }
+            return value | (words.get((int) index + 1) << (Long.SIZE - mod));
+        }
+        return readBytes(offset);
+    }
+
+    private long readBytes(long offset) {
         long div = offset / Byte.SIZE;
         long value = 0;
         for (int i = 0; i < Byte.SIZE; i++) {
@@ -77,6 +77,10 @@ public enum Block {
         this.strategy = strategy;
     }
 
+    int getId() {
+        return id;
+    }
+
     boolean parseLazily() {
         return strategy == LAZY;
     }
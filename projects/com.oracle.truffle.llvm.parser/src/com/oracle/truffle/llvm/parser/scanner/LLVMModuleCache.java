@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser.scanner;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.TruffleLanguage;
+import com.oracle.truffle.llvm.parser.model.ModelModule;
+
+/**
+ * The parsed {@link ModelModule modules} of a language instance, keyed by the SHA-256 hash of the
+ * bitcode they were parsed from, so that all contexts of an engine parse every bitcode file only
+ * once. Function bodies are parsed lazily into the shared module by the first context that needs
+ * them, and they are kept after the conversion, because other contexts convert them again. The
+ * Truffle ASTs are not shared: they refer to the symbols and the global storage of their context.
+ */
+public final class LLVMModuleCache {
+
+    private final ConcurrentHashMap<String, SoftReference<ModelModule>> modules = new ConcurrentHashMap<>();
+
+    private final AtomicLong parses = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Returns the shared module of the bitcode in {@code bytes}, or parses it with
+     * {@link LLVMScanner#parse}.
+     */
+    public ModelModule parse(ByteBuffer bytes, LLVMParseCache parseCache, TruffleLanguage.Env env) {
+        final String key = LLVMParseCache.toHex(LLVMParseCache.hash(bytes));
+        final SoftReference<ModelModule> cached = modules.get(key);
+        final ModelModule cachedModule = cached != null ? cached.get() : null;
+        if (cachedModule != null) {
+            hits.incrementAndGet();
+            return cachedModule;
+        }
+
+        final ModelModule module = LLVMScanner.parse(bytes, parseCache, env);
+        if (module == null) {
+            // not a bitcode file
+            return null;
+        }
+        parses.incrementAndGet();
+        module.setShared();
+        // another context may have parsed the same bitcode in the meantime, the first one wins
+        final SoftReference<ModelModule> previous = modules.putIfAbsent(key, new SoftReference<>(module));
+        final ModelModule previousModule = previous != null ? previous.get() : null;
+        if (previousModule != null) {
+            return previousModule;
+        } else if (previous != null) {
+            modules.put(key, new SoftReference<>(module));
+        }
+        return module;
+    }
+
+    /**
+     * Returns how many modules were parsed because they were not in the cache.
+     */
+    public long getParseCount() {
+        return parses.get();
+    }
+
+    /**
+     * Returns how many times a module was taken from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+}
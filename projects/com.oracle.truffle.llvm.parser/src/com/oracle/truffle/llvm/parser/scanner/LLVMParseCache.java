@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser.scanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.TruffleLanguage;
+
+/**
+ * A cache of {@link ScannerLog scanner logs}, keyed by the SHA-256 hash of the bitcode they were
+ * recorded from. Logs are kept in memory, so that all contexts that use the same cache share
+ * them, and optionally in a directory. Every file entry stores the hash and the size of the
+ * bitcode and a checksum of the log, and is validated before it is used. Invalid entries are
+ * ignored and overwritten, so the cache never changes the result of parsing. The directory is
+ * accessed through the {@link TruffleFile file system} of the context that parses the bitcode.
+ */
+public final class LLVMParseCache {
+
+    private static final int MAGIC_WORD = 0x534C4243; // 'SLBC'
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".bclog";
+
+    private static final AtomicInteger TMP_COUNTER = new AtomicInteger();
+
+    private final String directory;
+    private final ConcurrentHashMap<String, SoftReference<ScannerLog>> memory;
+
+    /**
+     * @param directory the directory in which logs are stored, or {@code null}
+     * @param inMemory whether logs are also kept in memory
+     */
+    public LLVMParseCache(String directory, boolean inMemory) {
+        assert directory != null || inMemory;
+        this.directory = directory;
+        this.memory = inMemory ? new ConcurrentHashMap<>() : null;
+    }
+
+    static byte[] hash(ByteBuffer bitcode) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bitcode.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    ScannerLog load(TruffleLanguage.Env env, byte[] hash, long bitstreamSize) {
+        if (memory != null) {
+            final SoftReference<ScannerLog> cached = memory.get(toHex(hash));
+            final ScannerLog log = cached != null ? cached.get() : null;
+            if (log != null) {
+                return log;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        final ScannerLog log = loadFile(env, hash, bitstreamSize);
+        if (log != null && memory != null) {
+            memory.put(toHex(hash), new SoftReference<>(log));
+        }
+        return log;
+    }
+
+    private ScannerLog loadFile(TruffleLanguage.Env env, byte[] hash, long bitstreamSize) {
+        try {
+            final TruffleFile file = getFile(env, hash);
+            if (!file.isRegularFile()) {
+                return null;
+            }
+            return readEntry(file.readAllBytes(), hash, bitstreamSize);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static ScannerLog readEntry(byte[] entry, byte[] hash, long bitstreamSize) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry))) {
+            if (in.readInt() != MAGIC_WORD || in.readInt() != VERSION) {
+                return null;
+            }
+            final byte[] storedHash = new byte[hash.length];
+            in.readFully(storedHash);
+            if (!Arrays.equals(hash, storedHash) || in.readLong() != bitstreamSize) {
+                return null;
+            }
+            final int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                return null;
+            }
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            final CRC32 checksum = new CRC32();
+            checksum.update(data);
+            if (in.readLong() != checksum.getValue() || in.available() != 0) {
+                return null;
+            }
+            final ScannerLog log = new ScannerLog(data);
+            return log.isValid(bitstreamSize) ? log : null;
+        }
+    }
+
+    void store(TruffleLanguage.Env env, byte[] hash, long bitstreamSize, ScannerLog log) {
+        if (memory != null) {
+            // the log is shared by all contexts, so we drop the unused part of its buffer
+            memory.put(toHex(hash), new SoftReference<>(new ScannerLog(log.toByteArray())));
+        }
+        if (directory != null) {
+            storeFile(env, hash, bitstreamSize, log);
+        }
+    }
+
+    private void storeFile(TruffleLanguage.Env env, byte[] hash, long bitstreamSize, ScannerLog log) {
+        final byte[] data = log.toByteArray();
+        final CRC32 checksum = new CRC32();
+        checksum.update(data);
+        try {
+            final TruffleFile dir = env.getTruffleFile(directory);
+            dir.createDirectories();
+            // write to a temporary file first, so that concurrent readers never see a partial entry
+            final TruffleFile tmp = dir.resolve(toHex(hash) + "-" + Thread.currentThread().getId() + "-" + TMP_COUNTER.incrementAndGet() + ".tmp");
+            try {
+                try (OutputStream stream = tmp.newOutputStream(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE); DataOutputStream out = new DataOutputStream(stream)) {
+                    out.writeInt(MAGIC_WORD);
+                    out.writeInt(VERSION);
+                    out.write(hash);
+                    out.writeLong(bitstreamSize);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    out.writeLong(checksum.getValue());
+                }
+                tmp.move(getFile(env, hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                if (tmp.exists()) {
+                    tmp.delete();
+                }
+            }
+        } catch (IOException | SecurityException | UnsupportedOperationException e) {
+            // the cache is only an optimization
+        }
+    }
+
+    private TruffleFile getFile(TruffleLanguage.Env env, byte[] hash) {
+        return env.getTruffleFile(directory).resolve(toHex(hash) + SUFFIX);
+    }
+
+    static String toHex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >>> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
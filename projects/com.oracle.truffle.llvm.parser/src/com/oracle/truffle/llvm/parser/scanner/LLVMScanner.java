@@ -40,6 +40,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.oracle.truffle.api.TruffleLanguage;
 import com.oracle.truffle.llvm.parser.elf.ElfDynamicSection;
 import com.oracle.truffle.llvm.parser.elf.ElfFile;
 import com.oracle.truffle.llvm.parser.elf.ElfSectionHeaderTable.Entry;
@@ -50,8 +51,6 @@ import com.oracle.truffle.llvm.runtime.except.LLVMParserException;
 
 public final class LLVMScanner {
 
-    private static final String CHAR6 = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789._";
-
     private static final int DEFAULT_ID_SIZE = 2;
 
     private static final long BC_MAGIC_WORD = 0xdec04342L; // 'BC' c0de
@@ -64,7 +63,7 @@ public final class LLVMScanner {
 
     private final BitStream bitstream;
 
-    private final Map<Block, List<List<AbbreviatedRecord>>> defaultAbbreviations = new HashMap<>();
+    private final Map<Block, List<List<AbbreviatedRecord>>> defaultAbbreviations;
 
     private final Deque<ScannerState> parents = new ArrayDeque<>(MAX_BLOCK_DEPTH);
 
@@ -78,15 +77,24 @@ public final class LLVMScanner {
 
     private long offset;
 
-    private LLVMScanner(BitStream bitstream, ParserListener listener) {
+    private final ScannerLog log;
+
+    private LLVMScanner(BitStream bitstream, ParserListener listener, Map<Block, List<List<AbbreviatedRecord>>> defaultAbbreviations, ScannerLog log) {
         this.bitstream = bitstream;
         this.parser = listener;
+        this.defaultAbbreviations = defaultAbbreviations;
+        this.log = log;
         this.block = Block.ROOT;
         this.idSize = DEFAULT_ID_SIZE;
         this.offset = 0;
     }
 
-    public static ModelModule parse(ByteBuffer bytes) {
+    /**
+     * Parses the given file. If a {@code cache} is given, the parser listeners are driven by the
+     * scanner log that was recorded when the same bitcode was scanned before, or the log is
+     * recorded and stored in the cache. The files of the cache are accessed through {@code env}.
+     */
+    public static ModelModule parse(ByteBuffer bytes, LLVMParseCache cache, TruffleLanguage.Env env) {
         assert bytes != null;
         if (!isSupportedFile(bytes)) {
             return null;
@@ -133,7 +141,7 @@ public final class LLVMScanner {
             throw new LLVMParserException("Not a valid input file!");
         }
 
-        parseBitcodeBlock(bitcode, model);
+        parseBitcodeBlock(bitcode, model, cache, env);
 
         return model;
     }
@@ -145,22 +153,76 @@ public final class LLVMScanner {
         return magicWord == BC_MAGIC_WORD || magicWord == WRAPPER_MAGIC_WORD || magicWord == ELF_MAGIC_WORD;
     }
 
-    private static void parseBitcodeBlock(ByteBuffer bitcode, ModelModule model) {
+    private static void parseBitcodeBlock(ByteBuffer bitcode, ModelModule model, LLVMParseCache cache, TruffleLanguage.Env env) {
         final BitStream bitstream = BitStream.create(bitcode);
         final BCFileRoot fileParser = new BCFileRoot(model);
-        final LLVMScanner scanner = new LLVMScanner(bitstream, fileParser);
+        final byte[] hash = cache != null ? LLVMParseCache.hash(bitcode) : null;
+        final ScannerLog cachedLog = cache != null ? cache.load(env, hash, bitstream.size()) : null;
+        final ScannerLog newLog = cache != null && cachedLog == null ? new ScannerLog() : null;
+
+        final LLVMScanner scanner = new LLVMScanner(bitstream, fileParser, new HashMap<>(), newLog);
         final long actualMagicWord = scanner.read(Integer.SIZE);
         if (actualMagicWord != BC_MAGIC_WORD) {
             throw new LLVMParserException("Not a valid Bitcode File!");
         }
 
-        scanner.scanToEnd();
+        if (cachedLog != null) {
+            scanner.replay(cachedLog);
+        } else {
+            scanner.scanToEnd();
+            if (newLog != null) {
+                cache.store(env, hash, bitstream.size(), newLog);
+            }
+        }
 
         // the root block does not exist in the LLVM file and is therefore never exited by the
         // scanner
         fileParser.exit();
     }
 
+    private void replay(ScannerLog scannerLog) {
+        final Deque<ParserListener> listeners = new ArrayDeque<>();
+        scannerLog.accept(new ScannerLog.Visitor() {
+
+            @Override
+            public void enter(Block subBlock) {
+                listeners.push(parser);
+                parser = parser.enter(subBlock);
+            }
+
+            @Override
+            public void exit() {
+                parser.exit();
+                parser = listeners.pop();
+            }
+
+            @Override
+            public void record(long id, long[] ops) {
+                parser.record(id, ops);
+            }
+
+            @Override
+            public void skip(Block subBlock, long startingOffset, long endingOffset, int newIdSize) {
+                parser.skip(subBlock, new LazyScanner(bitstream, snapshotDefaultAbbreviations(), startingOffset, endingOffset, newIdSize, subBlock));
+            }
+
+            @Override
+            public void blockInfo(long startingOffset, long endingOffset, int newIdSize) {
+                // scan the block again to define the default abbreviations for lazy scanners
+                final ParserListener parentParser = parser;
+                final Block parentBlock = block;
+                final int parentIdSize = idSize;
+                parser = parser.enter(Block.BLOCKINFO);
+                offset = startingOffset;
+                startSubBlock(Block.BLOCKINFO, newIdSize);
+                scanToOffset(endingOffset);
+                parser = parentParser;
+                block = parentBlock;
+                idSize = parentIdSize;
+            }
+        });
+    }
+
     private static <V> List<V> subList(List<V> original, int from) {
         final List<V> newList = new ArrayList<>(original.size() - from);
         for (int i = from; i < original.size(); i++) {
@@ -184,8 +246,9 @@ public final class LLVMScanner {
     }
 
     private long readChar() {
-        final long value = read(Primitive.CHAR6);
-        return CHAR6.charAt((int) value);
+        final char value = bitstream.readChar6(offset);
+        offset += Primitive.CHAR6.getBits();
+        return value;
     }
 
     private long readVBR(long width) {
@@ -228,7 +291,9 @@ public final class LLVMScanner {
     }
 
     private void abbreviatedRecord(int recordId) {
-        abbreviationDefinitions.get(recordId - BuiltinIDs.CUSTOM_ABBREV_OFFSET).forEach(AbbreviatedRecord::scan);
+        for (AbbreviatedRecord operandScanner : abbreviationDefinitions.get(recordId - BuiltinIDs.CUSTOM_ABBREV_OFFSET)) {
+            operandScanner.scan(this);
+        }
         passRecordToParser();
     }
 
@@ -252,7 +317,7 @@ public final class LLVMScanner {
             final boolean isLiteral = read(Primitive.USER_OPERAND_LITERALBIT) == 1;
             if (isLiteral) {
                 final long fixedValue = read(Primitive.USER_OPERAND_LITERAL);
-                operandScanners.add(() -> recordBuffer.addOp(fixedValue));
+                operandScanners.add(scanner -> scanner.recordBuffer.addOp(fixedValue));
 
             } else {
 
@@ -261,18 +326,18 @@ public final class LLVMScanner {
                 switch ((int) recordType) {
                     case AbbrevRecordId.FIXED: {
                         final int width = (int) read(Primitive.USER_OPERAND_DATA);
-                        operandScanners.add(() -> {
-                            final long op = read(width);
-                            recordBuffer.addOp(op);
+                        operandScanners.add(scanner -> {
+                            final long op = scanner.read(width);
+                            scanner.recordBuffer.addOp(op);
                         });
                         break;
                     }
 
                     case AbbrevRecordId.VBR: {
                         final int width = (int) read(Primitive.USER_OPERAND_DATA);
-                        operandScanners.add(() -> {
-                            final long op = readVBR(width);
-                            recordBuffer.addOp(op);
+                        operandScanners.add(scanner -> {
+                            final long op = scanner.readVBR(width);
+                            scanner.recordBuffer.addOp(op);
                         });
                         break;
                     }
@@ -285,25 +350,25 @@ public final class LLVMScanner {
                         break;
 
                     case AbbrevRecordId.CHAR6:
-                        operandScanners.add(() -> {
-                            final long op = readChar();
-                            recordBuffer.addOp(op);
+                        operandScanners.add(scanner -> {
+                            final long op = scanner.readChar();
+                            scanner.recordBuffer.addOp(op);
                         });
                         break;
 
                     case AbbrevRecordId.BLOB:
-                        operandScanners.add(() -> {
-                            long blobLength = read(Primitive.USER_OPERAND_BLOB_LENGTH);
-                            alignInt();
+                        operandScanners.add(scanner -> {
+                            long blobLength = scanner.read(Primitive.USER_OPERAND_BLOB_LENGTH);
+                            scanner.alignInt();
                             final long maxBlobPartLength = Long.SIZE / Primitive.USER_OPERAND_LITERAL.getBits();
-                            recordBuffer.ensureFits(blobLength / maxBlobPartLength);
+                            scanner.recordBuffer.ensureFits(blobLength / maxBlobPartLength);
                             while (blobLength > 0) {
                                 final long l = blobLength <= maxBlobPartLength ? blobLength : maxBlobPartLength;
-                                final long blobValue = read((int) (Primitive.USER_OPERAND_LITERAL.getBits() * l));
-                                recordBuffer.addOp(blobValue);
+                                final long blobValue = scanner.read((int) (Primitive.USER_OPERAND_LITERAL.getBits() * l));
+                                scanner.recordBuffer.addOp(blobValue);
                                 blobLength -= l;
                             }
-                            alignInt();
+                            scanner.alignInt();
                         });
                         break;
 
@@ -317,11 +382,11 @@ public final class LLVMScanner {
 
         if (containsArrayOperand) {
             final AbbreviatedRecord elementScanner = operandScanners.get(operandScanners.size() - 1);
-            final AbbreviatedRecord arrayScanner = () -> {
-                final long arrayLength = read(Primitive.USER_OPERAND_ARRAY_LENGTH);
-                recordBuffer.ensureFits(arrayLength);
+            final AbbreviatedRecord arrayScanner = scanner -> {
+                final long arrayLength = scanner.read(Primitive.USER_OPERAND_ARRAY_LENGTH);
+                scanner.recordBuffer.ensureFits(arrayLength);
                 for (int j = 0; j < arrayLength; j++) {
-                    elementScanner.scan();
+                    elementScanner.scan(scanner);
                 }
             };
             operandScanners.set(operandScanners.size() - 1, arrayScanner);
@@ -342,11 +407,21 @@ public final class LLVMScanner {
 
         } else if (subBlock.parseLazily()) {
             final long endingOffset = offset + (numWords * Integer.SIZE);
-            final LazyScanner lazyScanner = new LazyScanner(new HashMap<>(defaultAbbreviations), offset, endingOffset, (int) newIdSize, subBlock);
+            if (log != null) {
+                log.skip(subBlock, offset, endingOffset, (int) newIdSize);
+            }
+            final LazyScanner lazyScanner = new LazyScanner(bitstream, snapshotDefaultAbbreviations(), offset, endingOffset, (int) newIdSize, subBlock);
             offset = endingOffset;
             parser.skip(subBlock, lazyScanner);
 
         } else {
+            if (log != null) {
+                if (subBlock == Block.BLOCKINFO) {
+                    log.blockInfo(offset, offset + (numWords * Integer.SIZE), (int) newIdSize);
+                } else {
+                    log.enter(subBlock);
+                }
+            }
             final int localAbbreviationDefinitionsOffset = defaultAbbreviations.getOrDefault(block, Collections.emptyList()).size();
             parents.push(new ScannerState(subList(abbreviationDefinitions, localAbbreviationDefinitionsOffset), block, idSize, parser));
             parser = parser.enter(subBlock);
@@ -390,9 +465,12 @@ public final class LLVMScanner {
 
                 private void setDefaultAbbreviations() {
                     if (currentBlockId >= 0) {
+                        // the lists may be shared with the snapshot of a lazy scanner, so we never
+                        // modify them in place
                         final Block currentBlock = Block.lookup(currentBlockId);
-                        defaultAbbreviations.putIfAbsent(currentBlock, new ArrayList<>());
-                        defaultAbbreviations.get(currentBlock).addAll(abbreviationDefinitions);
+                        final List<List<AbbreviatedRecord>> blockAbbreviations = new ArrayList<>(defaultAbbreviations.getOrDefault(currentBlock, Collections.emptyList()));
+                        blockAbbreviations.addAll(abbreviationDefinitions);
+                        defaultAbbreviations.put(currentBlock, blockAbbreviations);
                         abbreviationDefinitions.clear();
                     }
                 }
@@ -400,9 +478,20 @@ public final class LLVMScanner {
         }
     }
 
+    private Map<Block, List<List<AbbreviatedRecord>>> snapshotDefaultAbbreviations() {
+        final Map<Block, List<List<AbbreviatedRecord>>> snapshot = new HashMap<>(defaultAbbreviations.size());
+        for (Map.Entry<Block, List<List<AbbreviatedRecord>>> entry : defaultAbbreviations.entrySet()) {
+            snapshot.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
     private void exitBlock() {
         alignInt();
         parser.exit();
+        if (log != null && block != Block.BLOCKINFO) {
+            log.exit();
+        }
 
         if (parents.isEmpty()) {
             // after lazily parsed block
@@ -421,6 +510,9 @@ public final class LLVMScanner {
     }
 
     private void passRecordToParser() {
+        if (log != null && block != Block.BLOCKINFO) {
+            log.record(recordBuffer.getId(), recordBuffer.getOps());
+        }
         parser.record(recordBuffer.getId(), recordBuffer.getOps());
         recordBuffer.invalidate();
     }
@@ -440,15 +532,24 @@ public final class LLVMScanner {
         passRecordToParser();
     }
 
-    public final class LazyScanner {
+    /**
+     * Scans a lazily parsed block. The scanner is re-entrant: every invocation of
+     * {@link #scanBlock} uses its own scanner state, and the default abbreviations that were known
+     * when the block was skipped are an immutable snapshot. Thus, blocks of different modules can
+     * be scanned concurrently.
+     */
+    public static final class LazyScanner {
 
+        private final BitStream bitstream;
         private final Map<Block, List<List<AbbreviatedRecord>>> oldDefaultAbbreviations;
         private final long startingOffset;
         private final long endingOffset;
         private final int startingIdSize;
         private final Block startingBlock;
 
-        private LazyScanner(Map<Block, List<List<AbbreviatedRecord>>> oldDefaultAbbreviations, long startingOffset, long endingOffset, int startingIdSize, Block startingBlock) {
+        private LazyScanner(BitStream bitstream, Map<Block, List<List<AbbreviatedRecord>>> oldDefaultAbbreviations, long startingOffset, long endingOffset, int startingIdSize,
+                        Block startingBlock) {
+            this.bitstream = bitstream;
             this.oldDefaultAbbreviations = oldDefaultAbbreviations;
             this.startingOffset = startingOffset;
             this.endingOffset = endingOffset;
@@ -457,13 +558,11 @@ public final class LLVMScanner {
         }
 
         public void scanBlock(ParserListener lazyParser) {
-            assert parents.isEmpty();
-            defaultAbbreviations.clear();
-            defaultAbbreviations.putAll(oldDefaultAbbreviations);
-            offset = startingOffset;
-            parser = lazyParser;
-            startSubBlock(startingBlock, startingIdSize);
-            scanToOffset(endingOffset);
+            final LLVMScanner scanner = new LLVMScanner(bitstream, lazyParser, new HashMap<>(oldDefaultAbbreviations), null);
+            scanner.offset = startingOffset;
+            scanner.startSubBlock(startingBlock, startingIdSize);
+            scanner.scanToOffset(endingOffset);
+            assert scanner.parents.isEmpty();
         }
     }
 }
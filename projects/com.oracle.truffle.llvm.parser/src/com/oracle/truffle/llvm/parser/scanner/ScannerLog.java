@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser.scanner;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.llvm.runtime.except.LLVMParserException;
+
+/**
+ * The sequence of blocks and records that the scanner passed to the parser listeners, in a compact
+ * binary encoding. Replaying the log drives the listeners without decoding the bitstream again.
+ * Lazily parsed blocks and the {@link Block#BLOCKINFO} block are only logged as bit ranges of the
+ * bitcode file, because they define abbreviations that are needed to scan function blocks later.
+ */
+final class ScannerLog {
+
+    private static final int ENTER = 1;
+    private static final int EXIT = 2;
+    private static final int RECORD = 3;
+    private static final int SKIP = 4;
+    private static final int BLOCKINFO = 5;
+
+    interface Visitor {
+
+        void enter(Block block);
+
+        void exit();
+
+        void record(long id, long[] ops);
+
+        void skip(Block block, long startingOffset, long endingOffset, int idSize);
+
+        void blockInfo(long startingOffset, long endingOffset, int idSize);
+    }
+
+    private byte[] data;
+    private int size;
+
+    ScannerLog() {
+        this.data = new byte[1024];
+        this.size = 0;
+    }
+
+    ScannerLog(byte[] data) {
+        this.data = data;
+        this.size = data.length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    void enter(Block block) {
+        writeByte(ENTER);
+        writeVarLong(block.getId());
+    }
+
+    void exit() {
+        writeByte(EXIT);
+    }
+
+    void record(long id, long[] ops) {
+        writeByte(RECORD);
+        writeVarLong(id);
+        writeVarLong(ops.length);
+        for (long op : ops) {
+            writeVarLong(op);
+        }
+    }
+
+    void skip(Block block, long startingOffset, long endingOffset, int idSize) {
+        writeByte(SKIP);
+        writeVarLong(block.getId());
+        writeVarLong(startingOffset);
+        writeVarLong(endingOffset);
+        writeVarLong(idSize);
+    }
+
+    void blockInfo(long startingOffset, long endingOffset, int idSize) {
+        writeByte(BLOCKINFO);
+        writeVarLong(startingOffset);
+        writeVarLong(endingOffset);
+        writeVarLong(idSize);
+    }
+
+    private void writeByte(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        writeByte((int) remaining);
+    }
+
+    /**
+     * Checks that the log is well-formed and only refers to bits within a bitstream of the given
+     * size, so that a corrupt log is rejected before any listener sees it.
+     */
+    boolean isValid(long bitstreamSize) {
+        final int[] depth = new int[1];
+        try {
+            accept(new Visitor() {
+
+                @Override
+                public void enter(Block block) {
+                    depth[0]++;
+                }
+
+                @Override
+                public void exit() {
+                    if (--depth[0] < 0) {
+                        throw new LLVMParserException("Unbalanced block in scanner log");
+                    }
+                }
+
+                @Override
+                public void record(long id, long[] ops) {
+                }
+
+                @Override
+                public void skip(Block block, long startingOffset, long endingOffset, int idSize) {
+                    checkRange(startingOffset, endingOffset);
+                }
+
+                @Override
+                public void blockInfo(long startingOffset, long endingOffset, int idSize) {
+                    checkRange(startingOffset, endingOffset);
+                }
+
+                private void checkRange(long startingOffset, long endingOffset) {
+                    if (startingOffset < 0 || startingOffset > endingOffset || endingOffset > bitstreamSize) {
+                        throw new LLVMParserException("Invalid block range in scanner log");
+                    }
+                }
+            });
+        } catch (LLVMParserException | IllegalStateException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            return false;
+        }
+        return depth[0] == 0;
+    }
+
+    void accept(Visitor visitor) {
+        final Reader reader = new Reader();
+        while (reader.position < size) {
+            final int tag = reader.readByte();
+            switch (tag) {
+                case ENTER:
+                    visitor.enter(Block.lookup(reader.readVarLong()));
+                    break;
+
+                case EXIT:
+                    visitor.exit();
+                    break;
+
+                case RECORD: {
+                    final long id = reader.readVarLong();
+                    final long[] ops = new long[reader.readLength()];
+                    for (int i = 0; i < ops.length; i++) {
+                        ops[i] = reader.readVarLong();
+                    }
+                    visitor.record(id, ops);
+                    break;
+                }
+
+                case SKIP: {
+                    final Block block = Block.lookup(reader.readVarLong());
+                    final long startingOffset = reader.readVarLong();
+                    final long endingOffset = reader.readVarLong();
+                    visitor.skip(block, startingOffset, endingOffset, reader.readLength());
+                    break;
+                }
+
+                case BLOCKINFO: {
+                    final long startingOffset = reader.readVarLong();
+                    final long endingOffset = reader.readVarLong();
+                    visitor.blockInfo(startingOffset, endingOffset, reader.readLength());
+                    break;
+                }
+
+                default:
+                    throw new LLVMParserException("Unknown scanner log entry: " + tag);
+            }
+        }
+    }
+
+    private final class Reader {
+
+        private int position;
+
+        int readByte() {
+            if (position >= size) {
+                throw new LLVMParserException("Truncated scanner log");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift >= Long.SIZE) {
+                    throw new LLVMParserException("Malformed number in scanner log");
+                }
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readLength() {
+            final long length = readVarLong();
+            if (length < 0 || length > size) {
+                throw new LLVMParserException("Invalid length in scanner log");
+            }
+            return (int) length;
+        }
+    }
+}
@@ -38,4 +38,10 @@ public interface ContextExtension {
     default Class<?> extensionClass() {
         return this.getClass();
     }
+
+    /**
+     * Called when the context is disposed, after the exit handlers of the program were executed.
+     */
+    default void dispose() {
+    }
 }
@@ -29,17 +29,20 @@
  */
 package com.oracle.truffle.llvm.runtime;
 
+import java.io.PrintStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -61,20 +64,21 @@ import com.oracle.truffle.llvm.runtime.debug.LLVMSourceContext;
 import com.oracle.truffle.llvm.runtime.except.LLVMLinkerException;
 import com.oracle.truffle.llvm.runtime.interop.LLVMTypedForeignObject;
 import com.oracle.truffle.llvm.runtime.interop.export.InteropNodeFactory;
+import com.oracle.truffle.llvm.runtime.memory.LLVMHeapAllocator;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackPointer;
+import com.oracle.truffle.llvm.runtime.memory.LLVMStackMemory;
 import com.oracle.truffle.llvm.runtime.memory.LLVMThreadingStack;
 import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMPointer;
+import com.oracle.truffle.llvm.runtime.pthread.LLVMPThreadContext;
 import com.oracle.truffle.llvm.runtime.types.AggregateType;
 import com.oracle.truffle.llvm.runtime.types.FunctionType;
 import com.oracle.truffle.llvm.runtime.types.MetaType;
 import com.oracle.truffle.llvm.runtime.types.PrimitiveType;
 import com.oracle.truffle.llvm.runtime.types.Type;
-import org.graalvm.collections.EconomicMap;
-import org.graalvm.collections.Equivalence;
 
 public final class LLVMContext {
     private final List<Path> libraryPaths = new ArrayList<>();
@@ -84,30 +88,18 @@ public final class LLVMContext {
 
     private final List<LLVMThread> runningThreads = new ArrayList<>();
     private final LLVMThreadingStack threadingStack;
+    private final LLVMPThreadContext pthreadContext;
     private final Object[] mainArguments;
     private final Map<String, String> environment;
     private final LinkedList<LLVMNativePointer> caughtExceptionStack = new LinkedList<>();
-    private final HashMap<String, Integer> nativeCallStatistics;
+    private final LLVMNativeCallStatistics nativeCallStatistics;
+    private final LLVMSamplingProfiler samplingProfiler;
 
-    private static final class Handle {
-
-        private int refcnt;
-        private final LLVMNativePointer pointer;
-        private final TruffleObject managed;
-
-        private Handle(LLVMNativePointer pointer, TruffleObject managed) {
-            this.refcnt = 0;
-            this.pointer = pointer;
-            this.managed = managed;
-        }
-    }
-
-    private final Object handlesLock;
-    private final EconomicMap<TruffleObject, Handle> handleFromManaged;
-    private final EconomicMap<LLVMNativePointer, Handle> handleFromPointer;
+    private final LLVMHandleTable handles;
 
     private final LLVMSourceContext sourceContext;
     private final LLVMGlobalsStack globalStack;
+    private final LLVMHeapAllocator heapAllocator;
 
     private final LLVMLanguage language;
     private final Env env;
@@ -121,8 +113,8 @@ public final class LLVMContext {
     private final MaterializedFrame globalFrame = Truffle.getRuntime().createMaterializedFrame(new Object[0]);
 
     // we are not able to clean up ThreadLocals properly, so we are using maps instead
-    private final Map<Thread, Object> tls = new HashMap<>();
-    private final Map<Thread, LLVMPointer> clearChildTid = new HashMap<>();
+    private final Map<Thread, Object> tls = new ConcurrentHashMap<>();
+    private final Map<Thread, LLVMPointer> clearChildTid = new ConcurrentHashMap<>();
 
     // signals
     private final LLVMNativePointer sigDfl;
@@ -135,62 +127,106 @@ public final class LLVMContext {
 
     private final InteropNodeFactory interopNodeFactory;
 
+    /**
+     * Backing storage of global variables. Memory is handed out by bumping a pointer in the current
+     * segment with a CAS; when the segment is exhausted, a new one is allocated and installed. Large
+     * allocations get a segment of their own. Allocated memory is only released when the context is
+     * disposed.
+     */
     public static final class LLVMGlobalsStack {
         private static final int ALIGNMENT = 8;
-        private static final int SIZE = 10 * 1024 * 1024;
-        private static final int LARGE_ALLOC = 512 * 1024;
+        private static final int SEGMENT_SIZE = 1024 * 1024;
+        private static final int LARGE_ALLOC = SEGMENT_SIZE / 2;
+
+        private static final class Segment {
+            private final long base;
+            private final long size;
+            private final AtomicLong used;
+
+            private Segment(long base, long size, long used) {
+                this.base = base;
+                this.size = size;
+                this.used = new AtomicLong(used);
+            }
 
-        private final LLVMMemory memory;
-        private final long lowerBounds;
-        private final long upperBounds;
+            /**
+             * Returns the address of the allocation, or 0 if the segment does not have enough space.
+             */
+            private long tryAllocate(long alignedSize) {
+                while (true) {
+                    long offset = used.get();
+                    if (offset + alignedSize > size) {
+                        return 0;
+                    }
+                    if (used.compareAndSet(offset, offset + alignedSize)) {
+                        return base + offset;
+                    }
+                }
+            }
+        }
+
+        private static final Segment EMPTY = new Segment(0, 0, 0);
 
-        private long[] overflowSlots;
-        private int nextFreeOverflowSlot;
-        private long stackPointer;
+        private final LLVMMemory memory;
+        private final AtomicReference<Segment> current;
+        private final ConcurrentLinkedQueue<Segment> segments;
 
         @SuppressWarnings("deprecation")
         public LLVMGlobalsStack() {
             this.memory = LLVMMemory.getInstance();
-            long stackAllocation = memory.allocateMemory(SIZE).asNative();
-            this.lowerBounds = stackAllocation;
-            this.upperBounds = stackAllocation + SIZE;
-            this.stackPointer = upperBounds;
-            this.nextFreeOverflowSlot = 0;
-            this.overflowSlots = null;
+            this.current = new AtomicReference<>(EMPTY);
+            this.segments = new ConcurrentLinkedQueue<>();
         }
 
         @TruffleBoundary
-        public synchronized void free() {
-            memory.free(lowerBounds);
-            for (int i = 0; i < nextFreeOverflowSlot; i++) {
-                memory.free(overflowSlots[i]);
+        public void free() {
+            current.set(EMPTY);
+            Segment segment;
+            while ((segment = segments.poll()) != null) {
+                memory.free(segment.base);
             }
         }
 
         @TruffleBoundary
-        public synchronized long allocateStackMemory(final long size) {
+        public long allocateStackMemory(final long size) {
             assert size >= 0;
-            if (size < LARGE_ALLOC) {
-                final long alignedAllocation = (stackPointer - size) & -ALIGNMENT;
-                assert alignedAllocation <= stackPointer;
-                if (alignedAllocation >= lowerBounds) {
-                    stackPointer = alignedAllocation;
-                    return alignedAllocation;
+            final long alignedSize = (size + ALIGNMENT - 1) & -ALIGNMENT;
+            if (alignedSize >= LARGE_ALLOC) {
+                return addSegment(alignedSize, alignedSize).base;
+            }
+            while (true) {
+                Segment segment = current.get();
+                long allocation = segment.tryAllocate(alignedSize);
+                if (allocation != 0) {
+                    return allocation;
+                }
+                Segment next = new Segment(memory.allocateMemory(SEGMENT_SIZE).asNative(), SEGMENT_SIZE, 0);
+                if (current.compareAndSet(segment, next)) {
+                    segments.add(next);
+                } else {
+                    // another thread installed a new segment in the meantime
+                    memory.free(next.base);
                 }
             }
+        }
 
-            return overflowAlloc(size);
+        private Segment addSegment(long size, long used) {
+            Segment segment = new Segment(memory.allocateMemory(size).asNative(), size, used);
+            segments.add(segment);
+            return segment;
         }
 
-        private long overflowAlloc(final long size) {
-            if (overflowSlots == null) {
-                overflowSlots = new long[8];
-            } else if (nextFreeOverflowSlot >= overflowSlots.length) {
-                overflowSlots = Arrays.copyOf(overflowSlots, 2 * overflowSlots.length);
+        public void printStatistics(PrintStream stream) {
+            long totalSize = 0;
+            long totalUsed = 0;
+            stream.println("Globals segments:");
+            for (Segment segment : segments) {
+                long used = segment.used.get();
+                stream.println(String.format("  0x%016x: %10d of %10d bytes used (%5.1f%%)", segment.base, used, segment.size, 100.0 * used / segment.size));
+                totalSize += segment.size;
+                totalUsed += used;
             }
-            long allocation = memory.allocateMemory(size).asNative();
-            overflowSlots[nextFreeOverflowSlot++] = allocation;
-            return allocation;
+            stream.println(String.format("  total: %d of %d bytes used in %d segments", totalUsed, totalSize, segments.size()));
         }
     }
 
@@ -216,6 +252,7 @@ public final class LLVMContext {
         }
     }
 
+    @SuppressWarnings("deprecation")
     public LLVMContext(LLVMLanguage language, Env env, List<ContextExtension> contextExtensions, InteropNodeFactory interopNodeFactory, String languageHome) {
         this.language = language;
         this.env = env;
@@ -227,14 +264,20 @@ public final class LLVMContext {
         this.dataLayout = new DataLayout();
         this.destructorFunctions = new ArrayList<>();
         this.globalStack = new LLVMGlobalsStack();
-        this.nativeCallStatistics = SulongEngineOption.isTrue(env.getOptions().get(SulongEngineOption.NATIVE_CALL_STATS)) ? new HashMap<>() : null;
-        this.threadingStack = new LLVMThreadingStack(Thread.currentThread(), env.getOptions().get(SulongEngineOption.STACK_SIZE_KB));
+        this.heapAllocator = LLVMHeapAllocator.create(env.getOptions().get(SulongEngineOption.ALLOCATOR), LLVMMemory.getInstance());
+        this.nativeCallStatistics = SulongEngineOption.isTrue(env.getOptions().get(SulongEngineOption.NATIVE_CALL_STATS))
+                        ? new LLVMNativeCallStatistics(env.getOptions().get(SulongEngineOption.NATIVE_CALL_LATENCY_SAMPLING))
+                        : null;
+        this.samplingProfiler = SulongEngineOption.isTrue(env.getOptions().get(SulongEngineOption.SAMPLING_PROFILER))
+                        ? new LLVMSamplingProfiler(env.getOptions().get(SulongEngineOption.SAMPLING_PROFILER_INTERVAL_MS))
+                        : null;
+        LLVMStackMemory stackMemory = LLVMStackMemory.create(env.getOptions().get(SulongEngineOption.STACK_MEMORY), this, LLVMMemory.getInstance(), env.getOptions().get(SulongEngineOption.STACK_COMMIT_SIZE_KB) * 1024L);
+        this.threadingStack = new LLVMThreadingStack(Thread.currentThread(), env.getOptions().get(SulongEngineOption.STACK_SIZE_KB), stackMemory);
+        this.pthreadContext = new LLVMPThreadContext(this, LLVMMemory.getInstance());
         this.sigDfl = LLVMNativePointer.create(0);
         this.sigIgn = LLVMNativePointer.create(1);
         this.sigErr = LLVMNativePointer.create(-1);
-        this.handleFromManaged = EconomicMap.create(ForeignEquivalence.INSTANCE);
-        this.handleFromPointer = EconomicMap.create();
-        this.handlesLock = new Object();
+        this.handles = new LLVMHandleTable();
         this.functionPointerRegistry = new LLVMFunctionPointerRegistry();
         this.sourceContext = new LLVMSourceContext();
 
@@ -271,6 +314,13 @@ public final class LLVMContext {
             initialized = true;
             cleanupNecessary = true;
 
+            if (nativeCallStatistics != null) {
+                env.exportSymbol(LLVMNativeCallStatistics.SYMBOL, nativeCallStatistics);
+            }
+            if (samplingProfiler != null) {
+                samplingProfiler.start();
+            }
+
             LLVMFunctionDescriptor initContextDescriptor = globalScope.getFunction("@__sulong_init_context");
             RootCallTarget initContextFunction = initContextDescriptor.getLLVMIRFunction();
             try (StackPointer stackPointer = threadingStack.getStack().newFrame()) {
@@ -313,7 +363,9 @@ public final class LLVMContext {
     }
 
     public void dispose(LLVMMemory memory) {
+        printSamplingProfile();
         printNativeCallStatistic();
+        printAllocatorStatistic();
 
         // the following cases exist for cleanup:
         // - exit() or interop: execute all atexit functions, shutdown stdlib, flush IO, and execute
@@ -330,14 +382,25 @@ public final class LLVMContext {
             }
         }
 
-        threadingStack.freeMainStack(memory);
+        // in reverse order, so that extensions can still use the ones created before them
+        for (int i = contextExtensions.size() - 1; i >= 0; i--) {
+            contextExtensions.get(i).dispose();
+        }
+
+        threadingStack.freeStacks();
         globalStack.free();
+        heapAllocator.dispose();
+        handles.dispose(memory);
     }
 
     public LLVMGlobalsStack getGlobalsStack() {
         return globalStack;
     }
 
+    public LLVMHeapAllocator getHeapAllocator() {
+        return heapAllocator;
+    }
+
     public InteropNodeFactory getInteropNodeFactory() {
         return interopNodeFactory;
     }
@@ -507,109 +570,32 @@ public final class LLVMContext {
         return sigErr;
     }
 
-    @TruffleBoundary
     public boolean isHandle(LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            return handleFromPointer.containsKey(address);
-        }
+        return handles.isHandle(address.asNative());
     }
 
-    @TruffleBoundary
     public TruffleObject getManagedObjectForHandle(LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            final Handle handle = handleFromPointer.get(address);
-
-            if (handle == null) {
-                throw new UnsupportedOperationException("Cannot resolve native handle: " + address);
-            }
-
-            return handle.managed;
-        }
-    }
-
-    private static class ForeignEquivalence extends Equivalence {
-
-        private static final ForeignEquivalence INSTANCE = new ForeignEquivalence();
-
-        @Override
-        public boolean equals(Object a, Object b) {
-            return getIdentityKey(a) == getIdentityKey(b);
-        }
-
-        @Override
-        public int hashCode(Object o) {
-            return System.identityHashCode(getIdentityKey(o));
-        }
-
-        private static Object getIdentityKey(Object obj) {
-            if (obj instanceof LLVMTypedForeignObject) {
-                return ((LLVMTypedForeignObject) obj).getForeign();
-            } else {
-                return obj;
-            }
-        }
+        return handles.getManagedObject(address.asNative());
     }
 
-    @TruffleBoundary
     public void releaseHandle(LLVMMemory memory, LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            Handle handle = handleFromPointer.get(address);
-            if (handle == null) {
-                throw new UnsupportedOperationException("Cannot resolve native handle: " + address);
-            }
-
-            if (--handle.refcnt == 0) {
-                handleFromPointer.removeKey(address);
-                handleFromManaged.removeKey(handle.managed);
-                memory.free(address);
-            }
-        }
+        handles.release(memory, address.asNative());
     }
 
-    @TruffleBoundary
     public LLVMNativePointer getHandleForManagedObject(LLVMMemory memory, TruffleObject object) {
-        synchronized (handlesLock) {
-            Handle handle = handleFromManaged.get(object);
-            if (handle == null) {
-                LLVMNativePointer allocatedMemory = memory.allocateMemory(Long.BYTES);
-                memory.putI64(allocatedMemory, 0xdeadbeef);
-                handle = new Handle(allocatedMemory, object);
-                handleFromManaged.put(object, handle);
-                handleFromPointer.put(allocatedMemory, handle);
-            }
-
-            handle.refcnt++;
-            return handle.pointer;
-        }
+        return handles.getHandle(memory, object, false);
     }
 
-    @TruffleBoundary
     public LLVMNativePointer getDerefHandleForManagedObject(LLVMMemory memory, TruffleObject object) {
-        synchronized (handlesLock) {
-            Handle handle = handleFromManaged.get(object);
-            if (handle == null) {
-                LLVMNativePointer allocatedMemory = memory.allocateDerefMemory();
-                handle = new Handle(allocatedMemory, object);
-                handleFromManaged.put(object, handle);
-                handleFromPointer.put(allocatedMemory, handle);
-            }
+        return handles.getHandle(memory, object, true);
+    }
 
-            handle.refcnt++;
-            return handle.pointer;
-        }
+    public LLVMNativeCallStatistics getNativeCallStatistics() {
+        return nativeCallStatistics;
     }
 
-    @TruffleBoundary
-    public void registerNativeCall(LLVMFunctionDescriptor descriptor) {
-        if (nativeCallStatistics != null) {
-            String name = descriptor.getName() + " " + descriptor.getType();
-            if (nativeCallStatistics.containsKey(name)) {
-                int count = nativeCallStatistics.get(name) + 1;
-                nativeCallStatistics.put(name, count);
-            } else {
-                nativeCallStatistics.put(name, 1);
-            }
-        }
+    public LLVMSamplingProfiler getSamplingProfiler() {
+        return samplingProfiler;
     }
 
     public LinkedList<LLVMNativePointer> getCaughtExceptionStack() {
@@ -620,6 +606,10 @@ public final class LLVMContext {
         return threadingStack;
     }
 
+    public LLVMPThreadContext getPThreadContext() {
+        return pthreadContext;
+    }
+
     public void registerDestructorFunctions(RootCallTarget destructor) {
         assert destructor != null;
         assert !destructorFunctions.contains(destructor);
@@ -649,13 +639,22 @@ public final class LLVMContext {
     }
 
     @TruffleBoundary
-    public synchronized void awaitThreadTermination() {
+    public void awaitThreadTermination() {
         shutdownThreads();
 
-        while (!runningThreads.isEmpty()) {
-            LLVMThread node = runningThreads.get(0);
+        /*
+         * Do not hold the lock while waiting, threads unregister themselves when they terminate.
+         */
+        while (true) {
+            LLVMThread node;
+            synchronized (this) {
+                if (runningThreads.isEmpty()) {
+                    break;
+                }
+                node = runningThreads.get(0);
+            }
             node.awaitFinish();
-            assert !runningThreads.contains(node); // should be unregistered by LLVMThreadNode
+            assert !getRunningThreads().contains(node); // should be unregistered by LLVMThreadNode
         }
     }
 
@@ -723,14 +722,23 @@ public final class LLVMContext {
 
     private void printNativeCallStatistic() {
         if (nativeCallStatistics != null) {
-            LinkedHashMap<String, Integer> sorted = nativeCallStatistics.entrySet().stream().sorted(Map.Entry.comparingByValue()).collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            Map.Entry::getValue,
-                            (e1, e2) -> e1,
-                            LinkedHashMap::new));
-            for (String s : sorted.keySet()) {
-                System.err.println(String.format("Function %s \t count: %d", s, sorted.get(s)));
-            }
+            nativeCallStatistics.print(SulongEngineOption.getStream(env.getOptions().get(SulongEngineOption.NATIVE_CALL_STATS)));
+        }
+    }
+
+    private void printSamplingProfile() {
+        if (samplingProfiler != null) {
+            samplingProfiler.stop();
+            samplingProfiler.print(SulongEngineOption.getStream(env.getOptions().get(SulongEngineOption.SAMPLING_PROFILER)));
+        }
+    }
+
+    private void printAllocatorStatistic() {
+        String option = env.getOptions().get(SulongEngineOption.PRINT_ALLOCATOR_STATS);
+        if (SulongEngineOption.isTrue(option)) {
+            PrintStream stream = SulongEngineOption.getStream(option);
+            heapAllocator.printStatistics(stream);
+            globalStack.printStatistics(stream);
         }
     }
 
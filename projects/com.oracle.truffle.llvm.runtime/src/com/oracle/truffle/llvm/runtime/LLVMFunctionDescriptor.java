@@ -29,7 +29,9 @@
  */
 package com.oracle.truffle.llvm.runtime;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.oracle.truffle.api.Assumption;
@@ -183,9 +185,29 @@ public final class LLVMFunctionDescriptor implements LLVMSymbol, LLVMInternalTru
 
         @Override
         void resolve(LLVMFunctionDescriptor descriptor) {
-            final RootCallTarget callTarget = converter.convert();
-            final LLVMSourceFunctionType sourceType = converter.getSourceType();
-            descriptor.setFunction(new LLVMIRFunction(callTarget, sourceType));
+            convert(descriptor);
+        }
+
+        /**
+         * @return {@code true} if this call converted the function, {@code false} if another
+         *         thread did
+         */
+        boolean convert(LLVMFunctionDescriptor descriptor) {
+            CompilerAsserts.neverPartOfCompilation();
+            // the function may be converted by a background thread, callers wait until it is done
+            synchronized (this) {
+                if (descriptor.function != this) {
+                    return false;
+                }
+                final RootCallTarget callTarget = converter.convert();
+                final LLVMSourceFunctionType sourceType = converter.getSourceType();
+                descriptor.setFunction(new LLVMIRFunction(callTarget, sourceType));
+                return true;
+            }
+        }
+
+        List<LLVMFunctionDescriptor> getDirectCallees() {
+            return converter.getDirectCallees();
         }
     }
 
@@ -241,6 +263,11 @@ public final class LLVMFunctionDescriptor implements LLVMSymbol, LLVMInternalTru
 
     public static final class NativeFunction extends Function {
         private final TruffleObject nativeFunction;
+        /**
+         * Copy-on-write list of the bindings of this function, one per signature. Variadic
+         * functions are bound once for every distinct argument list they are called with.
+         */
+        private volatile BoundNativeFunction[] boundFunctions = NO_BOUND_FUNCTIONS;
 
         public NativeFunction(TruffleObject nativeFunction) {
             this.nativeFunction = nativeFunction;
@@ -252,6 +279,18 @@ public final class LLVMFunctionDescriptor implements LLVMSymbol, LLVMInternalTru
         }
     }
 
+    private static final BoundNativeFunction[] NO_BOUND_FUNCTIONS = new BoundNativeFunction[0];
+
+    private static final class BoundNativeFunction {
+        private final String signature;
+        private final TruffleObject function;
+
+        BoundNativeFunction(String signature, TruffleObject function) {
+            this.signature = signature;
+            this.function = function;
+        }
+    }
+
     static final class NullFunction extends Function {
         @Override
         TruffleObject createNativeWrapper(LLVMFunctionDescriptor descriptor) {
@@ -298,6 +337,13 @@ public final class LLVMFunctionDescriptor implements LLVMSymbol, LLVMInternalTru
          * @return the function's source-level type
          */
         LLVMSourceFunctionType getSourceType();
+
+        /**
+         * Get the functions that are called directly by the already converted function.
+         *
+         * @return the direct callees of the function
+         */
+        List<LLVMFunctionDescriptor> getDirectCallees();
     }
 
     public void resolveIfLazyLLVMIRFunction() {
@@ -369,6 +415,37 @@ public final class LLVMFunctionDescriptor implements LLVMSymbol, LLVMInternalTru
         return nativeFunction;
     }
 
+    /**
+     * Returns the native function bound to {@code signature} by a previous call to
+     * {@link #setBoundNativeFunction}, or {@code null} if it was not bound with this signature yet.
+     * Signatures are interned, so they are compared by identity.
+     */
+    public TruffleObject getBoundNativeFunction(String signature) {
+        assert getFunction() instanceof NativeFunction;
+        BoundNativeFunction[] bound = ((NativeFunction) getFunction()).boundFunctions;
+        for (int i = 0; i < bound.length; i++) {
+            if (bound[i].signature == signature) {
+                return bound[i].function;
+            }
+        }
+        return null;
+    }
+
+    @TruffleBoundary
+    public void setBoundNativeFunction(String signature, TruffleObject boundFunction) {
+        assert getFunction() instanceof NativeFunction;
+        assert signature == signature.intern();
+        NativeFunction function = (NativeFunction) getFunction();
+        synchronized (function) {
+            if (getBoundNativeFunction(signature) == null) {
+                BoundNativeFunction[] bound = function.boundFunctions;
+                BoundNativeFunction[] newBound = Arrays.copyOf(bound, bound.length + 1);
+                newBound[bound.length] = new BoundNativeFunction(signature, boundFunction);
+                function.boundFunctions = newBound;
+            }
+        }
+    }
+
     @Override
     public String getName() {
         return name;
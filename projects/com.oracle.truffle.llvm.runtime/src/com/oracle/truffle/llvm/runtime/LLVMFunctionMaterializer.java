@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor.LazyLLVMIRFunction;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+
+/**
+ * Converts lazily parsed functions on a pool of background threads, so that their call targets
+ * are ready before they are called for the first time. Starting from the given roots, the
+ * materializer follows direct calls, so it only converts functions that are statically reachable.
+ * A thread that calls a function while it is being converted waits until the conversion is done.
+ */
+public final class LLVMFunctionMaterializer implements LLVMThread {
+
+    private final LLVMContext context;
+    private final Thread[] workers;
+
+    private final ArrayDeque<LLVMFunctionDescriptor> queue = new ArrayDeque<>();
+    private final Set<LLVMFunctionDescriptor> scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private int activeWorkers;
+    private boolean stopped;
+    // functions that were converted by the workers rather than by their first caller
+    private int converted;
+
+    private LLVMFunctionMaterializer(LLVMContext context, int threadCount) {
+        this.context = context;
+        this.workers = new Thread[threadCount];
+    }
+
+    public static LLVMFunctionMaterializer start(LLVMContext context, int threadCount, List<LLVMFunctionDescriptor> roots) {
+        assert threadCount > 0;
+        LLVMFunctionMaterializer materializer = new LLVMFunctionMaterializer(context, threadCount);
+        materializer.schedule(roots);
+        for (int i = 0; i < threadCount; i++) {
+            materializer.workers[i] = context.getEnv().createThread(materializer::run);
+        }
+        context.registerThread(materializer);
+        for (Thread worker : materializer.workers) {
+            worker.start();
+        }
+        return materializer;
+    }
+
+    private synchronized void schedule(List<LLVMFunctionDescriptor> functions) {
+        for (LLVMFunctionDescriptor function : functions) {
+            if (scheduled.add(function) && function.isLLVMIRFunction()) {
+                queue.addLast(function);
+            }
+        }
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            LLVMFunctionDescriptor function;
+            synchronized (this) {
+                // other workers may still discover new functions while they are converting
+                while (!stopped && queue.isEmpty() && activeWorkers > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        stopped = true;
+                    }
+                }
+                if (stopped || queue.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                function = queue.removeFirst();
+                activeWorkers++;
+            }
+
+            List<LLVMFunctionDescriptor> callees = Collections.emptyList();
+            boolean convertedHere = false;
+            try {
+                LLVMFunctionDescriptor.Function current = function.getFunction();
+                if (current instanceof LazyLLVMIRFunction) {
+                    LazyLLVMIRFunction lazyFunction = (LazyLLVMIRFunction) current;
+                    convertedHere = lazyFunction.convert(function);
+                    // also follow functions that a guest thread converted in the meantime
+                    callees = lazyFunction.getDirectCallees();
+                }
+            } catch (RuntimeException e) {
+                // the function stays lazy, so the error is reported when the function is called
+            } finally {
+                finish(callees, convertedHere);
+            }
+        }
+    }
+
+    private synchronized void finish(List<LLVMFunctionDescriptor> callees, boolean convertedHere) {
+        activeWorkers--;
+        if (convertedHere) {
+            converted++;
+        }
+        schedule(callees);
+    }
+
+    @Override
+    @TruffleBoundary
+    public synchronized void stop() {
+        stopped = true;
+        queue.clear();
+        notifyAll();
+    }
+
+    @Override
+    @TruffleBoundary
+    public void awaitFinish() {
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        context.unregisterThread(this);
+        String option = context.getEnv().getOptions().get(SulongEngineOption.PRINT_PARALLEL_PARSING_STATS);
+        if (SulongEngineOption.isTrue(option)) {
+            synchronized (this) {
+                SulongEngineOption.getStream(option).println("parallel parsing: " + converted + " functions converted in the background");
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LLVMFunctionMaterializer [workers=" + workers.length + "]";
+    }
+}
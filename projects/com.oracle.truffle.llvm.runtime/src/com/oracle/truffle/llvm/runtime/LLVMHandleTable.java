@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.llvm.runtime.interop.LLVMTypedForeignObject;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+import org.graalvm.collections.EconomicMap;
+import org.graalvm.collections.Equivalence;
+
+/**
+ * Maps managed objects to native handles and back.
+ *
+ * The table is split into stripes. Lookups by address use primitive {@code long} keys in
+ * open-addressing tables that are read without locking, writers synchronize on the affected stripe
+ * only. Reference counts are updated with CAS, a stripe is only locked when a handle is created or
+ * its last reference is released. {@link #isHandle} first checks the address against the range of
+ * all handles that were ever created, which rejects ordinary pointers without touching the table.
+ *
+ * Handles that are not deref handles are carved from dedicated regions of native memory instead of
+ * being allocated one by one with malloc. This keeps their address range tight: a range that
+ * includes malloc'd addresses would soon span the whole heap, and every pointer would pass it.
+ */
+final class LLVMHandleTable {
+
+    private static final int STRIPES = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final long HANDLE_SIZE = Long.BYTES;
+    private static final long REGION_SIZE = (1 << 16) * HANDLE_SIZE;
+
+    static final class Handle {
+
+        private static final AtomicIntegerFieldUpdater<Handle> REFCNT = AtomicIntegerFieldUpdater.newUpdater(Handle.class, "refcnt");
+
+        private volatile int refcnt;
+        private final long address;
+        private final TruffleObject managed;
+
+        /* guarded by the managed stripe of this handle */
+        private boolean removed;
+
+        private Handle(long address, TruffleObject managed) {
+            this.refcnt = 1;
+            this.address = address;
+            this.managed = managed;
+        }
+
+        /**
+         * Increments the reference count unless the handle was already released.
+         */
+        private boolean tryRetain() {
+            int current;
+            do {
+                current = refcnt;
+                if (current == 0) {
+                    return false;
+                }
+            } while (!REFCNT.compareAndSet(this, current, current + 1));
+            return true;
+        }
+
+        private int release() {
+            return REFCNT.decrementAndGet(this);
+        }
+    }
+
+    private static final Handle TOMBSTONE = new Handle(0, null);
+
+    /**
+     * Open-addressing table from handle addresses to handles. The table array is replaced on
+     * growth, so readers only need a volatile read of the array. Slots are never reused before the
+     * next rehash, so a reader always finds an empty slot that terminates the probe sequence.
+     */
+    private static final class AddressStripe {
+        private volatile Handle[] table = new Handle[INITIAL_CAPACITY];
+        private int used;
+        private int size;
+
+        Handle get(long address) {
+            Handle[] t = table;
+            int mask = t.length - 1;
+            for (int i = slotIndex(address) & mask;; i = (i + 1) & mask) {
+                Handle h = t[i];
+                if (h == null) {
+                    return null;
+                } else if (h != TOMBSTONE && h.address == address) {
+                    return h;
+                }
+            }
+        }
+
+        synchronized void put(Handle handle) {
+            if ((used + 1) * 2 > table.length) {
+                rehash();
+            }
+            insert(table, handle);
+            used++;
+            size++;
+        }
+
+        synchronized void remove(Handle handle) {
+            Handle[] t = table;
+            int mask = t.length - 1;
+            for (int i = slotIndex(handle.address) & mask; t[i] != null; i = (i + 1) & mask) {
+                if (t[i] == handle) {
+                    t[i] = TOMBSTONE;
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        private void rehash() {
+            Handle[] newTable = new Handle[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) * 4)];
+            for (Handle h : table) {
+                if (h != null && h != TOMBSTONE) {
+                    insert(newTable, h);
+                }
+            }
+            used = size;
+            table = newTable;
+        }
+
+        private static void insert(Handle[] t, Handle handle) {
+            int mask = t.length - 1;
+            int i = slotIndex(handle.address) & mask;
+            while (t[i] != null) {
+                i = (i + 1) & mask;
+            }
+            t[i] = handle;
+        }
+    }
+
+    private static final class ManagedStripe {
+        private final EconomicMap<TruffleObject, Handle> handles = EconomicMap.create(ForeignEquivalence.INSTANCE);
+    }
+
+    /**
+     * A conservative bound of all addresses that were ever used for a handle.
+     */
+    private static final class AddressRange {
+        private final AtomicLong low = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong high = new AtomicLong(Long.MIN_VALUE);
+
+        boolean contains(long address) {
+            return address >= low.get() && address <= high.get();
+        }
+
+        void include(long address) {
+            long current;
+            do {
+                current = low.get();
+            } while (address < current && !low.compareAndSet(current, address));
+            do {
+                current = high.get();
+            } while (address > current && !high.compareAndSet(current, address));
+        }
+    }
+
+    private static final class ForeignEquivalence extends Equivalence {
+
+        private static final ForeignEquivalence INSTANCE = new ForeignEquivalence();
+
+        @Override
+        public boolean equals(Object a, Object b) {
+            return getIdentityKey(a) == getIdentityKey(b);
+        }
+
+        @Override
+        public int hashCode(Object o) {
+            return System.identityHashCode(getIdentityKey(o));
+        }
+    }
+
+    private static Object getIdentityKey(Object obj) {
+        if (obj instanceof LLVMTypedForeignObject) {
+            return ((LLVMTypedForeignObject) obj).getForeign();
+        } else {
+            return obj;
+        }
+    }
+
+    private final AddressStripe[] addressStripes;
+    private final ManagedStripe[] managedStripes;
+    private final AddressRange handleRange = new AddressRange();
+    private final AddressRange derefHandleRange = new AddressRange();
+
+    private final Object regionLock = new Object();
+    /* guarded by regionLock */
+    private long[] regions = new long[0];
+    private long regionNext;
+    private long regionEnd;
+    private long freeSlots;
+
+    LLVMHandleTable() {
+        this.addressStripes = new AddressStripe[STRIPES];
+        this.managedStripes = new ManagedStripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            addressStripes[i] = new AddressStripe();
+            managedStripes[i] = new ManagedStripe();
+        }
+    }
+
+    private static int hash(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+
+    private static int slotIndex(long address) {
+        return hash(address) >>> 4;
+    }
+
+    private AddressStripe getAddressStripe(long address) {
+        return addressStripes[hash(address) & (STRIPES - 1)];
+    }
+
+    private ManagedStripe getManagedStripe(TruffleObject object) {
+        int h = System.identityHashCode(getIdentityKey(object));
+        return managedStripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    boolean isHandle(long address) {
+        if (!handleRange.contains(address) && !derefHandleRange.contains(address)) {
+            return false;
+        }
+        return containsHandle(address);
+    }
+
+    @TruffleBoundary
+    private boolean containsHandle(long address) {
+        return getAddressStripe(address).get(address) != null;
+    }
+
+    @TruffleBoundary
+    TruffleObject getManagedObject(long address) {
+        Handle handle = getAddressStripe(address).get(address);
+        if (handle == null) {
+            throw new UnsupportedOperationException("Cannot resolve native handle: " + LLVMNativePointer.create(address));
+        }
+        return handle.managed;
+    }
+
+    @TruffleBoundary
+    LLVMNativePointer getHandle(LLVMMemory memory, TruffleObject object, boolean deref) {
+        ManagedStripe stripe = getManagedStripe(object);
+        synchronized (stripe) {
+            Handle handle = stripe.handles.get(object);
+            if (handle != null) {
+                if (handle.tryRetain()) {
+                    return LLVMNativePointer.create(handle.address);
+                }
+                // the last reference is being released concurrently, finish the job
+                remove(memory, stripe, handle);
+            }
+
+            long address;
+            if (deref) {
+                address = memory.allocateDerefMemory().asNative();
+                derefHandleRange.include(address);
+            } else {
+                address = allocateSlot(memory);
+            }
+            handle = new Handle(address, object);
+            stripe.handles.put(object, handle);
+            getAddressStripe(address).put(handle);
+            return LLVMNativePointer.create(address);
+        }
+    }
+
+    @TruffleBoundary
+    void release(LLVMMemory memory, long address) {
+        Handle handle = getAddressStripe(address).get(address);
+        if (handle == null) {
+            throw new UnsupportedOperationException("Cannot resolve native handle: " + LLVMNativePointer.create(address));
+        }
+
+        if (handle.release() == 0) {
+            ManagedStripe stripe = getManagedStripe(handle.managed);
+            synchronized (stripe) {
+                remove(memory, stripe, handle);
+            }
+        }
+    }
+
+    private void remove(LLVMMemory memory, ManagedStripe stripe, Handle handle) {
+        assert Thread.holdsLock(stripe);
+        if (!handle.removed) {
+            handle.removed = true;
+            if (stripe.handles.get(handle.managed) == handle) {
+                stripe.handles.removeKey(handle.managed);
+            }
+            getAddressStripe(handle.address).remove(handle);
+            if (memory.isDerefMemory(handle.address)) {
+                memory.free(handle.address);
+            } else {
+                freeSlot(memory, handle.address);
+            }
+        }
+    }
+
+    private long allocateSlot(LLVMMemory memory) {
+        synchronized (regionLock) {
+            long slot;
+            if (freeSlots != 0) {
+                slot = freeSlots;
+                freeSlots = memory.getI64(slot);
+            } else {
+                if (regionNext == regionEnd) {
+                    long region = memory.allocateMemory(REGION_SIZE).asNative();
+                    regions = Arrays.copyOf(regions, regions.length + 1);
+                    regions[regions.length - 1] = region;
+                    handleRange.include(region);
+                    handleRange.include(region + REGION_SIZE - HANDLE_SIZE);
+                    regionNext = region;
+                    regionEnd = region + REGION_SIZE;
+                }
+                slot = regionNext;
+                regionNext += HANDLE_SIZE;
+            }
+            memory.putI64(slot, 0xdeadbeef);
+            return slot;
+        }
+    }
+
+    private void freeSlot(LLVMMemory memory, long slot) {
+        synchronized (regionLock) {
+            memory.putI64(slot, freeSlots);
+            freeSlots = slot;
+        }
+    }
+
+    /**
+     * Releases the memory of all handles that are not deref handles. Called when the context is
+     * disposed.
+     */
+    void dispose(LLVMMemory memory) {
+        synchronized (regionLock) {
+            for (long region : regions) {
+                memory.free(region);
+            }
+            regions = new long[0];
+            regionNext = 0;
+            regionEnd = 0;
+            freeSlots = 0;
+        }
+    }
+}
@@ -35,8 +35,6 @@ import com.oracle.truffle.api.TruffleLanguage;
 
 public abstract class LLVMLanguage extends TruffleLanguage<LLVMContext> {
 
-    public static final Assumption SINGLE_CONTEXT_ASSUMPTION = Truffle.getRuntime().createAssumption("Single Context");
-
     public static final String LLVM_SULONG_TYPE = "application/x-sulong";
 
     public static final String LLVM_BITCODE_MIME_TYPE = "application/x-llvm-ir-bitcode";
@@ -61,6 +59,17 @@ public abstract class LLVMLanguage extends TruffleLanguage<LLVMContext> {
 
     public static final String NAME = "llvm";
 
+    /**
+     * Valid as long as no two contexts of this language instance exist at the same time. Nodes
+     * are never shared between contexts, so contexts that are created one after another can all
+     * cache context state in their nodes.
+     */
+    private final Assumption singleContextAssumption = Truffle.getRuntime().createAssumption("Single Context");
+
+    public Assumption getSingleContextAssumption() {
+        return singleContextAssumption;
+    }
+
     public abstract LLVMContext findLLVMContext();
 
     public static ContextReference<LLVMContext> getLLVMContextReference() {
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.MessageResolution;
+import com.oracle.truffle.api.interop.Resolve;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.nodes.Node;
+
+/**
+ * Call counters and sampled latency histograms of native calls. Every native call site allocates
+ * its own {@link Counter} when it is specialized, so a call only increments an {@link AtomicLong}.
+ * The statistics are printed as JSON on context exit and are exported as the executable polyglot
+ * symbol {@value #SYMBOL}, which returns the current statistics as a JSON string.
+ */
+@MessageResolution(receiverType = LLVMNativeCallStatistics.class)
+public final class LLVMNativeCallStatistics implements TruffleObject {
+
+    public static final String SYMBOL = "llvm.nativeCallStats";
+
+    /*
+     * Latencies are counted in buckets with 2 bits of mantissa, i.e., every power of two is split
+     * into 4 buckets and the relative error of a bucket is at most 25%.
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final int latencySampling;
+    private final ConcurrentLinkedQueue<Counter> counters = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<LLVMFunctionDescriptor, Counter> genericCounters = new ConcurrentHashMap<>();
+
+    /**
+     * @param latencySampling measure the latency of every n-th call of a call site, or never if 0
+     */
+    public LLVMNativeCallStatistics(int latencySampling) {
+        this.latencySampling = latencySampling;
+    }
+
+    /**
+     * Creates the counter of a call site that always calls {@code descriptor}.
+     */
+    public Counter createCounter(LLVMFunctionDescriptor descriptor) {
+        Counter counter = new Counter(descriptor.getName(), String.valueOf(descriptor.getType()), latencySampling);
+        counters.add(counter);
+        return counter;
+    }
+
+    /**
+     * Returns the counter shared by all megamorphic call sites that call {@code descriptor}.
+     */
+    @TruffleBoundary
+    public Counter getGenericCounter(LLVMFunctionDescriptor descriptor) {
+        Counter counter = genericCounters.get(descriptor);
+        if (counter == null) {
+            Counter newCounter = new Counter(descriptor.getName(), String.valueOf(descriptor.getType()), latencySampling);
+            counter = genericCounters.putIfAbsent(descriptor, newCounter);
+            if (counter == null) {
+                counters.add(newCounter);
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    public static final class Counter {
+
+        private final String name;
+        private final String type;
+        private final int latencySampling;
+
+        private final AtomicLong calls = new AtomicLong();
+        private final LongAdder sampledNanos;
+        private final AtomicLongArray histogram;
+
+        /*
+         * Only decides which calls are measured, so lost updates by concurrent callers are
+         * acceptable.
+         */
+        private int untilNextSample;
+
+        private Counter(String name, String type, int latencySampling) {
+            this.name = name;
+            this.type = type;
+            this.latencySampling = latencySampling;
+            this.sampledNanos = latencySampling > 0 ? new LongAdder() : null;
+            this.histogram = latencySampling > 0 ? new AtomicLongArray(BUCKETS) : null;
+            this.untilNextSample = latencySampling;
+        }
+
+        /**
+         * Counts a call. Returns the start time of the call if its latency should be measured,
+         * otherwise 0. Runs in compiled code without a boundary, only {@link #exit} needs one.
+         */
+        public long enter() {
+            calls.incrementAndGet();
+            if (latencySampling > 0 && --untilNextSample <= 0) {
+                untilNextSample = latencySampling;
+                return System.nanoTime();
+            }
+            return 0;
+        }
+
+        /**
+         * Records the latency of a call for which {@link #enter()} returned {@code start}.
+         */
+        @TruffleBoundary
+        public void exit(long start) {
+            long nanos = Math.max(System.nanoTime() - start, 0);
+            sampledNanos.add(nanos);
+            histogram.incrementAndGet(getBucket(nanos));
+        }
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getBucketLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final String type;
+        int callSites;
+        long calls;
+        long sampledNanos;
+        final long[] histogram;
+
+        Entry(String name, String type, boolean latency) {
+            this.name = name;
+            this.type = type;
+            this.histogram = latency ? new long[BUCKETS] : null;
+        }
+
+        long getSamples() {
+            long samples = 0;
+            for (long count : histogram) {
+                samples += count;
+            }
+            return samples;
+        }
+
+        long getPercentile(long samples, double percentile) {
+            long rank = (long) Math.ceil(samples * percentile);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && histogram[i] != 0) {
+                    return getBucketLowerBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+
+    private List<Entry> collect() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Counter counter : counters) {
+            String key = counter.name + " " + counter.type;
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry(counter.name, counter.type, latencySampling > 0));
+            entry.callSites++;
+            entry.calls += counter.calls.get();
+            if (entry.histogram != null) {
+                entry.sampledNanos += counter.sampledNanos.sum();
+                for (int i = 0; i < BUCKETS; i++) {
+                    entry.histogram[i] += counter.histogram.get(i);
+                }
+            }
+        }
+        List<Entry> result = new ArrayList<>(entries.values());
+        result.sort((e1, e2) -> Long.compare(e2.calls, e1.calls));
+        return result;
+    }
+
+    @TruffleBoundary
+    public String toJSON() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"nativeCalls\":[");
+        String entrySeparator = "";
+        for (Entry entry : collect()) {
+            json.append(entrySeparator);
+            entrySeparator = ",";
+            json.append("{\"function\":");
+            appendString(json, entry.name);
+            json.append(",\"type\":");
+            appendString(json, entry.type);
+            json.append(",\"callSites\":").append(entry.callSites);
+            json.append(",\"calls\":").append(entry.calls);
+            if (entry.histogram != null) {
+                long samples = entry.getSamples();
+                json.append(",\"latency\":{\"samples\":").append(samples);
+                json.append(",\"meanNanos\":").append(samples == 0 ? 0 : entry.sampledNanos / samples);
+                json.append(",\"p50Nanos\":").append(entry.getPercentile(samples, 0.5));
+                json.append(",\"p90Nanos\":").append(entry.getPercentile(samples, 0.9));
+                json.append(",\"p99Nanos\":").append(entry.getPercentile(samples, 0.99));
+                json.append(",\"buckets\":[");
+                String bucketSeparator = "";
+                for (int i = 0; i < BUCKETS; i++) {
+                    if (entry.histogram[i] != 0) {
+                        json.append(bucketSeparator);
+                        bucketSeparator = ",";
+                        json.append("{\"lowerBoundNanos\":").append(getBucketLowerBound(i));
+                        json.append(",\"count\":").append(entry.histogram[i]).append('}');
+                    }
+                }
+                json.append("]}");
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    @TruffleBoundary
+    public void print(PrintStream stream) {
+        stream.println(toJSON());
+    }
+
+    @Override
+    public ForeignAccess getForeignAccess() {
+        return LLVMNativeCallStatisticsForeign.ACCESS;
+    }
+
+    static boolean isInstance(TruffleObject object) {
+        return object instanceof LLVMNativeCallStatistics;
+    }
+
+    @Resolve(message = "IS_EXECUTABLE")
+    abstract static class IsExecutable extends Node {
+
+        boolean access(@SuppressWarnings("unused") LLVMNativeCallStatistics receiver) {
+            return true;
+        }
+    }
+
+    @Resolve(message = "EXECUTE")
+    abstract static class Execute extends Node {
+
+        Object access(LLVMNativeCallStatistics receiver, @SuppressWarnings("unused") Object[] arguments) {
+            return receiver.toJSON();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.SulongStackTrace.Element;
+import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
+
+/**
+ * Samples the guest call stack in regular intervals. A timer thread only raises a flag; the next
+ * guest thread that enters a basic block while the flag is set captures its own stack. This
+ * neither needs instrumentation nor invalidates compiled code, and the flag check folds away if
+ * the profiler is disabled. The samples are printed in the collapsed-stack format of flame graph
+ * tools: one line per distinct stack, with the frames from the outermost to the innermost
+ * function separated by semicolons, followed by the number of samples. The innermost frame is the
+ * source location of the sample, or the LLVM IR block if there is no debug information.
+ */
+public final class LLVMSamplingProfiler {
+
+    private final long intervalMillis;
+    private final Map<String, Long> samples = new ConcurrentHashMap<>();
+
+    private volatile boolean sampleRequested;
+    private volatile boolean stopped;
+    private Thread timer;
+
+    public LLVMSamplingProfiler(long intervalMillis) {
+        this.intervalMillis = Math.max(intervalMillis, 1);
+    }
+
+    @TruffleBoundary
+    public synchronized void start() {
+        if (timer == null) {
+            timer = new Thread(this::run, "Sulong sampling profiler");
+            timer.setDaemon(true);
+            timer.start();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            sampleRequested = true;
+        }
+    }
+
+    @TruffleBoundary
+    public synchronized void stop() {
+        stopped = true;
+        if (timer != null) {
+            timer.interrupt();
+            timer = null;
+        }
+    }
+
+    /**
+     * Returns true if a sample should be taken. Callers should then call {@link #acquireSample()}
+     * behind a boundary.
+     */
+    public boolean isSampleRequested() {
+        return sampleRequested;
+    }
+
+    /**
+     * Returns true if the calling thread should take the requested sample, i.e., no other thread
+     * took it since it was requested.
+     */
+    @TruffleBoundary
+    public synchronized boolean acquireSample() {
+        if (sampleRequested) {
+            sampleRequested = false;
+            return true;
+        }
+        return false;
+    }
+
+    @TruffleBoundary
+    public void addSample(SulongStackTrace trace) {
+        List<Element> elements = trace.getTrace();
+        if (elements.isEmpty()) {
+            return;
+        }
+        StringBuilder stack = new StringBuilder();
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            appendFrame(stack, getFunctionName(elements.get(i)));
+            stack.append(';');
+        }
+        appendFrame(stack, getLocation(elements.get(0)));
+        samples.merge(stack.toString(), 1L, Long::sum);
+    }
+
+    private static String getFunctionName(Element element) {
+        if (element.getSourceFunctionName() != null) {
+            return element.getSourceFunctionName();
+        }
+        return element.getIRFunctionName();
+    }
+
+    private static String getLocation(Element element) {
+        LLVMSourceLocation location = element.getSourceLocation();
+        if (location != null) {
+            return location.describeLocation();
+        }
+        if (element.getIRBlock() != null) {
+            return element.getIRFunctionName() + " {" + element.getIRBlock() + "}";
+        }
+        return element.getIRFunctionName();
+    }
+
+    private static void appendFrame(StringBuilder stack, String frame) {
+        // semicolons separate frames and newlines separate stacks
+        for (int i = 0; i < frame.length(); i++) {
+            char c = frame.charAt(i);
+            stack.append(c == ';' || c == '\n' ? '_' : c);
+        }
+    }
+
+    @TruffleBoundary
+    public void print(PrintStream stream) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(samples.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<String, Long> entry : entries) {
+            stream.println(entry.getKey() + " " + entry.getValue());
+        }
+        stream.flush();
+    }
+}
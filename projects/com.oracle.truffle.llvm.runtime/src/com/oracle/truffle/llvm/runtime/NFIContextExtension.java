@@ -30,6 +30,7 @@
 package com.oracle.truffle.llvm.runtime;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.graalvm.collections.EconomicMap;
 import org.graalvm.collections.MapCursor;
@@ -63,6 +64,7 @@ public final class NFIContextExtension implements ContextExtension {
     private final EconomicMap<ExternalLibrary, TruffleObject> libraryHandles = EconomicMap.create();
     private final TruffleLanguage.Env env;
     private final LLVMNativeFunctions nativeFunctions;
+    private final ConcurrentHashMap<SignatureKey, String> signatureCache = new ConcurrentHashMap<>();
 
     public NFIContextExtension(Env env) {
         this.env = env;
@@ -353,8 +355,25 @@ public final class NFIContextExtension implements ContextExtension {
         throw new LLVMLinkerException(String.format("External function %s cannot be found.", name));
     }
 
+    /**
+     * Returns the NFI signature of {@code type}. Signatures are cached per function type, so the
+     * same string instance is returned for equal types.
+     */
     public String getNativeSignature(FunctionType type, int skipArguments) throws UnsupportedNativeTypeException {
         CompilerAsserts.neverPartOfCompilation();
+        SignatureKey key = new SignatureKey(type, skipArguments);
+        String signature = signatureCache.get(key);
+        if (signature == null) {
+            signature = createNativeSignature(type, skipArguments);
+            String existing = signatureCache.putIfAbsent(key, signature);
+            if (existing != null) {
+                signature = existing;
+            }
+        }
+        return signature;
+    }
+
+    private String createNativeSignature(FunctionType type, int skipArguments) throws UnsupportedNativeTypeException {
         // TODO varargs
         CompilerAsserts.neverPartOfCompilation();
         String nativeRet = getNativeType(type.getReturnType());
@@ -375,6 +394,30 @@ public final class NFIContextExtension implements ContextExtension {
         return sb.toString();
     }
 
+    private static final class SignatureKey {
+        private final FunctionType type;
+        private final int skipArguments;
+
+        SignatureKey(FunctionType type, int skipArguments) {
+            this.type = type;
+            this.skipArguments = skipArguments;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + skipArguments;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SignatureKey)) {
+                return false;
+            }
+            SignatureKey other = (SignatureKey) obj;
+            return skipArguments == other.skipArguments && type.equals(other.type);
+        }
+    }
+
     public static final class NativeLookupResult {
         private final ExternalLibrary library;
         private final TruffleObject object;
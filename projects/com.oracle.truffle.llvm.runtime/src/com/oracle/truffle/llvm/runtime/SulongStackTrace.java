@@ -64,6 +64,22 @@ public final class SulongStackTrace {
             this(null, null, irFunctionName, llvmirSourceName, irBlock);
         }
 
+        public String getSourceFunctionName() {
+            return sourceFunctionName;
+        }
+
+        public LLVMSourceLocation getSourceLocation() {
+            return sourceLocation;
+        }
+
+        public String getIRFunctionName() {
+            return irFunctionName;
+        }
+
+        public String getIRBlock() {
+            return irBlock;
+        }
+
         void appendToStackTrace(StringBuilder builder) {
             builder.append("\t ");
             boolean encloseIRScope = false;
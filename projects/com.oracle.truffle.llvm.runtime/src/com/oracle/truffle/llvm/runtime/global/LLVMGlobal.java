@@ -171,7 +171,7 @@ public final class LLVMGlobal implements LLVMSymbol, LLVMObjectNativeLibrary.Pro
         }
 
         Assumption getSingleContextAssumption() {
-            return LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION;
+            return LLVMLanguage.getLanguage().getSingleContextAssumption();
         }
 
         @Specialization(assumptions = "getSingleContextAssumption()", guards = {"global == cachedGlobal"})
@@ -233,7 +233,7 @@ public final class LLVMGlobal implements LLVMSymbol, LLVMObjectNativeLibrary.Pro
         }
 
         Assumption getSingleContextAssumption() {
-            return LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION;
+            return LLVMLanguage.getLanguage().getSingleContextAssumption();
         }
 
         @Specialization(assumptions = "getSingleContextAssumption()", guards = {"global == cachedGlobal"})
@@ -267,7 +267,7 @@ public final class LLVMGlobal implements LLVMSymbol, LLVMObjectNativeLibrary.Pro
         }
 
         Assumption getSingleContextAsssumption() {
-            return LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION;
+            return LLVMLanguage.getLanguage().getSingleContextAssumption();
         }
 
         @Specialization(assumptions = "getSingleContextAsssumption()")
@@ -295,7 +295,7 @@ public final class LLVMGlobal implements LLVMSymbol, LLVMObjectNativeLibrary.Pro
         }
 
         Assumption getSingleContextAssumption() {
-            return LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION;
+            return LLVMLanguage.getLanguage().getSingleContextAssumption();
         }
 
         @Specialization(assumptions = "getSingleContextAssumption()")
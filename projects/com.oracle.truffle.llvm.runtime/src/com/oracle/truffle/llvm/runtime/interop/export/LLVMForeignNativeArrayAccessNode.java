@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.interop.export;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.llvm.runtime.interop.access.LLVMInteropType;
+import com.oracle.truffle.llvm.runtime.interop.access.LLVMInteropType.ValueKind;
+import com.oracle.truffle.llvm.runtime.interop.convert.ForeignToLLVM;
+import com.oracle.truffle.llvm.runtime.interop.convert.ForeignToLLVM.ForeignToLLVMType;
+import com.oracle.truffle.llvm.runtime.interop.convert.ForeignToLLVM.SlowPathForeignToLLVM;
+import com.oracle.truffle.llvm.runtime.interop.export.LLVMForeignNativeArrayAccessNodeFactory.ReadNodeGen;
+import com.oracle.truffle.llvm.runtime.interop.export.LLVMForeignNativeArrayAccessNodeFactory.WriteNodeGen;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMPointer;
+
+/**
+ * Element access for arrays of primitives that live in native memory (e.g. the views returned by
+ * {@code polyglot_from_double_array}). The element is read or written directly at its address,
+ * without materializing an element pointer and going through a load or store node.
+ */
+public abstract class LLVMForeignNativeArrayAccessNode extends LLVMNode {
+
+    @CompilationFinal private LLVMMemory memory;
+
+    public static Read createRead() {
+        return ReadNodeGen.create();
+    }
+
+    public static Write createWrite() {
+        return WriteNodeGen.create();
+    }
+
+    /**
+     * Returns true if {@code receiver} is a native array of primitives that can be accessed by this
+     * node.
+     */
+    public boolean canAccess(LLVMPointer receiver) {
+        if (!LLVMNativePointer.isInstance(receiver) || !(receiver.getExportType() instanceof LLVMInteropType.Array)) {
+            return false;
+        }
+        LLVMInteropType elementType = ((LLVMInteropType.Array) receiver.getExportType()).getElementType();
+        if (!(elementType instanceof LLVMInteropType.Value)) {
+            return false;
+        }
+        ValueKind kind = ((LLVMInteropType.Value) elementType).getKind();
+        if (kind == null || kind == ValueKind.POINTER) {
+            return false;
+        }
+        if (memory == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            memory = getLLVMMemory();
+        }
+        return !memory.isDerefMemory(LLVMNativePointer.cast(receiver));
+    }
+
+    static ValueKind getKind(LLVMInteropType elementType) {
+        return ((LLVMInteropType.Value) elementType).getKind();
+    }
+
+    static long getAddress(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx, long elementSize) {
+        if (Long.compareUnsigned(idx, type.getLength()) >= 0) {
+            CompilerDirectives.transferToInterpreter();
+            throw UnknownIdentifierException.raise(Long.toString(idx));
+        }
+        return receiver.asNative() + idx * elementSize;
+    }
+
+    public abstract static class Read extends LLVMForeignNativeArrayAccessNode {
+
+        public abstract Object execute(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx);
+
+        @Specialization(guards = "type.getElementType() == elementType")
+        Object doCached(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx,
+                        @Cached("type.getElementType()") @SuppressWarnings("unused") LLVMInteropType elementType,
+                        @Cached("getKind(elementType)") ValueKind kind,
+                        @Cached("type.getElementSize()") long elementSize,
+                        @Cached("getLLVMMemory()") LLVMMemory llvmMemory) {
+            return read(llvmMemory, kind, getAddress(receiver, type, idx, elementSize));
+        }
+
+        @Specialization(replaces = "doCached")
+        Object doGeneric(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx,
+                        @Cached("getLLVMMemory()") LLVMMemory llvmMemory) {
+            return read(llvmMemory, getKind(type.getElementType()), getAddress(receiver, type, idx, type.getElementSize()));
+        }
+
+        private static Object read(LLVMMemory llvmMemory, ValueKind kind, long address) {
+            if (kind == ValueKind.DOUBLE) {
+                return llvmMemory.getDouble(address);
+            } else if (kind == ValueKind.FLOAT) {
+                return llvmMemory.getFloat(address);
+            } else if (kind == ValueKind.I64) {
+                return llvmMemory.getI64(address);
+            } else if (kind == ValueKind.I32) {
+                return llvmMemory.getI32(address);
+            } else if (kind == ValueKind.I16) {
+                return llvmMemory.getI16(address);
+            } else if (kind == ValueKind.I8) {
+                return llvmMemory.getI8(address);
+            } else if (kind == ValueKind.I1) {
+                return llvmMemory.getI1(address);
+            } else {
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalStateException("unexpected interop kind " + kind);
+            }
+        }
+    }
+
+    public abstract static class Write extends LLVMForeignNativeArrayAccessNode {
+
+        public abstract void execute(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx, Object value);
+
+        @Specialization(guards = "type.getElementType() == elementType")
+        void doCached(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx, Object value,
+                        @Cached("type.getElementType()") LLVMInteropType elementType,
+                        @Cached("getKind(elementType)") ValueKind kind,
+                        @Cached("type.getElementSize()") long elementSize,
+                        @Cached("getLLVMMemory()") LLVMMemory llvmMemory,
+                        @Cached("createToLLVM(elementType)") ForeignToLLVM toLLVM) {
+            long address = getAddress(receiver, type, idx, elementSize);
+            write(llvmMemory, kind, address, toLLVM.executeWithType(value, ((LLVMInteropType.Value) elementType).getBaseType()));
+        }
+
+        @Specialization(replaces = "doCached")
+        void doGeneric(LLVMNativePointer receiver, LLVMInteropType.Array type, long idx, Object value,
+                        @Cached("getLLVMMemory()") LLVMMemory llvmMemory,
+                        @Cached("createSlowPathNode()") SlowPathForeignToLLVM slowConvert) {
+            ValueKind kind = getKind(type.getElementType());
+            long address = getAddress(receiver, type, idx, type.getElementSize());
+            write(llvmMemory, kind, address, convert(slowConvert, llvmMemory, kind, value));
+        }
+
+        static SlowPathForeignToLLVM createSlowPathNode() {
+            return ForeignToLLVM.createSlowPathNode();
+        }
+
+        @TruffleBoundary
+        private static Object convert(SlowPathForeignToLLVM slowConvert, LLVMMemory llvmMemory, ValueKind kind, Object value) {
+            return slowConvert.convert(llvmMemory, ForeignToLLVMType.valueOf(kind.name()), value);
+        }
+
+        static ForeignToLLVM createToLLVM(LLVMInteropType elementType) {
+            return ForeignToLLVM.create((LLVMInteropType.Value) elementType);
+        }
+
+        private static void write(LLVMMemory llvmMemory, ValueKind kind, long address, Object llvmValue) {
+            if (kind == ValueKind.DOUBLE) {
+                llvmMemory.putDouble(address, (double) llvmValue);
+            } else if (kind == ValueKind.FLOAT) {
+                llvmMemory.putFloat(address, (float) llvmValue);
+            } else if (kind == ValueKind.I64) {
+                llvmMemory.putI64(address, (long) llvmValue);
+            } else if (kind == ValueKind.I32) {
+                llvmMemory.putI32(address, (int) llvmValue);
+            } else if (kind == ValueKind.I16) {
+                llvmMemory.putI16(address, (short) llvmValue);
+            } else if (kind == ValueKind.I8) {
+                llvmMemory.putI8(address, (byte) llvmValue);
+            } else if (kind == ValueKind.I1) {
+                llvmMemory.putI1(address, (boolean) llvmValue);
+            } else {
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalStateException("unexpected interop kind " + kind);
+            }
+        }
+    }
+}
@@ -269,6 +269,7 @@ public class LLVMPointerMessageResolution {
 
         @Child LLVMForeignGetElementPointerNode getElementPointer = LLVMForeignGetElementPointerNodeGen.create();
         @Child LLVMForeignAccessNode.Read read = LLVMForeignAccessNode.createRead();
+        @Child LLVMForeignNativeArrayAccessNode.Read readNative = LLVMForeignNativeArrayAccessNode.createRead();
 
         protected Object access(LLVMPointer receiver, String ident) {
             LLVMPointer ptr = getElementPointer.execute(receiver.getExportType(), receiver, ident);
@@ -276,6 +277,9 @@ public class LLVMPointerMessageResolution {
         }
 
         protected Object access(LLVMPointer receiver, Number idx) {
+            if (readNative.canAccess(receiver)) {
+                return readNative.execute(LLVMNativePointer.cast(receiver), (LLVMInteropType.Array) receiver.getExportType(), idx.longValue());
+            }
             LLVMPointer ptr = getElementPointer.execute(receiver.getExportType(), receiver, idx.longValue());
             return read.execute(ptr, ptr.getExportType());
         }
@@ -286,6 +290,7 @@ public class LLVMPointerMessageResolution {
 
         @Child LLVMForeignGetElementPointerNode getElementPointer = LLVMForeignGetElementPointerNodeGen.create();
         @Child LLVMForeignAccessNode.Write write = LLVMForeignAccessNode.createWrite();
+        @Child LLVMForeignNativeArrayAccessNode.Write writeNative = LLVMForeignNativeArrayAccessNode.createWrite();
 
         protected Object access(LLVMPointer receiver, String ident, Object value) {
             LLVMPointer ptr = getElementPointer.execute(receiver.getExportType(), receiver, ident);
@@ -294,6 +299,10 @@ public class LLVMPointerMessageResolution {
         }
 
         protected Object access(LLVMPointer receiver, Number idx, Object value) {
+            if (writeNative.canAccess(receiver)) {
+                writeNative.execute(LLVMNativePointer.cast(receiver), (LLVMInteropType.Array) receiver.getExportType(), idx.longValue(), value);
+                return value;
+            }
             LLVMPointer ptr = getElementPointer.execute(receiver.getExportType(), receiver, idx.longValue());
             doWrite(ptr, value);
             return value;
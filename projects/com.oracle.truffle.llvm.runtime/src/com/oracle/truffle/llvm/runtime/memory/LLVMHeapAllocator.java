@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import java.io.PrintStream;
+
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+
+/**
+ * Backs the {@code malloc}, {@code calloc}, {@code realloc} and {@code free} intrinsics. The
+ * implementation is selected per context with {@link SulongEngineOption#ALLOCATOR}.
+ *
+ * Every implementation must accept pointers in {@link #free} and {@link #reallocate} that were not
+ * handed out by itself (e.g., memory that was allocated by native code), and forward them to the
+ * native allocator.
+ *
+ * Sizes are unsigned. {@link #allocate} and {@link #reallocate} return {@code 0} for requests that
+ * cannot be satisfied, and {@link #reallocate} leaves the old block untouched in that case.
+ */
+public interface LLVMHeapAllocator {
+
+    String NATIVE = "native";
+    String SIZE_CLASS = "sizeclass";
+
+    long allocate(long size);
+
+    long reallocate(long address, long size);
+
+    void free(long address);
+
+    /**
+     * Releases all memory that is exclusively owned by this allocator. Called when the context is
+     * disposed.
+     */
+    void dispose();
+
+    void printStatistics(PrintStream stream);
+
+    static LLVMHeapAllocator create(String name, LLVMMemory memory) {
+        switch (name) {
+            case NATIVE:
+                return new LLVMNativeHeapAllocator(memory);
+            case SIZE_CLASS:
+                return new LLVMSizeClassHeapAllocator(memory);
+            default:
+                throw new IllegalArgumentException("Unknown allocator: " + name);
+        }
+    }
+}
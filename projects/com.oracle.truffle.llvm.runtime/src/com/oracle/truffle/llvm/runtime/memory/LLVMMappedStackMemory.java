@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.Message;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.NFIContextExtension;
+
+/**
+ * Reserves the stack with an anonymous {@code PROT_NONE} mapping and commits it page-wise with
+ * {@code mprotect}, so that a thread only has the part of its stack resident that it actually
+ * used. The lowest page of the mapping stays inaccessible and catches stray accesses below the
+ * stack.
+ *
+ * The native functions are bound lazily, because the NFI libraries are not loaded yet when the
+ * context is created. If the NFI is not available, the stacks are allocated on the heap.
+ */
+final class LLVMMappedStackMemory implements LLVMStackMemory {
+
+    private static final long PAGE_SIZE = 4096;
+
+    private static final int PROT_NONE = 0x0;
+    private static final int PROT_READ_WRITE = 0x1 | 0x2;
+    private static final int MAP_PRIVATE_ANONYMOUS_NORESERVE = 0x02 | 0x20 | 0x4000;
+
+    private static final long MAX_ERRNO = 4095;
+
+    private final LLVMContext context;
+    private final LLVMHeapStackMemory fallback;
+    private final long commitSize;
+
+    private TruffleObject mmap;
+    private TruffleObject mprotect;
+    private TruffleObject munmap;
+    private boolean useFallback;
+
+    LLVMMappedStackMemory(LLVMContext context, LLVMMemory memory, long commitSize) {
+        this.context = context;
+        this.fallback = new LLVMHeapStackMemory(memory);
+        this.commitSize = Math.max(PAGE_SIZE, (commitSize + PAGE_SIZE - 1) & -PAGE_SIZE);
+    }
+
+    private synchronized boolean bindFunctions() {
+        if (mmap == null && !useFallback) {
+            NFIContextExtension nfiContextExtension = context.getContextExtensionOrNull(NFIContextExtension.class);
+            if (nfiContextExtension == null) {
+                useFallback = true;
+            } else {
+                mmap = nfiContextExtension.getNativeFunction(context, "@__sulong_posix_mmap", "(UINT64,UINT64,SINT32,SINT32,SINT32,SINT64):UINT64");
+                mprotect = nfiContextExtension.getNativeFunction(context, "@__sulong_posix_mprotect", "(UINT64,UINT64,SINT32):SINT32");
+                munmap = nfiContextExtension.getNativeFunction(context, "@__sulong_posix_munmap", "(UINT64,UINT64):SINT32");
+            }
+        }
+        return !useFallback;
+    }
+
+    private static long call(TruffleObject function, Object... args) {
+        CompilerAsserts.neverPartOfCompilation();
+        try {
+            return ((Number) ForeignAccess.sendExecute(Message.createExecute(args.length).createNode(), function, args)).longValue();
+        } catch (InteropException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static boolean isError(long result) {
+        return result < 0 && result >= -MAX_ERRNO;
+    }
+
+    @Override
+    public long reserve(long size) {
+        if (!bindFunctions()) {
+            return fallback.reserve(size);
+        }
+        long address = call(mmap, 0L, size, PROT_NONE, MAP_PRIVATE_ANONYMOUS_NORESERVE, -1, 0L);
+        if (isError(address)) {
+            throw new OutOfMemoryError("Could not reserve " + size + " bytes of stack memory (errno " + -address + ")");
+        }
+        return address;
+    }
+
+    @Override
+    public boolean commit(long address, long size) {
+        if (useFallback) {
+            return true;
+        }
+        long start = address & -PAGE_SIZE;
+        long end = (address + size + PAGE_SIZE - 1) & -PAGE_SIZE;
+        return call(mprotect, start, end - start, PROT_READ_WRITE) == 0;
+    }
+
+    @Override
+    public void release(long address, long size) {
+        if (useFallback) {
+            fallback.release(address, size);
+        } else {
+            call(munmap, address, size);
+        }
+    }
+
+    @Override
+    public long getCommitSize() {
+        return useFallback ? 0 : commitSize;
+    }
+
+    @Override
+    public long getGuardSize() {
+        return useFallback ? 0 : PAGE_SIZE;
+    }
+}
@@ -39,6 +39,8 @@ import static com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode.I64_SIZE_IN_BYT
 import static com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode.I8_SIZE_IN_BYTES;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BinaryOperator;
 import java.util.function.IntBinaryOperator;
 import java.util.function.LongBinaryOperator;
@@ -46,6 +48,7 @@ import java.util.function.LongBinaryOperator;
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.CompilerDirectives.ValueType;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
@@ -75,24 +78,121 @@ public final class LLVMMemory {
     private static final long DEREF_HANDLE_SPACE_START = 0x0FFFFFFFFFFFFFFFL & ~DEREF_HANDLE_OBJECT_MASK;
     private static final long DEREF_HANDLE_SPACE_END = 0x0FFF800000000000L & ~DEREF_HANDLE_OBJECT_MASK;
 
-    private static final Unsafe unsafe = getUnsafe();
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
 
-    private final Object freeListLock = new Object();
-    private FreeListNode freeList;
+    private static final Unsafe unsafe = getUnsafe();
 
-    private final Object derefSpaceTopLock = new Object();
-    private long derefSpaceTop = DEREF_HANDLE_SPACE_START;
+    private final DerefHandleSpace derefHandleSpace = new DerefHandleSpace();
 
     private final Assumption noDerefHandleAssumption = Truffle.getRuntime().createAssumption("no deref handle assumption");
 
-    private static final class FreeListNode {
-        protected FreeListNode(long address, FreeListNode next) {
-            this.address = address;
-            this.next = next;
+    /**
+     * Hands out the slots of the deref handle space without locking. Fresh slots are taken from
+     * the top of the space with a CAS. Released slots are kept on a Treiber stack whose links are
+     * stored in primitive arrays indexed by the slot number, so that releasing a handle does not
+     * allocate. The head of the stack is stamped with a modification counter to avoid ABA
+     * problems.
+     */
+    static final class DerefHandleSpace {
+        private static final int SEGMENT_BITS = 12;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+        private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+        private final AtomicLong top = new AtomicLong(0);
+        /* upper 32 bits: stamp, lower 32 bits: index + 1 of the first free slot (0 if empty) */
+        private final AtomicLong freeListHead = new AtomicLong(0);
+        /* next links of the free list, encoded as index + 1 (0 terminates the list) */
+        private volatile int[][] links = new int[0][];
+
+        static long toAddress(long index) {
+            return DEREF_HANDLE_SPACE_START - index * DEREF_HANDLE_OBJECT_SIZE;
+        }
+
+        static long toIndex(long address) {
+            return (DEREF_HANDLE_SPACE_START - address) / DEREF_HANDLE_OBJECT_SIZE;
+        }
+
+        long allocate() {
+            long head;
+            long index;
+            do {
+                head = freeListHead.get();
+                if ((head & INDEX_MASK) == 0) {
+                    return allocateFresh();
+                }
+                index = (head & INDEX_MASK) - 1;
+            } while (!freeListHead.compareAndSet(head, stamp(head, getLink(index))));
+            return toAddress(index);
+        }
+
+        private long allocateFresh() {
+            long index = top.getAndIncrement();
+            if (toAddress(index) <= DEREF_HANDLE_SPACE_END) {
+                top.getAndDecrement();
+                CompilerDirectives.transferToInterpreter();
+                throw new OutOfMemoryError();
+            }
+            ensureLink(index);
+            return toAddress(index);
+        }
+
+        void free(long address) {
+            long index = toIndex(address);
+            long head;
+            do {
+                head = freeListHead.get();
+                setLink(index, (int) (head & INDEX_MASK));
+            } while (!freeListHead.compareAndSet(head, stamp(head, index + 1)));
+        }
+
+        private static long stamp(long head, long link) {
+            return ((head >>> 32) + 1) << 32 | link;
         }
 
-        private final long address;
-        private final FreeListNode next;
+        private int getLink(long index) {
+            return links[(int) (index >>> SEGMENT_BITS)][(int) (index & (SEGMENT_SIZE - 1))];
+        }
+
+        private void setLink(long index, int link) {
+            links[(int) (index >>> SEGMENT_BITS)][(int) (index & (SEGMENT_SIZE - 1))] = link;
+        }
+
+        private void ensureLink(long index) {
+            int segment = (int) (index >>> SEGMENT_BITS);
+            if (segment >= links.length) {
+                growLinks(segment);
+            }
+        }
+
+        @TruffleBoundary
+        private synchronized void growLinks(int segment) {
+            int[][] current = links;
+            if (segment >= current.length) {
+                int[][] newLinks = Arrays.copyOf(current, Math.max(segment + 1, current.length * 2));
+                for (int i = current.length; i < newLinks.length; i++) {
+                    newLinks[i] = new int[SEGMENT_SIZE];
+                }
+                links = newLinks;
+            }
+        }
+
+        boolean isAllocated(long address) {
+            long index = toIndex(address);
+            long allocatedCount = top.get();
+            if (index >= allocatedCount) {
+                return false;
+            }
+            // only used in assertions, concurrent modifications can lead to imprecise results
+            long cur = freeListHead.get() & INDEX_MASK;
+            for (long i = 0; cur != 0 && i < allocatedCount; i++) {
+                if (cur - 1 == index) {
+                    return false;
+                }
+                cur = getLink(cur - 1);
+            }
+            return true;
+        }
     }
 
     private static Unsafe getUnsafe() {
@@ -138,17 +238,69 @@ public final class LLVMMemory {
         unsafe.copyMemory(sourceAddress, targetAddress, length);
     }
 
+    /**
+     * Copies {@code length} bytes at {@code sourceAddress} into {@code target}.
+     */
+    public void copyToArray(long sourceAddress, byte[] target, int targetOffset, int length) {
+        assert targetOffset >= 0 && length >= 0 && targetOffset + length <= target.length;
+        unsafe.copyMemory(null, sourceAddress, target, Unsafe.ARRAY_BYTE_BASE_OFFSET + targetOffset, length);
+    }
+
+    /**
+     * Returns the number of bytes in front of the first zero element of {@code charSize} bytes at
+     * {@code address}. Zero bytes are searched a word at a time once the address is aligned;
+     * aligned words never cross a page boundary, so no page after the terminator is touched.
+     */
+    public long getZeroTerminatedLength(long address, int charSize) {
+        long ptr = address;
+        switch (charSize) {
+            case 1:
+                while ((ptr & (Long.BYTES - 1)) != 0) {
+                    if (unsafe.getByte(ptr) == 0) {
+                        return ptr - address;
+                    }
+                    ptr++;
+                }
+                while (true) {
+                    long word = unsafe.getLong(ptr);
+                    long zeroBytes = (word - ONES) & ~word & HIGH_BITS;
+                    if (zeroBytes != 0) {
+                        // little endian: the lowest marked byte is the first zero byte
+                        return ptr - address + (Long.numberOfTrailingZeros(zeroBytes) >>> 3);
+                    }
+                    ptr += Long.BYTES;
+                }
+            case 2:
+                while (unsafe.getShort(ptr) != 0) {
+                    ptr += Short.BYTES;
+                }
+                return ptr - address;
+            case 4:
+                while (unsafe.getInt(ptr) != 0) {
+                    ptr += Integer.BYTES;
+                }
+                return ptr - address;
+            case 8:
+                while (unsafe.getLong(ptr) != 0) {
+                    ptr += Long.BYTES;
+                }
+                return ptr - address;
+            default:
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalArgumentException("unsupported character size " + charSize);
+        }
+    }
+
     public void free(LLVMNativePointer address) {
         free(address.asNative());
     }
 
     public void free(long address) {
         if (address <= DEREF_HANDLE_SPACE_START && address > DEREF_HANDLE_SPACE_END) {
-            assert isAllocated(address) : "double-free of " + Long.toHexString(address);
-            synchronized (freeListLock) {
-                // We need to mask because we allow creating handles with an offset.
-                freeList = new FreeListNode(address & ~DEREF_HANDLE_OBJECT_MASK, freeList);
-            }
+            // We need to mask because we allow creating handles with an offset.
+            long handle = address & ~DEREF_HANDLE_OBJECT_MASK;
+            assert derefHandleSpace.isAllocated(handle) : "double-free of " + Long.toHexString(address);
+            derefHandleSpace.free(handle);
         } else {
             try {
                 unsafe.freeMemory(address);
@@ -187,25 +339,7 @@ public final class LLVMMemory {
     public LLVMNativePointer allocateDerefMemory() {
         noDerefHandleAssumption.invalidate();
 
-        // preferably consume from free list
-        synchronized (freeListLock) {
-            if (freeList != null) {
-                FreeListNode n = freeList;
-                freeList = n.next;
-                return LLVMNativePointer.create(n.address);
-            }
-        }
-
-        synchronized (derefSpaceTopLock) {
-            LLVMNativePointer addr = LLVMNativePointer.create(derefSpaceTop);
-            assert derefSpaceTop > 0L;
-            derefSpaceTop -= DEREF_HANDLE_OBJECT_SIZE;
-            if (derefSpaceTop < DEREF_HANDLE_SPACE_END) {
-                CompilerDirectives.transferToInterpreter();
-                throw new OutOfMemoryError();
-            }
-            return addr;
-        }
+        return LLVMNativePointer.create(derefHandleSpace.allocate());
     }
 
     public boolean getI1(LLVMNativePointer addr) {
@@ -893,28 +1027,15 @@ public final class LLVMMemory {
     }
 
     public boolean isDerefMemory(LLVMNativePointer addr) {
-        return !noDerefHandleAssumption.isValid() && addr.asNative() > DEREF_HANDLE_SPACE_END;
+        return isDerefMemory(addr.asNative());
     }
 
-    public static long getDerefHandleObjectMask() {
-        return DEREF_HANDLE_OBJECT_SIZE - 1;
+    public boolean isDerefMemory(long addr) {
+        return !noDerefHandleAssumption.isValid() && addr > DEREF_HANDLE_SPACE_END;
     }
 
-    private boolean isAllocated(long address) {
-        synchronized (derefSpaceTopLock) {
-            if (address <= derefSpaceTop) {
-                return false;
-            }
-        }
-
-        synchronized (freeListLock) {
-            for (FreeListNode cur = freeList; cur != null; cur = cur.next) {
-                if (cur.address == address) {
-                    return false;
-                }
-            }
-        }
-        return true;
+    public static long getDerefHandleObjectMask() {
+        return DEREF_HANDLE_OBJECT_SIZE - 1;
     }
 
 }
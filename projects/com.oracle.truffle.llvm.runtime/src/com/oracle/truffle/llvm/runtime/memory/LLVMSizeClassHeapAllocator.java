@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * A heap allocator with per-thread arenas and segregated size classes.
+ *
+ * Each thread allocates from its own {@link Arena} without any synchronization: small requests are
+ * rounded up to a size class and served from the arena's free list for that class, or carved from
+ * the arena's current chunk with a bump pointer. Requests larger than {@link #MAX_SMALL_SIZE} are
+ * forwarded to the native allocator.
+ *
+ * Every block is preceded by a header that contains the id of the owning arena and the size class.
+ * A block that is freed by its owning thread goes back to the local free list. A block that is
+ * freed by another thread is pushed with a CAS onto a per-class remote free list of the owning
+ * arena, which the owner drains as a whole once its local free list is empty. Arenas of terminated
+ * threads are adopted by new threads.
+ *
+ * Whether a pointer belongs to this allocator is decided by looking up its address in the sorted
+ * list of chunks, so the memory in front of a foreign pointer is never read. Pointers outside of
+ * all chunks (e.g., memory that was allocated by native code) are passed to the native allocator.
+ * Memory handed out by this allocator must not be freed by native code.
+ */
+public final class LLVMSizeClassHeapAllocator implements LLVMHeapAllocator {
+
+    private static final long MAGIC = 0x534C4D4100000000L;
+    private static final long MAGIC_MASK = 0xFFFFFFFF00000000L;
+    private static final int ARENA_ID_SHIFT = 8;
+    private static final int MAX_ARENAS = 1 << 24;
+    private static final long SIZE_CLASS_MASK = 0xFF;
+
+    /*
+     * Every block starts with two words: the free list link and the header. Two words keep the 16
+     * byte alignment that malloc guarantees. The magic value in the header only serves assertions.
+     */
+    private static final long BLOCK_OVERHEAD = 16;
+    private static final long NEXT_OFFSET = 0;
+    private static final long HEADER_OFFSET = 8;
+
+    private static final int LINEAR_CLASSES = 16;
+    private static final int LINEAR_CLASS_STEP = 16;
+    private static final long MAX_LINEAR_SIZE = LINEAR_CLASSES * LINEAR_CLASS_STEP;
+    private static final int MAX_SMALL_SIZE_LOG2 = 15;
+    private static final long MAX_SMALL_SIZE = 1L << MAX_SMALL_SIZE_LOG2;
+    private static final int NUM_CLASSES = LINEAR_CLASSES + MAX_SMALL_SIZE_LOG2 - Long.numberOfTrailingZeros(MAX_LINEAR_SIZE);
+
+    private static final long CHUNK_SIZE = 1L << 20;
+
+    private final LLVMMemory memory;
+    private final ThreadLocal<Arena> currentArena = new ThreadLocal<>();
+
+    private volatile Arena[] arenas = new Arena[0];
+
+    /*
+     * Start addresses of all chunks in ascending order. The array is replaced as a whole when a
+     * chunk is added, so the lookup in isOwnBlock does not need a lock.
+     */
+    private volatile long[] chunks = new long[0];
+
+    LLVMSizeClassHeapAllocator(LLVMMemory memory) {
+        this.memory = memory;
+    }
+
+    private static final class Arena {
+        private final int id;
+        private Thread owner;
+
+        private final long[] freeLists = new long[NUM_CLASSES];
+        private final AtomicLongArray remoteFreeLists = new AtomicLongArray(NUM_CLASSES);
+
+        private long bumpPointer;
+        private long bumpEnd;
+
+        // statistics, only written by the owning thread
+        private long allocations;
+        private long frees;
+        private long remoteFrees;
+        private long largeAllocations;
+        private long largeFrees;
+        private long refills;
+
+        Arena(int id, Thread owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+    }
+
+    static int getSizeClass(long size) {
+        assert size >= 0;
+        if (size <= MAX_LINEAR_SIZE) {
+            return size == 0 ? 0 : (int) ((size - 1) / LINEAR_CLASS_STEP);
+        } else if (size <= MAX_SMALL_SIZE) {
+            int log2 = Long.SIZE - Long.numberOfLeadingZeros(size - 1);
+            return LINEAR_CLASSES + log2 - Long.numberOfTrailingZeros(MAX_LINEAR_SIZE) - 1;
+        } else {
+            return -1;
+        }
+    }
+
+    static long getClassSize(int sizeClass) {
+        assert sizeClass >= 0 && sizeClass < NUM_CLASSES;
+        if (sizeClass < LINEAR_CLASSES) {
+            return (sizeClass + 1L) * LINEAR_CLASS_STEP;
+        } else {
+            return MAX_LINEAR_SIZE << (sizeClass - LINEAR_CLASSES + 1);
+        }
+    }
+
+    @Override
+    @TruffleBoundary
+    public long allocate(long size) {
+        if (size < 0) {
+            // an unsigned size beyond Long.MAX_VALUE can never be satisfied
+            return 0;
+        }
+        Arena arena = getArena();
+        int sizeClass = getSizeClass(size);
+        if (sizeClass < 0) {
+            arena.largeAllocations++;
+            return memory.allocateMemory(size).asNative();
+        }
+
+        long block = arena.freeLists[sizeClass];
+        if (block != 0) {
+            arena.freeLists[sizeClass] = memory.getI64(block + NEXT_OFFSET);
+        } else {
+            block = refill(arena, sizeClass);
+        }
+        arena.allocations++;
+        return block + BLOCK_OVERHEAD;
+    }
+
+    @Override
+    @TruffleBoundary
+    public long reallocate(long address, long size) {
+        if (address == 0) {
+            return allocate(size);
+        }
+        if (size < 0) {
+            // the old block stays valid if realloc fails
+            return 0;
+        }
+        if (!isOwnBlock(address)) {
+            return memory.reallocateMemory(LLVMNativePointer.create(address), size).asNative();
+        }
+
+        long header = getHeader(address);
+        long capacity = getClassSize((int) (header & SIZE_CLASS_MASK));
+        if (size <= capacity) {
+            return address;
+        }
+        long newAddress = allocate(size);
+        copyMemory(address, newAddress, capacity);
+        free(address);
+        return newAddress;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void copyMemory(long source, long target, long length) {
+        memory.copyMemory(source, target, length);
+    }
+
+    @Override
+    @TruffleBoundary
+    public void free(long address) {
+        if (address == 0) {
+            return;
+        }
+        Arena arena = getArena();
+        if (!isOwnBlock(address)) {
+            arena.largeFrees++;
+            memory.free(address);
+            return;
+        }
+
+        long header = getHeader(address);
+        int sizeClass = (int) (header & SIZE_CLASS_MASK);
+        long block = address - BLOCK_OVERHEAD;
+        Arena owner = arenas[(int) (header >>> ARENA_ID_SHIFT) & (MAX_ARENAS - 1)];
+        if (owner == arena) {
+            memory.putI64(block + NEXT_OFFSET, arena.freeLists[sizeClass]);
+            arena.freeLists[sizeClass] = block;
+            arena.frees++;
+        } else {
+            long head;
+            do {
+                head = owner.remoteFreeLists.get(sizeClass);
+                memory.putI64(block + NEXT_OFFSET, head);
+            } while (!owner.remoteFreeLists.compareAndSet(sizeClass, head, block));
+            arena.remoteFrees++;
+        }
+    }
+
+    private boolean isOwnBlock(long address) {
+        long[] sortedChunks = chunks;
+        int index = Arrays.binarySearch(sortedChunks, address);
+        if (index < 0) {
+            // the chunk with the highest start address that is still below the address
+            index = -index - 2;
+        }
+        return index >= 0 && address - sortedChunks[index] < CHUNK_SIZE;
+    }
+
+    private long getHeader(long address) {
+        long header = memory.getI64(address - BLOCK_OVERHEAD + HEADER_OFFSET);
+        assert (header & MAGIC_MASK) == MAGIC : "corrupted block header at " + Long.toHexString(address);
+        return header;
+    }
+
+    private long refill(Arena arena, int sizeClass) {
+        // take all blocks that other threads have freed in the meantime
+        long remote = arena.remoteFreeLists.getAndSet(sizeClass, 0);
+        if (remote != 0) {
+            arena.freeLists[sizeClass] = memory.getI64(remote + NEXT_OFFSET);
+            return remote;
+        }
+
+        long blockSize = BLOCK_OVERHEAD + getClassSize(sizeClass);
+        if (arena.bumpEnd - arena.bumpPointer < blockSize) {
+            long chunk = allocateChunk();
+            arena.bumpPointer = chunk;
+            arena.bumpEnd = chunk + CHUNK_SIZE;
+            arena.refills++;
+        }
+        long block = arena.bumpPointer;
+        arena.bumpPointer += blockSize;
+        memory.putI64(block + HEADER_OFFSET, MAGIC | ((long) arena.id << ARENA_ID_SHIFT) | sizeClass);
+        return block;
+    }
+
+    private synchronized long allocateChunk() {
+        long chunk = memory.allocateMemory(CHUNK_SIZE).asNative();
+        long[] oldChunks = chunks;
+        int index = -Arrays.binarySearch(oldChunks, chunk) - 1;
+        long[] newChunks = new long[oldChunks.length + 1];
+        System.arraycopy(oldChunks, 0, newChunks, 0, index);
+        newChunks[index] = chunk;
+        System.arraycopy(oldChunks, index, newChunks, index + 1, oldChunks.length - index);
+        chunks = newChunks;
+        return chunk;
+    }
+
+    private Arena getArena() {
+        Arena arena = currentArena.get();
+        if (arena == null) {
+            arena = acquireArena(Thread.currentThread());
+            currentArena.set(arena);
+        }
+        return arena;
+    }
+
+    private synchronized Arena acquireArena(Thread thread) {
+        for (Arena arena : arenas) {
+            // a terminated thread can no longer access its arena, so we can safely take it over
+            if (!arena.owner.isAlive()) {
+                arena.owner = thread;
+                return arena;
+            }
+        }
+
+        int id = arenas.length;
+        if (id >= MAX_ARENAS) {
+            throw new OutOfMemoryError("Too many allocator arenas");
+        }
+        Arena arena = new Arena(id, thread);
+        Arena[] newArenas = Arrays.copyOf(arenas, id + 1);
+        newArenas[id] = arena;
+        arenas = newArenas;
+        return arena;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        for (long chunk : chunks) {
+            memory.free(chunk);
+        }
+        chunks = new long[0];
+        arenas = new Arena[0];
+    }
+
+    @Override
+    @TruffleBoundary
+    public synchronized void printStatistics(PrintStream stream) {
+        long allocations = 0;
+        long frees = 0;
+        long remoteFrees = 0;
+        long largeAllocations = 0;
+        long largeFrees = 0;
+        long refills = 0;
+        // the counters of other threads may be slightly out of date
+        for (Arena arena : arenas) {
+            allocations += arena.allocations;
+            frees += arena.frees;
+            remoteFrees += arena.remoteFrees;
+            largeAllocations += arena.largeAllocations;
+            largeFrees += arena.largeFrees;
+            refills += arena.refills;
+        }
+        stream.println("Allocator: sizeclass");
+        stream.println(String.format("  arenas:            %d", arenas.length));
+        stream.println(String.format("  chunks:            %d (%d KB)", chunks.length, chunks.length * CHUNK_SIZE / 1024));
+        stream.println(String.format("  small allocations: %d", allocations));
+        stream.println(String.format("  local frees:       %d", frees));
+        stream.println(String.format("  remote frees:      %d", remoteFrees));
+        stream.println(String.format("  large allocations: %d", largeAllocations));
+        stream.println(String.format("  large frees:       %d", largeFrees));
+        stream.println(String.format("  chunk refills:     %d", refills));
+    }
+}
@@ -34,28 +34,44 @@ import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.frame.FrameSlot;
 import com.oracle.truffle.api.frame.FrameUtil;
 import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.llvm.runtime.except.LLVMStackOverflowException;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
 
 /**
  * Implements a stack that grows from the top to the bottom. The stack is allocated lazily when it
  * is accessed for the first time.
+ *
+ * The memory comes from a {@link LLVMStackMemory}, which may commit the reserved range on demand.
+ * Every stack allocation is checked against the committed part of the stack; allocations below it
+ * either commit more memory or, at the bottom of the stack, raise an
+ * {@link LLVMStackOverflowException}.
  */
 public final class LLVMStack {
 
     public static final String FRAME_ID = "<stackpointer>";
 
     private final int stackSize;
+    private final LLVMStackMemory stackMemory;
 
+    private long baseAddress;
     private long lowerBounds;
+    private long committedLowerBounds;
     private long upperBounds;
     private boolean isAllocated;
 
     private long stackPointer;
     private long uniquesRegionPointer;
 
-    public LLVMStack(int stackSize) {
+    /** The thread that currently uses this stack, maintained by {@link LLVMThreadingStack}. */
+    volatile Thread owner;
+
+    public LLVMStack(int stackSize, LLVMStackMemory stackMemory) {
         this.stackSize = stackSize;
+        this.stackMemory = stackMemory;
 
+        baseAddress = 0;
         lowerBounds = 0;
+        committedLowerBounds = 0;
         upperBounds = 0;
         stackPointer = 0;
         isAllocated = false;
@@ -72,7 +88,7 @@ public final class LLVMStack {
 
         public long get(LLVMMemory memory) {
             if (basePointer == 0) {
-                basePointer = getStackPointer(memory);
+                basePointer = getStackPointer();
                 stackPointer = basePointer;
             }
             return stackPointer;
@@ -101,6 +117,10 @@ public final class LLVMStack {
         public StackPointer newFrame() {
             return new StackPointer(stackPointer, uniquesRegionPointer);
         }
+
+        private LLVMStack getStack() {
+            return LLVMStack.this;
+        }
     }
 
     /**
@@ -160,18 +180,35 @@ public final class LLVMStack {
     }
 
     @TruffleBoundary
-    private void allocate(LLVMMemory memory) {
+    private void allocate() {
         long size = stackSize * 1024L;
-        long stackAllocation = memory.allocateMemory(size).asNative();
-        lowerBounds = stackAllocation;
-        upperBounds = stackAllocation + size;
+        baseAddress = stackMemory.reserve(size);
+        lowerBounds = baseAddress + stackMemory.getGuardSize();
+        upperBounds = baseAddress + size;
+        committedLowerBounds = stackMemory.getCommitSize() == 0 ? lowerBounds : upperBounds;
         isAllocated = true;
         stackPointer = upperBounds;
     }
 
-    private long getStackPointer(LLVMMemory memory) {
+    /**
+     * Commits the stack memory down to at least {@code address}, or throws if {@code address} is
+     * below the stack.
+     */
+    @TruffleBoundary
+    private void grow(long address) {
+        if (address >= lowerBounds) {
+            long newLowerBounds = Math.max(lowerBounds, Math.min(address, committedLowerBounds - stackMemory.getCommitSize()));
+            if (stackMemory.commit(newLowerBounds, committedLowerBounds - newLowerBounds)) {
+                committedLowerBounds = newLowerBounds;
+                return;
+            }
+        }
+        throw new LLVMStackOverflowException(String.format("Stack overflow (the stack size is %d KB, see --%s).", stackSize, SulongEngineOption.STACK_SIZE_KB_NAME));
+    }
+
+    private long getStackPointer() {
         if (!isAllocated) {
-            allocate(memory);
+            allocate();
         }
         return this.stackPointer;
     }
@@ -181,19 +218,29 @@ public final class LLVMStack {
     }
 
     @TruffleBoundary
-    public void free(LLVMMemory memory) {
+    public void free() {
         if (isAllocated) {
             /*
              * It can be that the stack was never allocated.
              */
-            memory.free(lowerBounds);
+            stackMemory.release(baseAddress, stackSize * 1024L);
+            baseAddress = 0;
             lowerBounds = 0;
+            committedLowerBounds = 0;
             upperBounds = 0;
             stackPointer = 0;
             isAllocated = false;
         }
     }
 
+    /**
+     * Prepares the stack for reuse by another thread. The memory stays allocated and committed.
+     */
+    void reset() {
+        stackPointer = upperBounds;
+        uniquesRegionPointer = 0;
+    }
+
     public static final int NO_ALIGNMENT_REQUIREMENTS = 1;
 
     public static long allocateStackMemory(VirtualFrame frame, LLVMMemory memory, FrameSlot stackPointerSlot, final long size, final int alignment) {
@@ -205,10 +252,48 @@ public final class LLVMStack {
         long stackPointer = basePointer.get(memory);
         assert stackPointer != 0;
         long alignedAllocation = getAlignedAllocation(stackPointer, size, alignment);
+        LLVMStack stack = basePointer.getStack();
+        if (alignedAllocation < stack.committedLowerBounds) {
+            stack.grow(alignedAllocation);
+        }
         basePointer.set(alignedAllocation);
         return alignedAllocation;
     }
 
+    /**
+     * Moves the stack pointer down for a push in inline assembly. Like a stack allocation, this
+     * commits more stack memory or raises an {@link LLVMStackOverflowException}.
+     *
+     * @return the new stack pointer, which is the address of the pushed value
+     */
+    public static long push(LLVMMemory memory, StackPointer basePointer, int size) {
+        return allocateStackMemory(memory, basePointer, size, NO_ALIGNMENT_REQUIREMENTS);
+    }
+
+    /**
+     * Moves the stack pointer up for a pop in inline assembly. The popped value must lie in the
+     * committed part of the stack.
+     *
+     * @return the old stack pointer, which is the address of the popped value
+     */
+    public static long pop(LLVMMemory memory, StackPointer basePointer, int size) {
+        long stackPointer = basePointer.get(memory);
+        LLVMStack stack = basePointer.getStack();
+        if (stackPointer < stack.committedLowerBounds || stackPointer + size > stack.upperBounds) {
+            stack.checkPop(stackPointer, size);
+        }
+        basePointer.set(stackPointer + size);
+        return stackPointer;
+    }
+
+    @TruffleBoundary
+    private void checkPop(long address, int size) {
+        if (address + size > upperBounds) {
+            throw new LLVMStackOverflowException("Stack underflow (pop above the top of the stack).");
+        }
+        grow(address);
+    }
+
     private static long getAlignedAllocation(long address, long size, int alignment) {
         assert size >= 0;
         assert alignment != 0 && powerOfTwo(alignment);
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+
+/**
+ * Provides the memory for {@link LLVMStack}s. The implementation is selected per context with
+ * {@link SulongEngineOption#STACK_MEMORY}.
+ *
+ * A stack first reserves its whole address range and then commits it from the top to the bottom
+ * in chunks of {@link #getCommitSize()} bytes, whenever the stack pointer moves below the
+ * committed part. The lowest {@link #getGuardSize()} bytes of the reserved range are never
+ * committed.
+ */
+public interface LLVMStackMemory {
+
+    String HEAP = "heap";
+    String MMAP = "mmap";
+
+    /**
+     * Reserves {@code size} bytes of address space and returns the base address.
+     */
+    long reserve(long size);
+
+    /**
+     * Makes the reserved range {@code [address, address + size)} accessible. Returns
+     * {@code false} if the memory could not be committed.
+     */
+    boolean commit(long address, long size);
+
+    void release(long address, long size);
+
+    /**
+     * The number of bytes that are committed at once, or {@code 0} if {@link #reserve} already
+     * commits the whole range.
+     */
+    long getCommitSize();
+
+    long getGuardSize();
+
+    static LLVMStackMemory create(String name, LLVMContext context, LLVMMemory memory, long commitSize) {
+        switch (name) {
+            case HEAP:
+                return new LLVMHeapStackMemory(memory);
+            case MMAP:
+                return new LLVMMappedStackMemory(context, memory, commitSize);
+            default:
+                throw new IllegalArgumentException("Unknown stack memory: " + name);
+        }
+    }
+}
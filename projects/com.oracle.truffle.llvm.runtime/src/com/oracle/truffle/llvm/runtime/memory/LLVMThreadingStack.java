@@ -29,6 +29,8 @@
  */
 package com.oracle.truffle.llvm.runtime.memory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,60 +38,145 @@ import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
 /**
  * Holds the (lazily allocated) stacks of all threads that are active in one particular LLVMContext.
+ *
+ * The stack of the main thread is kept in a final field. The stacks of other threads are found in
+ * an open-addressing table indexed by the identity hash of the thread. The table is replaced as a
+ * whole whenever a thread gets or gives up a stack, so {@link #getStack} reads it without a lock
+ * and without a boundary; only the first lookup of a new thread takes the slow path. Stacks of
+ * disposed threads are kept in a small pool and handed to the next new thread, so short-lived
+ * threads do not allocate a stack each.
  */
 public final class LLVMThreadingStack {
-    // we are not able to clean up a thread local properly, so we are using a map instead
-    private final Map<Thread, LLVMStack> threadMap;
-    private final int stackSize;
+    private static final int MAX_POOLED_STACKS = 16;
+
     private final Thread mainThread;
+    private final LLVMStack mainStack;
+    private final int stackSize;
+    private final LLVMStackMemory stackMemory;
+
+    /* guarded by threadMap */
+    private final Map<Thread, LLVMStack> threadMap = new HashMap<>();
+    private volatile LLVMStack[] stackTable = new LLVMStack[2];
+    private final ArrayDeque<LLVMStack> pool = new ArrayDeque<>();
 
-    public LLVMThreadingStack(Thread mainTread, int stackSize) {
+    public LLVMThreadingStack(Thread mainTread, int stackSize, LLVMStackMemory stackMemory) {
         this.mainThread = mainTread;
         this.stackSize = stackSize;
-        this.threadMap = new HashMap<>();
+        this.stackMemory = stackMemory;
+        this.mainStack = new LLVMStack(stackSize, stackMemory);
+        this.mainStack.owner = mainTread;
     }
 
     public LLVMStack getStack() {
-        LLVMStack s = getCurrentStack();
-        if (s == null) {
-            s = createNewStack();
+        Thread thread = Thread.currentThread();
+        if (thread == mainThread) {
+            return mainStack;
+        }
+        LLVMStack[] table = stackTable;
+        int mask = table.length - 1;
+        for (int i = hash(thread) & mask;; i = (i + 1) & mask) {
+            LLVMStack s = table[i];
+            if (s == null) {
+                return getThreadStack(thread);
+            } else if (s.owner == thread) {
+                return s;
+            }
         }
-        return s;
     }
 
-    @TruffleBoundary
-    private LLVMStack getCurrentStack() {
-        return threadMap.get(Thread.currentThread());
+    private static int hash(Thread thread) {
+        int h = System.identityHashCode(thread);
+        return h ^ (h >>> 16);
     }
 
     @TruffleBoundary
-    private synchronized LLVMStack createNewStack() {
-        LLVMStack s = new LLVMStack(stackSize);
-        threadMap.put(Thread.currentThread(), s);
+    private LLVMStack getThreadStack(Thread thread) {
+        synchronized (threadMap) {
+            LLVMStack s = threadMap.get(thread);
+            if (s == null) {
+                s = acquireStack(thread);
+            }
+            return s;
+        }
+    }
+
+    private LLVMStack acquireStack(Thread thread) {
+        assert Thread.holdsLock(threadMap);
+        LLVMStack s;
+        synchronized (pool) {
+            s = pool.pollFirst();
+        }
+        if (s == null) {
+            s = new LLVMStack(stackSize, stackMemory);
+        }
+        s.owner = thread;
+        threadMap.put(thread, s);
+        rebuildStackTable();
         return s;
     }
 
+    private void rebuildStackTable() {
+        assert Thread.holdsLock(threadMap);
+        LLVMStack[] table = new LLVMStack[Math.max(2, Integer.highestOneBit(Math.max(1, threadMap.size())) * 4)];
+        int mask = table.length - 1;
+        for (LLVMStack s : threadMap.values()) {
+            int i = hash(s.owner) & mask;
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = s;
+        }
+        stackTable = table;
+    }
+
     @TruffleBoundary
-    public void freeStack(LLVMMemory memory, Thread thread) {
+    public void freeStack(Thread thread) {
         /*
          * Do not free the stack of the main thread: Sulong#disposeThread runs before
          * Sulong#disposeContext, which needs to call destructors that need a SP.
          */
-        if (mainThread != Thread.currentThread()) {
-            free(memory, thread);
+        if (thread == mainThread) {
+            return;
         }
+        LLVMStack s;
+        synchronized (threadMap) {
+            s = threadMap.remove(thread);
+            if (s == null) {
+                return;
+            }
+            rebuildStackTable();
+        }
+        s.owner = null;
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED_STACKS) {
+                s.reset();
+                pool.addFirst(s);
+                return;
+            }
+        }
+        s.free();
     }
 
+    /**
+     * Frees the stack of the main thread, the pooled stacks and the stacks of threads that were
+     * not disposed.
+     */
     @TruffleBoundary
-    public void freeMainStack(LLVMMemory memory) {
-        free(memory, mainThread);
-    }
-
-    private synchronized void free(LLVMMemory memory, Thread thread) {
-        LLVMStack s = threadMap.get(thread);
-        if (s != null) {
-            s.free(memory);
-            threadMap.remove(thread);
+    public void freeStacks() {
+        mainStack.free();
+        ArrayList<LLVMStack> stacks;
+        synchronized (threadMap) {
+            stacks = new ArrayList<>(threadMap.values());
+            threadMap.clear();
+            rebuildStackTable();
+        }
+        synchronized (pool) {
+            stacks.addAll(pool);
+            pool.clear();
+        }
+        for (LLVMStack s : stacks) {
+            s.owner = null;
+            s.free();
         }
     }
 }
@@ -40,6 +40,7 @@ import com.oracle.truffle.api.source.SourceSection;
 import com.oracle.truffle.api.nodes.RootNode;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.runtime.LLVMNativeCallStatistics;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.memory.UnsafeArrayAccess;
@@ -99,8 +100,8 @@ public abstract class LLVMNode extends Node {
         return SulongEngineOption.getStream(context.get().getEnv().getOptions().get(SulongEngineOption.NATIVE_CALL_STATS));
     }
 
-    protected static boolean nativeCallStatisticsEnabled(ContextReference<LLVMContext> context) {
-        return SulongEngineOption.isTrue(context.get().getEnv().getOptions().get(SulongEngineOption.NATIVE_CALL_STATS));
+    protected static LLVMNativeCallStatistics nativeCallStatistics(ContextReference<LLVMContext> context) {
+        return context.get().getNativeCallStatistics();
     }
 
     public boolean hasTag(Class<? extends Tag> tag) {
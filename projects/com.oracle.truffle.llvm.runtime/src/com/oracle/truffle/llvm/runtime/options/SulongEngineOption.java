@@ -53,6 +53,14 @@ public final class SulongEngineOption {
     public static final String STACK_SIZE_KB_NAME = "llvm.stackSizeKB";
     public static final String STACK_SIZE_KB_INFO = "The stack size in KB.";
 
+    public static final OptionKey<String> STACK_MEMORY = new OptionKey<>("heap");
+    public static final String STACK_MEMORY_NAME = "llvm.stackMemory";
+    public static final String STACK_MEMORY_INFO = "How the thread stacks are allocated. Can be \'heap\' or \'mmap\' (reserved with a guard page and committed on demand).";
+
+    public static final OptionKey<Integer> STACK_COMMIT_SIZE_KB = new OptionKey<>(256);
+    public static final String STACK_COMMIT_SIZE_KB_NAME = "llvm.stackCommitSizeKB";
+    public static final String STACK_COMMIT_SIZE_KB_INFO = "The number of KB by which an mmap stack grows at once.";
+
     public static final OptionKey<String> LIBRARY_PATH = new OptionKey<>("");
     public static final String LIBRARY_PATH_NAME = "llvm.libraryPath";
     public static final String LIBRARY_PATH_INFO = "A list of paths where Sulong will search for relative libraries. Paths are delimited by " + OPTION_ARRAY_SEPARATOR + " .";
@@ -76,7 +84,7 @@ public final class SulongEngineOption {
 
     public static final OptionKey<String> NATIVE_CALL_STATS = new OptionKey<>(String.valueOf(false));
     public static final String NATIVE_CALL_STATS_NAME = "llvm.printNativeCallStats";
-    public static final String NATIVE_CALL_STATS_INFO = "Outputs stats about native call site frequencies. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+    public static final String NATIVE_CALL_STATS_INFO = "Outputs stats about native call site frequencies as JSON on context exit. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
 
     public static final OptionKey<String> PRINT_LIFE_TIME_ANALYSIS_STATS = new OptionKey<>(String.valueOf(false));
     public static final String PRINT_LIFE_TIME_ANALYSIS_STATS_NAME = "llvm.printLifetimeAnalysisStats";
@@ -94,14 +102,75 @@ public final class SulongEngineOption {
     public static final String LAZY_PARSING_NAME = "llvm.lazyParsing";
     public static final String LAZY_PARSING_INFO = "Enable lazy parsing of LLVM bitcode files.";
 
+    public static final OptionKey<String> PARSE_CACHE_DIRECTORY = new OptionKey<>("");
+    public static final String PARSE_CACHE_DIRECTORY_NAME = "llvm.parseCacheDirectory";
+    public static final String PARSE_CACHE_DIRECTORY_INFO = "A directory in which the decoded records of parsed bitcode files are cached, keyed by the SHA-256 hash of the file (disabled if empty).";
+
+    public static final OptionKey<Boolean> SHARE_SCANNER_LOGS = new OptionKey<>(false);
+    public static final String SHARE_SCANNER_LOGS_NAME = "llvm.shareScannerLogs";
+    public static final String SHARE_SCANNER_LOGS_INFO = "Keep the scanner logs of parsed bitcode files in memory, so that further contexts of the same engine replay them instead of decoding the bitstream again.";
+
+    public static final OptionKey<Boolean> SHARE_PARSED_MODULES = new OptionKey<>(false);
+    public static final String SHARE_PARSED_MODULES_NAME = "llvm.shareParsedModules";
+    public static final String SHARE_PARSED_MODULES_INFO = "Share the parsed modules of bitcode files, including their lazily parsed functions, between the contexts of the same engine (ignored if llvm.enableLVI is set).";
+
+    public static final OptionKey<Integer> PARALLEL_PARSING_THREADS = new OptionKey<>(0);
+    public static final String PARALLEL_PARSING_THREADS_NAME = "llvm.parallelParsingThreads";
+    public static final String PARALLEL_PARSING_THREADS_INFO = "The number of background threads that parse the functions reachable from main ahead of their first call if lazy parsing is enabled (0 disables background parsing).";
+
+    public static final OptionKey<String> PRINT_PARALLEL_PARSING_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String PRINT_PARALLEL_PARSING_STATS_NAME = "llvm.printParallelParsingStats";
+    public static final String PRINT_PARALLEL_PARSING_STATS_INFO = "Prints how many functions the background parsing threads converted on context exit. Can be \'true\', \'false\', \'stdout\' or \'stderr\'.";
+
+    public static final OptionKey<Boolean> LOOP_NODES = new OptionKey<>(true);
+    public static final String LOOP_NODES_NAME = "llvm.loopNodes";
+    public static final String LOOP_NODES_INFO = "Execute natural loops with Truffle loop nodes, which allows on-stack replacement of long running loops.";
+
+    public static final OptionKey<Boolean> PROMOTE_ALLOCAS = new OptionKey<>(true);
+    public static final String PROMOTE_ALLOCAS_NAME = "llvm.promoteAllocas";
+    public static final String PROMOTE_ALLOCAS_INFO = "Keep stack allocations whose address does not escape the function in frame slots instead of native memory.";
+
+    public static final OptionKey<String> BUFFERED_STDIO = new OptionKey<>("none");
+    public static final String BUFFERED_STDIO_NAME = "llvm.bufferedStdio";
+    public static final String BUFFERED_STDIO_INFO = "Coalesces writes to stdout and stderr in an off-heap buffer. Can be \'none\', \'line\' (flush on newline) or \'full\' (flush when the buffer is full). " +
+                    "The buffer is also flushed before reads from stdin, on fsync, close or dup2 of these descriptors, and on exit. Errors of buffered writes are not reported to the program. Only available on Linux/AMD64 hosts. " +
+                    "Calls to native code flush the buffer, but output written in callbacks from native code and writes to duplicates of these descriptors can be reordered with the buffered output.";
+
+    public static final OptionKey<Integer> NATIVE_CALL_LATENCY_SAMPLING = new OptionKey<>(0);
+    public static final String NATIVE_CALL_LATENCY_SAMPLING_NAME = "llvm.nativeCallLatencySampling";
+    public static final String NATIVE_CALL_LATENCY_SAMPLING_INFO = "Measure the latency of every n-th native call of a call site and report latency histograms with llvm.printNativeCallStats (0 disables latency measurement).";
+
+    public static final OptionKey<String> SAMPLING_PROFILER = new OptionKey<>(String.valueOf(false));
+    public static final String SAMPLING_PROFILER_NAME = "llvm.samplingProfiler";
+    public static final String SAMPLING_PROFILER_INFO = "Samples the guest call stack periodically and prints the samples in collapsed-stack format (as used by flame graph tools) on context exit. " +
+                    "Can be \'true\', \'false\', \'stdout\' or \'stderr\'.";
+
+    public static final OptionKey<Integer> SAMPLING_PROFILER_INTERVAL_MS = new OptionKey<>(10);
+    public static final String SAMPLING_PROFILER_INTERVAL_MS_NAME = "llvm.samplingProfilerIntervalMs";
+    public static final String SAMPLING_PROFILER_INTERVAL_MS_INFO = "The interval in milliseconds in which the sampling profiler takes a sample.";
+
+    public static final OptionKey<String> PRINT_BUFFERED_STDIO_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String PRINT_BUFFERED_STDIO_STATS_NAME = "llvm.printBufferedStdioStats";
+    public static final String PRINT_BUFFERED_STDIO_STATS_INFO = "Prints how many writes to stdout and stderr were buffered and how many native writes they needed on context exit. Can be \'true\', \'false\', \'stdout\' or \'stderr\'.";
+
     public static final OptionKey<Boolean> STACKTRACE_ON_ABORT = new OptionKey<>(false);
     public static final String STACKTRACE_ON_ABORT_NAME = "llvm.printStackTraceOnAbort";
     public static final String STACKTRACE_ON_ABORT_INFO = "Prints a C stack trace when abort() is called.";
 
+    public static final OptionKey<String> ALLOCATOR = new OptionKey<>("native");
+    public static final String ALLOCATOR_NAME = "llvm.allocator";
+    public static final String ALLOCATOR_INFO = "The allocator used for malloc, calloc, realloc and free. Can be \'native\' or \'sizeclass\' (thread-local size-class arenas; memory must not be freed by native code).";
+
+    public static final OptionKey<String> PRINT_ALLOCATOR_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String PRINT_ALLOCATOR_STATS_NAME = "llvm.printAllocatorStats";
+    public static final String PRINT_ALLOCATOR_STATS_INFO = "Prints the allocation counters of the allocator and the usage of the globals segments on context exit. Can be \'true\', \'false\', \'stdout\' or \'stderr\'.";
+
     public static List<OptionDescriptor> describeOptions() {
         ArrayList<OptionDescriptor> options = new ArrayList<>();
         options.add(OptionDescriptor.newBuilder(CONFIGURATION, CONFIGURATION_NAME).help(CONFIGURATION_INFO).category(OptionCategory.USER).build());
         options.add(OptionDescriptor.newBuilder(STACK_SIZE_KB, STACK_SIZE_KB_NAME).help(STACK_SIZE_KB_INFO).category(OptionCategory.USER).build());
+        options.add(OptionDescriptor.newBuilder(STACK_MEMORY, STACK_MEMORY_NAME).help(STACK_MEMORY_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(STACK_COMMIT_SIZE_KB, STACK_COMMIT_SIZE_KB_NAME).help(STACK_COMMIT_SIZE_KB_INFO).category(OptionCategory.EXPERT).build());
         options.add(OptionDescriptor.newBuilder(LIBRARIES, LIBRARIES_NAME).help(LIBRARIES_INFO).category(OptionCategory.USER).build());
         options.add(OptionDescriptor.newBuilder(LIBRARY_PATH, LIBRARY_PATH_NAME).help(LIBRARY_PATH_INFO).category(OptionCategory.USER).build());
         options.add(OptionDescriptor.newBuilder(ENABLE_NFI, ENABLE_NFI_NAME).help(ENABLE_NFI_INFO).category(OptionCategory.USER).build());
@@ -111,7 +180,21 @@ public final class SulongEngineOption {
         options.add(OptionDescriptor.newBuilder(PARSE_ONLY, PARSE_ONLY_NAME).help(PARSE_ONLY_INFO).category(OptionCategory.EXPERT).build());
         options.add(OptionDescriptor.newBuilder(ENABLE_LVI, ENABLE_LVI_NAME).help(ENABLE_LVI_INFO).category(OptionCategory.DEBUG).build());
         options.add(OptionDescriptor.newBuilder(LAZY_PARSING, LAZY_PARSING_NAME).help(LAZY_PARSING_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PARSE_CACHE_DIRECTORY, PARSE_CACHE_DIRECTORY_NAME).help(PARSE_CACHE_DIRECTORY_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(SHARE_SCANNER_LOGS, SHARE_SCANNER_LOGS_NAME).help(SHARE_SCANNER_LOGS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(SHARE_PARSED_MODULES, SHARE_PARSED_MODULES_NAME).help(SHARE_PARSED_MODULES_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PARALLEL_PARSING_THREADS, PARALLEL_PARSING_THREADS_NAME).help(PARALLEL_PARSING_THREADS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PRINT_PARALLEL_PARSING_STATS, PRINT_PARALLEL_PARSING_STATS_NAME).help(PRINT_PARALLEL_PARSING_STATS_INFO).category(OptionCategory.DEBUG).build());
+        options.add(OptionDescriptor.newBuilder(LOOP_NODES, LOOP_NODES_NAME).help(LOOP_NODES_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PROMOTE_ALLOCAS, PROMOTE_ALLOCAS_NAME).help(PROMOTE_ALLOCAS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(BUFFERED_STDIO, BUFFERED_STDIO_NAME).help(BUFFERED_STDIO_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PRINT_BUFFERED_STDIO_STATS, PRINT_BUFFERED_STDIO_STATS_NAME).help(PRINT_BUFFERED_STDIO_STATS_INFO).category(OptionCategory.DEBUG).build());
+        options.add(OptionDescriptor.newBuilder(NATIVE_CALL_LATENCY_SAMPLING, NATIVE_CALL_LATENCY_SAMPLING_NAME).help(NATIVE_CALL_LATENCY_SAMPLING_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(SAMPLING_PROFILER, SAMPLING_PROFILER_NAME).help(SAMPLING_PROFILER_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(SAMPLING_PROFILER_INTERVAL_MS, SAMPLING_PROFILER_INTERVAL_MS_NAME).help(SAMPLING_PROFILER_INTERVAL_MS_INFO).category(OptionCategory.EXPERT).build());
         options.add(OptionDescriptor.newBuilder(STACKTRACE_ON_ABORT, STACKTRACE_ON_ABORT_NAME).help(STACKTRACE_ON_ABORT_INFO).category(OptionCategory.DEBUG).build());
+        options.add(OptionDescriptor.newBuilder(ALLOCATOR, ALLOCATOR_NAME).help(ALLOCATOR_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PRINT_ALLOCATOR_STATS, PRINT_ALLOCATOR_STATS_NAME).help(PRINT_ALLOCATOR_STATS_INFO).category(OptionCategory.DEBUG).build());
         return options;
     }
 
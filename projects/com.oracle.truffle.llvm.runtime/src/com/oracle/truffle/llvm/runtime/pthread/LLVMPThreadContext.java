@@ -0,0 +1,794 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.pthread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.interop.ArityException;
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.Message;
+import com.oracle.truffle.api.interop.UnsupportedMessageException;
+import com.oracle.truffle.api.interop.UnsupportedTypeException;
+import com.oracle.truffle.api.nodes.ControlFlowException;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.LLVMExitException;
+import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
+import com.oracle.truffle.llvm.runtime.LLVMThread;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * Runtime state behind the pthread intrinsics. Guest threads are Truffle threads created with
+ * {@code Env.createThread}, so each of them gets its own stack from the context's
+ * {@link com.oracle.truffle.llvm.runtime.memory.LLVMThreadingStack}. Mutexes, condition variables
+ * and rwlocks are identified by their native address and backed by Java locks that are created
+ * lazily, which also covers objects that were set up with the static initializer macros. When the
+ * Java lock is created, a marker is written into the first word of the native object. The static
+ * initializers fill the object with zeros, so a missing marker tells that the object was
+ * (re-)initialized and that a Java lock that is still registered for its address is stale, e.g.,
+ * because the memory was freed and reused without calling the {@code *_destroy} function.
+ *
+ * Calling {@code exit} from a thread other than the main thread stops all other threads and makes
+ * the main thread exit with the same status. Blocked threads are interrupted, and running threads
+ * notice the pending exit through {@link #getNoPendingExitAssumption()}.
+ */
+public final class LLVMPThreadContext {
+
+    // @formatter:off
+    public static final int EPERM     =   1;
+    public static final int ESRCH     =   3;
+    public static final int EAGAIN    =  11;
+    public static final int EBUSY     =  16;
+    public static final int EINVAL    =  22;
+    public static final int EDEADLK   =  35;
+    public static final int ETIMEDOUT = 110;
+
+    public static final int PTHREAD_MUTEX_NORMAL     = 0;
+    public static final int PTHREAD_MUTEX_RECURSIVE  = 1;
+    public static final int PTHREAD_MUTEX_ERRORCHECK = 2;
+
+    public static final int PTHREAD_CREATE_JOINABLE  = 0;
+    public static final int PTHREAD_CREATE_DETACHED  = 1;
+    // @formatter:on
+
+    /** Offset of {@code __kind} in glibc's {@code pthread_mutex_t} (x86_64). */
+    private static final long MUTEX_KIND_OFFSET = 16;
+    private static final int MUTEX_KIND_MASK = 0x3;
+
+    /** Offset and value of the marker in mutexes, condition variables and rwlocks. */
+    private static final long MARKER_OFFSET = 0;
+    private static final int MARKER = 0x53504c4b;
+
+    private static final int PTHREAD_DESTRUCTOR_ITERATIONS = 4;
+
+    private static final int ONCE_INIT = 0;
+    private static final int ONCE_RUNNING = 1;
+    public static final int ONCE_DONE = 2;
+
+    private final LLVMContext context;
+    private final LLVMMemory memory;
+
+    private final AtomicLong nextThreadId = new AtomicLong(1);
+    private final Map<Long, LLVMPThread> threads = new ConcurrentHashMap<>();
+    private final ThreadLocal<LLVMPThread> currentThread = new ThreadLocal<>();
+
+    private final Map<Long, Mutex> mutexes = new ConcurrentHashMap<>();
+    private final Map<Long, Condition> conditions = new ConcurrentHashMap<>();
+    private final Map<Long, ReentrantReadWriteLock> rwlocks = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextKey = new AtomicInteger();
+    private final Map<Integer, LLVMNativePointer> keyDestructors = new ConcurrentHashMap<>();
+
+    private final Object onceMonitor = new Object();
+
+    private final Assumption noPendingExit = Truffle.getRuntime().createAssumption("no pending exit");
+    private volatile LLVMExitException pendingExit;
+    private volatile Thread mainThread;
+
+    public LLVMPThreadContext(LLVMContext context, LLVMMemory memory) {
+        this.context = context;
+        this.memory = memory;
+    }
+
+    /**
+     * Thrown by {@code pthread_exit} and when a blocked thread is stopped while the context shuts
+     * down. Caught at the bottom of the thread's {@link Runnable}.
+     */
+    private static final class PThreadExit extends ControlFlowException {
+        private static final long serialVersionUID = 1L;
+
+        private final Object value;
+
+        PThreadExit(Object value) {
+            this.value = value;
+        }
+    }
+
+    public final class LLVMPThread implements LLVMThread {
+
+        private final long id;
+        private final Map<Integer, Object> specific = new HashMap<>();
+
+        private Thread thread;
+        private Object result;
+        private boolean detached;
+        private boolean joining;
+        private boolean finished;
+
+        private LLVMPThread(long id, Thread thread, boolean detached) {
+            this.id = id;
+            this.thread = thread;
+            this.detached = detached;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public synchronized Object getResult() {
+            return result;
+        }
+
+        private void run(LLVMFunctionDescriptor startRoutine, Object arg) {
+            currentThread.set(this);
+            Object value = LLVMNativePointer.createNull();
+            try {
+                value = ForeignAccess.sendExecute(Message.createExecute(1).createNode(), startRoutine, arg);
+            } catch (PThreadExit e) {
+                value = e.value;
+            } catch (LLVMExitException e) {
+                requestExit(e);
+            } catch (UnsupportedTypeException | ArityException | UnsupportedMessageException e) {
+                throw new AssertionError(e);
+            } finally {
+                try {
+                    runKeyDestructors(this);
+                } finally {
+                    currentThread.remove();
+                    synchronized (this) {
+                        result = value;
+                        finished = true;
+                        if (detached) {
+                            threads.remove(id);
+                        }
+                    }
+                    context.unregisterThread(this);
+                }
+            }
+        }
+
+        @Override
+        @TruffleBoundary
+        public void stop() {
+            if (thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        @TruffleBoundary
+        public void awaitFinish() {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            context.unregisterThread(this);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "LLVMPThread [id=" + id + ", thread=" + thread + "]";
+        }
+    }
+
+    private static final class Mutex extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private final int kind;
+
+        Mutex(int kind) {
+            this.kind = kind;
+        }
+
+        boolean isRecursive() {
+            return kind == PTHREAD_MUTEX_RECURSIVE;
+        }
+    }
+
+    /**
+     * A condition variable that is not bound to a specific mutex. A waiter enters the monitor
+     * before it releases the mutex, so a signal cannot get lost in between. Every waiter draws a
+     * ticket when it enqueues, and a signal releases the oldest pending ticket, so a thread that
+     * starts waiting after a signal cannot consume the wakeup meant for an earlier waiter.
+     */
+    private static final class Condition {
+        // threads inside condWait, including released ones that did not return yet
+        private int waiters;
+        private long nextTicket;
+        private final TreeSet<Long> pending = new TreeSet<>();
+    }
+
+    private LLVMPThread current() {
+        LLVMPThread thread = currentThread.get();
+        if (thread == null) {
+            // the main thread, or a thread that was not started via pthread_create
+            thread = new LLVMPThread(nextThreadId.getAndIncrement(), Thread.currentThread(), true);
+            currentThread.set(thread);
+        }
+        return thread;
+    }
+
+    /**
+     * The exception that a thread throws when it was interrupted in a blocking call.
+     */
+    private RuntimeException cancelled() {
+        LLVMExitException exit = pendingExit;
+        if (exit != null) {
+            return LLVMExitException.exit(exit.getReturnCode());
+        }
+        return new PThreadExit(LLVMNativePointer.createNull());
+    }
+
+    // exit
+
+    /**
+     * Registers the thread that runs {@code main}, so that it can be interrupted when another
+     * thread calls {@code exit}.
+     */
+    public void enterMainThread(Thread thread) {
+        mainThread = thread;
+    }
+
+    public void leaveMainThread() {
+        mainThread = null;
+        // the interrupt of a pending exit must not leak to the embedder
+        Thread.interrupted();
+    }
+
+    public Assumption getNoPendingExitAssumption() {
+        return noPendingExit;
+    }
+
+    /**
+     * Throws the exit of another thread, if there is one.
+     */
+    @TruffleBoundary
+    public void checkPendingExit() {
+        LLVMExitException exit = pendingExit;
+        if (exit != null) {
+            throw LLVMExitException.exit(exit.getReturnCode());
+        }
+    }
+
+    @TruffleBoundary
+    private void requestExit(LLVMExitException exit) {
+        synchronized (noPendingExit) {
+            if (pendingExit != null) {
+                // the first call to exit wins
+                return;
+            }
+            pendingExit = exit;
+        }
+        noPendingExit.invalidate();
+        context.shutdownThreads();
+        Thread main = mainThread;
+        if (main != null) {
+            main.interrupt();
+        }
+    }
+
+    // threads
+
+    @TruffleBoundary
+    public long self() {
+        return current().id;
+    }
+
+    @TruffleBoundary
+    public long create(LLVMNativePointer startRoutine, Object arg, boolean detached) {
+        LLVMFunctionDescriptor function = context.getFunctionDescriptor(startRoutine);
+        if (function == null) {
+            return -EINVAL;
+        }
+        long id = nextThreadId.getAndIncrement();
+        LLVMPThread pthread = new LLVMPThread(id, null, detached);
+        Thread thread = context.getEnv().createThread(() -> pthread.run(function, arg));
+        pthread.thread = thread;
+        threads.put(id, pthread);
+        context.registerThread(pthread);
+        try {
+            thread.start();
+        } catch (OutOfMemoryError e) {
+            threads.remove(id);
+            context.unregisterThread(pthread);
+            return -EAGAIN;
+        }
+        return id;
+    }
+
+    @TruffleBoundary
+    public LLVMPThread getThread(long id) {
+        return threads.get(id);
+    }
+
+    @TruffleBoundary
+    public int join(LLVMPThread pthread) {
+        if (pthread == currentThread.get()) {
+            return EDEADLK;
+        }
+        synchronized (pthread) {
+            if (pthread.detached || pthread.joining) {
+                return EINVAL;
+            }
+            pthread.joining = true;
+        }
+        try {
+            pthread.thread.join();
+        } catch (InterruptedException e) {
+            synchronized (pthread) {
+                pthread.joining = false;
+            }
+            throw cancelled();
+        }
+        threads.remove(pthread.id);
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int detach(long id) {
+        LLVMPThread pthread = threads.get(id);
+        if (pthread == null) {
+            return ESRCH;
+        }
+        synchronized (pthread) {
+            if (pthread.detached || pthread.joining) {
+                return EINVAL;
+            }
+            pthread.detached = true;
+            if (pthread.finished) {
+                threads.remove(id);
+            }
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public RuntimeException exit(Object value) {
+        LLVMPThread self = currentThread.get();
+        if (self != null && threads.get(self.id) == self) {
+            throw new PThreadExit(value);
+        }
+        /*
+         * pthread_exit in the main thread: the process terminates with status 0 once all other
+         * threads are finished.
+         */
+        runKeyDestructors(current());
+        for (LLVMPThread pthread : new ArrayList<>(threads.values())) {
+            pthread.awaitFinish();
+        }
+        checkPendingExit();
+        throw LLVMExitException.exit(0);
+    }
+
+    // mutexes
+
+    private Mutex getMutex(long address) {
+        return getSyncObject(mutexes, address, () -> new Mutex(memory.getI32(address + MUTEX_KIND_OFFSET) & MUTEX_KIND_MASK));
+    }
+
+    @TruffleBoundary
+    public int mutexInit(long address, int kind) {
+        memory.putI32(address + MUTEX_KIND_OFFSET, kind);
+        initSyncObject(mutexes, address, new Mutex(kind));
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int mutexDestroy(long address) {
+        Mutex mutex = lookupSyncObject(mutexes, address);
+        if (mutex != null) {
+            if (mutex.isLocked()) {
+                return EBUSY;
+            }
+            destroySyncObject(mutexes, address, mutex);
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int mutexLock(long address) {
+        Mutex mutex = getMutex(address);
+        if (!mutex.isRecursive() && mutex.isHeldByCurrentThread()) {
+            return EDEADLK;
+        }
+        try {
+            mutex.lockInterruptibly();
+        } catch (InterruptedException e) {
+            throw cancelled();
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int mutexTryLock(long address) {
+        Mutex mutex = getMutex(address);
+        if (!mutex.isRecursive() && mutex.isHeldByCurrentThread()) {
+            return EBUSY;
+        }
+        return mutex.tryLock() ? 0 : EBUSY;
+    }
+
+    @TruffleBoundary
+    public int mutexUnlock(long address) {
+        Mutex mutex = getMutex(address);
+        if (!mutex.isHeldByCurrentThread()) {
+            return EPERM;
+        }
+        mutex.unlock();
+        return 0;
+    }
+
+    // condition variables
+
+    private Condition getCondition(long address) {
+        return getSyncObject(conditions, address, Condition::new);
+    }
+
+    @TruffleBoundary
+    public int condInit(long address) {
+        initSyncObject(conditions, address, new Condition());
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int condDestroy(long address) {
+        Condition condition = lookupSyncObject(conditions, address);
+        if (condition != null) {
+            synchronized (condition) {
+                if (condition.waiters > 0) {
+                    return EBUSY;
+                }
+                destroySyncObject(conditions, address, condition);
+            }
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int condSignal(long address) {
+        Condition condition = getCondition(address);
+        synchronized (condition) {
+            if (condition.pending.pollFirst() != null) {
+                // the released waiter is not necessarily the one that wakes up
+                condition.notifyAll();
+            }
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int condBroadcast(long address) {
+        Condition condition = getCondition(address);
+        synchronized (condition) {
+            if (!condition.pending.isEmpty()) {
+                condition.pending.clear();
+                condition.notifyAll();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param deadline absolute {@code CLOCK_REALTIME} deadline in milliseconds, or a negative value
+     *            to wait without a timeout
+     */
+    @TruffleBoundary
+    public int condWait(long condAddress, long mutexAddress, long deadline) {
+        Condition condition = getCondition(condAddress);
+        Mutex mutex = getMutex(mutexAddress);
+        if (!mutex.isHeldByCurrentThread()) {
+            return EPERM;
+        }
+        boolean timedOut = false;
+        boolean interrupted = false;
+        synchronized (condition) {
+            Long ticket = condition.nextTicket++;
+            condition.pending.add(ticket);
+            condition.waiters++;
+            mutex.unlock();
+            try {
+                while (condition.pending.contains(ticket)) {
+                    if (deadline < 0) {
+                        condition.wait();
+                    } else {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            timedOut = true;
+                            break;
+                        }
+                        condition.wait(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } finally {
+                condition.waiters--;
+                // a waiter that leaves without being released must not absorb a later signal
+                condition.pending.remove(ticket);
+            }
+        }
+        // the mutex is always re-acquired, even if the thread is cancelled
+        mutex.lock();
+        if (interrupted) {
+            throw cancelled();
+        }
+        return timedOut ? ETIMEDOUT : 0;
+    }
+
+    // rwlocks
+
+    private ReentrantReadWriteLock getRWLock(long address) {
+        return getSyncObject(rwlocks, address, ReentrantReadWriteLock::new);
+    }
+
+    @TruffleBoundary
+    public int rwlockInit(long address) {
+        initSyncObject(rwlocks, address, new ReentrantReadWriteLock());
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int rwlockDestroy(long address) {
+        ReentrantReadWriteLock lock = lookupSyncObject(rwlocks, address);
+        if (lock != null) {
+            if (lock.isWriteLocked() || lock.getReadLockCount() > 0) {
+                return EBUSY;
+            }
+            destroySyncObject(rwlocks, address, lock);
+        }
+        return 0;
+    }
+
+    // registry of mutexes, condition variables and rwlocks, see class comment
+
+    /**
+     * Returns the Java object for the native object at {@code address}, or {@code null} if there
+     * is none or if it is stale.
+     */
+    private <T> T lookupSyncObject(Map<Long, T> objects, long address) {
+        T object = objects.get(address);
+        if (object != null && memory.getI32(address + MARKER_OFFSET) == MARKER) {
+            return object;
+        }
+        return null;
+    }
+
+    private <T> T getSyncObject(Map<Long, T> objects, long address, Supplier<T> factory) {
+        T object = lookupSyncObject(objects, address);
+        if (object != null) {
+            return object;
+        }
+        synchronized (objects) {
+            // another thread may have created it in the meantime
+            object = lookupSyncObject(objects, address);
+            if (object == null) {
+                object = factory.get();
+                objects.put(address, object);
+                memory.putI32(address + MARKER_OFFSET, MARKER);
+            }
+            return object;
+        }
+    }
+
+    private <T> void initSyncObject(Map<Long, T> objects, long address, T object) {
+        synchronized (objects) {
+            objects.put(address, object);
+            memory.putI32(address + MARKER_OFFSET, MARKER);
+        }
+    }
+
+    private <T> void destroySyncObject(Map<Long, T> objects, long address, T object) {
+        synchronized (objects) {
+            if (objects.remove(address, object)) {
+                memory.putI32(address + MARKER_OFFSET, 0);
+            }
+        }
+    }
+
+    @TruffleBoundary
+    public int rwlockReadLock(long address) {
+        ReentrantReadWriteLock lock = getRWLock(address);
+        if (lock.isWriteLockedByCurrentThread()) {
+            return EDEADLK;
+        }
+        try {
+            lock.readLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            throw cancelled();
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int rwlockTryReadLock(long address) {
+        ReentrantReadWriteLock lock = getRWLock(address);
+        if (lock.isWriteLockedByCurrentThread()) {
+            return EBUSY;
+        }
+        return lock.readLock().tryLock() ? 0 : EBUSY;
+    }
+
+    @TruffleBoundary
+    public int rwlockWriteLock(long address) {
+        ReentrantReadWriteLock lock = getRWLock(address);
+        if (lock.isWriteLockedByCurrentThread() || lock.getReadHoldCount() > 0) {
+            return EDEADLK;
+        }
+        try {
+            lock.writeLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            throw cancelled();
+        }
+        return 0;
+    }
+
+    @TruffleBoundary
+    public int rwlockTryWriteLock(long address) {
+        ReentrantReadWriteLock lock = getRWLock(address);
+        if (lock.isWriteLockedByCurrentThread() || lock.getReadHoldCount() > 0) {
+            return EBUSY;
+        }
+        return lock.writeLock().tryLock() ? 0 : EBUSY;
+    }
+
+    @TruffleBoundary
+    public int rwlockUnlock(long address) {
+        ReentrantReadWriteLock lock = getRWLock(address);
+        if (lock.isWriteLockedByCurrentThread()) {
+            lock.writeLock().unlock();
+        } else if (lock.getReadHoldCount() > 0) {
+            lock.readLock().unlock();
+        } else {
+            return EPERM;
+        }
+        return 0;
+    }
+
+    // thread-specific data
+
+    @TruffleBoundary
+    public int keyCreate(LLVMNativePointer destructor) {
+        int key = nextKey.getAndIncrement();
+        if (key < 0) {
+            return -EAGAIN;
+        }
+        keyDestructors.put(key, destructor);
+        return key;
+    }
+
+    @TruffleBoundary
+    public int keyDelete(int key) {
+        return keyDestructors.remove(key) == null ? EINVAL : 0;
+    }
+
+    @TruffleBoundary
+    public Object getSpecific(int key) {
+        Object value = current().specific.get(key);
+        if (value == null || !keyDestructors.containsKey(key)) {
+            return LLVMNativePointer.createNull();
+        }
+        return value;
+    }
+
+    @TruffleBoundary
+    public int setSpecific(int key, Object value) {
+        if (!keyDestructors.containsKey(key)) {
+            return EINVAL;
+        }
+        current().specific.put(key, value);
+        return 0;
+    }
+
+    private void runKeyDestructors(LLVMPThread pthread) {
+        for (int i = 0; i < PTHREAD_DESTRUCTOR_ITERATIONS && !pthread.specific.isEmpty(); i++) {
+            Map<Integer, Object> values = new HashMap<>(pthread.specific);
+            pthread.specific.clear();
+            for (Map.Entry<Integer, Object> entry : values.entrySet()) {
+                LLVMNativePointer destructor = keyDestructors.get(entry.getKey());
+                Object value = entry.getValue();
+                if (destructor == null || destructor.isNull() || (LLVMNativePointer.isInstance(value) && LLVMNativePointer.cast(value).isNull())) {
+                    continue;
+                }
+                call(destructor, value);
+            }
+        }
+    }
+
+    // pthread_once
+
+    @TruffleBoundary
+    public void once(LLVMNativePointer control, LLVMNativePointer initRoutine) {
+        while (true) {
+            LLVMMemory.CMPXCHGI32 state = memory.compareAndSwapI32(control, ONCE_INIT, ONCE_RUNNING);
+            if (state.isSwap()) {
+                int newState = ONCE_INIT;
+                try {
+                    call(initRoutine);
+                    newState = ONCE_DONE;
+                } finally {
+                    synchronized (onceMonitor) {
+                        memory.compareAndSwapI32(control, ONCE_RUNNING, newState);
+                        onceMonitor.notifyAll();
+                    }
+                }
+                return;
+            } else if (state.getValue() == ONCE_DONE) {
+                return;
+            }
+            synchronized (onceMonitor) {
+                while (memory.compareAndSwapI32(control, ONCE_RUNNING, ONCE_RUNNING).isSwap()) {
+                    try {
+                        onceMonitor.wait();
+                    } catch (InterruptedException e) {
+                        throw cancelled();
+                    }
+                }
+            }
+        }
+    }
+
+    private void call(LLVMNativePointer function, Object... args) {
+        LLVMFunctionDescriptor descriptor = context.getFunctionDescriptor(function);
+        try {
+            ForeignAccess.sendExecute(Message.createExecute(args.length).createNode(), descriptor, args);
+        } catch (UnsupportedTypeException | ArityException | UnsupportedMessageException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.parser.scanner.BitStream;
+
+/**
+ * Compares {@link BitStream} with a byte-wise reference reader on generated data. The throughput
+ * of both readers is measured by {@link OtherProgramsBenchmark}.
+ */
+public final class BitStreamTest {
+
+    private static final int DATA_SIZE = 4 * 1024 * 1024;
+    private static final int[] FIXED_WIDTHS = {1, 2, 3, 6, 8, 13, 32, 63, 64};
+    private static final int[] VBR_WIDTHS = {2, 3, 4, 5, 6, 8, 16, 32};
+
+    private static byte[] data;
+
+    @BeforeClass
+    public static void createData() {
+        data = generateData();
+    }
+
+    /**
+     * Returns the same pseudo-random bytes on every call, so failures and measurements can be
+     * reproduced.
+     */
+    static byte[] generateData() {
+        byte[] bytes = new byte[DATA_SIZE];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the data in 11-bit and VBR6 steps with the reference reader and returns a checksum.
+     */
+    static long scanReference(byte[] bytes) {
+        ReferenceReader reference = new ReferenceReader(ByteBuffer.wrap(bytes));
+        long end = bytes.length * (long) Byte.SIZE - Long.SIZE * Integer.SIZE;
+        long checksum = 0;
+        for (long offset = 0; offset < end; offset += 11) {
+            checksum += reference.read(offset, 11) + reference.readVBR(offset, 6);
+        }
+        return checksum;
+    }
+
+    /**
+     * Same as {@link #scanReference} with {@link BitStream}.
+     */
+    static long scanStream(byte[] bytes) {
+        BitStream stream = BitStream.create(ByteBuffer.wrap(bytes));
+        long end = stream.size() - Long.SIZE * Integer.SIZE;
+        long checksum = 0;
+        for (long offset = 0; offset < end; offset += 11) {
+            checksum += stream.read(offset, 11) + stream.readVBR(offset, 6);
+        }
+        return checksum;
+    }
+
+    /**
+     * The previous implementation, which assembles every read from single bytes.
+     */
+    private static final class ReferenceReader {
+        private final ByteBuffer buffer;
+
+        ReferenceReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long read(long offset, long bits) {
+            long div = offset / Byte.SIZE;
+            long value = 0;
+            for (int i = 0; i < Byte.SIZE; i++) {
+                value += readAlignedByte(div + i) << (i * Byte.SIZE);
+            }
+            long mod = offset & (Byte.SIZE - 1L);
+            if (mod != 0) {
+                value >>>= mod;
+                value += readAlignedByte(div + Byte.SIZE) << (Long.SIZE - mod);
+            }
+            return bits < Long.SIZE ? value & ((1L << bits) - 1L) : value;
+        }
+
+        long readVBR(long offset, long width) {
+            long value = 0;
+            long shift = 0;
+            long datum;
+            long o = offset;
+            long dmask = 1 << (width - 1);
+            do {
+                datum = read(o, width);
+                o += width;
+                value += (datum & (dmask - 1)) << shift;
+                shift += width - 1;
+            } while ((datum & dmask) != 0);
+            return value;
+        }
+
+        private long readAlignedByte(long i) {
+            return i < buffer.capacity() ? buffer.get((int) i) & 0xffL : 0;
+        }
+    }
+
+    @Test
+    public void testSameResults() {
+        BitStream stream = BitStream.create(ByteBuffer.wrap(data));
+        ReferenceReader reference = new ReferenceReader(ByteBuffer.wrap(data));
+        long size = stream.size();
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            // include the last bytes and the zero padding behind the end of the data
+            long offset = i < 1024 ? size - 512 + i : (long) (random.nextDouble() * size);
+            for (int width : FIXED_WIDTHS) {
+                Assert.assertEquals("read " + width + " @" + offset, reference.read(offset, width), stream.read(offset, width));
+            }
+            for (int width : VBR_WIDTHS) {
+                if (offset + Long.SIZE * width < size) {
+                    Assert.assertEquals("readVBR " + width + " @" + offset, reference.readVBR(offset, width), stream.readVBR(offset, width));
+                }
+            }
+            Assert.assertEquals("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789._".charAt((int) reference.read(offset, 6)), stream.readChar6(offset));
+        }
+    }
+
+    @Test
+    public void testSameChecksum() {
+        Assert.assertEquals(scanReference(data), scanStream(data));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a program that writes to stdout and stderr with raw syscalls with the different stdio
+ * buffering modes. The program checks itself when its output reaches the file descriptor; this
+ * test checks the output and how many native writes were needed.
+ */
+public final class BufferedStdioTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/unbuffered-output/unbuffered-output_clang_O1.bc");
+
+    private static final int LARGE_WRITE = 10000;
+    private static final int GUEST_WRITES = 110;
+
+    private static ProcessResult run(String mode) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(SulongEngineOption.BUFFERED_STDIO_NAME, mode);
+        options.put(SulongEngineOption.PRINT_BUFFERED_STDIO_STATS_NAME, "stdout");
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[]{mode}, options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        Assert.assertEquals("err\nerr\n", result.getStdErr());
+        return result;
+    }
+
+    private static String expectedOutput() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.append('a');
+        }
+        expected.append("\nbcd");
+        for (int i = 0; i < LARGE_WRITE; i++) {
+            expected.append('x');
+        }
+        return expected.append("efgdone").toString();
+    }
+
+    private static void checkBuffered(String mode, int nativeWrites) throws Exception {
+        ProcessResult result = run(mode);
+        String stats = "buffered stdio: " + GUEST_WRITES + " writes, " + nativeWrites + " native writes\n";
+        Assert.assertEquals(expectedOutput() + stats, result.getStdOutput());
+    }
+
+    @Test
+    public void testUnbuffered() throws Exception {
+        Assert.assertEquals(expectedOutput(), run("none").getStdOutput());
+    }
+
+    @Test
+    public void testLineBuffered() throws Exception {
+        // one write per line, per fsync, dup2, close and native call, two for the large write and
+        // one on exit
+        checkBuffered("line", 10);
+    }
+
+    @Test
+    public void testFullyBuffered() throws Exception {
+        // runs of stdout and stderr are written separately
+        checkBuffered("full", 9);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a bytecode interpreter that dispatches with computed gotos, i.e., with one indirect branch
+ * per bytecode. {@link OtherProgramsBenchmark} reports the time per run.
+ */
+public final class ComputedGotoTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/computed-goto/computed-goto_clang_O1.bc");
+
+    private static long expected(int iterations) {
+        int a = 0;
+        int b = 1;
+        int acc = 0;
+        for (int i = 0; i < iterations; i++) {
+            int t = a + b;
+            a = b;
+            b = t;
+            acc ^= a;
+        }
+        return acc & 0xFFFFFFFFL;
+    }
+
+    static void run(int iterations) throws Exception {
+        String[] args = {String.valueOf(iterations)};
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, args, Collections.emptyMap(), c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        Assert.assertEquals(String.valueOf(expected(iterations)), result.getStdOutput().trim());
+    }
+
+    @Test
+    public void testResult() throws Exception {
+        for (int iterations = 1; iterations <= 64; iterations *= 2) {
+            run(iterations);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+
+/**
+ * Allocates and releases deref handles from several threads at the same time and checks that no
+ * handle is handed out twice. {@link OtherProgramsBenchmark} reports the throughput of the handle
+ * space.
+ */
+public final class DerefHandleContentionTest {
+
+    static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    static final int ROUNDS = 2000;
+    static final int BATCH = 64;
+
+    @SuppressWarnings("deprecation")
+    private static final LLVMMemory memory = LLVMMemory.getInstance();
+
+    @Test
+    public void testConcurrentAllocateAndFree() throws Throwable {
+        allocateAndFree();
+    }
+
+    /**
+     * Runs {@link #THREADS} threads that each allocate and free {@link #ROUNDS} batches of
+     * {@link #BATCH} handles. Returns the elapsed time in nanoseconds.
+     */
+    static long allocateAndFree() throws Throwable {
+        ConcurrentHashMap<Long, Thread> live = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        CyclicBarrier end = new CyclicBarrier(THREADS + 1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                long[] handles = new long[BATCH];
+                try {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < BATCH; i++) {
+                            handles[i] = memory.allocateDerefMemory().asNative();
+                            Thread previous = live.putIfAbsent(handles[i], Thread.currentThread());
+                            Assert.assertNull("handle " + Long.toHexString(handles[i]) + " is already in use", previous);
+                        }
+                        for (int i = 0; i < BATCH; i++) {
+                            live.remove(handles[i]);
+                            memory.free(handles[i]);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    try {
+                        end.await();
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.await();
+        long startTime = System.nanoTime();
+        end.await();
+        long elapsed = System.nanoTime() - startTime;
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        Assert.assertTrue("all handles must be released", live.isEmpty());
+        return elapsed;
+    }
+}
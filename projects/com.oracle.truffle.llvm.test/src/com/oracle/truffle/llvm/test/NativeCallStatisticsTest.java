@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a program that calls a native function and then queries the native call statistics through
+ * the exported polyglot symbol.
+ */
+public final class NativeCallStatisticsTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/native-call-stats/native-call-stats_clang_O1.bc");
+
+    private static String run(String latencySampling) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(SulongEngineOption.NATIVE_CALL_STATS_NAME, "stderr");
+        options.put(SulongEngineOption.NATIVE_CALL_LATENCY_SAMPLING_NAME, latencySampling);
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[0], options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+
+        String stdout = result.getStdOutput();
+        Assert.assertTrue(stdout, stdout.startsWith("5\n"));
+        int start = stdout.indexOf("{\"nativeCalls\":[");
+        Assert.assertTrue(stdout, start >= 0);
+        String json = stdout.substring(start, stdout.indexOf('\n', start));
+        Assert.assertTrue(json, json.endsWith("]}"));
+        Assert.assertTrue(json, json.contains("{\"function\":\"@caller_i64\","));
+        Assert.assertTrue(json, json.contains("\"callSites\":1,\"calls\":5"));
+        return json;
+    }
+
+    @Test
+    public void testCallCounts() throws Exception {
+        String json = run("0");
+        Assert.assertFalse(json, json.contains("\"latency\""));
+    }
+
+    @Test
+    public void testLatencySampling() throws Exception {
+        String json = run("2");
+        Assert.assertTrue(json, json.contains("\"latency\":{\"samples\":2,"));
+    }
+}
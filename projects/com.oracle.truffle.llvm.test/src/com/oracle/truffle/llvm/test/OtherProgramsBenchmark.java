@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.truffle.llvm.runtime.memory.LLVMStackMemory;
+
+/**
+ * Measures programs in {@code tests/other} and runtime components whose unit tests only check that
+ * they work. Run with {@code mx other-benchmarks [benchmark...]}. Every run prints one
+ * {@code <benchmark>: <score>} line; the unit of the score is part of the benchmark name.
+ */
+public final class OtherProgramsBenchmark {
+
+    private static final int RUNS = 5;
+
+    private static final int COMPUTED_GOTO_ITERATIONS = 200000;
+
+    private interface Benchmark {
+        long run() throws Throwable;
+    }
+
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("stack-resident-heap-kb", () -> StackMemoryTest.residentKB(LLVMStackMemory.HEAP));
+        BENCHMARKS.put("stack-resident-mmap-kb", () -> StackMemoryTest.residentKB(LLVMStackMemory.MMAP));
+        BENCHMARKS.put("deref-handle-ops-per-ms", () -> {
+            long operations = 2L * DerefHandleContentionTest.THREADS * DerefHandleContentionTest.ROUNDS * DerefHandleContentionTest.BATCH;
+            return operations * 1000000 / Math.max(DerefHandleContentionTest.allocateAndFree(), 1);
+        });
+        BENCHMARKS.put("bitstream-reference-ms", () -> {
+            byte[] data = BitStreamTest.generateData();
+            long start = System.nanoTime();
+            BitStreamTest.scanReference(data);
+            return (System.nanoTime() - start) / 1000000;
+        });
+        BENCHMARKS.put("bitstream-ms", () -> {
+            byte[] data = BitStreamTest.generateData();
+            long start = System.nanoTime();
+            BitStreamTest.scanStream(data);
+            return (System.nanoTime() - start) / 1000000;
+        });
+        BENCHMARKS.put("computed-goto-ms", () -> {
+            long start = System.nanoTime();
+            ComputedGotoTest.run(COMPUTED_GOTO_ITERATIONS);
+            return (System.nanoTime() - start) / 1000000;
+        });
+    }
+
+    private OtherProgramsBenchmark() {
+    }
+
+    public static void main(String[] args) throws Throwable {
+        List<String> names = args.length == 0 ? new ArrayList<>(BENCHMARKS.keySet()) : Arrays.asList(args);
+        for (String name : names) {
+            Benchmark benchmark = BENCHMARKS.get(name);
+            if (benchmark == null) {
+                throw new IllegalArgumentException("unknown benchmark " + name + ", expected one of " + BENCHMARKS.keySet());
+            }
+            for (int i = 0; i < RUNS; i++) {
+                System.out.println(name + ": " + benchmark.run());
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a program with a deep call graph while its functions are parsed by background threads, and
+ * checks that the background threads converted functions.
+ */
+public final class ParallelParsingTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/call-graph/call-graph_clang_O1.bc");
+
+    private static final String EXPECTED = "578857268";
+
+    private static final Pattern STATS = Pattern.compile("parallel parsing: (\\d+) functions converted in the background");
+
+    /**
+     * @return the number of functions that were converted by background threads, or -1 if there
+     *         was no background parsing
+     */
+    private static int run(int threadCount) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(SulongEngineOption.PARALLEL_PARSING_THREADS_NAME, String.valueOf(threadCount));
+        options.put(SulongEngineOption.PRINT_PARALLEL_PARSING_STATS_NAME, "stdout");
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[0], options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        String stdout = result.getStdOutput();
+        Assert.assertTrue(stdout, stdout.contains(EXPECTED + "\n"));
+        Matcher matcher = STATS.matcher(stdout);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        Assert.assertEquals(-1, run(0));
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        Assert.assertTrue(run(1) > 0);
+    }
+
+    @Test
+    public void testManyThreads() throws Exception {
+        Assert.assertTrue(run(8) > 0);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a program twice with the same parse cache, so that the second run replays the cached
+ * records, and once more after the cache entries were corrupted. Entries are only written if no
+ * valid entry was found, so an entry whose modification time is unchanged after a run was used.
+ */
+public final class ParseCacheTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/call-graph/call-graph_clang_O1.bc");
+
+    private static final String EXPECTED = "578857268";
+
+    private static final FileTime OLD_TIME = FileTime.fromMillis(86400000L);
+
+    private Path cacheDirectory;
+
+    @Before
+    public void createCacheDirectory() throws IOException {
+        cacheDirectory = Files.createTempDirectory("sulong-parse-cache");
+    }
+
+    @After
+    public void deleteCacheDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void run() throws Exception {
+        Map<String, String> options = Collections.singletonMap(SulongEngineOption.PARSE_CACHE_DIRECTORY_NAME, cacheDirectory.toString());
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[0], options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        Assert.assertEquals(EXPECTED, result.getStdOutput().trim());
+    }
+
+    /**
+     * Sets the modification time of all entries to a time long before the test and returns the
+     * entries.
+     */
+    private Map<Path, FileTime> backdateEntries() throws IOException {
+        Map<Path, FileTime> entries = new HashMap<>();
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.setLastModifiedTime(file, OLD_TIME);
+                entries.put(file, OLD_TIME);
+            }
+        }
+        return entries;
+    }
+
+    private Map<Path, FileTime> listEntries() throws IOException {
+        Map<Path, FileTime> entries = new HashMap<>();
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                entries.put(file, Files.getLastModifiedTime(file));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testCachedRun() throws Exception {
+        run();
+        Map<Path, FileTime> entries = backdateEntries();
+        Assert.assertFalse(entries.isEmpty());
+        run();
+        Assert.assertEquals(entries, listEntries());
+    }
+
+    @Test
+    public void testCorruptedCache() throws Exception {
+        run();
+        Map<Path, FileTime> entries = backdateEntries();
+        for (Path file : entries.keySet()) {
+            byte[] data = Files.readAllBytes(file);
+            data[data.length / 2] ^= 0x55;
+            Files.write(file, data);
+            Files.setLastModifiedTime(file, OLD_TIME);
+        }
+        run();
+        Map<Path, FileTime> rewritten = listEntries();
+        Assert.assertEquals(entries.keySet(), rewritten.keySet());
+        for (FileTime time : rewritten.values()) {
+            Assert.assertNotEquals(OLD_TIME, time);
+        }
+        entries = backdateEntries();
+        run();
+        Assert.assertEquals(entries, listEntries());
+    }
+}
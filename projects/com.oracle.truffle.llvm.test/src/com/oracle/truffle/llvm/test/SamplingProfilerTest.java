@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs a program that spends its time in a single function with the sampling profiler and checks
+ * that the collapsed stacks attribute samples to that function.
+ */
+public final class SamplingProfilerTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/sampling-profiler/sampling-profiler_clang_O1.bc");
+
+    @Test
+    public void testCollapsedStacks() throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put(SulongEngineOption.SAMPLING_PROFILER_NAME, "stderr");
+        options.put(SulongEngineOption.SAMPLING_PROFILER_INTERVAL_MS_NAME, "1");
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[0], options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        Assert.assertEquals("9999999\n", result.getStdOutput());
+
+        long busySamples = 0;
+        for (String line : result.getStdErr().split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int separator = line.lastIndexOf(' ');
+            Assert.assertTrue(line, separator > 0);
+            long count = Long.parseLong(line.substring(separator + 1));
+            Assert.assertTrue(line, count > 0);
+
+            String[] frames = line.substring(0, separator).split(";");
+            for (int i = 0; i < frames.length - 1; i++) {
+                if (frames[i].contains("busy")) {
+                    Assert.assertTrue(line, i > 0 && frames[i - 1].contains("main"));
+                    busySamples += count;
+                }
+            }
+        }
+        Assert.assertTrue("no samples in busy", busySamples > 0);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.function.Function;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.Sulong;
+import com.oracle.truffle.llvm.parser.scanner.LLVMModuleCache;
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.pipe.CaptureOutput;
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Runs a program in several contexts that share an engine and the parsed modules of the bitcode
+ * files, and checks that every file is parsed only once and that the single-context assumption
+ * only breaks if contexts overlap.
+ */
+public final class SharedEngineTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/call-graph/call-graph_clang_O1.bc");
+
+    private static final String EXPECTED = "578857268";
+
+    private static final int CONTEXTS = 3;
+
+    private static Engine createEngine() {
+        return Engine.newBuilder().option(SulongEngineOption.SHARE_PARSED_MODULES_NAME, String.valueOf(true)).build();
+    }
+
+    private static Context createContext(Engine engine) {
+        return Context.newBuilder().engine(engine).allowAllAccess(true).build();
+    }
+
+    /**
+     * Applies {@code query} to the language instance of the entered {@code context}.
+     */
+    private static <T> T query(Context context, Function<Sulong, T> query) {
+        context.enter();
+        try {
+            return query.apply((Sulong) LLVMLanguage.getLanguage());
+        } finally {
+            context.leave();
+        }
+    }
+
+    @Test
+    public void testSequentialContexts() throws Exception {
+        Source source = Source.newBuilder(LLVMLanguage.NAME, PROGRAM).build();
+        long parses = -1;
+        try (Engine engine = createEngine()) {
+            for (int i = 0; i < CONTEXTS; i++) {
+                try (CaptureOutput out = new CaptureNativeOutput()) {
+                    try (Context context = createContext(engine)) {
+                        Value main = context.eval(source);
+                        LLVMModuleCache modules = query(context, Sulong::getModuleCache);
+                        Assert.assertNotNull(modules);
+                        if (i == 0) {
+                            // the program and the default libraries
+                            parses = modules.getParseCount();
+                            Assert.assertTrue(parses > 1);
+                        } else {
+                            Assert.assertEquals(parses, modules.getParseCount());
+                            Assert.assertEquals(i * parses, modules.getHitCount());
+                        }
+                        Assert.assertEquals(0, main.execute().asInt());
+                        Assert.assertTrue(query(context, language -> language.getSingleContextAssumption().isValid()));
+                    }
+                    Assert.assertEquals(EXPECTED, out.getStdOut().trim());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingContexts() throws Exception {
+        Source source = Source.newBuilder(LLVMLanguage.NAME, PROGRAM).build();
+        try (Engine engine = createEngine(); CaptureOutput out = new CaptureNativeOutput()) {
+            try (Context first = createContext(engine)) {
+                Value firstMain = first.eval(source);
+                Assert.assertTrue(query(first, language -> language.getSingleContextAssumption().isValid()));
+                try (Context second = createContext(engine)) {
+                    Value secondMain = second.eval(source);
+                    Assert.assertFalse(query(second, language -> language.getSingleContextAssumption().isValid()));
+                    Assert.assertTrue(query(second, language -> language.getModuleCache().getHitCount() > 0));
+                    Assert.assertEquals(0, secondMain.execute().asInt());
+                }
+                Assert.assertEquals(0, firstMain.execute().asInt());
+            }
+            Assert.assertEquals(EXPECTED + "\n" + EXPECTED, out.getStdOut().trim());
+        }
+    }
+}
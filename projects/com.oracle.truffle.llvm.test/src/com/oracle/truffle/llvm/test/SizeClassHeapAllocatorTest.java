@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.memory.LLVMHeapAllocator;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+
+public final class SizeClassHeapAllocatorTest {
+
+    @SuppressWarnings("deprecation")
+    private static final LLVMMemory memory = LLVMMemory.getInstance();
+
+    private LLVMHeapAllocator allocator;
+
+    @Before
+    public void createAllocator() {
+        allocator = LLVMHeapAllocator.create(LLVMHeapAllocator.SIZE_CLASS, memory);
+    }
+
+    @After
+    public void disposeAllocator() {
+        allocator.dispose();
+    }
+
+    @Test
+    public void testSizeClasses() {
+        // {requested size, size of its class}
+        long[][] classes = {{0, 16}, {1, 16}, {16, 16}, {17, 32}, {250, 256}, {256, 256}, {257, 512}, {4000, 4096}, {32768, 32768}};
+        for (long[] sizeClass : classes) {
+            long address = allocator.allocate(sizeClass[0]);
+            Assert.assertNotEquals(0, address);
+            Assert.assertEquals("alignment of " + sizeClass[0], 0, address % 16);
+            fill(address, sizeClass[1], 42);
+            Assert.assertEquals("class of " + sizeClass[0], address, allocator.reallocate(address, sizeClass[1]));
+            long moved = allocator.reallocate(address, sizeClass[1] + 1);
+            Assert.assertNotEquals("class of " + sizeClass[0], address, moved);
+            check(moved, sizeClass[1], 42);
+            allocator.free(moved);
+        }
+    }
+
+    @Test
+    public void testFreeReusesBlock() {
+        long first = allocator.allocate(40);
+        allocator.free(first);
+        Assert.assertEquals(first, allocator.allocate(48));
+        Assert.assertNotEquals(first, allocator.allocate(48));
+    }
+
+    @Test
+    public void testReallocAcrossClasses() {
+        long address = allocator.allocate(64);
+        fill(address, 64, 7);
+        address = allocator.reallocate(address, 1000);
+        check(address, 64, 7);
+        // beyond the largest size class, served by the native allocator
+        address = allocator.reallocate(address, 100000);
+        check(address, 64, 7);
+        address = allocator.reallocate(address, 10);
+        check(address, 10, 7);
+        allocator.free(address);
+
+        String statistics = getStatistics();
+        assertStatistic(statistics, "small allocations", 2);
+        assertStatistic(statistics, "local frees", 2);
+        assertStatistic(statistics, "large allocations", 1);
+    }
+
+    @Test
+    public void testForeignPointer() {
+        long foreign = memory.allocateMemory(64).asNative();
+        fill(foreign, 64, 3);
+        long moved = allocator.reallocate(foreign, 256);
+        check(moved, 64, 3);
+        allocator.free(moved);
+
+        String statistics = getStatistics();
+        assertStatistic(statistics, "small allocations", 0);
+        assertStatistic(statistics, "large frees", 1);
+    }
+
+    @Test
+    public void testRemoteFree() throws Throwable {
+        long address = allocator.allocate(100);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                allocator.free(address);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        // the local free list is empty, so the owner takes the block back from its remote list
+        Assert.assertEquals(address, allocator.allocate(100));
+
+        String statistics = getStatistics();
+        assertStatistic(statistics, "arenas", 2);
+        assertStatistic(statistics, "remote frees", 1);
+    }
+
+    @Test
+    public void testUnsatisfiableSize() {
+        Assert.assertEquals(0, allocator.allocate(-1));
+
+        long address = allocator.allocate(32);
+        fill(address, 32, 9);
+        Assert.assertEquals(0, allocator.reallocate(address, -1));
+        check(address, 32, 9);
+        allocator.free(address);
+    }
+
+    private static void fill(long address, long length, int seed) {
+        for (long i = 0; i < length; i++) {
+            memory.putI8(address + i, (byte) (seed + i));
+        }
+    }
+
+    private static void check(long address, long length, int seed) {
+        for (long i = 0; i < length; i++) {
+            Assert.assertEquals("byte " + i, (byte) (seed + i), memory.getI8(address + i));
+        }
+    }
+
+    private String getStatistics() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        allocator.printStatistics(new PrintStream(out, true));
+        return out.toString();
+    }
+
+    private static void assertStatistic(String statistics, String name, long expected) {
+        for (String line : statistics.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith(name + ":")) {
+                String value = trimmed.substring(name.length() + 1).trim().split(" ")[0];
+                Assert.assertEquals(name, expected, Long.parseLong(value));
+                return;
+            }
+        }
+        Assert.fail("missing statistic " + name + " in:\n" + statistics);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.pipe.CaptureNativeOutput;
+import com.oracle.truffle.llvm.runtime.memory.LLVMStackMemory;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+import com.oracle.truffle.llvm.test.util.ProcessUtil;
+import com.oracle.truffle.llvm.test.util.ProcessUtil.ProcessResult;
+
+/**
+ * Runs threads with a shallow stack usage on heap and on mmap stacks and checks that mmap stacks
+ * are only committed on demand. Also checks that both stack modes report a stack overflow.
+ * {@link OtherProgramsBenchmark} reports the resident set sizes.
+ */
+public final class StackMemoryTest {
+
+    private static final File PROGRAM = new File(TestOptions.PROJECT_ROOT + "/../cache/tests/other/stack-usage/stack-usage_clang_O1.bc");
+    private static final String RESIDENT_PREFIX = "resident KB: ";
+
+    private static final int THREADS = 32;
+    private static final int DEPTH = 64;
+    private static final int STACK_SIZE_KB = 8192;
+
+    private static Map<String, String> options(String stackMemory, int stackSizeKB) {
+        Map<String, String> options = new HashMap<>();
+        options.put(SulongEngineOption.STACK_MEMORY_NAME, stackMemory);
+        options.put(SulongEngineOption.STACK_SIZE_KB_NAME, String.valueOf(stackSizeKB));
+        return options;
+    }
+
+    static long residentKB(String stackMemory) throws Exception {
+        String[] args = {String.valueOf(THREADS), String.valueOf(DEPTH)};
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, args, options(stackMemory, STACK_SIZE_KB), c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+        String out = result.getStdOutput().trim();
+        Assert.assertTrue(out, out.startsWith(RESIDENT_PREFIX));
+        return Long.parseLong(out.substring(RESIDENT_PREFIX.length()));
+    }
+
+    @Test
+    public void testResidentMemory() throws Exception {
+        Assume.assumeTrue(new File("/proc/self/status").exists());
+        long mmap = residentKB(LLVMStackMemory.MMAP);
+        Assert.assertTrue("mmap stacks must only be committed on demand", mmap < THREADS * (long) STACK_SIZE_KB / 4);
+    }
+
+    private static void testOverflow(String stackMemory) throws Exception {
+        String[] args = {"0", "100000"};
+        try {
+            ProcessUtil.executeSulongTestMain(PROGRAM, args, options(stackMemory, 256), c -> new CaptureNativeOutput());
+            Assert.fail("stack overflow expected");
+        } catch (PolyglotException e) {
+            Assert.assertFalse(e.isInternalError());
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Stack overflow"));
+        }
+    }
+
+    @Test
+    public void testHeapOverflow() throws Exception {
+        testOverflow(LLVMStackMemory.HEAP);
+    }
+
+    @Test
+    public void testMmapOverflow() throws Exception {
+        testOverflow(LLVMStackMemory.MMAP);
+    }
+
+    @Test
+    public void testMmapPushAcrossCommitBoundary() throws Exception {
+        Map<String, String> options = options(LLVMStackMemory.MMAP, 256);
+        options.put(SulongEngineOption.STACK_COMMIT_SIZE_KB_NAME, "4");
+        ProcessResult result = ProcessUtil.executeSulongTestMain(PROGRAM, new String[]{"push"}, options, c -> new CaptureNativeOutput());
+        Assert.assertEquals(0, result.getReturnValue());
+    }
+}
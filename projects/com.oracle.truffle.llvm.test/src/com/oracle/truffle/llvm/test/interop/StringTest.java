@@ -187,4 +187,29 @@ public class StringTest extends InteropTestBase {
         Object ret = fromString.call(6);
         Assert.assertEquals("utf-32 works too \u263a\0also with zero \u2639\0", ret);
     }
+
+    public class TestFromNativeStringNode extends SulongTestNode {
+
+        public TestFromNativeStringNode() {
+            super(testLibrary, "test_from_native_string", 1);
+        }
+    }
+
+    @Test
+    public void testFromNativeStringUTF8(@Inject(TestFromNativeStringNode.class) CallTarget fromString) {
+        Object ret = fromString.call(1);
+        Assert.assertEquals("unicode from native \u263a", ret);
+    }
+
+    @Test
+    public void testFromNativeStringNUTF8(@Inject(TestFromNativeStringNode.class) CallTarget fromString) {
+        Object ret = fromString.call(2);
+        Assert.assertEquals("unicode from native \u263a\0stuff after zero \u2639\0", ret);
+    }
+
+    @Test
+    public void testFromNativeStringUTF32(@Inject(TestFromNativeStringNode.class) CallTarget fromString) {
+        Object ret = fromString.call(3);
+        Assert.assertEquals("utf-32 works too \u263a", ret);
+    }
 }
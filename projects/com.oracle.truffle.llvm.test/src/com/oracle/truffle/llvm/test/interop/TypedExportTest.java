@@ -52,6 +52,12 @@ public class TypedExportTest extends InteropTestBase {
     private static Value getAliasedPtrIndex;
     private static Value findPoint;
 
+    private static Value allocDoubleArray;
+    private static Value sumDoubleArray;
+    private static Value allocShortArray;
+    private static Value sumShortArray;
+    private static Value freeArray;
+
     @BeforeClass
     public static void loadTestBitcode() {
         Value testLibrary = InteropTestBase.loadTestBitcodeValue("typedExport");
@@ -68,6 +74,12 @@ public class TypedExportTest extends InteropTestBase {
 
         getAliasedPtrIndex = testLibrary.getMember("getAliasedPtrIndex");
         findPoint = testLibrary.getMember("findPoint");
+
+        allocDoubleArray = testLibrary.getMember("allocDoubleArray");
+        sumDoubleArray = testLibrary.getMember("sumDoubleArray");
+        allocShortArray = testLibrary.getMember("allocShortArray");
+        sumShortArray = testLibrary.getMember("sumShortArray");
+        freeArray = testLibrary.getMember("freeArray");
     }
 
     private static void checkPoint(Value point, int x, int y) {
@@ -276,6 +288,61 @@ public class TypedExportTest extends InteropTestBase {
         }
     }
 
+    @Test
+    public void testNativeDoubleArray() {
+        Value array = allocDoubleArray.execute(100);
+        try {
+            Assert.assertTrue("hasArrayElements", array.hasArrayElements());
+            Assert.assertEquals("size", 100, array.getArraySize());
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("array[" + i + "]", 0.5 * i, array.getArrayElement(i).asDouble(), 0.0);
+            }
+
+            double expected = 0;
+            for (int i = 0; i < 100; i++) {
+                array.setArrayElement(i, 3 * i + 0.25);
+                expected += 3 * i + 0.25;
+            }
+
+            Value actual = sumDoubleArray.execute(array, 100);
+            Assert.assertEquals("sumDoubleArray", expected, actual.asDouble(), 0.0);
+        } finally {
+            freeArray.execute(array);
+        }
+    }
+
+    @Test
+    public void testNativeShortArray() {
+        Value array = allocShortArray.execute(42);
+        try {
+            Assert.assertEquals("size", 42, array.getArraySize());
+            for (int i = 0; i < 42; i++) {
+                Assert.assertEquals("array[" + i + "]", -i, array.getArrayElement(i).asShort());
+            }
+
+            long expected = 0;
+            for (int i = 0; i < 42; i++) {
+                array.setArrayElement(i, 7 * i);
+                expected += 7 * i;
+            }
+
+            Value actual = sumShortArray.execute(array, 42);
+            Assert.assertEquals("sumShortArray", expected, actual.asLong());
+        } finally {
+            freeArray.execute(array);
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testNativeArrayOutOfBounds() {
+        Value array = allocDoubleArray.execute(10);
+        try {
+            array.getArrayElement(10);
+        } finally {
+            freeArray.execute(array);
+        }
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void testInvalidStructWrite() {
         Value nested = allocNested.execute();
@@ -35,6 +35,8 @@ import java.util.List;
 import org.graalvm.options.OptionDescriptor;
 
 import com.oracle.truffle.api.TruffleLanguage;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixSyscallBridge;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64StdioBuffer;
 import com.oracle.truffle.llvm.parser.NodeFactory;
 import com.oracle.truffle.llvm.parser.factories.BasicNodeFactory;
 import com.oracle.truffle.llvm.parser.factories.BasicSystemContextExtension;
@@ -64,12 +66,21 @@ public final class BasicConfiguration implements Configuration {
     }
 
     @Override
+    @SuppressWarnings("deprecation")
     public List<ContextExtension> createContextExtensions(com.oracle.truffle.api.TruffleLanguage.Env env, TruffleLanguage<?> language) {
         List<ContextExtension> result = new ArrayList<>();
         result.add(new BasicIntrinsicsProvider(language).collectIntrinsics(new BasicNodeFactory()));
         result.add(new BasicSystemContextExtension());
         if (env.getOptions().get(SulongEngineOption.ENABLE_NFI)) {
             result.add(new NFIContextExtension(env));
+            if (LLVMAMD64PosixSyscallBridge.isSupported()) {
+                LLVMAMD64PosixSyscallBridge bridge = new LLVMAMD64PosixSyscallBridge(LLVMMemory.getInstance());
+                result.add(bridge);
+                String bufferedStdio = env.getOptions().get(SulongEngineOption.BUFFERED_STDIO);
+                if (!"none".equals(bufferedStdio)) {
+                    result.add(new LLVMAMD64StdioBuffer(bufferedStdio, env.getOptions().get(SulongEngineOption.PRINT_BUFFERED_STDIO_STATS), LLVMMemory.getInstance(), bridge));
+                }
+            }
         }
         return result;
     }
@@ -31,12 +31,17 @@ package com.oracle.truffle.llvm;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -87,12 +92,15 @@ import com.oracle.truffle.llvm.parser.model.symbols.constants.aggregate.ArrayCon
 import com.oracle.truffle.llvm.parser.model.symbols.constants.aggregate.StructureConstant;
 import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalVariable;
 import com.oracle.truffle.llvm.parser.nodes.LLVMSymbolReadResolver;
+import com.oracle.truffle.llvm.parser.scanner.LLVMModuleCache;
+import com.oracle.truffle.llvm.parser.scanner.LLVMParseCache;
 import com.oracle.truffle.llvm.parser.scanner.LLVMScanner;
 import com.oracle.truffle.llvm.parser.util.Pair;
 import com.oracle.truffle.llvm.runtime.LLVMAlias;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMContext.ExternalLibrary;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
+import com.oracle.truffle.llvm.runtime.LLVMFunctionMaterializer;
 import com.oracle.truffle.llvm.runtime.LLVMIntrinsicProvider;
 import com.oracle.truffle.llvm.runtime.LLVMLanguage;
 import com.oracle.truffle.llvm.runtime.LLVMScope;
@@ -307,10 +315,14 @@ public final class Runner {
 
     private final LLVMContext context;
     private final NodeFactory nodeFactory;
+    private final LLVMParseCache parseCache;
+    private final LLVMModuleCache moduleCache;
 
-    public Runner(LLVMContext context, NodeFactory nodeFactory) {
+    public Runner(LLVMContext context, NodeFactory nodeFactory, LLVMParseCache parseCache, LLVMModuleCache moduleCache) {
         this.context = context;
         this.nodeFactory = nodeFactory;
+        this.parseCache = parseCache;
+        this.moduleCache = moduleCache;
     }
 
     /**
@@ -363,6 +375,7 @@ public final class Runner {
         overrideSulongLibraryFunctionsWithIntrinsics(initializationOrder.sulongLibraries);
 
         parseFunctionsEagerly(parserResults);
+        parseFunctionsInBackground(parserResults);
         registerDynamicLinkChain(parserResults);
         callStructors(initializationOrder);
         return createLibraryCallTarget(source.getName(), parserResults);
@@ -521,20 +534,20 @@ public final class Runner {
         }
 
         Path path = lib.getPath();
-        byte[] bytes;
+        ByteBuffer bytes;
         try {
-            bytes = context.getEnv().getTruffleFile(path.toString()).readAllBytes();
+            bytes = readFile(context.getEnv().getTruffleFile(path.toString()));
         } catch (IOException | SecurityException | OutOfMemoryError ex) {
             throw new LLVMParserException("Error reading file " + path + ".");
         }
         // at the moment, we don't need the bitcode as the content of the source
         Source source = Source.newBuilder(path.toString()).mimeType(LLVMLanguage.LLVM_BITCODE_MIME_TYPE).name(path.getFileName().toString()).build();
-        return parse(parserResults, dependencyQueue, source, lib, ByteBuffer.wrap(bytes));
+        return parse(parserResults, dependencyQueue, source, lib, bytes);
     }
 
     private LLVMParserResult parse(List<LLVMParserResult> parserResults, ArrayDeque<ExternalLibrary> dependencyQueue, Source source,
                     ExternalLibrary library, ByteBuffer bytes) {
-        ModelModule module = LLVMScanner.parse(bytes);
+        ModelModule module = moduleCache != null ? moduleCache.parse(bytes, parseCache, context.getEnv()) : LLVMScanner.parse(bytes, parseCache, context.getEnv());
         if (module != null) {
             library.setIsNative(false);
             context.addLibraryPaths(module.getLibraryPaths());
@@ -893,12 +906,30 @@ public final class Runner {
     private ByteBuffer read(String filename) {
         try {
             TruffleFile truffleFile = context.getEnv().getTruffleFile(filename);
-            return ByteBuffer.wrap(truffleFile.readAllBytes());
+            return readFile(truffleFile);
         } catch (IOException | SecurityException | OutOfMemoryError ignore) {
             return ByteBuffer.allocate(0);
         }
     }
 
+    /**
+     * Maps the file read-only into memory if it is a regular file of the default file system, so
+     * that the scanner and the lazy function parser work on the file without copying it onto the
+     * Java heap. Other files are read completely.
+     */
+    private static ByteBuffer readFile(TruffleFile file) throws IOException {
+        try (SeekableByteChannel channel = file.newByteChannel(Collections.singleton(StandardOpenOption.READ))) {
+            if (channel instanceof FileChannel) {
+                FileChannel fileChannel = (FileChannel) channel;
+                // the mapping stays valid after the channel is closed
+                return fileChannel.map(MapMode.READ_ONLY, 0, fileChannel.size());
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // fall through: the file system cannot map this file, or it is too large to be mapped
+        }
+        return ByteBuffer.wrap(file.readAllBytes());
+    }
+
     private CallTarget createLibraryCallTarget(String name, List<LLVMParserResult> parserResults) {
         RootCallTarget mainFunctionCallTarget = null;
         LLVMFunctionDescriptor mainFunctionDescriptor = findMainMethod(parserResults);
@@ -989,6 +1020,16 @@ public final class Runner {
         }
     }
 
+    private void parseFunctionsInBackground(List<LLVMParserResult> parserResults) {
+        int threadCount = context.getEnv().getOptions().get(SulongEngineOption.PARALLEL_PARSING_THREADS);
+        if (threadCount > 0 && context.getEnv().getOptions().get(SulongEngineOption.LAZY_PARSING) && !context.getEnv().getOptions().get(SulongEngineOption.PARSE_ONLY)) {
+            LLVMFunctionDescriptor mainFunction = findMainMethod(parserResults);
+            if (mainFunction != null) {
+                LLVMFunctionMaterializer.start(context, threadCount, Collections.singletonList(mainFunction));
+            }
+        }
+    }
+
     private static final class InitializationOrder {
         private final List<LLVMParserResult> sulongLibraries;
         private final List<LLVMParserResult> otherLibraries;
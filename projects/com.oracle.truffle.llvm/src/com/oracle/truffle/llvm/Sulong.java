@@ -50,6 +50,8 @@ import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.source.SourceSection;
 import com.oracle.truffle.llvm.Runner.SulongLibrary;
 import com.oracle.truffle.llvm.parser.NodeFactory;
+import com.oracle.truffle.llvm.parser.scanner.LLVMModuleCache;
+import com.oracle.truffle.llvm.parser.scanner.LLVMParseCache;
 import com.oracle.truffle.llvm.runtime.ContextExtension;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMLanguage;
@@ -92,15 +94,23 @@ public final class Sulong extends LLVMLanguage {
         return capability;
     }
 
-    private LLVMContext mainContext = null;
+    private int liveContexts = 0;
+
+    /**
+     * The parse cache and the parsed modules that are shared by all contexts of this language
+     * instance, created with the options of the first context that parses a file.
+     */
+    private LLVMParseCache parseCache;
+    private LLVMModuleCache moduleCache;
+    private boolean cachesInitialized;
 
     @Override
     protected LLVMContext createContext(com.oracle.truffle.api.TruffleLanguage.Env env) {
         LLVMContext newContext = new LLVMContext(this, env, getContextExtensions(env), getNodeFactory(env), getLanguageHome());
-        if (mainContext == null) {
-            mainContext = newContext;
-        } else {
-            LLVMLanguage.SINGLE_CONTEXT_ASSUMPTION.invalidate();
+        synchronized (this) {
+            if (++liveContexts > 1) {
+                getSingleContextAssumption().invalidate();
+            }
         }
         return newContext;
     }
@@ -109,13 +119,40 @@ public final class Sulong extends LLVMLanguage {
     protected void disposeContext(LLVMContext context) {
         LLVMMemory memory = getCapability(LLVMMemory.class);
         context.dispose(memory);
+        synchronized (this) {
+            liveContexts--;
+        }
     }
 
     @Override
     protected CallTarget parse(com.oracle.truffle.api.TruffleLanguage.ParsingRequest request) throws Exception {
         Source source = request.getSource();
         LLVMContext context = findLLVMContext();
-        return new Runner(context, getNodeFactory(context.getEnv())).parse(source);
+        initializeCaches(context);
+        return new Runner(context, getNodeFactory(context.getEnv()), parseCache, moduleCache).parse(source);
+    }
+
+    private synchronized void initializeCaches(LLVMContext context) {
+        if (!cachesInitialized) {
+            String directory = context.getEnv().getOptions().get(SulongEngineOption.PARSE_CACHE_DIRECTORY);
+            boolean inMemory = context.getEnv().getOptions().get(SulongEngineOption.SHARE_SCANNER_LOGS);
+            if (!directory.isEmpty() || inMemory) {
+                parseCache = new LLVMParseCache(directory.isEmpty() ? null : directory, inMemory);
+            }
+            // with debug information, parsing attaches context-specific values to the module
+            if (context.getEnv().getOptions().get(SulongEngineOption.SHARE_PARSED_MODULES) && !context.getEnv().getOptions().get(SulongEngineOption.ENABLE_LVI)) {
+                moduleCache = new LLVMModuleCache();
+            }
+            cachesInitialized = true;
+        }
+    }
+
+    /**
+     * Returns the parsed modules that are shared by the contexts of this language instance, or
+     * {@code null} if modules are not shared.
+     */
+    public synchronized LLVMModuleCache getModuleCache() {
+        return moduleCache;
     }
 
     @Override
@@ -224,7 +261,7 @@ public final class Sulong extends LLVMLanguage {
     @Override
     protected void disposeThread(LLVMContext context, Thread thread) {
         super.disposeThread(context, thread);
-        context.getThreadingStack().freeStack(getCapability(LLVMMemory.class), thread);
+        context.getThreadingStack().freeStack(thread);
     }
 
     @Override
@@ -0,0 +1,190 @@
+/*
+ * Parallel speedup benchmark modelled after the memory filling phase of argon2
+ * (fill_memory_blocks_mt): the memory is split into lanes, each pass is split into four slices,
+ * and every lane of a slice is filled by its own thread. The threads are joined at the end of each
+ * slice, since a block may reference blocks of other lanes from earlier slices.
+ *
+ * The memory is filled once with a single thread and once with one thread per lane. Both runs
+ * must produce the same checksum.
+ */
+#include <pthread.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+#define BLOCK_WORDS 128
+#define SYNC_POINTS 4
+#define LANES 4
+#define BLOCKS_PER_LANE 8192
+#define PASSES 3
+#define SEGMENT_LENGTH (BLOCKS_PER_LANE / SYNC_POINTS)
+
+typedef struct {
+  uint64_t v[BLOCK_WORDS];
+} block;
+
+typedef struct {
+  block *memory;
+  int pass;
+  int slice;
+  int lane;
+} position;
+
+static uint64_t rotr64(uint64_t w, unsigned c) { return (w >> c) | (w << (64 - c)); }
+
+static uint64_t fBlaMka(uint64_t x, uint64_t y) {
+  const uint64_t m = UINT64_C(0xFFFFFFFF);
+  return x + y + 2 * ((x & m) * (y & m));
+}
+
+#define G(a, b, c, d)                                                                                                                                \
+  do {                                                                                                                                               \
+    a = fBlaMka(a, b);                                                                                                                               \
+    d = rotr64(d ^ a, 32);                                                                                                                           \
+    c = fBlaMka(c, d);                                                                                                                               \
+    b = rotr64(b ^ c, 24);                                                                                                                           \
+    a = fBlaMka(a, b);                                                                                                                               \
+    d = rotr64(d ^ a, 16);                                                                                                                           \
+    c = fBlaMka(c, d);                                                                                                                               \
+    b = rotr64(b ^ c, 63);                                                                                                                           \
+  } while (0)
+
+static void round16(uint64_t *v) {
+  G(v[0], v[4], v[8], v[12]);
+  G(v[1], v[5], v[9], v[13]);
+  G(v[2], v[6], v[10], v[14]);
+  G(v[3], v[7], v[11], v[15]);
+  G(v[0], v[5], v[10], v[15]);
+  G(v[1], v[6], v[11], v[12]);
+  G(v[2], v[7], v[8], v[13]);
+  G(v[3], v[4], v[9], v[14]);
+}
+
+static void fill_block(const block *prev, const block *ref, block *next) {
+  block r;
+  block tmp;
+  for (int i = 0; i < BLOCK_WORDS; i++) {
+    r.v[i] = prev->v[i] ^ ref->v[i];
+  }
+  tmp = r;
+  for (int i = 0; i < BLOCK_WORDS; i += 16) {
+    round16(&r.v[i]);
+  }
+  for (int i = 0; i < BLOCK_WORDS; i++) {
+    next->v[i] ^= tmp.v[i] ^ r.v[i];
+  }
+}
+
+static block *get_block(block *memory, int lane, int index) { return &memory[lane * BLOCKS_PER_LANE + index]; }
+
+static void fill_segment(position *pos) {
+  int start = (pos->pass == 0 && pos->slice == 0) ? 2 : 0;
+  for (int i = start; i < SEGMENT_LENGTH; i++) {
+    int index = pos->slice * SEGMENT_LENGTH + i;
+    int prevIndex = index == 0 ? BLOCKS_PER_LANE - 1 : index - 1;
+    block *prev = get_block(pos->memory, pos->lane, prevIndex);
+
+    // data-dependent addressing as in argon2d
+    uint64_t pseudoRand = prev->v[0];
+    int refLane = (pos->pass == 0 && pos->slice == 0) ? pos->lane : (int)((pseudoRand >> 32) % LANES);
+    int available;
+    if (pos->pass == 0) {
+      available = refLane == pos->lane ? index - 1 : pos->slice * SEGMENT_LENGTH;
+    } else {
+      available = refLane == pos->lane ? BLOCKS_PER_LANE - SEGMENT_LENGTH + i - 1 : BLOCKS_PER_LANE - SEGMENT_LENGTH;
+    }
+    int refIndex = available <= 0 ? 0 : (int)((uint32_t)pseudoRand % (uint32_t)available);
+    if (pos->pass != 0) {
+      refIndex = (refIndex + (pos->slice + 1) * SEGMENT_LENGTH) % BLOCKS_PER_LANE;
+    }
+    fill_block(prev, get_block(pos->memory, refLane, refIndex), get_block(pos->memory, pos->lane, index));
+  }
+}
+
+static void *fill_segment_thread(void *arg) {
+  fill_segment((position *)arg);
+  return NULL;
+}
+
+static void initialize(block *memory) {
+  memset(memory, 0, sizeof(block) * LANES * BLOCKS_PER_LANE);
+  for (int lane = 0; lane < LANES; lane++) {
+    for (int b = 0; b < 2; b++) {
+      block *blk = get_block(memory, lane, b);
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        blk->v[i] = UINT64_C(0x9E3779B97F4A7C15) * (uint64_t)(lane * 2 + b + 1) + (uint64_t)i;
+      }
+    }
+  }
+}
+
+static uint64_t fill_memory(block *memory, int threaded) {
+  initialize(memory);
+  for (int pass = 0; pass < PASSES; pass++) {
+    for (int slice = 0; slice < SYNC_POINTS; slice++) {
+      pthread_t threads[LANES];
+      position positions[LANES];
+      for (int lane = 0; lane < LANES; lane++) {
+        position p = { memory, pass, slice, lane };
+        positions[lane] = p;
+        if (threaded) {
+          if (pthread_create(&threads[lane], NULL, fill_segment_thread, &positions[lane]) != 0) {
+            fprintf(stderr, "error: pthread_create failed\n");
+            exit(1);
+          }
+        } else {
+          fill_segment(&positions[lane]);
+        }
+      }
+      if (threaded) {
+        for (int lane = 0; lane < LANES; lane++) {
+          pthread_join(threads[lane], NULL);
+        }
+      }
+    }
+  }
+  uint64_t checksum = 0;
+  for (int lane = 0; lane < LANES; lane++) {
+    block *last = get_block(memory, lane, BLOCKS_PER_LANE - 1);
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      checksum ^= rotr64(last->v[i], (unsigned)(i % 63) + 1);
+    }
+  }
+  return checksum;
+}
+
+static double now(void) {
+  struct timespec ts;
+  clock_gettime(CLOCK_MONOTONIC, &ts);
+  return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+int main(int argc, char **argv) {
+  int iterations = argc > 1 ? atoi(argv[1]) : 10;
+  block *memory = malloc(sizeof(block) * LANES * BLOCKS_PER_LANE);
+  double sequential = 0;
+  double parallel = 0;
+  for (int i = 0; i < iterations; i++) {
+    double start = now();
+    uint64_t expected = fill_memory(memory, 0);
+    double middle = now();
+    uint64_t actual = fill_memory(memory, 1);
+    double end = now();
+    if (expected != actual) {
+      fprintf(stderr, "error: checksum mismatch %llx != %llx\n", (unsigned long long)expected, (unsigned long long)actual);
+      return 1;
+    }
+    // the first iterations are warmup
+    if (i >= iterations / 2) {
+      sequential += middle - start;
+      parallel += end - middle;
+    }
+  }
+  printf("argon2-fill-1-thread: %.3f\n", sequential);
+  printf("argon2-fill-%d-threads: %.3f\n", LANES, parallel);
+  printf("speedup %.2fx\n", sequential / parallel);
+  free(memory);
+  return 0;
+}
@@ -1,5 +1,7 @@
 #include <polyglot.h>
 #include <wchar.h>
+#include <stdlib.h>
+#include <string.h>
 
 uint64_t test_get_string_size(void *str) {
     return polyglot_get_string_size(str);
@@ -66,3 +68,29 @@ void *test_from_string(int variant) {
     }
     return NULL;
 }
+
+void *test_from_native_string(int variant) {
+    static char utf8[] = "unicode from native ☺\0stuff after zero ☹";
+    static wchar_t utf32[] = L"utf-32 works too ☺\0also with zero ☹";
+
+    // odd offset, so that the string is not aligned
+    char *buffer = malloc(sizeof(utf32) + 1);
+    char *str = buffer + 1;
+    void *ret = NULL;
+    switch (variant) {
+        case 1:
+            memcpy(str, utf8, sizeof(utf8));
+            ret = polyglot_from_string(str, "utf-8");
+            break;
+        case 2:
+            memcpy(str, utf8, sizeof(utf8));
+            ret = polyglot_from_string_n(str, sizeof(utf8), "utf-8");
+            break;
+        case 3:
+            memcpy(str, utf32, sizeof(utf32));
+            ret = polyglot_from_string(str, "utf-32le");
+            break;
+    }
+    free(buffer);
+    return ret;
+}
@@ -87,3 +87,47 @@ int findPoint(struct Nested *nested, struct Point *point) {
   }
   return -1;
 }
+
+typedef double sample;
+
+POLYGLOT_DECLARE_TYPE(sample)
+
+void *allocDoubleArray(int length) {
+  double *ret = calloc(length, sizeof(*ret));
+  for (int i = 0; i < length; i++) {
+    ret[i] = 0.5 * i;
+  }
+  return polyglot_from_sample_array(ret, length);
+}
+
+double sumDoubleArray(double *array, int length) {
+  double ret = 0;
+  for (int i = 0; i < length; i++) {
+    ret += array[i];
+  }
+  return ret;
+}
+
+typedef short level;
+
+POLYGLOT_DECLARE_TYPE(level)
+
+void *allocShortArray(int length) {
+  short *ret = calloc(length, sizeof(*ret));
+  for (int i = 0; i < length; i++) {
+    ret[i] = -i;
+  }
+  return polyglot_from_level_array(ret, length);
+}
+
+long sumShortArray(short *array, int length) {
+  long ret = 0;
+  for (int i = 0; i < length; i++) {
+    ret += array[i];
+  }
+  return ret;
+}
+
+void freeArray(void *array) {
+  free(array);
+}
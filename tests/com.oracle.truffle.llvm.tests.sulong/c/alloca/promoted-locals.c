@@ -0,0 +1,80 @@
+#include <stdio.h>
+
+struct point {
+  int x;
+  int y;
+  double weight;
+};
+
+struct shape {
+  struct point corners[2];
+  char tag;
+  long (*area)(const struct point *, const struct point *);
+};
+
+static long area(const struct point *a, const struct point *b) {
+  long w = b->x - a->x;
+  long h = b->y - a->y;
+  return w * h;
+}
+
+// reads promoted locals before they are stored, in a way that does not depend on their value
+static int readBeforeStore(int n) {
+  int i;
+  long l;
+  double d;
+  char *ptr;
+  struct point r;
+  int result = (i & 0) + (int) (l & 0) + ((d != d) - (d != d)) + (int) (ptr - ptr) + (r.y & 0);
+  r.x = n;
+  return result + r.x;
+}
+
+static void escape(int *p) {
+  *p += 1;
+}
+
+int main() {
+  // only accessed at constant offsets, can live in frame slots
+  struct point p;
+  p.x = 3;
+  p.y = 4;
+  p.weight = 0.5;
+
+  int small[4];
+  small[0] = 1;
+  small[1] = 2;
+  small[2] = small[0] + small[1];
+  small[3] = small[2] * 2;
+
+  struct shape s;
+  s.corners[0].x = 1;
+  s.corners[0].y = 1;
+  s.corners[1].x = 5;
+  s.corners[1].y = 7;
+  s.tag = 'r';
+  s.area = area;
+
+  // these escape and must stay in memory
+  int counter = 0;
+  int array[8];
+  struct point q = { p.y, p.x, 0.0 };
+  escape(&q.x);
+
+  double sum = 0;
+  for (int i = 0; i < 8; i++) {
+    array[i] = i * small[3];
+    escape(&counter);
+    sum += p.x * p.weight + p.y;
+  }
+  for (int i = 0; i < 8; i++) {
+    counter += array[i];
+  }
+
+  printf("%d %d %f\n", p.x, p.y, sum);
+  printf("%d %d %d %d\n", small[0], small[1], small[2], small[3]);
+  printf("%c %ld\n", s.tag, s.area(&s.corners[0], &s.corners[1]));
+  printf("%d %d\n", counter, q.x + q.y);
+  printf("%d\n", readBeforeStore(42));
+  return 0;
+}
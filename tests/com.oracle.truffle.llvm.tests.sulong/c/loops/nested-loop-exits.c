@@ -0,0 +1,67 @@
+#include <stdio.h>
+
+static int matrix[64][64];
+
+static long search(int needle) {
+  long visited = 0;
+  for (int i = 0; i < 64; i++) {
+    for (int j = 0; j < 64; j++) {
+      visited++;
+      if (matrix[i][j] == needle) {
+        goto found;
+      }
+      if (matrix[i][j] < 0) {
+        break;
+      }
+    }
+  }
+  return -visited;
+found:
+  return visited;
+}
+
+static unsigned collatz(unsigned n) {
+  unsigned steps = 0;
+  while (n != 1) {
+    n = (n & 1) ? 3 * n + 1 : n / 2;
+    steps++;
+  }
+  return steps;
+}
+
+static long irreducible(int n) {
+  long acc = 0;
+  int i = 0;
+  if (n & 1) {
+    goto odd;
+  }
+  while (i < n) {
+    acc += i;
+  odd:
+    acc ^= i * 7;
+    i++;
+  }
+  return acc;
+}
+
+int main() {
+  for (int i = 0; i < 64; i++) {
+    for (int j = 0; j < 64; j++) {
+      matrix[i][j] = (i * 131 + j * 17) % 4099;
+    }
+  }
+  matrix[40][3] = -1;
+
+  long checksum = 0;
+  for (int round = 0; round < 2000; round++) {
+    checksum += search(round % 4099);
+    checksum += collatz(round + 1);
+    checksum += irreducible(round % 97);
+    if (round % 7 == 0) {
+      continue;
+    }
+    checksum ^= round;
+  }
+  printf("%ld\n", checksum);
+  return 0;
+}
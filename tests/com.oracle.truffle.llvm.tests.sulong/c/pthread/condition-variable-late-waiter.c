@@ -0,0 +1,45 @@
+#include <errno.h>
+#include <stdio.h>
+#include <pthread.h>
+#include <time.h>
+
+static pthread_mutex_t lock = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t ready = PTHREAD_COND_INITIALIZER;
+static pthread_cond_t cond = PTHREAD_COND_INITIALIZER;
+static int waiting = 0;
+static int go = 0;
+
+static void *waiter(void *arg) {
+  pthread_mutex_lock(&lock);
+  waiting = 1;
+  pthread_cond_signal(&ready);
+  while (!go) {
+    pthread_cond_wait(&cond, &lock);
+  }
+  pthread_mutex_unlock(&lock);
+  return NULL;
+}
+
+int main() {
+  pthread_t thread;
+  pthread_mutex_lock(&lock);
+  pthread_create(&thread, NULL, waiter, NULL);
+  while (!waiting) {
+    pthread_cond_wait(&ready, &lock);
+  }
+  // the waiter is blocked on cond now, so the signal belongs to it
+  go = 1;
+  pthread_cond_signal(&cond);
+  struct timespec deadline;
+  clock_gettime(CLOCK_REALTIME, &deadline);
+  deadline.tv_nsec += 200000000;
+  if (deadline.tv_nsec >= 1000000000) {
+    deadline.tv_sec++;
+    deadline.tv_nsec -= 1000000000;
+  }
+  int result = pthread_cond_timedwait(&cond, &lock, &deadline);
+  pthread_mutex_unlock(&lock);
+  pthread_join(thread, NULL);
+  printf("late waiter %s\n", result == ETIMEDOUT ? "timed out" : "stole the wakeup");
+  return result == ETIMEDOUT ? 0 : 1;
+}
@@ -0,0 +1,46 @@
+#include <stdio.h>
+#include <pthread.h>
+
+#define ITEMS 1000
+#define CAPACITY 8
+
+static pthread_mutex_t lock = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t notEmpty = PTHREAD_COND_INITIALIZER;
+static pthread_cond_t notFull = PTHREAD_COND_INITIALIZER;
+static int buffer[CAPACITY];
+static int count = 0;
+static int head = 0;
+
+static void *producer(void *arg) {
+  for (int i = 1; i <= ITEMS; i++) {
+    pthread_mutex_lock(&lock);
+    while (count == CAPACITY) {
+      pthread_cond_wait(&notFull, &lock);
+    }
+    buffer[(head + count) % CAPACITY] = i;
+    count++;
+    pthread_cond_signal(&notEmpty);
+    pthread_mutex_unlock(&lock);
+  }
+  return NULL;
+}
+
+int main() {
+  pthread_t thread;
+  pthread_create(&thread, NULL, producer, NULL);
+  long sum = 0;
+  for (int i = 0; i < ITEMS; i++) {
+    pthread_mutex_lock(&lock);
+    while (count == 0) {
+      pthread_cond_wait(&notEmpty, &lock);
+    }
+    sum += buffer[head];
+    head = (head + 1) % CAPACITY;
+    count--;
+    pthread_cond_signal(&notFull);
+    pthread_mutex_unlock(&lock);
+  }
+  pthread_join(thread, NULL);
+  printf("sum=%ld\n", sum);
+  return sum == (long)ITEMS * (ITEMS + 1) / 2 ? 0 : 1;
+}
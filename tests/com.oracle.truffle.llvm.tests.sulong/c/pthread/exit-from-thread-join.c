@@ -0,0 +1,28 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <pthread.h>
+
+static void *worker(void *arg) {
+  printf("worker exits\n");
+  exit(5);
+}
+
+static void *sleeper(void *arg) {
+  pthread_mutex_t *mutex = arg;
+  // blocks until the process exits
+  pthread_mutex_lock(mutex);
+  return NULL;
+}
+
+int main() {
+  pthread_mutex_t mutex = PTHREAD_MUTEX_INITIALIZER;
+  pthread_t threads[2];
+  pthread_mutex_lock(&mutex);
+  if (pthread_create(&threads[0], NULL, sleeper, &mutex) != 0 || pthread_create(&threads[1], NULL, worker, NULL) != 0) {
+    return 1;
+  }
+  // the main thread is blocked in pthread_join when the worker calls exit
+  pthread_join(threads[0], NULL);
+  printf("not reached\n");
+  return 0;
+}
@@ -0,0 +1,21 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <pthread.h>
+
+static volatile long spins = 0;
+
+static void *worker(void *arg) {
+  printf("worker exits\n");
+  exit(3);
+}
+
+int main() {
+  pthread_t thread;
+  if (pthread_create(&thread, NULL, worker, NULL) != 0) {
+    return 1;
+  }
+  // the exit of the worker must also stop a main thread that never blocks
+  for (;;) {
+    spins++;
+  }
+}
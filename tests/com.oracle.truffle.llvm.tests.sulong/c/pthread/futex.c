@@ -0,0 +1,99 @@
+#include <errno.h>
+#include <limits.h>
+#include <linux/futex.h>
+#include <pthread.h>
+#include <stdio.h>
+#include <sys/syscall.h>
+#include <time.h>
+#include <unistd.h>
+
+#define THREADS 4
+#define ITERATIONS 5000
+
+static int lockWord = 0;
+static long counter = 0;
+
+static long futex(int *uaddr, int op, int val, const struct timespec *timeout, int val3) {
+  return syscall(SYS_futex, uaddr, op, val, timeout, NULL, val3);
+}
+
+static void lock(int *word) {
+  int c = __sync_val_compare_and_swap(word, 0, 1);
+  if (c != 0) {
+    if (c != 2) {
+      c = __atomic_exchange_n(word, 2, __ATOMIC_SEQ_CST);
+    }
+    while (c != 0) {
+      futex(word, FUTEX_WAIT_PRIVATE, 2, NULL, 0);
+      c = __atomic_exchange_n(word, 2, __ATOMIC_SEQ_CST);
+    }
+  }
+}
+
+static void unlock(int *word) {
+  if (__sync_fetch_and_sub(word, 1) != 1) {
+    __atomic_store_n(word, 0, __ATOMIC_SEQ_CST);
+    futex(word, FUTEX_WAKE_PRIVATE, 1, NULL, 0);
+  }
+}
+
+static int flag = 0;
+
+static void *waiter(void *arg) {
+  // an absolute CLOCK_REALTIME timeout that lies beyond any representable deadline
+  struct timespec never = { LONG_MAX / 2, 0 };
+  while (__atomic_load_n(&flag, __ATOMIC_SEQ_CST) == 0) {
+    if (futex(&flag, FUTEX_WAIT_BITSET | FUTEX_CLOCK_REALTIME, 0, &never, FUTEX_BITSET_MATCH_ANY) == -1 && errno == ETIMEDOUT) {
+      return (void *)1;
+    }
+  }
+  return NULL;
+}
+
+static void *worker(void *arg) {
+  for (int i = 0; i < ITERATIONS; i++) {
+    lock(&lockWord);
+    counter++;
+    unlock(&lockWord);
+  }
+  return NULL;
+}
+
+int main() {
+  int word = 1;
+  struct timespec timeout = { 0, 10000000 };
+
+  // value mismatch
+  if (futex(&word, FUTEX_WAIT, 0, NULL, 0) != -1 || errno != EAGAIN) {
+    return 1;
+  }
+  // relative timeout
+  if (futex(&word, FUTEX_WAIT, 1, &timeout, 0) != -1 || errno != ETIMEDOUT) {
+    return 2;
+  }
+  // nobody is waiting
+  if (futex(&word, FUTEX_WAKE, 1, NULL, 0) != 0) {
+    return 3;
+  }
+
+  pthread_t waiterThread;
+  void *waiterResult;
+  pthread_create(&waiterThread, NULL, waiter, NULL);
+  usleep(10000);
+  __atomic_store_n(&flag, 1, __ATOMIC_SEQ_CST);
+  futex(&flag, FUTEX_WAKE, 1, NULL, 0);
+  pthread_join(waiterThread, &waiterResult);
+  if (waiterResult != NULL) {
+    return 5;
+  }
+
+  pthread_t threads[THREADS];
+  for (int i = 0; i < THREADS; i++) {
+    pthread_create(&threads[i], NULL, worker, NULL);
+  }
+  for (int i = 0; i < THREADS; i++) {
+    pthread_join(threads[i], NULL);
+  }
+  printf("counter=%ld\n", counter);
+  return counter == THREADS * ITERATIONS ? 0 : 4;
+}
@@ -0,0 +1,60 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <pthread.h>
+
+#define THREADS 3
+
+static pthread_key_t key;
+static pthread_once_t once = PTHREAD_ONCE_INIT;
+static pthread_mutex_t lock;
+static int initCount = 0;
+static int destructorCount = 0;
+
+static void destructor(void *value) {
+  pthread_mutex_lock(&lock);
+  destructorCount++;
+  pthread_mutex_unlock(&lock);
+  free(value);
+}
+
+static void init(void) {
+  pthread_mutexattr_t attr;
+  pthread_mutexattr_init(&attr);
+  pthread_mutexattr_settype(&attr, PTHREAD_MUTEX_RECURSIVE);
+  pthread_mutex_init(&lock, &attr);
+  pthread_mutexattr_destroy(&attr);
+  pthread_key_create(&key, destructor);
+  initCount++;
+}
+
+static void *worker(void *arg) {
+  pthread_once(&once, init);
+  int *value = malloc(sizeof(int));
+  *value = (int)(long)arg;
+  pthread_setspecific(key, value);
+  pthread_mutex_lock(&lock);
+  pthread_mutex_lock(&lock);
+  int result = *(int *)pthread_getspecific(key);
+  pthread_mutex_unlock(&lock);
+  pthread_mutex_unlock(&lock);
+  return (void *)(long)(result + 1);
+}
+
+int main() {
+  pthread_t threads[THREADS];
+  pthread_once(&once, init);
+  if (pthread_getspecific(key) != NULL) {
+    return 1;
+  }
+  for (long i = 0; i < THREADS; i++) {
+    pthread_create(&threads[i], NULL, worker, (void *)i);
+  }
+  long sum = 0;
+  for (int i = 0; i < THREADS; i++) {
+    void *result;
+    pthread_join(threads[i], &result);
+    sum += (long)result;
+  }
+  printf("init=%d destructors=%d sum=%ld\n", initCount, destructorCount, sum);
+  return initCount == 1 && destructorCount == THREADS && sum == 6 ? 0 : 2;
+}
@@ -0,0 +1,37 @@
+#include <stdio.h>
+#include <pthread.h>
+
+#define THREADS 4
+#define ITERATIONS 10000
+
+static pthread_mutex_t lock = PTHREAD_MUTEX_INITIALIZER;
+static long counter = 0;
+
+static void *worker(void *arg) {
+  long id = (long)arg;
+  for (int i = 0; i < ITERATIONS; i++) {
+    pthread_mutex_lock(&lock);
+    counter++;
+    pthread_mutex_unlock(&lock);
+  }
+  return (void *)(id * 2);
+}
+
+int main() {
+  pthread_t threads[THREADS];
+  for (long i = 0; i < THREADS; i++) {
+    if (pthread_create(&threads[i], NULL, worker, (void *)i) != 0) {
+      return 1;
+    }
+  }
+  long sum = 0;
+  for (int i = 0; i < THREADS; i++) {
+    void *result;
+    if (pthread_join(threads[i], &result) != 0) {
+      return 2;
+    }
+    sum += (long)result;
+  }
+  printf("counter=%ld sum=%ld\n", counter, sum);
+  return counter == THREADS * ITERATIONS ? 0 : 3;
+}
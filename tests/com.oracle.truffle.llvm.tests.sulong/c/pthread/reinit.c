@@ -0,0 +1,53 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <pthread.h>
+
+static int check(const char *what, int actual, int expected) {
+  if (actual != expected) {
+    printf("%s: %d (expected %d)\n", what, actual, expected);
+    return 1;
+  }
+  return 0;
+}
+
+int main() {
+  int failures = 0;
+
+  // a locked recursive mutex that is statically re-initialized becomes an unlocked normal mutex
+  pthread_mutex_t *mutex = malloc(sizeof(pthread_mutex_t));
+  pthread_mutexattr_t attr;
+  pthread_mutexattr_init(&attr);
+  pthread_mutexattr_settype(&attr, PTHREAD_MUTEX_RECURSIVE);
+  pthread_mutex_init(mutex, &attr);
+  pthread_mutexattr_destroy(&attr);
+  pthread_mutex_lock(mutex);
+  pthread_mutex_lock(mutex);
+  *mutex = (pthread_mutex_t) PTHREAD_MUTEX_INITIALIZER;
+  failures += check("trylock after reinit", pthread_mutex_trylock(mutex), 0);
+  failures += check("second trylock after reinit", pthread_mutex_trylock(mutex), EBUSY);
+
+  // the same for memory that is freed without pthread_mutex_destroy and then reused
+  free(mutex);
+  mutex = malloc(sizeof(pthread_mutex_t));
+  memset(mutex, 0, sizeof(pthread_mutex_t));
+  failures += check("trylock after reuse", pthread_mutex_trylock(mutex), 0);
+  failures += check("second trylock after reuse", pthread_mutex_trylock(mutex), EBUSY);
+  pthread_mutex_unlock(mutex);
+  pthread_mutex_destroy(mutex);
+  free(mutex);
+
+  // a write-locked rwlock that is statically re-initialized is unlocked
+  pthread_rwlock_t *rwlock = malloc(sizeof(pthread_rwlock_t));
+  pthread_rwlock_init(rwlock, NULL);
+  pthread_rwlock_wrlock(rwlock);
+  *rwlock = (pthread_rwlock_t) PTHREAD_RWLOCK_INITIALIZER;
+  failures += check("tryrdlock after reinit", pthread_rwlock_tryrdlock(rwlock), 0);
+  pthread_rwlock_unlock(rwlock);
+  pthread_rwlock_destroy(rwlock);
+  free(rwlock);
+
+  printf("failures=%d\n", failures);
+  return failures;
+}
@@ -0,0 +1,52 @@
+#include <stdio.h>
+#include <stdlib.h>
+
+#define N 5000
+
+struct record {
+  int key;
+  char name[9];
+  int id;
+};
+
+int ints[N];
+long longs[N];
+struct record records[N];
+
+int compareInts(const void *a, const void *b) {
+  int x = *(const int *)a;
+  int y = *(const int *)b;
+  return (x > y) - (x < y);
+}
+
+int compareLongs(const void *a, const void *b) {
+  long x = *(const long *)a;
+  long y = *(const long *)b;
+  return (x > y) - (x < y);
+}
+
+int compareRecords(const void *a, const void *b) {
+  const struct record *x = a;
+  const struct record *y = b;
+  return (x->key > y->key) - (x->key < y->key);
+}
+
+int main() {
+  unsigned seed = 42;
+  for (int i = 0; i < N; i++) {
+    seed = seed * 1103515245 + 12345;
+    ints[i] = (int)(seed >> 8) % 1000;
+    longs[i] = i % 2 ? i : N - i;
+    records[i].key = ints[i] % 10;
+    records[i].id = i;
+  }
+  qsort(ints, N, sizeof(int), compareInts);
+  qsort(longs, N, sizeof(long), compareLongs);
+  qsort(records, N, sizeof(struct record), compareRecords);
+  for (int i = 1; i < N; i++) {
+    if (ints[i - 1] > ints[i] || longs[i - 1] > longs[i] || records[i - 1].key > records[i].key) {
+      abort();
+    }
+  }
+  return 0;
+}
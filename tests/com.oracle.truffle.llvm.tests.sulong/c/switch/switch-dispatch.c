@@ -0,0 +1,106 @@
+#include <stdio.h>
+
+enum { PUSH, ADD, SUB, MUL, DUP, SWAP, DROP, JNZ, DEC, HALT };
+
+static long run(const int *code) {
+  long stack[16];
+  int sp = 0;
+  int pc = 0;
+  for (;;) {
+    switch (code[pc++]) {
+    case PUSH:
+      stack[sp++] = code[pc++];
+      break;
+    case ADD:
+      sp--;
+      stack[sp - 1] += stack[sp];
+      break;
+    case SUB:
+      sp--;
+      stack[sp - 1] -= stack[sp];
+      break;
+    case MUL:
+      sp--;
+      stack[sp - 1] *= stack[sp];
+      break;
+    case DUP:
+      stack[sp] = stack[sp - 1];
+      sp++;
+      break;
+    case SWAP: {
+      long tmp = stack[sp - 1];
+      stack[sp - 1] = stack[sp - 2];
+      stack[sp - 2] = tmp;
+      break;
+    }
+    case DROP:
+      sp--;
+      break;
+    case JNZ:
+      if (stack[sp - 1] != 0) {
+        pc = code[pc];
+      } else {
+        pc++;
+      }
+      break;
+    case DEC:
+      stack[sp - 1]--;
+      break;
+    case HALT:
+      return stack[0];
+    default:
+      return -1;
+    }
+  }
+}
+
+static int sparse(long value) {
+  switch (value) {
+  case -9223372036854775807L - 1:
+    return 1;
+  case -1000000:
+    return 2;
+  case 7:
+    return 3;
+  case 4096:
+    return 4;
+  case 1L << 40:
+    return 5;
+  case 9223372036854775807L:
+    return 6;
+  default:
+    return 0;
+  }
+}
+
+static int chars(signed char c) {
+  switch (c) {
+  case -128:
+    return 1;
+  case -1:
+    return 2;
+  case 'a':
+    return 3;
+  case 127:
+    return 4;
+  default:
+    return 0;
+  }
+}
+
+int main() {
+  /* acc = 1; n = 10; while (n) { acc *= 3; n--; } */
+  int code[] = { PUSH, 1, PUSH, 10, SWAP, PUSH, 3, MUL, SWAP, DEC, JNZ, 4, DROP, HALT };
+  long values[] = { -9223372036854775807L - 1, -1000000, -1, 0, 7, 8, 4096, 1L << 40, (1L << 40) + 1, 9223372036854775807L };
+  int i;
+  printf("%ld\n", run(code));
+  for (i = 0; i < sizeof(values) / sizeof(values[0]); i++) {
+    printf("%d ", sparse(values[i]));
+  }
+  printf("\n");
+  for (i = -128; i < 128; i += 17) {
+    printf("%d ", chars((signed char) i));
+  }
+  printf("%d %d %d %d\n", chars(-1), chars('a'), chars(127), chars(-128));
+  return 0;
+}
@@ -0,0 +1,43 @@
+#include <stdio.h>
+
+#define LEAF(name, mul, add) \
+  static __attribute__((noinline)) unsigned name(unsigned x) { return x * mul + add; }
+
+LEAF(leaf0, 3, 1)
+LEAF(leaf1, 5, 7)
+LEAF(leaf2, 11, 3)
+LEAF(leaf3, 13, 5)
+LEAF(leaf4, 17, 9)
+LEAF(leaf5, 19, 2)
+LEAF(leaf6, 23, 4)
+LEAF(leaf7, 29, 6)
+
+static __attribute__((noinline)) unsigned inner0(unsigned x) { return leaf0(x) ^ leaf1(x >> 1); }
+static __attribute__((noinline)) unsigned inner1(unsigned x) { return leaf2(x) + leaf3(x << 1); }
+static __attribute__((noinline)) unsigned inner2(unsigned x) { return leaf4(x) - leaf5(x ^ 0x55); }
+static __attribute__((noinline)) unsigned inner3(unsigned x) { return leaf6(x) | leaf7(x + 3); }
+
+static __attribute__((noinline)) unsigned recurse(unsigned x, int depth) {
+  if (depth == 0) {
+    return x;
+  }
+  switch (x & 3) {
+  case 0:
+    return recurse(inner0(x), depth - 1);
+  case 1:
+    return recurse(inner1(x), depth - 1);
+  case 2:
+    return recurse(inner2(x), depth - 1);
+  default:
+    return recurse(inner3(x), depth - 1);
+  }
+}
+
+int main(int argc, char **argv) {
+  unsigned checksum = 0;
+  for (unsigned i = 0; i < 100; i++) {
+    checksum = checksum * 31 + recurse(i, 16);
+  }
+  printf("%u\n", checksum);
+  return 0;
+}
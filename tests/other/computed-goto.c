@@ -0,0 +1,65 @@
+#include <stdio.h>
+#include <stdlib.h>
+
+enum { LOAD, STORE, ADD, XOR, DEC, JNZ, PRINT, HALT };
+
+/*
+ * a = 0, b = 1, acc = 0;
+ * do { t = a + b; a = b; b = t; acc ^= a; } while (--n);
+ * print acc;
+ */
+static const int program[] = {
+  /* 0 */ LOAD, 1, LOAD, 2, ADD, STORE, 4,
+  /* 7 */ LOAD, 2, STORE, 1,
+  /* 11 */ LOAD, 4, STORE, 2,
+  /* 15 */ LOAD, 3, LOAD, 1, XOR, STORE, 3,
+  /* 22 */ DEC, 0, JNZ, 0, 0,
+  /* 27 */ PRINT, 3, HALT
+};
+
+static void run(const int *code, unsigned *regs) {
+  static void *dispatch[] = { &&load, &&store, &&add, &&xor, &&dec, &&jnz, &&print, &&halt };
+  unsigned stack[16];
+  int sp = 0;
+  const int *pc = code;
+
+#define NEXT goto *dispatch[*pc++]
+  NEXT;
+load:
+  stack[sp++] = regs[*pc++];
+  NEXT;
+store:
+  regs[*pc++] = stack[--sp];
+  NEXT;
+add:
+  sp--;
+  stack[sp - 1] += stack[sp];
+  NEXT;
+xor:
+  sp--;
+  stack[sp - 1] ^= stack[sp];
+  NEXT;
+dec:
+  regs[*pc++]--;
+  NEXT;
+jnz:
+  if (regs[pc[0]] != 0) {
+    pc = code + pc[1];
+  } else {
+    pc += 2;
+  }
+  NEXT;
+print:
+  printf("%u\n", regs[*pc++]);
+  NEXT;
+halt:
+  return;
+#undef NEXT
+}
+
+int main(int argc, char **argv) {
+  unsigned regs[5] = { 0, 0, 1, 0, 0 };
+  regs[0] = argc > 1 ? (unsigned) atoi(argv[1]) : 1000;
+  run(program, regs);
+  return 0;
+}
@@ -0,0 +1,23 @@
+#include <stdio.h>
+#include <stdint.h>
+
+void *polyglot_import(const char *name);
+uint64_t polyglot_as_string(const void *value, char *buffer, uint64_t bufsize, const char *charset);
+
+long caller_i64(long (*callback)(long), long value);
+
+static long increment(long value) {
+  return value + 1;
+}
+
+int main(int argc, char **argv) {
+  static char json[4096];
+  long value = 0;
+  for (int i = 0; i < argc + 4; i++) {
+    value = caller_i64(increment, value);
+  }
+  void *(*stats)(void) = polyglot_import("llvm.nativeCallStats");
+  polyglot_as_string(stats(), json, sizeof(json), "ascii");
+  printf("%ld\n%s\n", value, json);
+  return 0;
+}
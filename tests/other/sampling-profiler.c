@@ -0,0 +1,17 @@
+#include <stdio.h>
+
+static volatile long sink;
+
+__attribute__((noinline)) long busy(long n) {
+  long sum = 0;
+  for (long i = 0; i < n; i++) {
+    sum += (i * i) % 7;
+    sink = sum;
+  }
+  return sum;
+}
+
+int main(int argc, char **argv) {
+  printf("%ld\n", busy(argc * 5000000L));
+  return 0;
+}
@@ -0,0 +1,115 @@
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define MAX_THREADS 64
+#define FRAME_SIZE 1024
+
+static pthread_mutex_t lock = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t cond = PTHREAD_COND_INITIALIZER;
+static int waiting;
+static int released;
+
+static long residentKB() {
+  char line[256];
+  long kb = -1;
+  FILE *status = fopen("/proc/self/status", "r");
+  if (status == NULL) {
+    return -1;
+  }
+  while (fgets(line, sizeof(line), status) != NULL) {
+    if (strncmp(line, "VmRSS:", 6) == 0) {
+      kb = atol(line + 6);
+      break;
+    }
+  }
+  fclose(status);
+  return kb;
+}
+
+static int recurse(int depth, int wait) {
+  volatile char buf[FRAME_SIZE];
+  memset((char *) buf, depth, sizeof(buf));
+  if (depth == 0) {
+    if (wait) {
+      pthread_mutex_lock(&lock);
+      waiting++;
+      pthread_cond_broadcast(&cond);
+      while (!released) {
+        pthread_cond_wait(&cond, &lock);
+      }
+      pthread_mutex_unlock(&lock);
+    }
+    return buf[0];
+  }
+  return recurse(depth - 1, wait) + buf[FRAME_SIZE - 1];
+}
+
+#define PUSH1 "pushq %1\n\t"
+#define PUSH8 PUSH1 PUSH1 PUSH1 PUSH1 PUSH1 PUSH1 PUSH1 PUSH1
+#define PUSH64 PUSH8 PUSH8 PUSH8 PUSH8 PUSH8 PUSH8 PUSH8 PUSH8
+#define POP1 "popq %0\n\t"
+#define POP8 POP1 POP1 POP1 POP1 POP1 POP1 POP1 POP1
+#define POP64 POP8 POP8 POP8 POP8 POP8 POP8 POP8 POP8
+
+/*
+ * Pushes 640 quadwords (5 KB) and pops them again. With a commit size of 4 KB, the pushes cross
+ * the committed part of an mmap stack.
+ */
+static long pushAndPop(long value) {
+  long result;
+  __asm__(PUSH64 PUSH64 PUSH64 PUSH64 PUSH64 PUSH64 PUSH64 PUSH64 PUSH64 PUSH64
+          POP64 POP64 POP64 POP64 POP64 POP64 POP64 POP64 POP64 POP64
+          : "=&r"(result)
+          : "r"(value));
+  return result;
+}
+
+static void *run(void *arg) {
+  return (void *) (long) recurse((int) (long) arg, 1);
+}
+
+/*
+ * Usage: stack-usage <threads> <depth>
+ *        stack-usage push
+ *
+ * With 0 threads, recurses <depth> frames of FRAME_SIZE bytes on the main thread. Otherwise,
+ * starts <threads> threads that each recurse <depth> frames and then wait until the resident set
+ * size of the process has been printed. With "push", pushes and pops values in inline assembly.
+ */
+int main(int argc, char **argv) {
+  pthread_t threads[MAX_THREADS];
+  int count = argc > 1 ? atoi(argv[1]) : 0;
+  int depth = argc > 2 ? atoi(argv[2]) : 16;
+  long before;
+  int i;
+
+  if (argc > 1 && strcmp(argv[1], "push") == 0) {
+    return pushAndPop(42) == 42 ? 0 : 1;
+  }
+  if (count <= 0) {
+    return recurse(depth, 0) & 0x7f;
+  }
+  if (count > MAX_THREADS) {
+    count = MAX_THREADS;
+  }
+
+  before = residentKB();
+  for (i = 0; i < count; i++) {
+    pthread_create(&threads[i], NULL, run, (void *) (long) depth);
+  }
+  pthread_mutex_lock(&lock);
+  while (waiting < count) {
+    pthread_cond_wait(&cond, &lock);
+  }
+  printf("resident KB: %ld\n", residentKB() - before);
+  released = 1;
+  pthread_cond_broadcast(&cond);
+  pthread_mutex_unlock(&lock);
+
+  for (i = 0; i < count; i++) {
+    pthread_join(threads[i], NULL);
+  }
+  return 0;
+}
@@ -0,0 +1,87 @@
+#include <string.h>
+#include <sys/syscall.h>
+#include <unistd.h>
+
+/*
+ * Writes with raw syscalls, so that the output goes through the syscall nodes of Sulong and not
+ * through a native libc. The position of stdout tells how much output was written natively.
+ */
+static long sys3(long id, long a1, long a2, long a3) {
+  long result;
+  __asm__ volatile("syscall" : "=a"(result) : "a"(id), "D"(a1), "S"(a2), "d"(a3) : "memory", "rcx", "r11");
+  return result;
+}
+
+// no library calls between the writes: calls into native code flush the buffer
+static void put(int fd, const char *s) {
+  long length = 0;
+  while (s[length] != '\0') {
+    length++;
+  }
+  sys3(SYS_write, fd, (long)s, length);
+}
+
+static long written(void) { return sys3(SYS_lseek, 1, 0, SEEK_CUR); }
+
+int main(int argc, char **argv) {
+  static char large[10000];
+  int none = argc > 1 && strcmp(argv[1], "none") == 0;
+  int line = argc > 1 && strcmp(argv[1], "line") == 0;
+  long start = written();
+
+  put(2, "err\n");
+
+  // small writes are kept in the buffer
+  for (int i = 0; i < 100; i++) {
+    put(1, "a");
+  }
+  if (written() != start + (none ? 100 : 0)) {
+    return 1;
+  }
+
+  // a newline flushes in line mode
+  put(1, "\n");
+  if (written() != start + (none || line ? 101 : 0)) {
+    return 2;
+  }
+
+  put(1, "b");
+  sys3(SYS_fsync, 1, 0, 0);
+  if (written() != start + 102) {
+    return 3;
+  }
+
+  put(1, "c");
+  sys3(SYS_dup2, 1, 1, 0);
+  if (written() != start + 103) {
+    return 4;
+  }
+
+  // a write larger than the buffer is written directly, after the pending output
+  put(1, "d");
+  for (int i = 0; i < sizeof(large); i++) {
+    large[i] = 'x';
+  }
+  sys3(SYS_write, 1, (long)large, sizeof(large));
+  if (written() != start + 104 + sizeof(large)) {
+    return 5;
+  }
+
+  put(2, "err\n");
+  put(1, "e");
+  sys3(SYS_close, 2, 0, 0);
+  if (written() != start + 105 + sizeof(large)) {
+    return 6;
+  }
+
+  // native code writes after the pending output
+  put(1, "f");
+  write(1, "g", 1);
+  if (written() != start + 107 + sizeof(large)) {
+    return 7;
+  }
+
+  // flushed on exit
+  put(1, "done");
+  return 0;
+}